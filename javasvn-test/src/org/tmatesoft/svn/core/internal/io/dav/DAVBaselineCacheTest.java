@@ -0,0 +1,109 @@
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+/**
+ * Checks eviction of the least recently used baseline cache entries, expiry
+ * and invalidation of the cached HEAD baseline and that caches are not
+ * shared between authentication managers and servers.
+ *
+ * @author TMate Software Ltd.
+ */
+public class DAVBaselineCacheTest extends TestCase {
+
+    private DAVBaselineCache myCache;
+
+    protected void setUp() throws Exception {
+        // every test uses its own server, caches are static.
+        myCache = DAVBaselineCache.getInstance(createURL("/repos"), SVNWCUtil.createDefaultAuthenticationManager("user", "secret"));
+    }
+
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        for (int i = 0; i < DAVBaselineCache.MAX_SIZE; i++) {
+            myCache.putStartingProperties("/path" + i, "/vcc", "path" + i);
+            myCache.putResourceType("/path" + i, true);
+        }
+        // recently used entries are kept.
+        assertNotNull(myCache.getStartingProperties("/path0"));
+        assertNotNull(myCache.isDirectory("/path0"));
+
+        myCache.putStartingProperties("/new", "/vcc", "new");
+        myCache.putResourceType("/new", false);
+        assertNotNull(myCache.getStartingProperties("/path0"));
+        assertNull(myCache.getStartingProperties("/path1"));
+        assertEquals("new", myCache.getStartingProperties("/new")[1]);
+        assertEquals(Boolean.TRUE, myCache.isDirectory("/path0"));
+        assertNull(myCache.isDirectory("/path1"));
+        assertEquals(Boolean.FALSE, myCache.isDirectory("/new"));
+        assertNotNull(myCache.getStartingProperties("/path" + (DAVBaselineCache.MAX_SIZE - 1)));
+    }
+
+    public void testBaselineIsCopied() throws Exception {
+        DAVResponse baseline = new DAVResponse();
+        baseline.putPropertyValue(DAVElement.VERSION_NAME, "5");
+        myCache.putBaseline("/bln/5", null, baseline);
+        baseline.putPropertyValue(DAVElement.VERSION_NAME, "6");
+        assertEquals("5", myCache.getBaseline("/bln/5", null).getPropertyValue(DAVElement.VERSION_NAME));
+        myCache.getBaseline("/bln/5", null).putPropertyValue(DAVElement.VERSION_NAME, "7");
+        assertEquals("5", myCache.getBaseline("/bln/5", null).getPropertyValue(DAVElement.VERSION_NAME));
+        // label is a part of the key.
+        assertNull(myCache.getBaseline("/bln/5", "5"));
+    }
+
+    public void testHeadTimeout() throws Exception {
+        myCache.putCheckedIn("/vcc", "/bln/5");
+        myCache.putStartingProperties("/path", "/vcc", "path");
+        assertEquals("/bln/5", myCache.getCheckedIn("/vcc"));
+        Thread.sleep(DAVBaselineCache.HEAD_TIMEOUT + 100);
+        assertNull(myCache.getCheckedIn("/vcc"));
+        // other entries do not expire.
+        assertNotNull(myCache.getStartingProperties("/path"));
+    }
+
+    public void testInvalidateHead() throws Exception {
+        myCache.putCheckedIn("/vcc", "/bln/5");
+        myCache.putCheckedIn("/other-vcc", "/other-bln/3");
+        myCache.putStartingProperties("/path", "/vcc", "path");
+        myCache.putResourceType("/path", true);
+        myCache.invalidateHead();
+        assertNull(myCache.getCheckedIn("/vcc"));
+        assertNull(myCache.getCheckedIn("/other-vcc"));
+        assertNotNull(myCache.getStartingProperties("/path"));
+        assertNotNull(myCache.isDirectory("/path"));
+
+        myCache.putCheckedIn("/vcc", "/bln/6");
+        assertEquals("/bln/6", myCache.getCheckedIn("/vcc"));
+    }
+
+    public void testAuthenticationManagerIsolation() throws Exception {
+        ISVNAuthenticationManager first = SVNWCUtil.createDefaultAuthenticationManager("first", "secret");
+        ISVNAuthenticationManager second = SVNWCUtil.createDefaultAuthenticationManager("second", "secret");
+        SVNURL location = createURL("/repos/trunk");
+
+        DAVBaselineCache firstCache = DAVBaselineCache.getInstance(location, first);
+        DAVBaselineCache secondCache = DAVBaselineCache.getInstance(location, second);
+        assertNotSame(firstCache, secondCache);
+        assertNotSame(firstCache, DAVBaselineCache.getInstance(location, null));
+        firstCache.putRepositoryInfo("/repos/trunk", "uuid", createURL("/repos"));
+        firstCache.putCheckedIn("/vcc", "/bln/5");
+        assertNull(secondCache.getRepositoryInfo("/repos/trunk"));
+        assertNull(secondCache.getCheckedIn("/vcc"));
+        secondCache.invalidateHead();
+        assertEquals("/bln/5", firstCache.getCheckedIn("/vcc"));
+
+        // same manager and server share one cache whatever the path is.
+        assertSame(firstCache, DAVBaselineCache.getInstance(createURL("/other"), first));
+        assertSame(DAVBaselineCache.getInstance(location, null), DAVBaselineCache.getInstance(createURL("/other"), null));
+        // other server has its own cache.
+        SVNURL otherServer = SVNURL.parseURIEncoded("http://" + getName() + ":8080/repos");
+        assertNotSame(firstCache, DAVBaselineCache.getInstance(otherServer, first));
+    }
+
+    private SVNURL createURL(String path) throws Exception {
+        return SVNURL.parseURIEncoded("http://" + getName() + path);
+    }
+}
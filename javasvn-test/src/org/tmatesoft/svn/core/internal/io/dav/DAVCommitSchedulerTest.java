@@ -0,0 +1,269 @@
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+
+/**
+ * Schedules stub commit jobs and checks that all of them are completed and
+ * disposed before the caller goes on with MERGE, that failed job errors
+ * reach the caller and that dispose stops working threads. No server is
+ * used.
+ *
+ * @author TMate Software Ltd.
+ */
+public class DAVCommitSchedulerTest extends TestCase {
+
+    private Thread myCaller;
+    private List myEvents;
+    private int myOpenConnectionsCount;
+    private boolean myIsGateOpen;
+
+    protected void setUp() throws Exception {
+        myCaller = Thread.currentThread();
+        myEvents = new ArrayList();
+    }
+
+    public void testMergeAfterAllJobs() throws Exception {
+        DAVCommitScheduler scheduler = new DAVCommitScheduler(null, new StubThreads(4));
+        StubJob[] jobs = new StubJob[40];
+        for (int i = 0; i < jobs.length; i++) {
+            // later jobs complete first.
+            jobs[i] = new StubJob("job" + i, (jobs.length - i) % 7 * 5, false);
+            scheduler.schedule(jobs[i]);
+        }
+        scheduler.waitForAll();
+        event("merge");
+
+        assertEquals("merge", myEvents.get(myEvents.size() - 1));
+        for (int i = 0; i < jobs.length; i++) {
+            assertTrue(jobs[i].isCompleted());
+            assertNotSame(myCaller, jobs[i].myThread);
+            assertEquals(1, jobs[i].myDisposeCount);
+            assertTrue(myEvents.indexOf("dispose job" + i) < myEvents.indexOf("merge"));
+        }
+        scheduler.dispose();
+        assertEquals(0, waitForConnections(0));
+    }
+
+    public void testOneThread() throws Exception {
+        DAVCommitScheduler scheduler = new DAVCommitScheduler(null, (DAVWorkerThreads) null);
+        StubJob job = new StubJob("job", 0, false);
+        scheduler.schedule(job);
+        // job is run and disposed at once.
+        assertSame(myCaller, job.myThread);
+        assertEquals(1, job.myDisposeCount);
+        scheduler.waitForAll();
+        scheduler.dispose();
+        assertEquals(1, job.myDisposeCount);
+    }
+
+    public void testJobError() throws Exception {
+        DAVCommitScheduler scheduler = new DAVCommitScheduler(null, new StubThreads(1));
+        StubJob failed = new StubJob("failed", -1, true);
+        scheduler.schedule(failed);
+        StubJob[] jobs = new StubJob[DAVCommitScheduler.MAX_JOBS_PER_THREAD - 1];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = new StubJob("job" + i, 0, false);
+            scheduler.schedule(jobs[i]);
+        }
+        openGate();
+
+        // there are too many pending jobs, next one waits for the failed one
+        // and is disposed without being run.
+        StubJob next = new StubJob("next", 0, false);
+        try {
+            scheduler.schedule(next);
+            fail();
+        } catch (SVNException e) {
+            assertEquals("svn: failed by test", e.getMessage());
+        }
+        assertEquals(1, failed.myDisposeCount);
+        assertEquals(1, next.myDisposeCount);
+
+        scheduler.waitForAll();
+        scheduler.dispose();
+        for (int i = 0; i < jobs.length; i++) {
+            assertTrue(jobs[i].isCompleted());
+            assertEquals(1, jobs[i].myDisposeCount);
+        }
+        assertFalse(next.isCompleted());
+        assertNull(next.myThread);
+        assertEquals(1, next.myDisposeCount);
+        assertEquals(0, waitForConnections(0));
+    }
+
+    public void testErrorInWaitForAll() throws Exception {
+        DAVCommitScheduler scheduler = new DAVCommitScheduler(null, new StubThreads(4));
+        StubJob failed = new StubJob("failed", 50, true);
+        scheduler.schedule(failed);
+        try {
+            scheduler.waitForAll();
+            fail();
+        } catch (SVNException e) {
+            assertEquals("svn: failed by test", e.getMessage());
+        }
+        assertEquals(1, failed.myDisposeCount);
+        scheduler.dispose();
+    }
+
+    public void testDispose() throws Exception {
+        int threadsCount = 2;
+        DAVCommitScheduler scheduler = new DAVCommitScheduler(null, new StubThreads(threadsCount));
+        StubJob[] jobs = new StubJob[threadsCount * DAVCommitScheduler.MAX_JOBS_PER_THREAD];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = new StubJob("job" + i, -1, false);
+            scheduler.schedule(jobs[i]);
+        }
+        assertEquals(threadsCount, waitForRunning(jobs, threadsCount));
+
+        Thread opener = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    //
+                }
+                openGate();
+            }
+        });
+        opener.start();
+        // waits for the running jobs.
+        scheduler.dispose();
+        int completed = 0;
+        for (int i = 0; i < jobs.length; i++) {
+            assertEquals(1, jobs[i].myDisposeCount);
+            if (jobs[i].isCompleted()) {
+                completed++;
+            } else {
+                assertNull(jobs[i].myThread);
+            }
+        }
+        assertEquals(threadsCount, completed);
+        assertEquals(0, waitForConnections(0));
+        opener.join();
+    }
+
+    private synchronized void event(String event) {
+        myEvents.add(event);
+    }
+
+    private synchronized void openGate() {
+        myIsGateOpen = true;
+        notifyAll();
+    }
+
+    private synchronized void waitForGate() {
+        while (!myIsGateOpen) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private synchronized int waitForRunning(StubJob[] jobs, int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        int running = 0;
+        while (System.currentTimeMillis() < end) {
+            running = 0;
+            for (int i = 0; i < jobs.length; i++) {
+                if (jobs[i].myThread != null) {
+                    running++;
+                }
+            }
+            if (running >= count) {
+                break;
+            }
+            wait(10);
+        }
+        return running;
+    }
+
+    private synchronized int waitForConnections(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (myOpenConnectionsCount > count && System.currentTimeMillis() < end) {
+            wait(10);
+        }
+        return myOpenConnectionsCount;
+    }
+
+    private class StubThreads extends DAVWorkerThreads {
+
+        public StubThreads(int threadsCount) {
+            super(null, null, "DAV commit", threadsCount);
+        }
+
+        protected DAVConnection openConnection() throws SVNException {
+            assertSame(myCaller, Thread.currentThread());
+            synchronized (DAVCommitSchedulerTest.this) {
+                myOpenConnectionsCount++;
+            }
+            return new DAVConnection(SVNURL.parseURIEncoded("http://localhost/repos")) {
+                public void close() {
+                    synchronized (DAVCommitSchedulerTest.this) {
+                        myOpenConnectionsCount--;
+                        DAVCommitSchedulerTest.this.notifyAll();
+                    }
+                }
+            };
+        }
+    }
+
+    private class StubJob extends DAVCommitScheduler.Job {
+
+        private String myName;
+        // negative delay makes job wait for the gate.
+        private long myDelay;
+        private boolean myIsFailed;
+        private Thread myThread;
+        private boolean myIsCompleted;
+        private int myDisposeCount;
+
+        public StubJob(String name, long delay, boolean failed) {
+            myName = name;
+            myDelay = delay;
+            myIsFailed = failed;
+        }
+
+        public void run(DAVConnection connection) throws SVNException {
+            synchronized (DAVCommitSchedulerTest.this) {
+                myThread = Thread.currentThread();
+                DAVCommitSchedulerTest.this.notifyAll();
+            }
+            if (myDelay < 0) {
+                waitForGate();
+            } else if (myDelay > 0) {
+                try {
+                    Thread.sleep(myDelay);
+                } catch (InterruptedException e) {
+                    //
+                }
+            }
+            synchronized (DAVCommitSchedulerTest.this) {
+                myIsCompleted = true;
+            }
+            event("run " + myName);
+            if (myIsFailed) {
+                throw new SVNException("svn: failed by test");
+            }
+        }
+
+        public void dispose() {
+            assertSame(myCaller, Thread.currentThread());
+            myDisposeCount++;
+            event("dispose " + myName);
+        }
+
+        public boolean isCompleted() {
+            synchronized (DAVCommitSchedulerTest.this) {
+                return myIsCompleted;
+            }
+        }
+    }
+}
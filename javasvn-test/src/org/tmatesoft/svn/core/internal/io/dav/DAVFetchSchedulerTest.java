@@ -0,0 +1,364 @@
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.dav.handlers.DAVEditorHandler;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+import org.xml.sax.SAXException;
+
+/**
+ * Feeds update report without file contents and properties to the editor
+ * handler and checks that contents and properties fetched by several threads
+ * reach the editor in the report order. Fetches are answered by stub
+ * connections, no server is used.
+ *
+ * @author TMate Software Ltd.
+ */
+public class DAVFetchSchedulerTest extends TestCase {
+
+    private static final String REPORT =
+        "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+        "<S:update-report xmlns:S=\"svn:\" xmlns:D=\"DAV:\">\n" +
+        "<S:target-revision rev=\"5\"/>\n" +
+        "<S:open-directory rev=\"4\">\n" +
+        "<D:checked-in><D:href>/ver/root</D:href></D:checked-in>\n" +
+        "<S:fetch-props/>\n" +
+        "<S:add-directory name=\"dir\">\n" +
+        "<D:checked-in><D:href>/ver/dir</D:href></D:checked-in>\n" +
+        "<S:fetch-props/>\n" +
+        "<S:add-file name=\"b.txt\">\n" +
+        "<D:checked-in><D:href>/ver/b</D:href></D:checked-in>\n" +
+        "<S:fetch-file/>\n" +
+        "</S:add-file>\n" +
+        "</S:add-directory>\n" +
+        "<S:open-file name=\"a.txt\" rev=\"4\">\n" +
+        "<D:checked-in><D:href>/ver/a</D:href></D:checked-in>\n" +
+        "<S:fetch-file base-checksum=\"abc\"/>\n" +
+        "<S:fetch-props/>\n" +
+        "</S:open-file>\n" +
+        "<S:delete-entry name=\"old\"/>\n" +
+        "<S:set-prop name=\"svn:entry:committed-rev\">5</S:set-prop>\n" +
+        "</S:open-directory>\n" +
+        "</S:update-report>";
+
+    private static final String[] REPORT_CALLS = {
+        "targetRevision 5",
+        "openRoot 4",
+        "changeDirProperty svn:wc:ra_dav:version-url=/ver/root",
+        "changeDirProperty color=/ver/root",
+        "addDir dir",
+        "changeDirProperty svn:wc:ra_dav:version-url=/ver/dir",
+        "changeDirProperty color=/ver/dir",
+        "addFile dir/b.txt",
+        "changeFileProperty dir/b.txt svn:wc:ra_dav:version-url=/ver/b",
+        "applyTextDelta dir/b.txt null",
+        "textDeltaEnd dir/b.txt text of /ver/b",
+        "closeFile dir/b.txt",
+        "closeDir",
+        "openFile a.txt 4",
+        "changeFileProperty a.txt svn:wc:ra_dav:version-url=/ver/a",
+        "applyTextDelta a.txt abc",
+        "textDeltaEnd a.txt text of /ver/a",
+        "changeFileProperty a.txt color=/ver/a",
+        "closeFile a.txt",
+        "deleteEntry old",
+        "changeDirProperty svn:entry:committed-rev=5",
+        "closeDir",
+        "closeEdit",
+    };
+
+    private List myFetched;
+    private int myConnectionsCount;
+    private int myStartedCount;
+    private int myDeliveredCount;
+    private int myMaxOutstandingCount;
+    private String myFailedURL;
+
+    protected void setUp() throws Exception {
+        myFetched = new ArrayList();
+    }
+
+    public void testReportOrder() throws Exception {
+        RecordingEditor editor = new RecordingEditor();
+        parse(REPORT, editor, 4);
+        assertEquals(toList(REPORT_CALLS), editor.myCalls);
+        // slow root properties are fetched while other fetches complete.
+        assertTrue(myConnectionsCount > 1);
+        assertFalse("/ver/root".equals(myFetched.get(0)));
+    }
+
+    public void testReportOrderWithOneThread() throws Exception {
+        RecordingEditor editor = new RecordingEditor();
+        parse(REPORT, editor, 1);
+        assertEquals(toList(REPORT_CALLS), editor.myCalls);
+        assertEquals(1, myConnectionsCount);
+    }
+
+    public void testFetchError() throws Exception {
+        myFailedURL = "/ver/b";
+        RecordingEditor editor = new RecordingEditor();
+        try {
+            parse(REPORT, editor, 4);
+            fail();
+        } catch (SVNException e) {
+            assertEquals("svn: fetch of /ver/b failed", e.getMessage());
+        }
+        // calls that precede the failed fetch are passed to the editor.
+        List expected = toList(REPORT_CALLS).subList(0, 9);
+        assertEquals(expected, editor.myCalls);
+    }
+
+    public void testPendingFetchesLimit() throws Exception {
+        assertPendingFetchesLimit(4);
+    }
+
+    public void testPendingFetchesLimitWithOneThread() throws Exception {
+        assertPendingFetchesLimit(1);
+    }
+
+    private void assertPendingFetchesLimit(final int threadsCount) throws Exception {
+        int count = DAVFetchScheduler.MAX_PENDING_FETCHES * 4;
+        StringBuffer report = new StringBuffer();
+        report.append("<S:update-report xmlns:S=\"svn:\" xmlns:D=\"DAV:\">\n");
+        report.append("<S:open-directory rev=\"4\">\n");
+        for (int i = 0; i < count; i++) {
+            report.append("<S:add-file name=\"" + i + "\">");
+            report.append("<D:checked-in><D:href>/ver/" + i + "</D:href></D:checked-in>");
+            report.append("<S:fetch-file/>");
+            report.append("</S:add-file>\n");
+        }
+        report.append("</S:open-directory>\n");
+        report.append("</S:update-report>");
+
+        final String xml = report.toString();
+        final RecordingEditor editor = new RecordingEditor();
+        final List errors = new ArrayList();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    parse(xml, editor, threadsCount);
+                } catch (Throwable th) {
+                    errors.add(th);
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(60000);
+        assertFalse("report processing is blocked", thread.isAlive());
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        List contents = new ArrayList();
+        for (int i = 0; i < editor.myCalls.size(); i++) {
+            String call = (String) editor.myCalls.get(i);
+            if (call.startsWith("textDeltaEnd ")) {
+                contents.add(call);
+            }
+        }
+        assertEquals(count, contents.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("textDeltaEnd " + i + " text of /ver/" + i, contents.get(i));
+        }
+        assertTrue(myMaxOutstandingCount <= DAVFetchScheduler.MAX_PENDING_FETCHES);
+        if (threadsCount > 1) {
+            // the first fetch is slow, the following ones pile up up to the limit.
+            assertTrue(myMaxOutstandingCount > DAVFetchScheduler.MAX_PENDING_FETCHES / 2);
+        }
+    }
+
+    private void parse(String report, ISVNEditor editor, int threadsCount) throws Exception {
+        DAVFetchScheduler scheduler = new DAVFetchScheduler(editor, new StubThreads(threadsCount));
+        DAVEditorHandler handler = new DAVEditorHandler(editor, true, scheduler);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            factory.newSAXParser().parse(new ByteArrayInputStream(report.getBytes("UTF-8")), handler);
+        } catch (SAXException e) {
+            if (e.getException() instanceof SVNException) {
+                throw (SVNException) e.getException();
+            }
+            throw e;
+        } finally {
+            handler.dispose();
+        }
+    }
+
+    private synchronized void fetchStarted() {
+        myStartedCount++;
+        myMaxOutstandingCount = Math.max(myMaxOutstandingCount, myStartedCount - myDeliveredCount);
+    }
+
+    private synchronized void fetchDelivered() {
+        myDeliveredCount++;
+    }
+
+    private void fetch(String url) throws SVNException {
+        fetchStarted();
+        long delay = 0;
+        if ("/ver/root".equals(url) || "/ver/0".equals(url)) {
+            delay = 300;
+        } else if ("/ver/dir".equals(url)) {
+            delay = 100;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            //
+        }
+        synchronized (this) {
+            myFetched.add(url);
+        }
+        if (url.equals(myFailedURL)) {
+            throw new SVNException("svn: fetch of " + url + " failed");
+        }
+    }
+
+    private static List toList(String[] values) {
+        List list = new ArrayList();
+        for (int i = 0; i < values.length; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+
+    private class StubThreads extends DAVWorkerThreads {
+
+        public StubThreads(int threadsCount) {
+            super(null, null, "DAV fetch", threadsCount);
+        }
+
+        protected DAVConnection openConnection() throws SVNException {
+            synchronized (DAVFetchSchedulerTest.this) {
+                myConnectionsCount++;
+            }
+            return new StubConnection();
+        }
+    }
+
+    private class StubConnection extends DAVConnection {
+
+        public StubConnection() throws SVNException {
+            super(SVNURL.parseURIEncoded("http://localhost/repos"));
+        }
+
+        public void doGet(String path, OutputStream os) throws SVNException {
+            fetch(path);
+            try {
+                os.write(("text of " + path).getBytes("UTF-8"));
+            } catch (IOException e) {
+                throw new SVNException(e.getMessage(), e);
+            }
+        }
+
+        public void doPropfind(String path, int depth, String label, DAVElement[] properties, IDAVResponseHandler handler) throws SVNException {
+            fetch(path);
+            DAVResponse response = new DAVResponse();
+            response.putPropertyValue(DAVElement.getElement(DAVElement.SVN_CUSTOM_PROPERTY_NAMESPACE, "color"), path);
+            response.putPropertyValue(DAVElement.CHECKED_IN, "/ver/other");
+            handler.handleDAVResponse(response);
+        }
+    }
+
+    private class RecordingEditor implements ISVNEditor {
+
+        private Thread myThread;
+        private List myCalls = new ArrayList();
+        private ByteArrayOutputStream myContents;
+
+        private void call(String call) {
+            if (myThread == null) {
+                myThread = Thread.currentThread();
+            }
+            assertSame(myThread, Thread.currentThread());
+            myCalls.add(call);
+        }
+
+        public void targetRevision(long revision) {
+            call("targetRevision " + revision);
+        }
+
+        public void openRoot(long revision) {
+            call("openRoot " + revision);
+        }
+
+        public void deleteEntry(String path, long revision) {
+            call("deleteEntry " + path);
+        }
+
+        public void absentDir(String path) {
+            call("absentDir " + path);
+        }
+
+        public void absentFile(String path) {
+            call("absentFile " + path);
+        }
+
+        public void addDir(String path, String copyFromPath, long copyFromRevision) {
+            call("addDir " + path);
+        }
+
+        public void openDir(String path, long revision) {
+            call("openDir " + path + " " + revision);
+        }
+
+        public void changeDirProperty(String name, String value) {
+            call("changeDirProperty " + name + "=" + value);
+        }
+
+        public void closeDir() {
+            call("closeDir");
+        }
+
+        public void addFile(String path, String copyFromPath, long copyFromRevision) {
+            call("addFile " + path);
+        }
+
+        public void openFile(String path, long revision) {
+            call("openFile " + path + " " + revision);
+        }
+
+        public void applyTextDelta(String path, String baseChecksum) {
+            call("applyTextDelta " + path + " " + baseChecksum);
+            myContents = new ByteArrayOutputStream();
+        }
+
+        public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) {
+            return myContents;
+        }
+
+        public void textDeltaEnd(String path) {
+            fetchDelivered();
+            call("textDeltaEnd " + path + " " + new String(myContents.toByteArray()));
+        }
+
+        public void changeFileProperty(String path, String name, String value) {
+            call("changeFileProperty " + path + " " + name + "=" + value);
+        }
+
+        public void closeFile(String path, String textChecksum) {
+            call("closeFile " + path);
+        }
+
+        public SVNCommitInfo closeEdit() {
+            call("closeEdit");
+            return null;
+        }
+
+        public void abortEdit() {
+            call("abortEdit");
+        }
+    }
+}
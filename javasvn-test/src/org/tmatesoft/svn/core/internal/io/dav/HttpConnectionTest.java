@@ -0,0 +1,427 @@
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNAuthenticationException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationProvider;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationStorage;
+import org.tmatesoft.svn.core.auth.ISVNProxyManager;
+import org.tmatesoft.svn.core.auth.ISVNSSLManager;
+import org.tmatesoft.svn.core.auth.SVNAuthentication;
+import org.tmatesoft.svn.core.auth.SVNPasswordAuthentication;
+import org.tmatesoft.svn.core.internal.util.SVNBase64;
+
+/**
+ * Sends streamed request bodies to a minimal fake http server that answers
+ * "Expect: 100-continue" at once, late or never and asks for credentials
+ * before or after the body is sent.
+ *
+ * @author TMate Software Ltd.
+ */
+public class HttpConnectionTest extends TestCase {
+
+    private static final int IMMEDIATE = 0;
+    private static final int LATE = 1;
+    private static final int NEVER = 2;
+
+    private static final String AUTHORIZATION = "Basic " + SVNBase64.byteArrayToBase64("user:secret".getBytes());
+
+    private FakeServer myServer;
+    private HttpConnection myConnection;
+
+    protected void setUp() throws Exception {
+        myServer = new FakeServer();
+        DAVRepository repository = new DAVRepository(SVNURL.parseURIEncoded("http://127.0.0.1:" + myServer.getPort() + "/repos"), false);
+        repository.setAuthenticationManager(new AuthenticationManager());
+        myConnection = new HttpConnection(repository.getLocation(), repository);
+    }
+
+    protected void tearDown() throws Exception {
+        myConnection.close();
+        myServer.close();
+    }
+
+    public void testImmediateContinue() throws Exception {
+        myServer.setContinueMode(IMMEDIATE);
+        long start = System.currentTimeMillis();
+        byte[] body = createBody(100*1024);
+        assertEquals(201, sendBody(body).getResponseCode());
+        assertTrue(System.currentTimeMillis() - start < 2500);
+
+        assertEquals(1, myServer.getRequests().size());
+        Request request = (Request) myServer.getRequests().get(0);
+        assertEquals("100-continue", request.Header.get("Expect"));
+        assertEquals("chunked", request.Header.get("Transfer-Encoding"));
+        assertEquals(new String(body), new String(request.Body));
+        assertTrue(myConnection.isReusable());
+    }
+
+    public void testNoContinue() throws Exception {
+        myServer.setContinueMode(NEVER);
+        long start = System.currentTimeMillis();
+        byte[] body = createBody(1000);
+        assertEquals(201, sendBody(body).getResponseCode());
+        // body is sent when server does not answer the expectation in time.
+        assertTrue(System.currentTimeMillis() - start >= 2500);
+        assertEquals(1, myServer.getRequests().size());
+        assertEquals(new String(body), new String(((Request) myServer.getRequests().get(0)).Body));
+        assertEquals(1, myServer.getConnectionsCount());
+    }
+
+    public void testLateContinue() throws Exception {
+        myServer.setContinueMode(LATE);
+        byte[] body = createBody(1000);
+        assertEquals(201, sendBody(body).getResponseCode());
+        assertEquals(new String(body), new String(((Request) myServer.getRequests().get(0)).Body));
+        assertTrue(myConnection.isReusable());
+
+        // late "100 Continue" is not taken for the response of the next request.
+        myServer.setContinueMode(IMMEDIATE);
+        assertEquals(201, sendBody(body).getResponseCode());
+        assertEquals(1, myServer.getConnectionsCount());
+    }
+
+    public void testChallengeBeforeBody() throws Exception {
+        myServer.setContinueMode(IMMEDIATE);
+        myServer.setChallenge(true, false);
+        byte[] body = createBody(100*1024);
+        assertEquals(201, sendBody(body).getResponseCode());
+
+        // body is sent only once, with credentials.
+        List requests = myServer.getRequests();
+        assertEquals(2, requests.size());
+        assertNull(((Request) requests.get(0)).Body);
+        assertNull(((Request) requests.get(0)).Header.get("Authorization"));
+        assertEquals(AUTHORIZATION, ((Request) requests.get(1)).Header.get("Authorization"));
+        assertEquals(new String(body), new String(((Request) requests.get(1)).Body));
+    }
+
+    public void testChallengeAfterSpooledBody() throws Exception {
+        myServer.setContinueMode(NEVER);
+        myServer.setChallenge(false, true);
+        byte[] body = createBody(512*1024);
+        assertEquals(201, sendBody(body).getResponseCode());
+
+        // body is sent again from the spool, with known length.
+        List requests = myServer.getRequests();
+        Request last = (Request) requests.get(requests.size() - 1);
+        assertEquals(AUTHORIZATION, last.Header.get("Authorization"));
+        assertEquals(Integer.toString(body.length), last.Header.get("Content-Length"));
+        assertNull(last.Header.get("Expect"));
+        assertEquals(new String(body), new String(last.Body));
+        for (int i = 0; i < requests.size() - 1; i++) {
+            assertNull(((Request) requests.get(i)).Header.get("Authorization"));
+        }
+    }
+
+    public void testChallengeAfterLargeBody() throws Exception {
+        myServer.setContinueMode(NEVER);
+        myServer.setChallenge(false, true);
+        byte[] body = createBody(1024*1024 + 1);
+        try {
+            sendBody(body);
+            fail();
+        } catch (SVNAuthenticationException e) {
+            assertTrue(e.getMessage().indexOf("too large") >= 0);
+        }
+        assertEquals(1, myServer.getRequests().size());
+        assertEquals(body.length, ((Request) myServer.getRequests().get(0)).Body.length);
+    }
+
+    public void testChunkedWriter() throws Exception {
+        myServer.setContinueMode(IMMEDIATE);
+        byte[] body = createBody(100*1024 + 17);
+        OutputStream os = myConnection.startRequest("PUT", "/repos/file", null);
+        // single bytes and arrays that cross buffer boundaries.
+        for (int i = 0; i < 10; i++) {
+            os.write(body[i]);
+        }
+        os.write(body, 10, 40*1024);
+        os.write(body, 10 + 40*1024, 0);
+        for (int i = 10 + 40*1024; i < 50*1024; i++) {
+            os.write(body[i]);
+        }
+        os.write(body, 50*1024, body.length - 50*1024);
+        assertEquals(201, myConnection.finishRequest(null, new int[] {201}).getResponseCode());
+
+        Request request = (Request) myServer.getRequests().get(0);
+        assertEquals(new String(body), new String(request.Body));
+        int total = 0;
+        for (int i = 0; i < request.Chunks.size(); i++) {
+            int size = ((Integer) request.Chunks.get(i)).intValue();
+            assertTrue(size > 0 && size <= 32*1024);
+            total += size;
+        }
+        assertEquals(body.length, total);
+
+        // empty body is a single last chunk.
+        os = myConnection.startRequest("PUT", "/repos/file", null);
+        assertEquals(201, myConnection.finishRequest(null, new int[] {201}).getResponseCode());
+        request = (Request) myServer.getRequests().get(1);
+        assertEquals(0, request.Body.length);
+        assertEquals(0, request.Chunks.size());
+    }
+
+    public void testFinishWithoutStart() throws Exception {
+        try {
+            myConnection.finishRequest(null, new int[] {201});
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage().indexOf("not being sent") >= 0);
+        }
+    }
+
+    private DAVStatus sendBody(byte[] body) throws Exception {
+        OutputStream os = myConnection.startRequest("PUT", "/repos/file", null);
+        os.write(body);
+        return myConnection.finishRequest(null, new int[] {201});
+    }
+
+    private static byte[] createBody(int length) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    private static class Request {
+        public Map Header = new HashMap();
+        public byte[] Body;
+        public List Chunks = new ArrayList();
+    }
+
+    private static class FakeServer implements Runnable {
+
+        private ServerSocket myServerSocket;
+        private List mySockets = new ArrayList();
+        private List myRequests = new ArrayList();
+        private int myConnectionsCount;
+        private int myContinueMode;
+        private boolean myIsChallengeBeforeBody;
+        private boolean myIsChallengeAfterBody;
+
+        public FakeServer() throws IOException {
+            myServerSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+            Thread thread = new Thread(this);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public int getPort() {
+            return myServerSocket.getLocalPort();
+        }
+
+        public synchronized void setContinueMode(int mode) {
+            myContinueMode = mode;
+        }
+
+        public synchronized void setChallenge(boolean beforeBody, boolean afterBody) {
+            myIsChallengeBeforeBody = beforeBody;
+            myIsChallengeAfterBody = afterBody;
+        }
+
+        public synchronized int getConnectionsCount() {
+            return myConnectionsCount;
+        }
+
+        public synchronized List getRequests() {
+            return new ArrayList(myRequests);
+        }
+
+        public void close() throws IOException {
+            myServerSocket.close();
+            synchronized (this) {
+                for (int i = 0; i < mySockets.size(); i++) {
+                    ((Socket) mySockets.get(i)).close();
+                }
+            }
+        }
+
+        public void run() {
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = myServerSocket.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                synchronized (this) {
+                    myConnectionsCount++;
+                    mySockets.add(socket);
+                }
+                Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            serve(socket);
+                        } catch (IOException e) {
+                            //
+                        } finally {
+                            try {
+                                socket.close();
+                            } catch (IOException e) {
+                                //
+                            }
+                        }
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        private void serve(Socket socket) throws IOException {
+            InputStream is = new BufferedInputStream(socket.getInputStream());
+            OutputStream os = socket.getOutputStream();
+            while (true) {
+                Request request = new Request();
+                if (!readHeader(is, request.Header)) {
+                    return;
+                }
+                int continueMode;
+                boolean challengeBefore;
+                boolean challengeAfter;
+                synchronized (this) {
+                    continueMode = myContinueMode;
+                    challengeBefore = myIsChallengeBeforeBody;
+                    challengeAfter = myIsChallengeAfterBody;
+                }
+                boolean authorized = AUTHORIZATION.equals(request.Header.get("Authorization"));
+                boolean expect = "100-continue".equals(request.Header.get("Expect"));
+                if (!authorized && challengeBefore && expect) {
+                    // body is not expected to be sent.
+                    addRequest(request);
+                    write(os, "HTTP/1.1 401 Authorization Required\r\nWWW-Authenticate: Basic realm=\"test\"\r\nContent-Length: 0\r\n\r\n");
+                    continue;
+                }
+                if (expect && continueMode == IMMEDIATE) {
+                    write(os, "HTTP/1.1 100 Continue\r\n\r\n");
+                }
+                request.Body = readBody(is, request);
+                if (expect && continueMode == LATE) {
+                    write(os, "HTTP/1.1 100 Continue\r\n\r\n");
+                }
+                addRequest(request);
+                if (!authorized && (challengeAfter || challengeBefore)) {
+                    write(os, "HTTP/1.1 401 Authorization Required\r\nWWW-Authenticate: Basic realm=\"test\"\r\nContent-Length: 0\r\n\r\n");
+                } else {
+                    write(os, "HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n");
+                }
+            }
+        }
+
+        private synchronized void addRequest(Request request) {
+            myRequests.add(request);
+        }
+
+        private static byte[] readBody(InputStream is, Request request) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if ("chunked".equals(request.Header.get("Transfer-Encoding"))) {
+                while (true) {
+                    int size = Integer.parseInt(readLine(is), 16);
+                    if (size == 0) {
+                        readLine(is);
+                        break;
+                    }
+                    request.Chunks.add(new Integer(size));
+                    copy(is, body, size);
+                    readLine(is);
+                }
+            } else if (request.Header.get("Content-Length") != null) {
+                copy(is, body, Integer.parseInt((String) request.Header.get("Content-Length")));
+            }
+            return body.toByteArray();
+        }
+
+        private static boolean readHeader(InputStream is, Map header) throws IOException {
+            String line = readLine(is);
+            if (line == null) {
+                return false;
+            }
+            while (true) {
+                line = readLine(is);
+                if (line == null || line.length() == 0) {
+                    return true;
+                }
+                int index = line.indexOf(':');
+                header.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+            }
+        }
+
+        private static String readLine(InputStream is) throws IOException {
+            StringBuffer line = new StringBuffer();
+            while (true) {
+                int r = is.read();
+                if (r < 0) {
+                    return line.length() == 0 ? null : line.toString();
+                }
+                if (r == '\n') {
+                    return line.toString();
+                }
+                if (r != '\r') {
+                    line.append((char) r);
+                }
+            }
+        }
+
+        private static void copy(InputStream is, OutputStream os, int length) throws IOException {
+            byte[] buffer = new byte[8192];
+            while (length > 0) {
+                int r = is.read(buffer, 0, Math.min(buffer.length, length));
+                if (r < 0) {
+                    throw new IOException("unexpected end of body");
+                }
+                os.write(buffer, 0, r);
+                length -= r;
+            }
+        }
+
+        private static void write(OutputStream os, String response) throws IOException {
+            os.write(response.getBytes("US-ASCII"));
+            os.flush();
+        }
+    }
+
+    private static class AuthenticationManager implements ISVNAuthenticationManager {
+
+        public void setAuthenticationProvider(ISVNAuthenticationProvider provider) {
+        }
+
+        public ISVNProxyManager getProxyManager(SVNURL url) {
+            return null;
+        }
+
+        public ISVNSSLManager getSSLManager(SVNURL url) {
+            return null;
+        }
+
+        public SVNAuthentication getFirstAuthentication(String kind, String realm, SVNURL url) {
+            return new SVNPasswordAuthentication("user", "secret", false);
+        }
+
+        public SVNAuthentication getNextAuthentication(String kind, String realm, SVNURL url) {
+            return null;
+        }
+
+        public void acknowledgeAuthentication(boolean accepted, String kind, String realm, String errorMessage, SVNAuthentication authentication) {
+        }
+
+        public void setRuntimeStorage(ISVNAuthenticationStorage storage) {
+        }
+    }
+}
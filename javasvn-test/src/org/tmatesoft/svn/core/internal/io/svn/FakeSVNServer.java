@@ -0,0 +1,204 @@
+package org.tmatesoft.svn.core.internal.io.svn;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal svn:// server for tests, answers <code>get-latest-rev</code>
+ * (revision 7), <code>get-dir</code> (revision 5) and <code>log</code>
+ * (revisions 1 and 2) commands.
+ *
+ * @author TMate Software Ltd.
+ */
+public class FakeSVNServer implements Runnable {
+
+    private ServerSocket myServerSocket;
+    private List mySockets = new ArrayList();
+    private int myConnectionsCount;
+    private int myOpenConnectionsCount;
+    private int myActiveCommandsCount;
+    private int myMaxActiveCommandsCount;
+    private long myCommandDelay;
+    private boolean myIsFailNextCommand;
+
+    public FakeSVNServer() throws IOException {
+        myServerSocket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(this);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return myServerSocket.getLocalPort();
+    }
+
+    public synchronized int getConnectionsCount() {
+        return myConnectionsCount;
+    }
+
+    /**
+     * Waits up to <code>timeout</code> for connections to be closed by the
+     * client, returns number of connections that are still open.
+     */
+    public synchronized int waitForOpenConnections(int count, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (myOpenConnectionsCount > count && System.currentTimeMillis() < end) {
+            wait(Math.max(1, end - System.currentTimeMillis()));
+        }
+        return myOpenConnectionsCount;
+    }
+
+    public synchronized int getMaxActiveCommandsCount() {
+        return myMaxActiveCommandsCount;
+    }
+
+    public synchronized void setCommandDelay(long delay) {
+        myCommandDelay = delay;
+    }
+
+    public synchronized void setFailNextCommand() {
+        myIsFailNextCommand = true;
+    }
+
+    private synchronized boolean isFailNextCommand() {
+        boolean fail = myIsFailNextCommand;
+        myIsFailNextCommand = false;
+        return fail;
+    }
+
+    public void close() throws IOException {
+        myServerSocket.close();
+        synchronized (this) {
+            for (int i = 0; i < mySockets.size(); i++) {
+                ((Socket) mySockets.get(i)).close();
+            }
+        }
+    }
+
+    public void run() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = myServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            synchronized (this) {
+                myConnectionsCount++;
+                myOpenConnectionsCount++;
+                mySockets.add(socket);
+            }
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException e) {
+                        //
+                    } finally {
+                        synchronized (FakeSVNServer.this) {
+                            myOpenConnectionsCount--;
+                            FakeSVNServer.this.notifyAll();
+                        }
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        InputStream is = new BufferedInputStream(socket.getInputStream());
+        OutputStream os = socket.getOutputStream();
+        write(os, "( success ( 2 2 ( ) ( edit-pipeline svndiff1 ) ) ) ");
+        readItem(is);
+        write(os, "( success ( ( ANONYMOUS ) 4:test ) ) ");
+        readItem(is);
+        write(os, "( success ( ) ) ( success ( 4:uuid 21:svn://127.0.0.1/repos ) ) ");
+        while (true) {
+            String command = readItem(is);
+            if (command == null) {
+                return;
+            }
+            long delay;
+            synchronized (this) {
+                myActiveCommandsCount++;
+                myMaxActiveCommandsCount = Math.max(myMaxActiveCommandsCount, myActiveCommandsCount);
+                delay = myCommandDelay;
+            }
+            try {
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                String auth = "( success ( ( ) 0: ) ) ";
+                if (isFailNextCommand()) {
+                    write(os, auth + "( failure ( ( 210000 14:failed by test 0: 0 ) ) ) ");
+                } else if (command.startsWith("get-latest-rev")) {
+                    write(os, auth + "( success ( 7 ) ) ");
+                } else if (command.startsWith("get-dir")) {
+                    write(os, auth + "( success ( 5 ( ) ( ) ) ) ");
+                } else if (command.startsWith("log")) {
+                    write(os, auth + "( ( ) 1 ( 1:a ) ( ) ( 1:m ) ) ( ( ) 2 ( 1:a ) ( ) ( 1:m ) ) done ( success ( ) ) ");
+                } else {
+                    write(os, auth + "( failure ( ( 210001 7:unknown 0: 0 ) ) ) ");
+                }
+            } finally {
+                synchronized (this) {
+                    myActiveCommandsCount--;
+                }
+            }
+        }
+    }
+
+    private static void write(OutputStream os, String data) throws IOException {
+        os.write(data.getBytes("UTF-8"));
+        os.flush();
+    }
+
+    /**
+     * Reads one top level list, returns its first word or
+     * <code>null</code> at the end of stream.
+     */
+    private static String readItem(InputStream is) throws IOException {
+        int depth = 0;
+        StringBuffer first = null;
+        StringBuffer token = new StringBuffer();
+        while (true) {
+            int ch = is.read();
+            if (ch < 0) {
+                return null;
+            }
+            if (Character.isDigit((char) ch) || Character.isLetter((char) ch) || ch == '-') {
+                token.append((char) ch);
+                continue;
+            }
+            if (ch == ':' && token.length() > 0 && Character.isDigit(token.charAt(0))) {
+                for (int length = Integer.parseInt(token.toString()); length > 0; length--) {
+                    is.read();
+                }
+            } else if (token.length() > 0 && first == null) {
+                first = token;
+            }
+            token = new StringBuffer();
+            if (ch == '(') {
+                depth++;
+            } else if (ch == ')') {
+                depth--;
+                if (depth == 0) {
+                    return first == null ? "" : first.toString();
+                }
+            }
+        }
+    }
+}
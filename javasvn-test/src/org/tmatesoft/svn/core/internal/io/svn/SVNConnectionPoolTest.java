@@ -0,0 +1,75 @@
+package org.tmatesoft.svn.core.internal.io.svn;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * Runs svn:// commands against a minimal fake server and checks that pooled
+ * connections are reused only when the previous response was read
+ * completely.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNConnectionPoolTest extends TestCase {
+
+    private FakeSVNServer myServer;
+    private SVNConnectionPool myPool;
+    private SVNRepository myRepository;
+
+    protected void setUp() throws Exception {
+        SVNRepositoryFactoryImpl.setup();
+        myPool = new SVNConnectionPool();
+        SVNRepositoryFactoryImpl.setConnectionPool(myPool);
+        myServer = new FakeSVNServer();
+        myRepository = new SVNRepositoryImpl(SVNURL.parseURIEncoded("svn://127.0.0.1:" + myServer.getPort() + "/repos"), false);
+    }
+
+    protected void tearDown() throws Exception {
+        myPool.shutdown();
+        SVNRepositoryFactoryImpl.setConnectionPool(new SVNConnectionPool());
+        myServer.close();
+    }
+
+    public void testReuseAfterSuccess() throws Exception {
+        assertEquals(7, myRepository.getLatestRevision());
+        assertEquals(7, myRepository.getLatestRevision());
+        assertEquals(5, myRepository.getDir("", -1, null, (ISVNDirEntryHandler) null));
+        assertEquals(7, myRepository.getLatestRevision());
+        assertEquals(1, myServer.getConnectionsCount());
+    }
+
+    public void testReuseAfterError() throws Exception {
+        assertEquals(7, myRepository.getLatestRevision());
+        myServer.setFailNextCommand();
+        try {
+            myRepository.getLatestRevision();
+            fail();
+        } catch (SVNException e) {
+            assertTrue(e.getMessage().indexOf("failed by test") >= 0);
+        }
+        assertEquals(7, myRepository.getLatestRevision());
+        assertEquals(1, myServer.getConnectionsCount());
+    }
+
+    public void testNoReuseAfterPartialRead() throws Exception {
+        assertEquals(7, myRepository.getLatestRevision());
+        try {
+            myRepository.log(new String[] {""}, 1, 2, false, false, 0, new ISVNLogEntryHandler() {
+                public void handleLogEntry(SVNLogEntry logEntry) {
+                    throw new IllegalStateException("stop");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        assertEquals(7, myRepository.getLatestRevision());
+        assertEquals(2, myServer.getConnectionsCount());
+    }
+}
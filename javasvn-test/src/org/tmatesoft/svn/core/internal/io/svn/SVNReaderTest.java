@@ -0,0 +1,292 @@
+package org.tmatesoft.svn.core.internal.io.svn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLock;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.internal.util.SVNTimeUtil;
+
+/**
+ * Parses canned svn:// protocol data with {@link SVNReader} templates.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNReaderTest extends TestCase {
+
+    private static final String DATE = "2005-10-20T12:34:56.123456Z";
+
+    public void testItems() throws Exception {
+        Object[] items = parse("( success ( 7 ) ) ", "[(N)]", null);
+        assertEquals(1, items.length);
+        assertEquals(new Long(7), items[0]);
+
+        items = parse("( 3:abc word true false 12 ) ", "(SWTtN)", null);
+        assertEquals(Arrays.asList(new Object[] {"abc", "word", Boolean.TRUE, new Long(12)}), Arrays.asList(items));
+
+        items = parse("( 3:a\nb ) ", "(B)", null);
+        assertEquals("a\nb", new String((byte[]) items[0], "UTF-8"));
+
+        // skipped items are not reported.
+        items = parse("( 3:abc 3:def 5 ) done ", "(sSn)x", null);
+        assertEquals(1, items.length);
+        assertEquals("def", items[0]);
+    }
+
+    public void testOptionalItems() throws Exception {
+        Object[] items = parse("( 3:abc 3:def 5 ) ", "(S?SN)", null);
+        assertEquals(Arrays.asList(new Object[] {"abc", "def", new Long(5)}), Arrays.asList(items));
+
+        items = parse("( 3:abc 5 ) ", "(S?SN)", null);
+        assertEquals(Arrays.asList(new Object[] {"abc", null, new Long(5)}), Arrays.asList(items));
+
+        items = parse("( ( 1:x ) ( ) 2 ) ", "((?S)(?S)?N)", null);
+        assertEquals(Arrays.asList(new Object[] {"x", null, new Long(2)}), Arrays.asList(items));
+
+        // optional word and number are told apart by lookahead.
+        items = parse("( 10 ) ", "(?W?N)", null);
+        assertEquals(Arrays.asList(new Object[] {null, new Long(10)}), Arrays.asList(items));
+        items = parse("( yes 10 ) ", "(?W?N)", null);
+        assertEquals(Arrays.asList(new Object[] {"yes", new Long(10)}), Arrays.asList(items));
+    }
+
+    public void testTrailingOptionalItems() throws Exception {
+        Object[] items = parse("( 1:a ) ", "(S?N?S)", null);
+        assertEquals(3, items.length);
+        assertEquals("a", items[0]);
+        assertNull(items[1]);
+        assertNull(items[2]);
+
+        // shorter target is extended.
+        items = parse("( 1:a ) ", "(S?N)", new Object[1]);
+        assertEquals(2, items.length);
+        assertNull(items[1]);
+
+        items = parse("( 1:a 3 ) ", "(S?N)", new Object[1]);
+        assertEquals(new Long(3), items[1]);
+    }
+
+    public void testMultipleItems() throws Exception {
+        Object[] items = parse("( 1:a 1:b 2:cd ) ", "(*S)", null);
+        assertEquals(Arrays.asList(new Object[] {"a", "b", "cd"}), items[0]);
+
+        items = parse("( ) ", "(*S)", null);
+        assertEquals(1, items.length);
+        assertNull(items[0]);
+
+        items = parse("( ( 1:a 1:1 ) ( 1:b ) ) 4 ", "(*P)N", null);
+        Map expected = new HashMap();
+        expected.put("a", "1");
+        expected.put("b", null);
+        assertEquals(expected, items[0]);
+        assertEquals(new Long(4), items[1]);
+
+        // collections passed by the caller are filled.
+        List list = new ArrayList();
+        list.add("old");
+        items = parse("( 1 2 ) ", "(*N)", new Object[] {list});
+        assertSame(list, items[0]);
+        assertEquals(Arrays.asList(new Object[] {"old", new Long(1), new Long(2)}), list);
+
+        items = parse("( ) 1:x ", "(*N)S", null);
+        assertEquals(Arrays.asList(new Object[] {null, "x"}), Arrays.asList(items));
+    }
+
+    public void testDataToStream() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Object[] items = parse("( 5:hello ) ", "(I)", new Object[] {os});
+        assertSame(os, items[0]);
+        assertEquals("hello", new String(os.toByteArray(), "UTF-8"));
+    }
+
+    public void testFailure() throws Exception {
+        try {
+            parse("( failure ( ( 210000 14:failed by test 0: 0 ) ) ) ", "[(N)]", null);
+            fail();
+        } catch (SVNCommandFailureException e) {
+            assertEquals("svn: failed by test", e.getMessage());
+        }
+        try {
+            parse("( failure ( ( 1 5:first 4:file 3 ) ( 2 6:second 0: 0 ) ) ) ", "[()]", null);
+            fail();
+        } catch (SVNCommandFailureException e) {
+            assertEquals("svn: first\nsecond", e.getMessage());
+        }
+        try {
+            parse("( failure ( ) ) ", "[()]", null);
+            fail();
+        } catch (SVNCommandFailureException e) {
+            assertEquals("svn: svnserve reported an error", e.getMessage());
+        }
+    }
+
+    public void testIncompleteFailure() throws Exception {
+        try {
+            parse("( failure ( ( 210000 3:bad 0: 0 ) ", "[(N)]", null);
+            fail();
+        } catch (SVNCommandFailureException e) {
+            fail("response is not complete");
+        } catch (SVNException e) {
+            assertEquals("svn: bad", e.getMessage());
+        }
+        try {
+            parse("( failure ( ( 210000 3:bad 0: 0 ) ) ", "[(N)]", null);
+            fail();
+        } catch (SVNCommandFailureException e) {
+            fail("response is not complete");
+        } catch (SVNException e) {
+            assertEquals("svn: bad", e.getMessage());
+        }
+        try {
+            parse("( unknown ( ) ) ", "[()]", null);
+            fail();
+        } catch (SVNCommandFailureException e) {
+            fail();
+        } catch (SVNException e) {
+            assertTrue(e.getMessage().indexOf("'unknown' read") >= 0);
+        }
+    }
+
+    public void testDirEntries() throws Exception {
+        String data = "( ( 1:a file 10 true 3 ( " + DATE.length() + ":" + DATE + " ) ( 4:john ) ) "
+                + "( 1:b dir 0 false 4 ( ) ( ) ) ) ";
+        final List entries = new ArrayList();
+        ISVNDirEntryHandler handler = new ISVNDirEntryHandler() {
+            public void handleDirEntry(SVNDirEntry dirEntry) {
+                entries.add(dirEntry);
+            }
+        };
+        parse(data, "(*D)", new Object[] {handler});
+        assertEquals(2, entries.size());
+
+        SVNDirEntry entry = (SVNDirEntry) entries.get(0);
+        assertEquals("a", entry.getName());
+        assertEquals(SVNNodeKind.FILE, entry.getKind());
+        assertEquals(10, entry.size());
+        assertTrue(entry.hasProperties());
+        assertEquals(3, entry.getRevision());
+        assertEquals(SVNTimeUtil.parseDate(DATE), entry.getDate());
+        assertEquals("john", entry.getAuthor());
+
+        entry = (SVNDirEntry) entries.get(1);
+        assertEquals("b", entry.getName());
+        assertEquals(SVNNodeKind.DIR, entry.getKind());
+        assertFalse(entry.hasProperties());
+        assertEquals(4, entry.getRevision());
+        assertNull(entry.getDate());
+        assertNull(entry.getAuthor());
+
+        // skipped entries are parsed but not reported.
+        Object[] items = parse(data + "5 ", "(*d)N", null);
+        assertEquals(new Long(5), items[items.length - 1]);
+
+        items = parse("( file 10 false 3 ( ) ( ) ) ", "F", null);
+        entry = (SVNDirEntry) items[0];
+        assertEquals(SVNNodeKind.FILE, entry.getKind());
+        assertNull(entry.getDate());
+        assertNull(entry.getAuthor());
+    }
+
+    public void testLock() throws Exception {
+        Object[] items = parse("( 2:/a 5:token 4:john ( ) " + DATE.length() + ":" + DATE + " ( ) ) ", "L", null);
+        SVNLock lock = (SVNLock) items[0];
+        assertEquals("/a", lock.getPath());
+        assertEquals("token", lock.getID());
+        assertEquals("john", lock.getOwner());
+        assertNull(lock.getComment());
+        assertEquals(SVNTimeUtil.parseDate(DATE), lock.getCreationDate());
+        assertNull(lock.getExpirationDate());
+    }
+
+    public void testMismatch() throws Exception {
+        assertMismatch("( abc ) ", "(N)");
+        assertMismatch("( 12 ) ", "(S)");
+        assertMismatch("( 1:a ) ", "(W)");
+        assertMismatch("( maybe ) ", "(T)");
+        assertMismatch("( 1 ", "(N)");
+        assertMismatch("nope ", "x");
+        assertMismatch("( 5:abc", "(S)");
+    }
+
+    public void testMismatchIsNotConsumed() throws Exception {
+        // log response ends with a word where the next entry could start.
+        InputStream is = toStream("( 1 ) done ( 1:a ) ");
+        assertEquals(new Long(1), SVNReader.parse(is, "(N)", null)[0]);
+        try {
+            SVNReader.parse(is, "((", null);
+            fail();
+        } catch (SVNException e) {
+            //
+        }
+        SVNReader.parse(is, "x", null);
+        // only the item that did not match is left unread.
+        try {
+            SVNReader.parse(is, "(N)", null);
+            fail();
+        } catch (SVNException e) {
+            //
+        }
+        assertEquals("a", SVNReader.parse(is, "S)", null)[0]);
+    }
+
+    public void testMalformedTemplates() throws Exception {
+        String[] templates = {"?", "(N?)", "?(N)", "*)", "(?[N)", "**N", "(Q)", "(N%)"};
+        for (int i = 0; i < templates.length; i++) {
+            try {
+                SVNTemplate.getTemplate(templates[i]);
+                fail(templates[i]);
+            } catch (SVNException e) {
+                assertTrue(e.getMessage().indexOf("malformed template") >= 0);
+            }
+            try {
+                parse("( 1 ) ", templates[i], null);
+                fail(templates[i]);
+            } catch (SVNException e) {
+                assertTrue(e.getMessage().indexOf("malformed template") >= 0);
+            }
+        }
+        SVNTemplate template = SVNTemplate.getTemplate("( ? S *n )");
+        assertSame(template, SVNTemplate.getTemplate("( ? S *n )"));
+        assertEquals(4, template.size());
+        assertEquals('s', template.getType(1));
+        assertTrue(template.isRead(1));
+        assertTrue(template.isOptional(1));
+        assertFalse(template.isMultiple(1));
+        assertEquals('n', template.getType(2));
+        assertFalse(template.isRead(2));
+        assertTrue(template.isMultiple(2));
+    }
+
+    private static void assertMismatch(String data, String template) {
+        try {
+            parse(data, template, null);
+            fail(data);
+        } catch (SVNException e) {
+            //
+        }
+    }
+
+    private static Object[] parse(String data, String template, Object[] target) throws SVNException {
+        return SVNReader.parse(toStream(data), template, target);
+    }
+
+    private static InputStream toStream(String data) {
+        try {
+            return new ByteArrayInputStream(data.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+}
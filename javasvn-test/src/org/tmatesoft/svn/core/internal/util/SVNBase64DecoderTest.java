@@ -0,0 +1,75 @@
+package org.tmatesoft.svn.core.internal.util;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author TMate Software Ltd.
+ */
+public class SVNBase64DecoderTest extends TestCase {
+
+    public void testPadding() {
+        assertDecoded("", "");
+        assertDecoded("a", "YQ==");
+        assertDecoded("ab", "YWI=");
+        assertDecoded("abc", "YWJj");
+        assertDecoded("abcd", "YWJjZA==");
+        assertDecoded("abcde", "YWJjZGU=");
+    }
+
+    public void testWhitespace() {
+        assertDecoded("abcdef", "YW\nJj\r\nZG Vm\n");
+        assertDecoded("abcd", "YWJj\nZA=\n=\n");
+    }
+
+    public void testSplitInput() {
+        final Random random = new Random(0);
+        for (int length = 0; length < 64; length++) {
+            final byte[] data = new byte[length];
+            random.nextBytes(data);
+            final String text = SVNBase64.byteArrayToBase64(data);
+            // every split point, including ones inside a 4 chars group and within padding.
+            for (int split = 0; split <= text.length(); split++) {
+                final SVNBase64Decoder decoder = new SVNBase64Decoder();
+                final byte[] target = new byte[SVNBase64Decoder.getMaxDecodedLength(text.length())];
+                final char[] chars = text.toCharArray();
+                int written = decoder.decode(chars, 0, split, target, 0);
+                written += decoder.decode(chars, split, chars.length - split, target, written);
+                assertEquals(text, data.length, written);
+                for (int i = 0; i < data.length; i++) {
+                    assertEquals(text, data[i], target[i]);
+                }
+            }
+        }
+    }
+
+    public void testCharByChar() {
+        final String text = SVNBase64.byteArrayToBase64("some text to decode!".getBytes());
+        final SVNBase64Decoder decoder = new SVNBase64Decoder();
+        final byte[] target = new byte[SVNBase64Decoder.getMaxDecodedLength(text.length())];
+        int written = 0;
+        for (int i = 0; i < text.length(); i++) {
+            written += decoder.decode(text.toCharArray(), i, 1, target, written);
+        }
+        assertEquals("some text to decode!", new String(target, 0, written));
+    }
+
+    public void testReset() {
+        final SVNBase64Decoder decoder = new SVNBase64Decoder();
+        final byte[] target = new byte[16];
+        assertEquals(1, decoder.decode("YQ==".toCharArray(), 0, 4, target, 0));
+        // data after padding is ignored until reset.
+        assertEquals(0, decoder.decode("YWJj".toCharArray(), 0, 4, target, 0));
+        decoder.reset();
+        assertEquals(3, decoder.decode("YWJj".toCharArray(), 0, 4, target, 0));
+        assertEquals("abc", new String(target, 0, 3));
+    }
+
+    private static void assertDecoded(String expected, String text) {
+        final SVNBase64Decoder decoder = new SVNBase64Decoder();
+        final byte[] target = new byte[SVNBase64Decoder.getMaxDecodedLength(text.length())];
+        final int written = decoder.decode(text.toCharArray(), 0, text.length(), target, 0);
+        assertEquals(expected, new String(target, 0, written));
+    }
+}
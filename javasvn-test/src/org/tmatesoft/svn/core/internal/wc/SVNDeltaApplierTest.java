@@ -0,0 +1,137 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.diff.SVNDiffInstruction;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * @author TMate Software Ltd.
+ */
+public class SVNDeltaApplierTest extends TestCase {
+
+    private File myDirectory;
+
+    protected void setUp() throws Exception {
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        myDirectory.mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testWindows() throws SVNException, IOException {
+        final File base = createFile("base", "0123456789abcdef");
+        final File target = new File(myDirectory, "target");
+        final SVNDeltaApplier applier = new SVNDeltaApplier(base, target, SVNFileUtil.computeChecksum(base));
+
+        // "89ab" from source, "xy" new data, "xyxyx" overlapping target copy, "?!" new data.
+        SVNDiffWindow window = new SVNDiffWindow(8, 8, 13, new SVNDiffInstruction[] {
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, 4, 0),
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_NEW_DATA, 2, 0),
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_TARGET, 5, 4),
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_NEW_DATA, 2, 2),
+        }, 4);
+        OutputStream os = applier.textDeltaChunk(window);
+        os.write('x');
+        os.write("y!".getBytes(), 0, 1);
+        os.write("?!".getBytes());
+        os.close();
+        // backward source copy.
+        window = new SVNDiffWindow(0, 2, 2, new SVNDiffInstruction[] {
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, 2, 0),
+        }, 0);
+        applier.textDeltaChunk(window).close();
+
+        final String checksum = applier.textDeltaEnd();
+        assertEquals("89abxyxyxyx?!01", readFile(target));
+        assertEquals(SVNFileUtil.computeChecksum(target), checksum);
+    }
+
+    public void testNoWindows() throws SVNException, IOException {
+        final File base = createFile("base", "base contents");
+        final File target = new File(myDirectory, "target");
+        final SVNDeltaApplier applier = new SVNDeltaApplier(base, target, null);
+        applier.textDeltaEnd();
+        assertEquals("base contents", readFile(target));
+    }
+
+    public void testBaseChecksumMismatch() throws SVNException, IOException {
+        final File base = createFile("base", "base contents");
+        final File target = new File(myDirectory, "target");
+        final SVNDeltaApplier applier = new SVNDeltaApplier(base, target, SVNFileUtil.computeChecksum("other contents"));
+        applier.textDeltaChunk(new SVNDiffWindow(0, 4, 4, new SVNDiffInstruction[] {
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, 4, 0),
+        }, 0)).close();
+        try {
+            applier.textDeltaEnd();
+            fail();
+        } catch (SVNException e) {
+            // expected.
+        }
+    }
+
+    public void testTargetCopyOutOfBounds() throws SVNException, IOException {
+        final File base = createFile("base", "0123456789");
+        // copy from target data that is not produced yet.
+        assertInvalidWindow(base, new SVNDiffWindow(0, 4, 8, new SVNDiffInstruction[] {
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, 4, 0),
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_TARGET, 4, 4),
+        }, 0));
+        // copy beyond the window target view.
+        assertInvalidWindow(base, new SVNDiffWindow(0, 4, 6, new SVNDiffInstruction[] {
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, 4, 0),
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_TARGET, 4, 0),
+        }, 0));
+        // source copy beyond the window target view.
+        assertInvalidWindow(base, new SVNDiffWindow(0, 8, 4, new SVNDiffInstruction[] {
+                new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, 8, 0),
+        }, 0));
+    }
+
+    private void assertInvalidWindow(File base, SVNDiffWindow window) throws SVNException, IOException {
+        final SVNDeltaApplier applier = new SVNDeltaApplier(base, new File(myDirectory, "target"), null);
+        try {
+            applier.textDeltaChunk(window).close();
+            applier.textDeltaEnd();
+            fail();
+        } catch (SVNException e) {
+            // expected.
+        } finally {
+            applier.close();
+        }
+    }
+
+    private File createFile(String name, String contents) throws IOException {
+        final File file = new File(myDirectory, name);
+        final OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(contents.getBytes());
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    private static String readFile(File file) throws SVNException, IOException {
+        final InputStream is = SVNFileUtil.openFileForReading(file);
+        try {
+            final StringBuffer result = new StringBuffer();
+            for (int r = is.read(); r >= 0; r = is.read()) {
+                result.append((char) r);
+            }
+            return result.toString();
+        } finally {
+            is.close();
+        }
+    }
+}
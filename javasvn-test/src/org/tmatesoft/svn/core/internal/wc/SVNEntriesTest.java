@@ -0,0 +1,202 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.internal.util.SVNEncodingUtil;
+import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
+import org.tmatesoft.svn.core.internal.util.SVNTimeUtil;
+
+/**
+ * Compares entries read by {@link SVNEntries} with the line based parser it
+ * has replaced.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNEntriesTest extends TestCase {
+
+    private static final String ENTRIES =
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<wc-entries\n" +
+            "   xmlns=\"svn:\">\n" +
+            "<entry\n" +
+            "   committed-rev=\"12\"\n" +
+            "   name=\"\"\n" +
+            "   committed-date=\"2005-10-20T12:34:56.123456Z\"\n" +
+            "   url=\"svn://localhost/repos/trunk/a%20dir\"\n" +
+            "   last-author=\"john &amp; &quot;jane&quot;\"\n" +
+            "   kind=\"dir\"\n" +
+            "   uuid=\"7a1ff8fa-6a9c-0410-9f4f-e3a7d2f2a8a3\"\n" +
+            "   revision=\"15\"/>\n" +
+            "<entry\n" +
+            "   committed-rev=\"10\"\n" +
+            "   name=\"a &lt;b&gt; &amp; &apos;c&apos;.txt\"\n" +
+            "   text-time=\"2005-10-20T12:34:56.000001Z\"\n" +
+            "   committed-date=\"2005-10-19T01:02:03.999999Z\"\n" +
+            "   checksum=\"d41d8cd98f00b204e9800998ecf8427e\"\n" +
+            "   last-author=\"john &amp; &quot;jane&quot;\"\n" +
+            "   kind=\"file\"\n" +
+            "   prop-time=\"2005-10-20T12:34:56Z\"/>\n" +
+            "<entry\n" +
+            "   name=\"no-micros.txt\"\n" +
+            "   text-time=\"2005-10-20T12:34:56Z\"\n" +
+            "   committed-date=\"1970-01-01T00:00:00.000000Z\"\n" +
+            "   kind=\"file\"\n" +
+            "   revision=\"3\"\n" +
+            "   url=\"svn://localhost/repos/branches/moved.txt\"\n" +
+            "   schedule=\"add\"\n" +
+            "   copied=\"true\"\n" +
+            "   copyfrom-url=\"svn://localhost/repos/trunk/b.txt\"\n" +
+            "   copyfrom-rev=\"2\"/>\n" +
+            "<entry\n" +
+            "   name=\"minimal\"/>\n" +
+            "<entry\n" +
+            "   name=\"sub\"\n" +
+            "   kind=\"dir\"\n" +
+            "   deleted=\"true\"\n" +
+            "   incomplete=\"false\"\n" +
+            "   future-attribute=\"some &amp; value\"/>\n" +
+            "</wc-entries>\n";
+
+    private File myDirectory;
+
+    protected void setUp() throws Exception {
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        myDirectory.mkdirs();
+        new File(myDirectory, "tmp").mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testParity() throws SVNException, IOException {
+        final File file = createEntriesFile(ENTRIES);
+        final SVNEntries entries = new SVNEntries(file);
+        entries.open();
+        assertEntries(parseOld(file), entries);
+        entries.close();
+    }
+
+    public void testParityAfterSave() throws SVNException, IOException {
+        final File file = createEntriesFile(ENTRIES);
+        final Map expected = parseOld(file);
+        final SVNEntries entries = new SVNEntries(file);
+        entries.open();
+        entries.save(true);
+
+        final SVNEntries saved = new SVNEntries(file);
+        saved.open();
+        assertEntries(parseOld(file), saved);
+        // only "false" flags are not written.
+        ((Map) expected.get("sub")).remove(SVNProperty.INCOMPLETE);
+        assertEntries(expected, saved);
+        saved.close();
+    }
+
+    public void testTimestamps() throws SVNException, IOException {
+        final SVNEntries entries = new SVNEntries(createEntriesFile(ENTRIES));
+        entries.open();
+        final String[] names = {"a <b> & 'c'.txt", "no-micros.txt"};
+        assertEquals(SVNTimeUtil.parseDateAsLong("2005-10-20T12:34:56.000001Z"), entries.getEntry(names[0], true).getTextTimeAsLong());
+        assertEquals("2005-10-20T12:34:56.000001Z", entries.getEntry(names[0], true).getTextTime());
+        assertEquals("2005-10-20T12:34:56Z", entries.getEntry(names[1], true).getTextTime());
+        assertEquals("2005-10-20T12:34:56Z", entries.getEntry(names[0], true).getPropTime());
+        assertEquals(-1, entries.getEntry("minimal", true).getTextTimeAsLong());
+
+        final SVNEntry entry = entries.getEntry("minimal", true);
+        entry.setTextTime("2006-01-02T03:04:05.678901Z");
+        assertEquals("2006-01-02T03:04:05.678901Z", entry.getTextTime());
+        entry.setTextTime("2006-01-02T03:04:05Z");
+        assertEquals("2006-01-02T03:04:05Z", entry.getTextTime());
+        entries.close();
+    }
+
+    private void assertEntries(Map expected, SVNEntries entries) {
+        int count = 0;
+        for (Iterator all = entries.entries(true); all.hasNext(); count++) {
+            final SVNEntry entry = (SVNEntry) all.next();
+            final Map expectedEntry = (Map) expected.get(entry.getName());
+            assertNotNull(entry.getName(), expectedEntry);
+            assertEquals(entry.getName(), new TreeMap(expectedEntry), new TreeMap(entries.getEntryMap(entry.getName())));
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    private File createEntriesFile(String contents) throws IOException {
+        final File file = new File(myDirectory, "entries");
+        final OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(contents.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    /**
+     * Entries parser that was used before SVNEntryRecord, with inherited
+     * revision, url and uuid.
+     */
+    private static Map parseOld(File file) throws IOException {
+        final Map data = new TreeMap();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            Map entry = null;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("<entry")) {
+                    entry = new HashMap();
+                    continue;
+                }
+                if (entry != null) {
+                    final String name = line.substring(0, line.indexOf('='));
+                    String value = line.substring(line.indexOf('\"') + 1, line.lastIndexOf('\"'));
+                    value = SVNEncodingUtil.xmlDecode(value);
+                    entry.put(SVNProperty.SVN_ENTRY_PREFIX + name, value);
+                    if (line.charAt(line.length() - 1) == '>') {
+                        final String entryName = (String) entry.get(SVNProperty.NAME);
+                        data.put(entryName, entry);
+                        if (!"".equals(entryName)) {
+                            final Map rootEntry = (Map) data.get("");
+                            if (rootEntry != null) {
+                                if (entry.get(SVNProperty.REVISION) == null) {
+                                    entry.put(SVNProperty.REVISION, rootEntry.get(SVNProperty.REVISION));
+                                }
+                                if (entry.get(SVNProperty.URL) == null) {
+                                    String url = (String) rootEntry.get(SVNProperty.URL);
+                                    if (url != null) {
+                                        url = SVNPathUtil.append(url, SVNEncodingUtil.uriEncode(entryName));
+                                    }
+                                    entry.put(SVNProperty.URL, url);
+                                }
+                                if (entry.get(SVNProperty.UUID) == null) {
+                                    entry.put(SVNProperty.UUID, rootEntry.get(SVNProperty.UUID));
+                                }
+                            }
+                        }
+                        entry = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return data;
+    }
+}
@@ -0,0 +1,128 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that in process and <code>ls</code> based attributes providers
+ * read the same attributes of files, directories and symlinks. Does nothing
+ * on Windows and in JVMs without <code>java.nio.file</code>.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNFileAttributesProviderTest extends TestCase {
+
+    private File myDirectory;
+    private ISVNFileAttributesProvider myPosixProvider;
+    private ISVNFileAttributesProvider myExecProvider;
+
+    protected void setUp() throws Exception {
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        myDirectory.mkdirs();
+        myPosixProvider = SVNPosixFileAttributesProvider.create();
+        myExecProvider = new SVNExecFileAttributesProvider();
+    }
+
+    protected void tearDown() throws Exception {
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testFile() throws Exception {
+        if (!isSupported()) {
+            return;
+        }
+        File file = new File(myDirectory, "file.txt");
+        writeFile(file);
+        assertSameAttributes(file, SVNFileType.FILE, false);
+    }
+
+    public void testDirectory() throws Exception {
+        if (!isSupported()) {
+            return;
+        }
+        File dir = new File(myDirectory, "dir");
+        dir.mkdirs();
+        // directories are searchable.
+        assertSameAttributes(dir, SVNFileType.DIRECTORY, true);
+    }
+
+    public void testExecutableFile() throws Exception {
+        if (!isSupported()) {
+            return;
+        }
+        File file = new File(myDirectory, "run.sh");
+        writeFile(file);
+        myExecProvider.setExecutable(file, true);
+        assertSameAttributes(file, SVNFileType.FILE, true);
+        myPosixProvider.setExecutable(file, false);
+        assertSameAttributes(file, SVNFileType.FILE, false);
+    }
+
+    public void testSymlink() throws Exception {
+        if (!isSupported()) {
+            return;
+        }
+        writeFile(new File(myDirectory, "file.txt"));
+        File link = new File(myDirectory, "link");
+        assertTrue(myExecProvider.createSymlink(link, "file.txt"));
+        assertSameAttributes(link, SVNFileType.SYMLINK, true);
+        assertEquals("file.txt", myPosixProvider.getSymlinkName(link));
+        assertEquals("file.txt", myPosixProvider.readAttributes(link).getSymlinkName());
+    }
+
+    public void testBrokenSymlink() throws Exception {
+        if (!isSupported()) {
+            return;
+        }
+        File link = new File(myDirectory, "link");
+        assertTrue(myPosixProvider.createSymlink(link, "missing.txt"));
+        assertSameAttributes(link, SVNFileType.SYMLINK, true);
+        assertEquals("missing.txt", myExecProvider.getSymlinkName(link));
+    }
+
+    public void testMissingFile() throws Exception {
+        if (!isSupported()) {
+            return;
+        }
+        File file = new File(myDirectory, "missing.txt");
+        assertEquals(SVNFileType.NONE, myPosixProvider.getType(file));
+        assertEquals(SVNFileType.NONE, myExecProvider.getType(file));
+        assertEquals(SVNFileType.NONE, myPosixProvider.readAttributes(file).getType());
+        assertEquals(SVNFileType.NONE, myExecProvider.readAttributes(file).getType());
+    }
+
+    private boolean isSupported() {
+        return !SVNFileUtil.isWindows && myPosixProvider != null;
+    }
+
+    private void assertSameAttributes(File file, SVNFileType type, boolean executable) {
+        assertEquals(type, myPosixProvider.getType(file));
+        assertEquals(type, myExecProvider.getType(file));
+        assertEquals(executable, myPosixProvider.isExecutable(file));
+        assertEquals(executable, myExecProvider.isExecutable(file));
+        assertEquals(myExecProvider.getSymlinkName(file), myPosixProvider.getSymlinkName(file));
+
+        SVNFileAttributes posix = myPosixProvider.readAttributes(file);
+        SVNFileAttributes exec = myExecProvider.readAttributes(file);
+        assertEquals(type, posix.getType());
+        assertEquals(type, exec.getType());
+        assertEquals(executable, posix.isExecutable());
+        assertEquals(executable, exec.isExecutable());
+        assertEquals(exec.getSymlinkName(), posix.getSymlinkName());
+        assertEquals(exec.getLength(), posix.getLength());
+        assertEquals(exec.lastModified(), posix.lastModified());
+    }
+
+    private static void writeFile(File file) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write("text".getBytes());
+        } finally {
+            os.close();
+        }
+    }
+}
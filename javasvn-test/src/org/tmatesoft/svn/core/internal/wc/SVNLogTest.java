@@ -0,0 +1,181 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.internal.util.SVNTimeUtil;
+
+/**
+ * Writes admin logs in XML and in binary format, reads them back and runs
+ * them against a working copy directory.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNLogTest extends TestCase {
+
+    private static final String AUTHOR = "john & <jane> \"doe\" 'x'";
+
+    private File myDirectory;
+    private SVNDirectory myWCDirectory;
+    private boolean myIsBinaryFormat;
+
+    protected void setUp() throws Exception {
+        myIsBinaryFormat = SVNLog.isBinaryFormat();
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        SVNDirectory.createVersionedDirectory(myDirectory);
+        myWCDirectory = new SVNDirectory(null, "", myDirectory);
+        SVNEntries entries = myWCDirectory.getEntries();
+        entries.addEntry("").setKind(SVNNodeKind.DIR);
+        entries.save(true);
+    }
+
+    protected void tearDown() throws Exception {
+        SVNLog.setBinaryFormat(myIsBinaryFormat);
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testXMLIsDefault() throws Exception {
+        SVNLog.setBinaryFormat(false);
+        String contents = readFile(writeLog(new ArrayList()));
+        assertTrue(contents.startsWith("<modify-entry\n   name=\"file\"\n"));
+        assertTrue(contents.indexOf("last-author=\"john &amp; &lt;jane&gt; &quot;doe&quot; &apos;x&apos;\"") > 0);
+        assertTrue(contents.endsWith("/>\n"));
+    }
+
+    public void testXMLRoundTrip() throws Exception {
+        SVNLog.setBinaryFormat(false);
+        List expected = new ArrayList();
+        File logFile = writeLog(expected);
+        assertTrue(readFile(logFile).startsWith("<"));
+        runLog(expected);
+    }
+
+    public void testBinaryRoundTrip() throws Exception {
+        SVNLog.setBinaryFormat(true);
+        List expected = new ArrayList();
+        File logFile = writeLog(expected);
+        assertTrue(readFile(logFile).startsWith("JSVNLOG"));
+        runLog(expected);
+    }
+
+    /**
+     * Writes log of typical update commands, collects commands as they are
+     * expected to be read into <code>expected</code>.
+     */
+    private File writeLog(List expected) throws Exception {
+        OutputStream os = new FileOutputStream(myWCDirectory.getFile(".svn/tmp/file.tmp"));
+        os.write("text".getBytes());
+        os.close();
+
+        SVNLog log = new SVNLog(myWCDirectory, 0);
+        Map modifyEntry = new LinkedHashMap();
+        modifyEntry.put(SVNLog.NAME_ATTR, "file");
+        modifyEntry.put("kind", "file");
+        modifyEntry.put("revision", "3");
+        modifyEntry.put("last-author", AUTHOR);
+        addCommand(log, SVNLog.MODIFY_ENTRY, modifyEntry, expected);
+
+        Map move = new LinkedHashMap();
+        move.put(SVNLog.NAME_ATTR, ".svn/tmp/file.tmp");
+        move.put(SVNLog.DEST_ATTR, "file");
+        addCommand(log, SVNLog.MOVE, move, expected);
+
+        // more attributes than fit into one byte, unknown are ignored on run.
+        Map timestamp = new LinkedHashMap();
+        timestamp.put(SVNLog.NAME_ATTR, "file");
+        timestamp.put(SVNLog.TIMESTAMP_ATTR, SVNTimeUtil.formatDate(new Date(getTimestamp())));
+        for (int i = 0; i < 300; i++) {
+            timestamp.put("x" + i, Integer.toString(i));
+        }
+        addCommand(log, SVNLog.SET_TIMESTAMP, timestamp, expected);
+
+        // batched on run, last value wins, null deletes property.
+        String[][] wcProps = {{"p1", "v1"}, {"p2", "v2"}, {"p1", null}, {"p3", "v3"}, {"p3", "v33"}};
+        for (int i = 0; i < wcProps.length; i++) {
+            Map wcProp = new LinkedHashMap();
+            wcProp.put(SVNLog.NAME_ATTR, "file");
+            wcProp.put(SVNLog.PROPERTY_NAME_ATTR, wcProps[i][0]);
+            if (wcProps[i][1] != null) {
+                wcProp.put(SVNLog.PROPERTY_VALUE_ATTR, wcProps[i][1]);
+            }
+            addCommand(log, SVNLog.MODIFY_WC_PROPERTY, wcProp, expected);
+        }
+        log.save();
+        return myWCDirectory.getFile(".svn/log");
+    }
+
+    private void runLog(List expected) throws Exception {
+        SVNLog log = new SVNLog(myWCDirectory, 0);
+        assertTrue(log.exists());
+        final List commands = new ArrayList();
+        SVNLogRunner runner = new SVNLogRunner() {
+            void runCommand(SVNDirectory dir, int code, Map attributes) throws SVNException {
+                commands.add(new Object[] {new Integer(code), new HashMap(attributes)});
+                super.runCommand(dir, code, attributes);
+            }
+        };
+        log.run(runner);
+        runner.logCompleted(myWCDirectory);
+        log.delete();
+
+        assertEquals(expected.size(), commands.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Object[] expectedCommand = (Object[]) expected.get(i);
+            Object[] command = (Object[]) commands.get(i);
+            assertEquals(expectedCommand[0], command[0]);
+            assertEquals(expectedCommand[1], command[1]);
+        }
+
+        File file = myWCDirectory.getFile("file");
+        assertEquals("text", readFile(file));
+        assertEquals(getTimestamp(), file.lastModified());
+
+        SVNEntry entry = new SVNDirectory(null, "", myDirectory).getEntries().getEntry("file", true);
+        assertNotNull(entry);
+        assertEquals(3, entry.getRevision());
+        assertEquals(SVNNodeKind.FILE, entry.getKind());
+        assertEquals(AUTHOR, entry.getAuthor());
+
+        Map wcProps = new HashMap();
+        wcProps.put("p2", "v2");
+        wcProps.put("p3", "v33");
+        assertEquals(wcProps, myWCDirectory.getWCProperties("file").asMap());
+    }
+
+    private static void addCommand(SVNLog log, String name, Map attributes, List expected) throws SVNException {
+        log.addCommand(name, attributes, false);
+        expected.add(new Object[] {new Integer(SVNLog.getCommandCode(name)), new HashMap(attributes)});
+    }
+
+    private static long getTimestamp() {
+        return 1130000000123L;
+    }
+
+    private static String readFile(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] contents = new byte[(int) file.length()];
+            for (int read = 0; read < contents.length;) {
+                read += is.read(contents, read, contents.length - read);
+            }
+            return new String(contents, "UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.util.StringTokenizer;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares {@link SVNPatternMatcher} with matching every pattern by
+ * {@link DefaultSVNOptions#matches(String, String)}.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNPatternMatcherTest extends TestCase {
+
+    private static final String[] PATTERNS = {
+        "?", "a?c", "??", "[abc]", "x[1]", "[", "]", ".", ".svn", "a.b", ".*",
+        "*.*", "*.o", "*~", "#*#", "a*", "*", "**", "*a*b*", "a*b*c", "*.*.*",
+        "a?*", "*?", "$x", "(a)", "a+b", "{a}", "^a", "a|b", "a\\b", "foo",
+    };
+
+    private static final String[] NAMES = {
+        "", "a", "b", "c", "ab", "abc", "aXc", "aXbYc", "aab", "ba", "a.b",
+        "aXb", ".", "..", ".svn", "svn", "x[1]", "x1", "[", "]", "[abc]",
+        "file.o", "file.c", "file.o.bak", "a.b.c", "foo", "foo~", "#x#", "#",
+        "$x", "x", "(a)", "a+b", "aaab", "{a}", "^a", "a|b", "a\\b", " foo ",
+        "a b", "a\tb",
+    };
+
+    public void testSinglePatterns() {
+        for (int i = 0; i < PATTERNS.length; i++) {
+            assertParity(PATTERNS[i], " \t");
+            assertParity(PATTERNS[i], "\r\n");
+        }
+    }
+
+    public void testGlobalIgnores() {
+        assertParity("*.o *.lo *.la #*# .*.rej *.rej .*~ *~ .#* .DS_Store", " \t");
+        assertParity("  *.o\t\t*~  a?c [abc]\t", " \t");
+        StringBuffer all = new StringBuffer();
+        for (int i = 0; i < PATTERNS.length; i++) {
+            all.append(PATTERNS[i]).append(i % 2 == 0 ? " " : "\t");
+        }
+        assertParity(all.toString(), " \t");
+    }
+
+    public void testIgnoreProperty() {
+        assertParity("*.o\n*~\n", "\r\n");
+        assertParity("*.o\r\n.*\r\nfoo\r\n", "\r\n");
+        // whitespace only lines are skipped, other lines are not trimmed.
+        assertParity("*.o\n  \n\t\nfoo\r\n \r\n\n", "\r\n");
+        assertParity(" foo \n a b\na\tb\n", "\r\n");
+        assertParity(" \n\t\n", "\r\n");
+        assertParity("", "\r\n");
+        assertFalse(SVNPatternMatcher.getMatcher(" \n\t\n", "\r\n").matches(" "));
+        assertFalse(SVNPatternMatcher.getMatcher(" \n\t\n", "\r\n").matches("\t"));
+        assertTrue(SVNPatternMatcher.getMatcher(" foo \n", "\r\n").matches(" foo "));
+        assertFalse(SVNPatternMatcher.getMatcher(" foo \n", "\r\n").matches("foo"));
+    }
+
+    public void testCache() {
+        SVNPatternMatcher matcher = SVNPatternMatcher.getMatcher("*.o\n*~", "\r\n");
+        assertSame(matcher, SVNPatternMatcher.getMatcher("*.o\n*~", "\r\n"));
+        assertNotSame(matcher, SVNPatternMatcher.getMatcher("*.o\n*~", " \t"));
+        assertNotSame(matcher, SVNPatternMatcher.getMatcher("*.o\n*.a", "\r\n"));
+        assertEquals("*.o\n*~", matcher.getPatterns());
+        assertFalse(matcher.matches(null));
+    }
+
+    private static void assertParity(String patterns, String delimiters) {
+        SVNPatternMatcher matcher = SVNPatternMatcher.getMatcher(patterns, delimiters);
+        for (int i = 0; i < NAMES.length; i++) {
+            assertEquals("'" + patterns + "' on '" + NAMES[i] + "'",
+                    matches(patterns, delimiters, NAMES[i]), matcher.matches(NAMES[i]));
+        }
+    }
+
+    /**
+     * Matches patterns one by one, the way they were matched before
+     * {@link SVNPatternMatcher}.
+     */
+    private static boolean matches(String patterns, String delimiters, String name) {
+        for (StringTokenizer tokens = new StringTokenizer(patterns, delimiters); tokens.hasMoreTokens();) {
+            String token = tokens.nextToken();
+            if (token.trim().length() == 0) {
+                continue;
+            }
+            if (DefaultSVNOptions.matches(token, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,170 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link SVNProperties} reuses parsed properties files only
+ * while they are not changed.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNPropertiesTest extends TestCase {
+
+    private File myDirectory;
+    private long myOldTime;
+
+    protected void setUp() throws Exception {
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        myDirectory.mkdirs();
+        // old enough to be cached, whole seconds for coarse file systems.
+        myOldTime = (System.currentTimeMillis() - 60 * 1000) / 1000 * 1000;
+    }
+
+    protected void tearDown() throws Exception {
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testEmptyFile() throws Exception {
+        File file = writeFile("empty", "", myOldTime);
+        SVNProperties props = new SVNProperties(file, "");
+        assertNull(props.getPropertyValue("a"));
+        assertTrue(props.asMap().isEmpty());
+        assertTrue(props.isEmpty());
+
+        props.setPropertyValue("a", "x");
+        assertEquals("x", props.getPropertyValue("a"));
+        assertEquals("K 1\na\nV 1\nx\nEND\n", readFile(file));
+    }
+
+    public void testMissingFile() throws Exception {
+        SVNProperties props = new SVNProperties(new File(myDirectory, "missing"), "");
+        assertNull(props.getPropertyValue("a"));
+        assertTrue(props.asMap().isEmpty());
+    }
+
+    public void testCacheHit() throws Exception {
+        File file = writeFile("props", "K 1\na\nV 1\nx\nEND\n", myOldTime);
+        SVNProperties props = new SVNProperties(file, "");
+        assertEquals("x", props.getPropertyValue("a"));
+
+        // same size and timestamp, parsed values are reused.
+        writeFile("props", "K 1\na\nV 1\ny\nEND\n", myOldTime);
+        assertEquals("x", props.getPropertyValue("a"));
+        assertEquals("x", new SVNProperties(file, "").getPropertyValue("a"));
+
+        // either one changed, file is read again.
+        writeFile("props", "K 1\na\nV 1\nz\nEND\n", myOldTime + 1000);
+        assertEquals("z", props.getPropertyValue("a"));
+        writeFile("props", "K 1\na\nV 2\nzz\nEND\n", myOldTime + 1000);
+        assertEquals("zz", props.getPropertyValue("a"));
+    }
+
+    public void testRacyFileIsNotCached() throws Exception {
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        File file = writeFile("props", "K 1\na\nV 1\nx\nEND\n", now);
+        SVNProperties props = new SVNProperties(file, "");
+        assertEquals("x", props.getPropertyValue("a"));
+
+        // modified within the same second, timestamp and size are the same.
+        writeFile("props", "K 1\na\nV 1\ny\nEND\n", now);
+        assertEquals("y", props.getPropertyValue("a"));
+    }
+
+    public void testInvalidateAfterWrites() throws Exception {
+        File file = writeFile("props", "K 1\na\nV 1\nx\nEND\n", myOldTime);
+        SVNProperties props = new SVNProperties(file, "");
+        assertEquals("x", props.getPropertyValue("a"));
+
+        new SVNProperties(file, "").setPropertyValue("a", "y");
+        file.setLastModified(myOldTime);
+        assertEquals("y", props.getPropertyValue("a"));
+
+        props.delete();
+        assertFalse(file.exists());
+        assertNull(props.getPropertyValue("a"));
+
+        writeFile("props", "K 1\na\nV 1\nx\nEND\n", myOldTime);
+        assertEquals("x", props.getPropertyValue("a"));
+        File srcFile = writeFile("src", "K 1\na\nV 1\nz\nEND\n", myOldTime);
+        new SVNProperties(srcFile, "").copyTo(props);
+        file.setLastModified(myOldTime);
+        assertEquals("z", props.getPropertyValue("a"));
+
+        new SVNProperties(new File(myDirectory, "missing"), "").copyTo(props);
+        file.setLastModified(myOldTime);
+        assertNull(props.getPropertyValue("a"));
+        assertEquals("END\n", readFile(file));
+    }
+
+    public void testBatchUpdate() throws Exception {
+        File file = writeFile("props", "K 1\na\nV 1\n1\nK 1\nb\nV 1\n2\nK 1\nc\nV 1\n3\nEND\n", myOldTime);
+        SVNProperties props = new SVNProperties(file, "");
+        assertEquals("2", props.getPropertyValue("b"));
+
+        Map changes = new LinkedHashMap();
+        changes.put("b", null);
+        changes.put("c", "33");
+        changes.put("d", "4");
+        changes.put("e", null);
+        props.setPropertyValues(changes);
+
+        Map expected = new HashMap();
+        expected.put("a", "1");
+        expected.put("c", "33");
+        expected.put("d", "4");
+        assertEquals(expected, props.asMap());
+        assertEquals(expected, new SVNProperties(file, "").asMap());
+        // changed properties are moved to the end in order of changes.
+        assertEquals("K 1\na\nV 1\n1\nK 1\nc\nV 2\n33\nK 1\nd\nV 1\n4\nEND\n", readFile(file));
+
+        changes.clear();
+        changes.put("a", null);
+        changes.put("c", null);
+        changes.put("d", null);
+        props.setPropertyValues(changes);
+        assertTrue(props.asMap().isEmpty());
+        assertTrue(props.isEmpty());
+        assertEquals("END\n", readFile(file));
+    }
+
+    private File writeFile(String name, String contents, long lastModified) throws IOException {
+        File file = new File(myDirectory, name);
+        // properties files are made read-only when written.
+        file.delete();
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(contents.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    private static String readFile(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[1024];
+            int r;
+            while ((r = is.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, r);
+            }
+        } finally {
+            is.close();
+        }
+        return new String(bytes.toByteArray(), "UTF-8");
+    }
+}
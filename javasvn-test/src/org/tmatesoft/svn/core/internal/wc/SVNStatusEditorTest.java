@@ -0,0 +1,234 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.wc.ISVNEventHandler;
+import org.tmatesoft.svn.core.wc.ISVNOptions;
+import org.tmatesoft.svn.core.wc.ISVNStatusHandler;
+import org.tmatesoft.svn.core.wc.SVNEvent;
+import org.tmatesoft.svn.core.wc.SVNStatus;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+
+/**
+ * Collects local status of a working copy tree with one and with several
+ * status threads and checks that statuses are reported in the same order and
+ * that failures of the status threads reach the caller.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNStatusEditorTest extends TestCase {
+
+    private static final String URL = "http://localhost/repos/trunk";
+
+    private File myDirectory;
+    private File myConfigDirectory;
+    private int myThreadsCount;
+
+    protected void setUp() throws Exception {
+        myThreadsCount = SVNStatusEditor.getStatusThreadsCount();
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        // missing config directory, default global ignores are used.
+        myConfigDirectory = new File(myDirectory, "config");
+    }
+
+    protected void tearDown() throws Exception {
+        SVNStatusEditor.setStatusThreadsCount(myThreadsCount);
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testOrder() throws Exception {
+        File wc = new File(myDirectory, "wc");
+        createTree(wc, URL, 2, 3);
+        assertSameOrder(wc, null);
+    }
+
+    public void testBufferedDirectoriesLimit() throws Exception {
+        // more directories than may be buffered, first status is handled
+        // slowly for the status threads to run ahead.
+        File wc = new File(myDirectory, "wc");
+        createTree(wc, URL, 5, 3);
+        final boolean[] delayed = new boolean[1];
+        ISVNStatusHandler delay = new ISVNStatusHandler() {
+            public void handleStatus(SVNStatus status) {
+                if (!delayed[0]) {
+                    delayed[0] = true;
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        //
+                    }
+                }
+            }
+        };
+        List statuses = assertSameOrder(wc, delay);
+        assertTrue(statuses.size() > 363 * 6);
+    }
+
+    public void testFailureInStatusThread() throws Exception {
+        File wc = new File(myDirectory, "wc");
+        createTree(wc, URL, 3, 3);
+        writeFile(new File(wc, "d2/d2/d2/boom"));
+        final Thread caller = Thread.currentThread();
+        final Thread[] failed = new Thread[1];
+        ISVNOptions options = new DefaultSVNOptions(myConfigDirectory, true) {
+            public boolean isIgnored(String name) {
+                if ("boom".equals(name)) {
+                    failed[0] = Thread.currentThread();
+                    throw new IllegalStateException("boom");
+                }
+                return super.isIgnored(name);
+            }
+        };
+        SVNStatusEditor.setStatusThreadsCount(4);
+        final List statuses = new ArrayList();
+        ISVNStatusHandler handler = new ISVNStatusHandler() {
+            public void handleStatus(SVNStatus status) {
+                if (statuses.isEmpty()) {
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        //
+                    }
+                }
+                statuses.add(status);
+            }
+        };
+        try {
+            collectStatuses(wc, options, handler, null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertNotNull(failed[0]);
+        assertNotSame(caller, failed[0]);
+        // statuses of directories reported before the failed one are sent.
+        assertFalse(statuses.isEmpty());
+    }
+
+    public void testCancel() throws Exception {
+        File wc = new File(myDirectory, "wc");
+        createTree(wc, URL, 3, 3);
+        final int[] checks = new int[1];
+        ISVNEventHandler cancel = new ISVNEventHandler() {
+            public void handleEvent(SVNEvent event, double progress) {
+            }
+
+            public void checkCancelled() throws SVNCancelException {
+                synchronized (this) {
+                    if (++checks[0] > 10) {
+                        throw new SVNCancelException("svn: cancelled by test");
+                    }
+                }
+            }
+        };
+        SVNStatusEditor.setStatusThreadsCount(4);
+        try {
+            collectStatuses(wc, new DefaultSVNOptions(myConfigDirectory, true), null, cancel);
+            fail();
+        } catch (SVNCancelException e) {
+            assertEquals("svn: cancelled by test", e.getMessage());
+        }
+    }
+
+    private List assertSameOrder(File wc, ISVNStatusHandler handler) throws SVNException {
+        ISVNOptions options = new DefaultSVNOptions(myConfigDirectory, true);
+        SVNStatusEditor.setStatusThreadsCount(1);
+        List expected = collectStatuses(wc, options, handler, null);
+        SVNStatusEditor.setStatusThreadsCount(4);
+        List statuses = collectStatuses(wc, options, handler, null);
+        assertEquals(expected, statuses);
+
+        assertTrue(expected.contains(new File(wc, "new.txt") + " " + SVNStatusType.STATUS_UNVERSIONED));
+        assertTrue(expected.contains(new File(wc, "obj.o") + " " + SVNStatusType.STATUS_IGNORED));
+        assertTrue(expected.contains(new File(wc, "ext") + " " + SVNStatusType.STATUS_EXTERNAL));
+        assertTrue(expected.contains(new File(wc, "d1/ext") + " " + SVNStatusType.STATUS_EXTERNAL));
+        assertTrue(expected.contains(new File(wc, "d0/missing.txt") + " " + SVNStatusType.STATUS_MISSING));
+        assertTrue(expected.contains(new File(wc, "d0/d1/file.txt") + " " + SVNStatusType.STATUS_ADDED));
+        return statuses;
+    }
+
+    private static List collectStatuses(File wc, ISVNOptions options, final ISVNStatusHandler handler, ISVNEventHandler dispatcher) throws SVNException {
+        final List statuses = new ArrayList();
+        final Thread caller = Thread.currentThread();
+        ISVNStatusHandler collector = new ISVNStatusHandler() {
+            public void handleStatus(SVNStatus status) {
+                assertSame(caller, Thread.currentThread());
+                if (handler != null) {
+                    handler.handleStatus(status);
+                }
+                statuses.add(status.getFile() + " " + status.getContentsStatus());
+            }
+        };
+        SVNWCAccess wcAccess = SVNWCAccess.create(wc);
+        wcAccess.open(false, true);
+        wcAccess.setEventDispatcher(dispatcher);
+        try {
+            new SVNStatusEditor(options, wcAccess, collector, new HashMap(), true, true, true).closeEdit();
+        } finally {
+            wcAccess.close(false);
+        }
+        return statuses;
+    }
+
+    /**
+     * Creates versioned directory with added, missing, unversioned and
+     * ignored files, an external and <code>width</code> versioned
+     * subdirectories down to <code>depth</code>.
+     */
+    private static void createTree(File dir, String url, int depth, int width) throws Exception {
+        SVNDirectory.createVersionedDirectory(dir);
+        SVNDirectory wcDir = new SVNDirectory(null, "", dir);
+        SVNEntries entries = wcDir.getEntries();
+        SVNEntry entry = entries.addEntry("");
+        entry.setKind(SVNNodeKind.DIR);
+        entry.setURL(url);
+        entry.setRevision(1);
+
+        addFile(entries, url, "file.txt");
+        writeFile(new File(dir, "file.txt"));
+        addFile(entries, url, "missing.txt");
+        writeFile(new File(dir, "new.txt"));
+        writeFile(new File(dir, "obj.o"));
+        new File(dir, "ext").mkdirs();
+        wcDir.getProperties("", false).setPropertyValue(SVNProperty.EXTERNALS, "ext http://localhost/repos/ext");
+
+        for (int i = 0; depth > 0 && i < width; i++) {
+            String name = "d" + i;
+            entry = entries.addEntry(name);
+            entry.setKind(SVNNodeKind.DIR);
+            entry.setURL(url + "/" + name);
+            entry.setRevision(1);
+            createTree(new File(dir, name), url + "/" + name, depth - 1, width);
+        }
+        entries.save(true);
+    }
+
+    private static void addFile(SVNEntries entries, String url, String name) {
+        SVNEntry entry = entries.addEntry(name);
+        entry.setKind(SVNNodeKind.FILE);
+        entry.setURL(url + "/" + name);
+        entry.setRevision(1);
+        entry.scheduleForAddition();
+    }
+
+    private static void writeFile(File file) throws IOException {
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write("text".getBytes());
+        } finally {
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperty;
+
+/**
+ * @author TMate Software Ltd.
+ */
+public class SVNTranslatorTest extends TestCase {
+
+    private static final String[] EOL_STYLES = {null, "native", "LF", "CRLF", "CR"};
+    private static final String[] KEYWORDS = {null, "Id", "Rev URL"};
+    private static final String[] LINES = {"a", "b\r\n", "\n", "\r", "$Rev$", "$Rev: 12 $", "$Id:: x  $", "$URL$\r\n", "$$", "$Unknown$", "$Rev"};
+
+    private File myDirectory;
+    private SVNDirectory myWCDirectory;
+
+    protected void setUp() throws Exception {
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        SVNDirectory.createVersionedDirectory(myDirectory);
+        myWCDirectory = new SVNDirectory(null, "", myDirectory);
+    }
+
+    protected void tearDown() throws Exception {
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testCompareDetranslated() throws Exception {
+        final Random random = new Random(0);
+        final File baseFile = myWCDirectory.getBaseFile("file", false);
+        for (int i = 0; i < 500; i++) {
+            final SVNProperties props = myWCDirectory.getProperties("file", false);
+            props.setPropertyValue(SVNProperty.EOL_STYLE, EOL_STYLES[random.nextInt(EOL_STYLES.length)]);
+            props.setPropertyValue(SVNProperty.KEYWORDS, KEYWORDS[random.nextInt(KEYWORDS.length)]);
+            writeFile(myWCDirectory.getFile("file"), random);
+            if (random.nextBoolean()) {
+                writeFile(baseFile, random);
+            } else {
+                // translated working file, possibly with one byte changed.
+                SVNTranslator.translate(myWCDirectory, "file", "file", ".svn/text-base/file.svn-base", false, false);
+                if (random.nextBoolean() && baseFile.length() > 0) {
+                    final byte[] contents = readFile(baseFile);
+                    contents[random.nextInt(contents.length)] ^= 1;
+                    writeFile(baseFile, contents);
+                }
+            }
+            final File translated = new File(myDirectory, "translated");
+            SVNTranslator.translate(myWCDirectory, "file", "file", "translated", false, false);
+            final MessageDigest expected = MessageDigest.getInstance("MD5");
+            final MessageDigest actual = MessageDigest.getInstance("MD5");
+
+            assertEquals(SVNFileUtil.compareFiles(baseFile, translated, expected),
+                    SVNTranslator.compareDetranslated(myWCDirectory, "file", baseFile, actual));
+            assertEquals(SVNFileUtil.toHexDigest(expected), SVNFileUtil.toHexDigest(actual));
+            assertEquals(SVNFileUtil.compareFiles(baseFile, translated, null),
+                    SVNTranslator.compareDetranslated(myWCDirectory, "file", baseFile, null));
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException, SVNException {
+        final InputStream is = SVNFileUtil.openFileForReading(file);
+        try {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            for (int r = is.read(); r >= 0; r = is.read()) {
+                result.write(r);
+            }
+            return result.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void writeFile(File file, Random random) throws IOException, SVNException {
+        final StringBuffer contents = new StringBuffer();
+        for (int count = random.nextInt(8); count > 0; count--) {
+            contents.append(LINES[random.nextInt(LINES.length)]);
+        }
+        writeFile(file, contents.toString().getBytes());
+    }
+
+    private static void writeFile(File file, byte[] contents) throws IOException, SVNException {
+        final OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(contents);
+        } finally {
+            os.close();
+        }
+    }
+}
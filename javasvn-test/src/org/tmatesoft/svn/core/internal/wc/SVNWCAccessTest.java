@@ -0,0 +1,189 @@
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.SVNNodeKind;
+
+/**
+ * Checks that entries saved in write-back mode are written only when they
+ * are flushed and that admin logs are kept until entries they changed are
+ * written.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNWCAccessTest extends TestCase {
+
+    private File myDirectory;
+    private File myEntriesFile;
+
+    protected void setUp() throws Exception {
+        myDirectory = File.createTempFile("javasvn", "test");
+        myDirectory.delete();
+        SVNDirectory.createVersionedDirectory(myDirectory);
+        SVNEntries entries = new SVNDirectory(null, "", myDirectory).getEntries();
+        entries.addEntry("").setKind(SVNNodeKind.DIR);
+        entries.addEntry("sub").setKind(SVNNodeKind.DIR);
+        entries.save(true);
+
+        File subDirectory = new File(myDirectory, "sub");
+        SVNDirectory.createVersionedDirectory(subDirectory);
+        entries = new SVNDirectory(null, "", subDirectory).getEntries();
+        entries.addEntry("").setKind(SVNNodeKind.DIR);
+        entries.save(true);
+
+        myEntriesFile = new File(myDirectory, ".svn/entries");
+    }
+
+    protected void tearDown() throws Exception {
+        SVNFileUtil.deleteAll(myDirectory, true);
+    }
+
+    public void testSaveIsDeferred() throws Exception {
+        String contents = readFile(myEntriesFile);
+        SVNWCAccess wcAccess = openWriteBack();
+        SVNEntries entries = wcAccess.getAnchor().getEntries();
+        addFileEntry(entries, "file", 3);
+        entries.save(false);
+        assertEquals(contents, readFile(myEntriesFile));
+        assertNull(readEntry(myDirectory, "file"));
+        // changes are visible through the same access.
+        assertNotNull(wcAccess.getAnchor().getEntries().getEntry("file", true));
+
+        wcAccess.flushEntries();
+        assertEquals(3, readEntry(myDirectory, "file").getRevision());
+        // nothing left to write.
+        myEntriesFile.delete();
+        wcAccess.flushEntries();
+        assertFalse(myEntriesFile.exists());
+        wcAccess.close(false);
+        assertFalse(myEntriesFile.exists());
+    }
+
+    public void testWriteThrough() throws Exception {
+        SVNWCAccess wcAccess = openWriteBack();
+        SVNEntries entries = wcAccess.getAnchor().getEntries();
+        addFileEntry(entries, "file", 3);
+        entries.save(false);
+        addFileEntry(entries, "other", 4);
+        entries.writeThrough(false);
+        assertEquals(3, readEntry(myDirectory, "file").getRevision());
+        assertEquals(4, readEntry(myDirectory, "other").getRevision());
+        wcAccess.close(false);
+    }
+
+    public void testCloseKeepsUnflushedEntries() throws Exception {
+        SVNWCAccess wcAccess = openWriteBack();
+        SVNDirectory dir = wcAccess.getAnchor();
+        SVNEntries entries = dir.getEntries();
+        addFileEntry(entries, "file", 3);
+        entries.save(true);
+        assertNotNull(entries.getEntry("file", true));
+        dir.dispose();
+        assertNotNull(entries.getEntry("file", true));
+        assertNull(readEntry(myDirectory, "file"));
+
+        wcAccess.close(false);
+        assertEquals(3, readEntry(myDirectory, "file").getRevision());
+    }
+
+    public void testLogsSurviveCrash() throws Exception {
+        SVNWCAccess wcAccess = openWriteBack();
+        SVNDirectory dir = wcAccess.getAnchor();
+        writeLog(dir);
+
+        // logs are run, but entries are not flushed.
+        SVNLog log = new SVNLog(dir, 0);
+        SVNLogRunner runner = new SVNLogRunner();
+        log.run(runner);
+        runner.logCompleted(dir);
+        Map expected = new HashMap(dir.getEntries().getEntry("file", true).asMap());
+        assertEquals(7, dir.getEntries().getEntry("file", true).getRevision());
+        assertNull(readEntry(myDirectory, "file"));
+        assertTrue(log.exists());
+
+        // logs are run again after the crash.
+        wcAccess = openWriteBack();
+        dir = wcAccess.getAnchor();
+        dir.runLogs();
+        assertFalse(new SVNLog(dir, 0).exists());
+        SVNEntry entry = readEntry(myDirectory, "file");
+        assertNotNull(entry);
+        assertEquals(expected, new HashMap(entry.asMap()));
+        wcAccess.close(false);
+    }
+
+    public void testRunLogsFlushesEntries() throws Exception {
+        SVNWCAccess wcAccess = openWriteBack();
+        SVNDirectory dir = wcAccess.getAnchor();
+        writeLog(dir);
+        dir.runLogs();
+        assertFalse(new SVNLog(dir, 0).exists());
+        assertEquals(7, readEntry(myDirectory, "file").getRevision());
+        wcAccess.close(false);
+    }
+
+    public void testRemovedDirectoryIsNotWritten() throws Exception {
+        SVNWCAccess wcAccess = openWriteBack();
+        SVNDirectory subDir = wcAccess.getDirectory("sub");
+        assertNotNull(subDir);
+        SVNEntries entries = subDir.getEntries();
+        addFileEntry(entries, "file", 3);
+        entries.save(true);
+
+        File subDirectory = new File(myDirectory, "sub");
+        SVNFileUtil.deleteAll(subDirectory, true);
+        wcAccess.close(false);
+        assertFalse(subDirectory.exists());
+    }
+
+    private SVNWCAccess openWriteBack() throws Exception {
+        SVNWCAccess wcAccess = SVNWCAccess.create(myDirectory);
+        wcAccess.open(false, true);
+        wcAccess.setWriteBack(true);
+        return wcAccess;
+    }
+
+    private static void writeLog(SVNDirectory dir) throws Exception {
+        SVNLog log = new SVNLog(dir, 0);
+        Map attributes = new HashMap();
+        attributes.put(SVNLog.NAME_ATTR, "file");
+        attributes.put("kind", "file");
+        attributes.put("revision", "7");
+        attributes.put("last-author", "john");
+        log.addCommand(SVNLog.MODIFY_ENTRY, attributes, false);
+        log.save();
+    }
+
+    private static void addFileEntry(SVNEntries entries, String name, long revision) {
+        SVNEntry entry = entries.addEntry(name);
+        entry.setKind(SVNNodeKind.FILE);
+        entry.setRevision(revision);
+    }
+
+    private static SVNEntry readEntry(File dir, String name) throws Exception {
+        return new SVNDirectory(null, "", dir).getEntries().getEntry(name, true);
+    }
+
+    private static String readFile(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[1024];
+            int r;
+            while ((r = is.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, r);
+            }
+        } finally {
+            is.close();
+        }
+        return new String(bytes.toByteArray(), "UTF-8");
+    }
+}
@@ -0,0 +1,124 @@
+package org.tmatesoft.svn.core.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.svn.FakeSVNServer;
+import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+
+/**
+ * Runs concurrent and re-entrant calls of a concurrent repository against a
+ * fake svn:// server and checks the number of sessions it opens.
+ *
+ * @author TMate Software Ltd.
+ */
+public class SVNConcurrentRepositoryTest extends TestCase {
+
+    private FakeSVNServer myServer;
+    private SVNURL myURL;
+
+    protected void setUp() throws Exception {
+        SVNRepositoryFactoryImpl.setup();
+        myServer = new FakeSVNServer();
+        myURL = SVNURL.parseURIEncoded("svn://127.0.0.1:" + myServer.getPort() + "/repos");
+    }
+
+    protected void tearDown() throws Exception {
+        myServer.close();
+    }
+
+    public void testSessionsLimit() throws Exception {
+        final SVNRepository repository = SVNRepositoryFactory.createConcurrent(myURL, 2);
+        myServer.setCommandDelay(100);
+        final List errors = new ArrayList();
+        Thread[] threads = new Thread[6];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 3; j++) {
+                            assertEquals(7, repository.getLatestRevision());
+                        }
+                    } catch (Throwable th) {
+                        synchronized (errors) {
+                            errors.add(th);
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join(30000);
+            assertFalse(threads[i].isAlive());
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(2, myServer.getConnectionsCount());
+        assertEquals(2, myServer.getMaxActiveCommandsCount());
+        repository.closeSession();
+        assertEquals(0, myServer.waitForOpenConnections(0, 5000));
+    }
+
+    public void testReentrantCall() throws Exception {
+        final SVNRepository repository = SVNRepositoryFactory.createConcurrent(myURL, 1);
+        final List revisions = new ArrayList();
+        final List errors = new ArrayList();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    repository.log(new String[] {""}, 1, 2, false, false, 0, new ISVNLogEntryHandler() {
+                        public void handleLogEntry(SVNLogEntry logEntry) {
+                            revisions.add(new Long(logEntry.getRevision()));
+                            try {
+                                // all sessions are busy, waiting would be a deadlock.
+                                revisions.add(new Long(repository.getLatestRevision()));
+                            } catch (SVNException e) {
+                                errors.add(e);
+                            }
+                        }
+                    });
+                } catch (Throwable th) {
+                    errors.add(th);
+                }
+            }
+        });
+        thread.start();
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals("[1, 7, 2, 7]", revisions.toString());
+
+        // sessions opened over the limit are closed when released, only
+        // the first one is kept.
+        assertEquals(3, myServer.getConnectionsCount());
+        assertEquals(1, myServer.waitForOpenConnections(1, 5000));
+        assertEquals(7, repository.getLatestRevision());
+        assertEquals(3, myServer.getConnectionsCount());
+        repository.closeSession();
+    }
+
+    public void testFailedCallResetsSession() throws Exception {
+        SVNRepository repository = SVNRepositoryFactory.createConcurrent(myURL, 1);
+        assertEquals(7, repository.getLatestRevision());
+        myServer.setFailNextCommand();
+        try {
+            repository.getLatestRevision();
+            fail();
+        } catch (SVNException e) {
+            assertTrue(e.getMessage().indexOf("failed by test") >= 0);
+        }
+        assertEquals(0, myServer.waitForOpenConnections(0, 5000));
+        // session reconnects on the next call.
+        assertEquals(7, repository.getLatestRevision());
+        assertEquals(2, myServer.getConnectionsCount());
+        assertEquals(7, repository.getLatestRevision());
+        assertEquals(2, myServer.getConnectionsCount());
+        repository.closeSession();
+    }
+}
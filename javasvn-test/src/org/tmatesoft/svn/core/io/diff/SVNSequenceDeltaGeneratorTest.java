@@ -3,11 +3,14 @@ package org.tmatesoft.svn.core.io.diff;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -52,6 +55,210 @@ public class SVNSequenceDeltaGeneratorTest extends TestCase {
         test("abc", "\n", "xyz", "\r\n");
     }
 
+    public void testWindows() throws SVNException, IOException {
+        final StringBuffer base = new StringBuffer();
+        final StringBuffer work = new StringBuffer();
+        for (int line = 0; line < 20000; line++) {
+            base.append("line number ").append(line).append('\n');
+            if (line % 1000 != 0) {
+                work.append("line number ").append(line).append('\n');
+            } else {
+                work.append("changed line ").append(line).append('\n');
+            }
+        }
+        testWindows(new SVNSequenceDeltaGenerator(null), work.toString(), base.toString());
+        testWindows(new SVNAllDeltaGenerator(), work.toString(), base.toString());
+        testWindows(new SVNAllDeltaGenerator(), "", base.toString());
+    }
+
+    public void testDeletedRegions() throws SVNException, IOException {
+        final StringBuffer base = new StringBuffer();
+        final StringBuffer work = new StringBuffer();
+        final StringBuffer scattered = new StringBuffer();
+        for (int line = 0; line < 30000; line++) {
+            base.append("line number ").append(line).append('\n');
+            if (line < 100 || line >= 29900) {
+                work.append("line number ").append(line).append('\n');
+            }
+            if (line % 5000 < 10) {
+                scattered.append("line number ").append(line).append('\n');
+            }
+        }
+        testWindows(new SVNSequenceDeltaGenerator(null), work.toString(), base.toString());
+        testWindows(new SVNSequenceDeltaGenerator(null), scattered.toString(), base.toString());
+    }
+
+    public void testXDelta() throws SVNException, IOException {
+        final Random random = new Random(0);
+        final StringBuffer base = new StringBuffer();
+        for (int index = 0; index < 300*1024; index++) {
+            base.append((char) ('a' + random.nextInt(26)));
+        }
+        final StringBuffer work = new StringBuffer(base.toString());
+        work.insert(150*1024, "inserted data");
+        work.delete(20*1024, 20*1024 + 500);
+        for (int index = 0; index < 1000; index++) {
+            work.insert(250*1024, 'z');
+        }
+        final long newDataLength = testWindows(new SVNXDeltaGenerator(), work.toString(), base.toString());
+        assertTrue(newDataLength < 1024);
+        testWindows(new SVNXDeltaGenerator(), work.toString(), "");
+        testWindows(new SVNXDeltaGenerator(), "", base.toString());
+    }
+
+    public void testXDeltaSourceViews() throws SVNException, IOException {
+        final Random random = new Random(0);
+        final String[] blocks = new String[40];
+        for (int block = 0; block < blocks.length; block++) {
+            final StringBuffer data = new StringBuffer();
+            for (int index = 0; index < 16*1024; index++) {
+                data.append((char) ('a' + random.nextInt(26)));
+            }
+            blocks[block] = data.toString();
+        }
+        final StringBuffer base = new StringBuffer();
+        for (int block = 0; block < blocks.length; block++) {
+            base.append(blocks[block]);
+        }
+        final StringBuffer shuffled = new StringBuffer();
+        final StringBuffer repeated = new StringBuffer();
+        final StringBuffer reversed = new StringBuffer();
+        for (int block = 0; block < blocks.length; block++) {
+            shuffled.append(blocks[random.nextInt(blocks.length)]);
+            repeated.append(blocks[block % 3 == 0 ? 0 : block]);
+            reversed.append(blocks[blocks.length - block - 1]);
+        }
+        testWindows(new SVNXDeltaGenerator(), shuffled.toString(), base.toString());
+        testWindows(new SVNXDeltaGenerator(), repeated.toString(), base.toString());
+        testWindows(new SVNXDeltaGenerator(), reversed.toString(), base.toString());
+        testWindows(new SVNXDeltaGenerator(), base.toString() + base.toString(), base.toString());
+        // blocks from the start and from the middle of the base, interleaved.
+        final StringBuffer interleaved = new StringBuffer();
+        for (int block = 0; block < blocks.length / 2; block++) {
+            interleaved.append(blocks[block]).append(blocks[blocks.length / 2 + block]);
+        }
+        testWindows(new SVNXDeltaGenerator(), interleaved.toString(), base.toString());
+    }
+
+    public void testCompressedWindows() throws SVNException, IOException {
+        final StringBuffer base = new StringBuffer();
+        final StringBuffer work = new StringBuffer();
+        for (int line = 0; line < 20000; line++) {
+            base.append("line number ").append(line).append('\n');
+            work.append("new line number ").append(line).append('\n');
+        }
+        testCompressedWindows(new SVNAllDeltaGenerator(), work.toString(), base.toString());
+        testCompressedWindows(new SVNXDeltaGenerator(), work.toString(), base.toString());
+        testCompressedWindows(new SVNAllDeltaGenerator(), "short", "");
+    }
+
+    public void testChannelData() throws SVNException, IOException {
+        final Random random = new Random(0);
+        final StringBuffer base = new StringBuffer();
+        for (int index = 0; index < 150*1024; index++) {
+            base.append((char) ('a' + random.nextInt(26)));
+        }
+        final StringBuffer work = new StringBuffer(base.toString());
+        work.insert(120*1024, "inserted data");
+        for (int index = 0; index < 1000; index++) {
+            work.insert(10*1024, 'z');
+        }
+        final DeltaConsumer consumer = new DeltaConsumer();
+        new SVNXDeltaGenerator().generateDiffWindow("", consumer, new RAData(work.toString()), new RAData(base.toString()));
+
+        final File baseFile = File.createTempFile("javasvn", "base");
+        final File targetFile = File.createTempFile("javasvn", "target");
+        try {
+            final OutputStream os = new FileOutputStream(baseFile);
+            os.write(base.toString().getBytes());
+            os.close();
+            targetFile.delete();
+
+            final SVNRAFileChannelData source = new SVNRAFileChannelData(baseFile, true);
+            final SVNRAFileChannelData target = new SVNRAFileChannelData(targetFile, false);
+            long targetOffset = 0;
+            for (int index = 0; index < consumer.getWindows().size(); index++) {
+                final SVNDiffWindow window = (SVNDiffWindow) consumer.getWindows().get(index);
+                final ByteArrayOutputStream stream = (ByteArrayOutputStream) consumer.getStreams().get(index);
+                window.apply(source, target, new ByteArrayInputStream(stream.toByteArray()), targetOffset);
+                targetOffset += window.getTargetViewLength();
+            }
+            source.close();
+            target.close();
+            final InputStream is = new FileInputStream(targetFile);
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            for (int r = is.read(); r >= 0; r = is.read()) {
+                result.write(r);
+            }
+            is.close();
+            assertEquals(work.toString(), new String(result.toByteArray()));
+        } finally {
+            baseFile.delete();
+            targetFile.delete();
+        }
+    }
+
+    private void testCompressedWindows(ISVNDeltaGenerator generator, String workFile, String baseFile) throws SVNException, IOException {
+        final DeltaConsumer consumer = new DeltaConsumer();
+        generator.generateDiffWindow("", consumer, new RAData(workFile), new RAData(baseFile));
+
+        final ByteArrayOutputStream svndiff = new ByteArrayOutputStream();
+        for (int index = 0; index < consumer.getWindows().size(); index++) {
+            final SVNDiffWindow window = (SVNDiffWindow) consumer.getWindows().get(index);
+            final ByteArrayOutputStream stream = (ByteArrayOutputStream) consumer.getStreams().get(index);
+            SVNDiffWindowBuilder.saveCompressed(window, index == 0, stream.toByteArray(), svndiff);
+        }
+        assertTrue(workFile.length() < 1024 || svndiff.size() < workFile.length() / 2);
+
+        final DeltaConsumer decoded = new DeltaConsumer();
+        final SVNDiffWindowBuilder builder = SVNDiffWindowBuilder.newInstance();
+        final InputStream is = new ByteArrayInputStream(svndiff.toByteArray());
+        while (builder.accept(is, decoded, "")) {
+        }
+        assertEquals(1, builder.getVersion());
+        final RAData testData = new RAData("");
+        long targetOffset = 0;
+        for (int index = 0; index < decoded.getWindows().size(); index++) {
+            final SVNDiffWindow window = (SVNDiffWindow) decoded.getWindows().get(index);
+            final ByteArrayOutputStream stream = (ByteArrayOutputStream) decoded.getStreams().get(index);
+            assertEquals(window.getNewDataLength(), stream.size());
+            window.apply(new RAData(baseFile), testData, new ByteArrayInputStream(stream.toByteArray()), targetOffset);
+            targetOffset += window.getTargetViewLength();
+        }
+        assertEquals(workFile, testData.toString());
+    }
+
+    private long testWindows(ISVNDeltaGenerator generator, String workFile, String baseFile) throws SVNException {
+        final DeltaConsumer consumer = new DeltaConsumer();
+        generator.generateDiffWindow("", consumer, new RAData(workFile), new RAData(baseFile));
+
+        final RAData testData = new RAData("");
+        long targetOffset = 0;
+        long newDataLength = 0;
+        long sourceViewOffset = 0;
+        long sourceViewEnd = 0;
+        for (int index = 0; index < consumer.getWindows().size(); index++) {
+            final SVNDiffWindow window = (SVNDiffWindow) consumer.getWindows().get(index);
+            final ByteArrayOutputStream stream = (ByteArrayOutputStream) consumer.getStreams().get(index);
+            assertTrue(window.getTargetViewLength() <= 100*1024);
+            assertTrue(window.getSourceViewLength() <= 100*1024);
+            if (window.getSourceViewLength() > 0) {
+                // svn rejects source views that slide backwards.
+                assertTrue(window.getSourceViewOffset() >= sourceViewOffset);
+                assertTrue(window.getSourceViewOffset() + window.getSourceViewLength() >= sourceViewEnd);
+                sourceViewOffset = window.getSourceViewOffset();
+                sourceViewEnd = window.getSourceViewOffset() + window.getSourceViewLength();
+            }
+            assertEquals(window.getNewDataLength(), stream.size());
+            window.apply(new RAData(baseFile), testData, new ByteArrayInputStream(stream.toByteArray()), targetOffset);
+            targetOffset += window.getTargetViewLength();
+            newDataLength += window.getNewDataLength();
+        }
+        assertTrue(workFile.length() < 100*1024 || consumer.getWindows().size() > 1);
+        assertEquals(workFile, testData.toString());
+        return newDataLength;
+    }
+
     private void test(String workFile, String baseFile) throws SVNException, IOException {
         test(workFile, "\n", baseFile, "\n");
     }
@@ -100,7 +307,15 @@ public class SVNSequenceDeltaGeneratorTest extends TestCase {
         }
 
         public InputStream read(long offset, long length) {
-            return new ByteArrayInputStream(myText.toString().getBytes(), (int) offset, (int) length);
+            final byte[] bytes = myText.toString().getBytes();
+            final byte[] result = new byte[(int) length];
+            final int read = (int) Math.min(length, bytes.length - offset);
+            System.arraycopy(bytes, (int) offset, result, 0, read);
+            // overlapping target copies repeat the available data, as SVNRAFileData does.
+            for (int index = read; index < length; index++) {
+                result[index] = result[index - read];
+            }
+            return new ByteArrayInputStream(result);
         }
 
         public void append(InputStream source, long length) throws SVNException {
@@ -5,7 +5,24 @@ import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import junit.textui.TestRunner;
 
+import org.tmatesoft.svn.core.internal.io.svn.SVNConnectionPoolTest;
+import org.tmatesoft.svn.core.internal.io.svn.SVNReaderTest;
+import org.tmatesoft.svn.core.io.SVNConcurrentRepositoryTest;
+import org.tmatesoft.svn.core.internal.io.dav.DAVBaselineCacheTest;
+import org.tmatesoft.svn.core.internal.io.dav.DAVCommitSchedulerTest;
+import org.tmatesoft.svn.core.internal.io.dav.DAVFetchSchedulerTest;
+import org.tmatesoft.svn.core.internal.io.dav.HttpConnectionTest;
+import org.tmatesoft.svn.core.internal.util.SVNBase64DecoderTest;
 import org.tmatesoft.svn.core.internal.wc.FSMergerBySequenceTest;
+import org.tmatesoft.svn.core.internal.wc.SVNFileAttributesProviderTest;
+import org.tmatesoft.svn.core.internal.wc.SVNDeltaApplierTest;
+import org.tmatesoft.svn.core.internal.wc.SVNEntriesTest;
+import org.tmatesoft.svn.core.internal.wc.SVNLogTest;
+import org.tmatesoft.svn.core.internal.wc.SVNPatternMatcherTest;
+import org.tmatesoft.svn.core.internal.wc.SVNStatusEditorTest;
+import org.tmatesoft.svn.core.internal.wc.SVNWCAccessTest;
+import org.tmatesoft.svn.core.internal.wc.SVNPropertiesTest;
+import org.tmatesoft.svn.core.internal.wc.SVNTranslatorTest;
 import org.tmatesoft.svn.core.io.diff.SVNSequenceDeltaGeneratorTest;
 
 import de.regnis.q.sequence.QSequenceAllTests;
@@ -24,6 +41,23 @@ public class UnitTests extends TestCase {
         suite.addTest(QSequenceAllTests.suite());
         suite.addTestSuite(SVNSequenceDeltaGeneratorTest.class);
         suite.addTestSuite(FSMergerBySequenceTest.class);
+        suite.addTestSuite(SVNDeltaApplierTest.class);
+        suite.addTestSuite(SVNTranslatorTest.class);
+        suite.addTestSuite(SVNConnectionPoolTest.class);
+        suite.addTestSuite(SVNReaderTest.class);
+        suite.addTestSuite(SVNConcurrentRepositoryTest.class);
+        suite.addTestSuite(HttpConnectionTest.class);
+        suite.addTestSuite(DAVFetchSchedulerTest.class);
+        suite.addTestSuite(DAVCommitSchedulerTest.class);
+        suite.addTestSuite(DAVBaselineCacheTest.class);
+        suite.addTestSuite(SVNBase64DecoderTest.class);
+        suite.addTestSuite(SVNEntriesTest.class);
+        suite.addTestSuite(SVNPropertiesTest.class);
+        suite.addTestSuite(SVNLogTest.class);
+        suite.addTestSuite(SVNPatternMatcherTest.class);
+        suite.addTestSuite(SVNStatusEditorTest.class);
+        suite.addTestSuite(SVNWCAccessTest.class);
+        suite.addTestSuite(SVNFileAttributesProviderTest.class);
         return suite;
     }
 }
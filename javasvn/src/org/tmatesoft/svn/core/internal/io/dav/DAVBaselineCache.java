@@ -0,0 +1,175 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+
+/**
+ * Remembers results of baseline resolution, so that resolving baseline of a
+ * path does not cost several PROPFIND requests every time.
+ *
+ * <p>
+ * Cached are: repository location to repository UUID and root, public path
+ * to version controlled configuration and baseline relative path, baseline
+ * (of a revision, or checked-in one) to its baseline collection and
+ * revision, and resource type of a path in a baseline collection. These never change for the same server, so they are only
+ * evicted when the cache is full. The only mutable mapping is the checked-in
+ * baseline of the configuration (HEAD), it is kept for {@link #HEAD_TIMEOUT}
+ * milliseconds and dropped on commit.
+ *
+ * <p>
+ * One cache is shared by all connections to the same server made with the
+ * same authentication manager.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class DAVBaselineCache {
+
+    public static final long HEAD_TIMEOUT = 1000;
+    public static final int MAX_SIZE = 1024;
+
+    private static final Object NO_AUTHENTICATION = new Object();
+    // authentication manager -> (server -> cache)
+    private static Map ourCaches = new WeakHashMap();
+
+    private Map myStartingProperties;
+    private Map myBaselines;
+    private Map myResourceTypes;
+    private Map myCheckedIn;
+    private Map myRepositoryInfo;
+
+    public static synchronized DAVBaselineCache getInstance(SVNURL location, ISVNAuthenticationManager authManager) {
+        Object authKey = authManager == null ? NO_AUTHENTICATION : authManager;
+        Map caches = (Map) ourCaches.get(authKey);
+        if (caches == null) {
+            caches = new HashMap();
+            ourCaches.put(authKey, caches);
+        }
+        String serverKey = location.getProtocol() + "://" + location.getHost() + ":" + location.getPort();
+        DAVBaselineCache cache = (DAVBaselineCache) caches.get(serverKey);
+        if (cache == null) {
+            cache = new DAVBaselineCache();
+            caches.put(serverKey, cache);
+        }
+        return cache;
+    }
+
+    private DAVBaselineCache() {
+        myStartingProperties = new LRUMap();
+        myBaselines = new LRUMap();
+        myResourceTypes = new LRUMap();
+        myCheckedIn = new HashMap();
+        myRepositoryInfo = new LRUMap();
+    }
+
+    /**
+     * @return  repository UUID and root URL for the repository location
+     *          <code>path</code> or <code>null</code>
+     */
+    public synchronized Object[] getRepositoryInfo(String path) {
+        return (Object[]) myRepositoryInfo.get(path);
+    }
+
+    public synchronized void putRepositoryInfo(String path, String uuid, SVNURL root) {
+        myRepositoryInfo.put(path, new Object[] {uuid, root});
+    }
+
+    /**
+     * @return  version controlled configuration and URI encoded baseline
+     *          relative path of <code>path</code> or <code>null</code>
+     */
+    public synchronized String[] getStartingProperties(String path) {
+        return (String[]) myStartingProperties.get(path);
+    }
+
+    public synchronized void putStartingProperties(String path, String vcc, String baselineRelativePath) {
+        myStartingProperties.put(path, new String[] {vcc, baselineRelativePath});
+    }
+
+    /**
+     * @return  copy of the cached baseline properties, may be modified
+     */
+    public synchronized DAVResponse getBaseline(String baseline, String label) {
+        DAVResponse cached = (DAVResponse) myBaselines.get(getBaselineKey(baseline, label));
+        return cached != null ? copy(cached) : null;
+    }
+
+    public synchronized void putBaseline(String baseline, String label, DAVResponse properties) {
+        myBaselines.put(getBaselineKey(baseline, label), copy(properties));
+    }
+
+    public synchronized Boolean isDirectory(String path) {
+        return (Boolean) myResourceTypes.get(path);
+    }
+
+    public synchronized void putResourceType(String path, boolean isDirectory) {
+        myResourceTypes.put(path, isDirectory ? Boolean.TRUE : Boolean.FALSE);
+    }
+
+    public synchronized String getCheckedIn(String vcc) {
+        Object[] checkedIn = (Object[]) myCheckedIn.get(vcc);
+        if (checkedIn == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - ((Long) checkedIn[1]).longValue() >= HEAD_TIMEOUT) {
+            myCheckedIn.remove(vcc);
+            return null;
+        }
+        return (String) checkedIn[0];
+    }
+
+    public synchronized void putCheckedIn(String vcc, String baseline) {
+        myCheckedIn.put(vcc, new Object[] {baseline, new Long(System.currentTimeMillis())});
+    }
+
+    /**
+     * Forgets checked-in baselines, called when new revision is committed.
+     */
+    public synchronized void invalidateHead() {
+        myCheckedIn.clear();
+    }
+
+    private static String getBaselineKey(String baseline, String label) {
+        // '?' may not be a part of the baseline href.
+        return label == null ? baseline : baseline + "?" + label;
+    }
+
+    private static DAVResponse copy(DAVResponse source) {
+        DAVResponse result = new DAVResponse();
+        result.setHref(source.getHref());
+        for (Iterator properties = source.properties(); properties.hasNext();) {
+            DAVElement property = (DAVElement) properties.next();
+            result.putPropertyValue(property, source.getPropertyValue(property));
+        }
+        return result;
+    }
+
+    private static class LRUMap extends LinkedHashMap {
+
+        public LRUMap() {
+            super(16, 0.75f, true);
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > MAX_SIZE;
+        }
+    }
+}
@@ -34,6 +34,9 @@ import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
 import org.tmatesoft.svn.core.io.diff.SVNDiffWindowBuilder;
 
 class DAVCommitEditor implements ISVNEditor {
+
+    // larger deltas are not kept in memory, but sent as they are generated.
+    private static final int STREAMING_THRESHOLD = 128*1024;
     
     private String myLogMessage;
     private DAVConnection myConnection;
@@ -46,6 +49,7 @@ class DAVCommitEditor implements ISVNEditor {
     private ISVNWorkspaceMediator myCommitMediator;
     private Map myPathsMap;
     private Map myFilesMap;
+    private DAVCommitScheduler myScheduler;
 
     public DAVCommitEditor(DAVRepository repository, DAVConnection connection, String message, ISVNWorkspaceMediator mediator, Runnable closeCallback) {
         myConnection = connection;
@@ -58,6 +62,7 @@ class DAVCommitEditor implements ISVNEditor {
         myDirsStack = new Stack();
         myPathsMap = new HashMap();
         myFilesMap = new HashMap();
+        myScheduler = new DAVCommitScheduler(repository, connection);
     }
 
     /* do nothing */
@@ -81,7 +86,7 @@ class DAVCommitEditor implements ISVNEditor {
         path = SVNEncodingUtil.uriEncode(path);
         // get parent's working copy. (checkout? or use checked out?)
         DAVResource parentResource = (DAVResource) myDirsStack.peek();
-        checkoutResource(parentResource);
+        checkoutResource(myConnection, parentResource);
         String wPath = parentResource.getWorkingURL();
 		// get root wURL and delete from it!
 
@@ -121,7 +126,7 @@ class DAVCommitEditor implements ISVNEditor {
     			throw new SVNException("Directory '"  + filePath + "' already exists");
     		}
         }
-        checkoutResource(parentResource);
+        checkoutResource(myConnection, parentResource);
         String wPath = parentResource.getWorkingURL();
 
         DAVResource newDir = new DAVResource(myCommitMediator, myConnection, path, -1, copyPath != null);
@@ -169,7 +174,7 @@ class DAVCommitEditor implements ISVNEditor {
 
     public void changeDirProperty(String name, String value) throws SVNException {
         DAVResource directory = (DAVResource) myDirsStack.peek();
-        checkoutResource(directory);
+        checkoutResource(myConnection, directory);
         directory.putProperty(name, value);
         myPathsMap.put(directory.getURL(), directory.getPath());
     }
@@ -200,7 +205,7 @@ class DAVCommitEditor implements ISVNEditor {
     			throw new SVNException("File '"  + filePath + "' already exists");
     		}
         }
-        checkoutResource(parentResource);
+        checkoutResource(myConnection, parentResource);
         String wPath = parentResource.getWorkingURL();
         // create child resource.
         DAVResource newFile = new DAVResource(myCommitMediator, myConnection, path, -1, copyPath != null);
@@ -236,8 +241,10 @@ class DAVCommitEditor implements ISVNEditor {
         if (parent.isCopy()) {
             // part of copied structure -> derive wurl
             file.setWorkingURL(SVNPathUtil.append(parent.getWorkingURL(), SVNPathUtil.tail(path)));
+        } else {
+            // file is checked out in closeFile, but version URL may need mediator.
+            file.getVersionURL();
         }
-        checkoutResource(file);
         myPathsMap.put(file.getURL(), file.getPath());
         myFilesMap.put(originalPath, file);
     }
@@ -246,18 +253,29 @@ class DAVCommitEditor implements ISVNEditor {
         // just do nothing.
     }
     public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
-        // save window, create temp file.
+        // save window in memory or write it to the PUT request body.
         DAVResource currentFile = (DAVResource) myFilesMap.get(path);
         try {
+            if (!currentFile.isStreamingTextDelta() && currentFile.getDeltaLength() >= STREAMING_THRESHOLD) {
+                checkoutResource(myConnection, currentFile);
+                currentFile.streamTextDelta(myConnection.startPutDiff(currentFile.getURL(), currentFile.getWorkingURL()));
+            }
+            boolean first = currentFile.getDeltaCount() == 0;
             OutputStream os = currentFile.addTextDelta();
-            SVNDiffWindowBuilder.save(diffWindow, os);
+            SVNDiffWindowBuilder.save(diffWindow, first, os);
             return os;
         } catch (IOException e) {
             throw new SVNException();
         }
     }
     public void textDeltaEnd(String path) throws SVNException {
-        // again do nothing.
+        DAVResource currentFile = (DAVResource) myFilesMap.get(path);
+        if (currentFile.isStreamingTextDelta()) {
+            DAVStatus status = myConnection.finishPutDiff();
+            if (!(status.getResponseCode() ==201 || status.getResponseCode() == 204)) {
+                throw new SVNException("PUT failed: " + status);
+            }
+        }
     }
 
     public void changeFileProperty(String path, String name, String value)  throws SVNException {
@@ -266,9 +284,11 @@ class DAVCommitEditor implements ISVNEditor {
     }
 
     public void closeFile(String path, String textChecksum) throws SVNException {
-        // do PUT of delta if there was one (diff window + temp file).
-        // do subsequent PUT of all diff windows...
-        DAVResource currentFile = (DAVResource) myFilesMap.get(path);
+        // CHECKOUT, PUT of diff windows kept in memory and PROPPATCH are sent
+        // in background, while the next files are processed.
+        final DAVResource currentFile = (DAVResource) myFilesMap.get(path);
+        final InputStream data;
+        final StringBuffer request;
         try {
             if (currentFile.isAdded() && currentFile.getDeltaCount() == 0) {
                 OutputStream os = textDeltaChunk(path, SVNDiffWindowBuilder.createReplacementDiffWindow(0));
@@ -278,34 +298,62 @@ class DAVCommitEditor implements ISVNEditor {
                     throw new SVNException(e);
                 }
             }
-            for(int i = 0; i < currentFile.getDeltaCount(); i++) {
-                try {
-                    InputStream data = currentFile.getTextDelta(i);
-                    DAVStatus status = myConnection.doPutDiff(currentFile.getURL(), currentFile.getWorkingURL(), data);
-                    data.close();
-                    if (!(status.getResponseCode() ==201 || status.getResponseCode() == 204)) {
-                        throw new SVNException("PUT failed: " + status);
-                    }
-                } catch (IOException e) {
-                    throw new SVNException(e);
-                } 
-            } 
-            // do proppatch if there were property changes.
-            if (currentFile.getProperties() != null) {
-                StringBuffer request = DAVProppatchHandler.generatePropertyRequest(null, currentFile.getProperties());
-                try {
-                    myConnection.doProppatch(currentFile.getURL(), currentFile.getWorkingURL(), request, null);
-                } catch (SVNException e) {
-                    throw new SVNException("At least one property change failed for " + currentFile.getURL());
-                }
+            if (currentFile.getDeltaCount() > 0 && !currentFile.isStreamingTextDelta()) {
+                data = currentFile.getTextDelta();
+            } else {
+                data = null;
             }
-        } finally {
+            request = currentFile.getProperties() != null ?
+                    DAVProppatchHandler.generatePropertyRequest(null, currentFile.getProperties()) : null;
+        } catch (SVNException e) {
             currentFile.dispose();
+            throw e;
+        } finally {
             myFilesMap.remove(path);
         }
+        myScheduler.schedule(new DAVCommitScheduler.Job() {
+            public void run(DAVConnection connection) throws SVNException {
+                checkoutResource(connection, currentFile);
+                if (data != null) {
+                    try {
+                        DAVStatus status = connection.doPutDiff(currentFile.getURL(), currentFile.getWorkingURL(), data);
+                        if (!(status.getResponseCode() ==201 || status.getResponseCode() == 204)) {
+                            throw new SVNException("PUT failed: " + status);
+                        }
+                    } finally {
+                        closeData();
+                    }
+                }
+                // do proppatch if there were property changes.
+                if (request != null) {
+                    try {
+                        connection.doProppatch(currentFile.getURL(), currentFile.getWorkingURL(), request, null);
+                    } catch (SVNException e) {
+                        throw new SVNException("At least one property change failed for " + currentFile.getURL());
+                    }
+                }
+            }
+
+            public void dispose() {
+                closeData();
+                currentFile.dispose();
+            }
+
+            private void closeData() {
+                if (data != null) {
+                    try {
+                        data.close();
+                    } catch (IOException e) {
+                        //
+                    }
+                }
+            }
+        });
     }
     
     public SVNCommitInfo closeEdit() throws SVNException {
+        // MERGE only when all files are sent.
+        myScheduler.waitForAll();
         if (!myDirsStack.isEmpty()) {
             DAVResource resource = (DAVResource) myDirsStack.pop();
             // do proppatch if there were property changes.
@@ -324,11 +372,13 @@ class DAVCommitEditor implements ISVNEditor {
         if (status == null || status.getResponseCode() != 200) {
             throw new SVNException(status != null ? status.toString() : "");
         }
+        myConnection.getBaselineCache().invalidateHead();
         abortEdit();
         return handler.getCommitInfo();
     }
     
     public void abortEdit() throws SVNException {
+        myScheduler.dispose();
         // DELETE activity
         if (myActivity != null) {
             myConnection.doDelete(myActivity);
@@ -377,14 +427,14 @@ class DAVCommitEditor implements ISVNEditor {
         return activity;
     }
     
-    private void checkoutResource(DAVResource resource) throws SVNException {
+    private void checkoutResource(DAVConnection connection, DAVResource resource) throws SVNException {
         if (resource.getWorkingURL() != null) {
             return;
         }
         if (resource.getVersionURL() == null) {
             throw new SVNException(resource.getURL() + " checkout failed: resource version URL is not set");
         }
-        DAVStatus status = myConnection.doCheckout(myActivity, resource.getURL(), resource.getVersionURL());
+        DAVStatus status = connection.doCheckout(myActivity, resource.getURL(), resource.getVersionURL());
         String location = (String) status.getResponseHeader().get("Location");
         if (status.getResponseCode() == 201 && location != null) {
             resource.setWorkingURL(location);
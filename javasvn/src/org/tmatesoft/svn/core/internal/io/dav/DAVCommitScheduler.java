@@ -0,0 +1,166 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Runs requests that change files within commit activity (CHECKOUT, PUT
+ * and PROPPATCH) on several threads, each with its own connection, while
+ * commit editor goes on with the next files.
+ *
+ * <p>
+ * Jobs are only started by the thread that drives the commit editor and
+ * are disposed by that thread after they are completed, so a job may use
+ * workspace mediator when it is created and disposed, but not when it runs.
+ * Number of jobs that are not completed is limited, so that data spooled
+ * for them does not pile up when the server is slower than the working
+ * copy.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class DAVCommitScheduler {
+
+    public static final int DEFAULT_COMMIT_THREADS = 4;
+
+    static final int MAX_JOBS_PER_THREAD = 4;
+
+    private static int ourCommitThreadsCount = DEFAULT_COMMIT_THREADS;
+
+    private DAVConnection myConnection;
+    private DAVWorkerThreads myThreads;
+    // jobs not disposed yet, in the order they were scheduled.
+    private LinkedList myPendingJobs;
+
+    DAVCommitScheduler(DAVRepository repository, DAVConnection connection) {
+        this(connection, createThreads(repository, connection));
+    }
+
+    /**
+     * @param threads threads to run jobs, <code>null</code> to run them at
+     *                once over <code>connection</code>
+     */
+    DAVCommitScheduler(DAVConnection connection, DAVWorkerThreads threads) {
+        myConnection = connection;
+        myThreads = threads;
+        myPendingJobs = new LinkedList();
+    }
+
+    /**
+     * Sets number of connections used to send file changes within commit,
+     * <code>1</code> makes commit send all requests over one connection one
+     * after another.
+     */
+    public static synchronized void setCommitThreadsCount(int count) {
+        ourCommitThreadsCount = Math.max(1, count);
+    }
+
+    public static synchronized int getCommitThreadsCount() {
+        return ourCommitThreadsCount;
+    }
+
+    /**
+     * Runs <code>job</code> now or schedules it to be run later. Throws error
+     * of any job that has failed since the last call.
+     */
+    void schedule(Job job) throws SVNException {
+        if (myThreads == null) {
+            try {
+                job.run(myConnection);
+            } finally {
+                job.dispose();
+            }
+            return;
+        }
+        try {
+            collect(false);
+            while (myPendingJobs.size() >= myThreads.getMaxThreadsCount() * MAX_JOBS_PER_THREAD) {
+                collect(true);
+            }
+            myThreads.add(job);
+        } catch (SVNException e) {
+            // job will never run.
+            job.dispose();
+            throw e;
+        }
+        myPendingJobs.addLast(job);
+    }
+
+    /**
+     * Waits until all scheduled jobs are completed, throws error of the first
+     * one that has failed.
+     */
+    void waitForAll() throws SVNException {
+        while (!myPendingJobs.isEmpty()) {
+            collect(true);
+        }
+    }
+
+    /**
+     * Stops working threads. Jobs that were not started are disposed at once,
+     * jobs that are running are waited for and disposed when they complete,
+     * results of all of them are ignored.
+     */
+    void dispose() {
+        if (myThreads != null) {
+            myThreads.stop();
+        }
+        for (Iterator jobs = myPendingJobs.iterator(); jobs.hasNext();) {
+            ((Job) jobs.next()).dispose();
+        }
+        myPendingJobs.clear();
+    }
+
+    private static DAVWorkerThreads createThreads(DAVRepository repository, DAVConnection connection) {
+        int count = getCommitThreadsCount();
+        return count > 1 ? new DAVWorkerThreads(repository, connection, "DAV commit", count) : null;
+    }
+
+    /**
+     * Disposes completed jobs, waits for the oldest one first when
+     * <code>wait</code> is <code>true</code>.
+     */
+    private void collect(boolean wait) throws SVNException {
+        if (wait && !myPendingJobs.isEmpty()) {
+            myThreads.isCompleted((Job) myPendingJobs.getFirst(), true);
+        }
+        SVNException error = null;
+        for (Iterator jobs = myPendingJobs.iterator(); jobs.hasNext();) {
+            Job job = (Job) jobs.next();
+            if (!myThreads.isCompleted(job, false)) {
+                continue;
+            }
+            jobs.remove();
+            job.dispose();
+            if (error == null) {
+                error = job.getError();
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    static abstract class Job extends DAVWorkerThreads.Task {
+
+        /**
+         * Called by the thread that has scheduled this job, when it is
+         * completed or when it will never run.
+         */
+        public abstract void dispose();
+    }
+}
@@ -29,7 +29,6 @@ import org.tmatesoft.svn.core.internal.io.dav.handlers.DAVGetLocksHandler;
 import org.tmatesoft.svn.core.internal.io.dav.handlers.DAVMergeHandler;
 import org.tmatesoft.svn.core.internal.io.dav.handlers.DAVOptionsHandler;
 import org.tmatesoft.svn.core.internal.io.dav.handlers.DAVPropertiesHandler;
-import org.tmatesoft.svn.core.internal.util.IMeasurable;
 import org.tmatesoft.svn.core.internal.util.SVNEncodingUtil;
 import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
 import org.tmatesoft.svn.core.internal.util.SVNTimeUtil;
@@ -49,6 +48,8 @@ public class DAVConnection {
     private Map myLocks;
     private boolean myKeepLocks;
     private Map myCache;
+    private DAVBaselineCache myBaselineCache;
+    private Object myPoolKey;
     
     public DAVConnection(SVNURL location) {
         myLocation = location;
@@ -70,11 +71,31 @@ public class DAVConnection {
     public boolean hasCachedValue(String key) {
         return myCache.containsKey(key);
     }
+
+    public DAVBaselineCache getBaselineCache() {
+        if (myBaselineCache == null) {
+            myBaselineCache = DAVBaselineCache.getInstance(myLocation, null);
+        }
+        return myBaselineCache;
+    }
     
     public void open(DAVRepository repository) throws SVNException {
         if (myHttpConnection == null) {
-        	myHttpConnection = new HttpConnection(myLocation, repository);
+            HttpConnectionPool pool = DAVRepositoryFactory.getConnectionPool();
+            if (pool != null) {
+                myPoolKey = HttpConnectionPool.createKey(myLocation, repository.getAuthenticationManager());
+                myHttpConnection = (HttpConnection) pool.borrowConnection(myPoolKey);
+            }
+            if (myHttpConnection == null) {
+                myHttpConnection = new HttpConnection(myLocation, repository);
+            }
+            myBaselineCache = DAVBaselineCache.getInstance(myLocation, repository.getAuthenticationManager());
             if (repository.getRepositoryUUID() == null) {
+                Object[] repositoryInfo = myBaselineCache.getRepositoryInfo(myLocation.getPath());
+                if (repositoryInfo != null) {
+                    repository.updateCredentials((String) repositoryInfo[0], (SVNURL) repositoryInfo[1]);
+                    return;
+                }
                 String path = myLocation.getPath();
                 path = SVNEncodingUtil.uriEncode(path);
                 final DAVResponse[] result = new DAVResponse[1];
@@ -121,6 +142,7 @@ public class DAVConnection {
                 if (uuid == null) {
                     uuid = "";
                 }
+                myBaselineCache.putRepositoryInfo(myLocation.getPath(), uuid, rootURL);
                 repository.updateCredentials(uuid, rootURL);
             }
         }
@@ -211,7 +233,10 @@ public class DAVConnection {
     }
 	
 	public void doReport(String path, StringBuffer requestBody, DefaultHandler handler) throws SVNException {
-		myHttpConnection.request("REPORT", path, 0, null, requestBody, handler, new int[] {200, 207});
+        // lets server send deltas in compressed svndiff1 format.
+        Map header = new HashMap();
+        header.put("Accept-Encoding", "svndiff1;q=0.9,svndiff;q=0.8");
+		myHttpConnection.request("REPORT", path, header, requestBody, handler, new int[] {200, 207});
 	}
 
     public void doProppatch(String repositoryPath, String path, StringBuffer requestBody, DefaultHandler handler) throws SVNException {
@@ -271,7 +296,9 @@ public class DAVConnection {
         
         Map headers = new HashMap();
         headers.put("Content-Type", "application/vnd.svn-svndiff");
-        if (!(data instanceof ByteArrayInputStream || data instanceof IMeasurable)) {
+        // body is sent again after authentication challenge, only data in
+        // memory could be read twice.
+        if (!(data instanceof ByteArrayInputStream)) {
             ByteArrayOutputStream bos = new ByteArrayOutputStream();
             try {
                 while(true) {
@@ -298,6 +325,23 @@ public class DAVConnection {
         DAVStatus status = myHttpConnection.request("PUT", path, headers, data, null, null);
         return status;
     }
+
+    /**
+     * Starts PUT of svndiff data which is written to the returned stream,
+     * {@link #finishPutDiff()} completes the request.
+     */
+    public OutputStream startPutDiff(String repositoryPath, String path) throws SVNException {
+        Map headers = new HashMap();
+        headers.put("Content-Type", "application/vnd.svn-svndiff");
+        if (myLocks != null && myLocks.containsKey(repositoryPath)) {
+            headers.put("If", "<" + repositoryPath + "> (<" + myLocks.get(repositoryPath) + ">)");
+        }
+        return myHttpConnection.startRequest("PUT", path, headers);
+    }
+
+    public DAVStatus finishPutDiff() throws SVNException {
+        return myHttpConnection.finishRequest(null, null);
+    }
     
     public DAVStatus doMerge(String activityURL, boolean response, DefaultHandler handler) throws SVNException {
         String locationPath = SVNEncodingUtil.uriEncode(myLocation.getPath());
@@ -352,8 +396,14 @@ public class DAVConnection {
 
     public void close()  {
         if (myHttpConnection != null) {
-            myHttpConnection.close();
+            HttpConnectionPool pool = DAVRepositoryFactory.getConnectionPool();
+            if (pool != null && myPoolKey != null) {
+                pool.releaseConnection(myPoolKey, myHttpConnection);
+            } else {
+                myHttpConnection.close();
+            }
             myHttpConnection = null;
+            myPoolKey = null;
             myLocks = null;
             myKeepLocks = false;
         }
@@ -384,4 +434,12 @@ public class DAVConnection {
         myLocks = locks;
         myKeepLocks = keepLocks;
     }
+
+    Map getLocks() {
+        return myLocks;
+    }
+
+    boolean isKeepLocks() {
+        return myKeepLocks;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,404 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffInstruction;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * Editor that is used instead of the real one when server sends update
+ * report without file contents and properties (not in "send-all" mode).
+ *
+ * <p>
+ * Contents and properties are requested with {@link #fetchFile} and
+ * {@link #fetchProperties} as soon as the report mentions them and are
+ * fetched by several threads, each with its own connection. Editor calls
+ * are passed to the real editor in the report order, calls that follow a
+ * fetch which is not completed yet are queued. All calls to the real editor
+ * are made by the thread that parses the report. Connections of the fetching
+ * threads are opened by that thread too, so that repository credentials are
+ * only updated from one thread.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class DAVFetchScheduler implements ISVNEditor {
+
+    public static final int DEFAULT_FETCH_THREADS = 4;
+
+    static final int MAX_PENDING_FETCHES = 64;
+    private static final int WINDOW_SIZE = 100*1024;
+
+    private static int ourFetchThreadsCount = DEFAULT_FETCH_THREADS;
+
+    private ISVNEditor myEditor;
+    // editor calls in the report order, only used by the parsing thread.
+    private LinkedList myCommands;
+    private int myPendingCount;
+    private DAVWorkerThreads myThreads;
+
+    public DAVFetchScheduler(DAVRepository repository, ISVNEditor editor) {
+        this(editor, new DAVWorkerThreads(repository, null, "DAV fetch", getFetchThreadsCount()));
+    }
+
+    DAVFetchScheduler(ISVNEditor editor, DAVWorkerThreads threads) {
+        myEditor = editor;
+        myCommands = new LinkedList();
+        myThreads = threads;
+    }
+
+    /**
+     * Sets number of connections used to fetch file contents and properties
+     * reported by server that does not send them within update report.
+     */
+    public static synchronized void setFetchThreadsCount(int count) {
+        ourFetchThreadsCount = Math.max(1, count);
+    }
+
+    public static synchronized int getFetchThreadsCount() {
+        return ourFetchThreadsCount;
+    }
+
+    public void fetchFile(String path, String url, String baseChecksum) throws SVNException {
+        schedule(new Fetch(path, url, baseChecksum, false, false));
+    }
+
+    public void fetchProperties(String path, String url, boolean isDirectory) throws SVNException {
+        schedule(new Fetch(path, url, null, true, isDirectory));
+    }
+
+    /**
+     * Stops fetching threads and removes fetched data that was not passed to
+     * the editor. Should be called when report processing is over, no matter
+     * whether it succeeded or not.
+     */
+    public void dispose() {
+        myThreads.stop();
+        for (Iterator commands = myCommands.iterator(); commands.hasNext();) {
+            Object command = commands.next();
+            if (command instanceof Fetch) {
+                ((Fetch) command).dispose();
+            }
+        }
+        myCommands.clear();
+        myPendingCount = 0;
+    }
+
+    public void targetRevision(final long revision) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.targetRevision(revision);
+            }
+        });
+    }
+
+    public void openRoot(final long revision) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.openRoot(revision);
+            }
+        });
+    }
+
+    public void deleteEntry(final String path, final long revision) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.deleteEntry(path, revision);
+            }
+        });
+    }
+
+    public void absentDir(final String path) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.absentDir(path);
+            }
+        });
+    }
+
+    public void absentFile(final String path) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.absentFile(path);
+            }
+        });
+    }
+
+    public void addDir(final String path, final String copyFromPath, final long copyFromRevision) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.addDir(path, copyFromPath, copyFromRevision);
+            }
+        });
+    }
+
+    public void openDir(final String path, final long revision) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.openDir(path, revision);
+            }
+        });
+    }
+
+    public void changeDirProperty(final String name, final String value) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.changeDirProperty(name, value);
+            }
+        });
+    }
+
+    public void closeDir() throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.closeDir();
+            }
+        });
+    }
+
+    public void addFile(final String path, final String copyFromPath, final long copyFromRevision) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.addFile(path, copyFromPath, copyFromRevision);
+            }
+        });
+    }
+
+    public void openFile(final String path, final long revision) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.openFile(path, revision);
+            }
+        });
+    }
+
+    public void applyTextDelta(final String path, final String baseChecksum) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.applyTextDelta(path, baseChecksum);
+            }
+        });
+    }
+
+    public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+        SVNErrorManager.error("svn: Text delta is not expected in update report without file contents");
+        return null;
+    }
+
+    public void textDeltaEnd(final String path) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.textDeltaEnd(path);
+            }
+        });
+    }
+
+    public void changeFileProperty(final String path, final String name, final String value) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.changeFileProperty(path, name, value);
+            }
+        });
+    }
+
+    public void closeFile(final String path, final String textChecksum) throws SVNException {
+        schedule(new EditorCommand() {
+            public void run(ISVNEditor editor) throws SVNException {
+                editor.closeFile(path, textChecksum);
+            }
+        });
+    }
+
+    public SVNCommitInfo closeEdit() throws SVNException {
+        deliver(true);
+        return myEditor.closeEdit();
+    }
+
+    public void abortEdit() throws SVNException {
+        dispose();
+        myEditor.abortEdit();
+    }
+
+    private void schedule(EditorCommand command) throws SVNException {
+        if (command instanceof Fetch) {
+            while (myPendingCount >= MAX_PENDING_FETCHES) {
+                // do not let fetched data pile up when the editor is slower.
+                deliverNext(true);
+            }
+            myPendingCount++;
+            myThreads.add((Fetch) command);
+        } else if (myCommands.isEmpty()) {
+            command.run(myEditor);
+            return;
+        }
+        myCommands.addLast(command);
+        deliver(false);
+    }
+
+    private void deliver(boolean wait) throws SVNException {
+        while (!myCommands.isEmpty()) {
+            if (!deliverNext(wait)) {
+                return;
+            }
+        }
+    }
+
+    private boolean deliverNext(boolean wait) throws SVNException {
+        EditorCommand command = (EditorCommand) myCommands.getFirst();
+        if (command instanceof Fetch) {
+            if (!myThreads.isCompleted((Fetch) command, wait)) {
+                return false;
+            }
+            myPendingCount--;
+        }
+        myCommands.removeFirst();
+        command.run(myEditor);
+        return true;
+    }
+
+    private static interface EditorCommand {
+
+        public void run(ISVNEditor editor) throws SVNException;
+    }
+
+    private static class Fetch extends DAVWorkerThreads.Task implements EditorCommand {
+
+        private String myPath;
+        private String myURL;
+        private String myBaseChecksum;
+        private boolean myIsProperties;
+        private boolean myIsDirectory;
+
+        private File myContents;
+        private Map myProperties;
+
+        public Fetch(String path, String url, String baseChecksum, boolean properties, boolean directory) {
+            myPath = path;
+            myURL = url;
+            myBaseChecksum = baseChecksum;
+            myIsProperties = properties;
+            myIsDirectory = directory;
+        }
+
+        public void run(DAVConnection connection) throws SVNException {
+            if (myURL == null) {
+                SVNErrorManager.error("svn: Server did not send version resource URL of '" + myPath + "'");
+            }
+            if (myIsProperties) {
+                final Map properties = new HashMap();
+                connection.doPropfind(myURL, 0, null, null, new IDAVResponseHandler() {
+                    public void handleDAVResponse(DAVResponse response) {
+                        DAVUtil.filterProperties(response, properties);
+                    }
+                });
+                // version URL is already set by the report.
+                properties.remove("svn:wc:ra_dav:version-url");
+                myProperties = properties;
+                return;
+            }
+            OutputStream os = null;
+            try {
+                myContents = File.createTempFile("svn", "fetch");
+                os = SVNFileUtil.openFileForWriting(myContents);
+                connection.doGet(myURL, os);
+            } catch (IOException e) {
+                SVNErrorManager.error(e.getMessage());
+            } finally {
+                SVNFileUtil.closeFile(os);
+            }
+        }
+
+        public void run(ISVNEditor editor) throws SVNException {
+            try {
+                if (getError() != null) {
+                    throw getError();
+                }
+                if (myIsProperties) {
+                    for (Iterator names = myProperties.keySet().iterator(); names.hasNext();) {
+                        String name = (String) names.next();
+                        String value = (String) myProperties.get(name);
+                        if (myIsDirectory) {
+                            editor.changeDirProperty(name, value);
+                        } else {
+                            editor.changeFileProperty(myPath, name, value);
+                        }
+                    }
+                } else {
+                    sendContents(editor);
+                }
+            } finally {
+                dispose();
+            }
+        }
+
+        public void dispose() {
+            if (myContents != null) {
+                myContents.delete();
+                myContents = null;
+            }
+        }
+
+        private void sendContents(ISVNEditor editor) throws SVNException {
+            editor.applyTextDelta(myPath, myBaseChecksum);
+            long remains = myContents.length();
+            InputStream is = SVNFileUtil.openFileForReading(myContents);
+            byte[] buffer = new byte[WINDOW_SIZE];
+            try {
+                // full text as windows of new data, empty file is one empty window.
+                do {
+                    int length = (int) Math.min(remains, WINDOW_SIZE);
+                    SVNDiffInstruction[] instructions = length > 0 ?
+                            new SVNDiffInstruction[] {new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_NEW_DATA, length, 0)} :
+                            new SVNDiffInstruction[0];
+                    SVNDiffWindow window = new SVNDiffWindow(0, 0, length, instructions, length);
+                    OutputStream os = editor.textDeltaChunk(myPath, window);
+                    int read = 0;
+                    while (read < length) {
+                        int count = is.read(buffer, read, length - read);
+                        if (count < 0) {
+                            SVNErrorManager.error("svn: Unexpected end of fetched contents of '" + myPath + "'");
+                        }
+                        read += count;
+                    }
+                    if (os != null) {
+                        try {
+                            os.write(buffer, 0, length);
+                        } finally {
+                            os.close();
+                        }
+                    }
+                    remains -= length;
+                } while (remains > 0);
+            } catch (IOException e) {
+                SVNErrorManager.error(e.getMessage());
+            } finally {
+                SVNFileUtil.closeFile(is);
+            }
+            editor.textDeltaEnd(myPath);
+        }
+    }
+}
@@ -425,7 +425,7 @@ class DAVRepository extends SVNRepository {
         try {
             openConnection();
             StringBuffer request = DAVEditorHandler.generateEditorRequest(myConnection, null, getLocation().toString(), revision, target, null, recursive, false, false, true, reporter);
-            DAVEditorHandler handler = new DAVEditorHandler(editor, true);
+            DAVEditorHandler handler = new DAVEditorHandler(editor, true, new DAVFetchScheduler(this, editor));
 
             String bcPath = SVNEncodingUtil.uriEncode(getLocation().getPath());
             DAVBaselineInfo info = DAVUtil.getBaselineInfo(myConnection, bcPath, revision, false, false, null);
@@ -433,7 +433,11 @@ class DAVRepository extends SVNRepository {
             DAVResponse response = DAVUtil.getResourceProperties(myConnection, path, null, DAVElement.STARTING_PROPERTIES, true);
             if (response != null) {
             	path = (String) response.getPropertyValue(DAVElement.VERSION_CONTROLLED_CONFIGURATION);
-            	myConnection.doReport(path, request, handler);
+            	try {
+            	    myConnection.doReport(path, request, handler);
+            	} finally {
+            	    handler.dispose();
+            	}
             } else {
                 editor.closeEdit();
             }
@@ -451,7 +455,7 @@ class DAVRepository extends SVNRepository {
             openConnection();
             StringBuffer request = DAVEditorHandler.generateEditorRequest(myConnection, null, getLocation().toString(), revision, target, url.toString(), 
                     recursive, true, false, true, reporter);
-            DAVEditorHandler handler = new DAVEditorHandler(editor, true);
+            DAVEditorHandler handler = new DAVEditorHandler(editor, true, new DAVFetchScheduler(this, editor));
 
             String bcPath = SVNEncodingUtil.uriEncode(getLocation().getPath());
             DAVBaselineInfo info = DAVUtil.getBaselineInfo(myConnection, bcPath, revision, false, false, null);
@@ -459,7 +463,11 @@ class DAVRepository extends SVNRepository {
             DAVResponse response = DAVUtil.getResourceProperties(myConnection, path, null, DAVElement.STARTING_PROPERTIES, false);
             if (response != null) {
                 path = (String) response.getPropertyValue(DAVElement.VERSION_CONTROLLED_CONFIGURATION);
-                myConnection.doReport(path, request, handler);
+                try {
+                    myConnection.doReport(path, request, handler);
+                } finally {
+                    handler.dispose();
+                }
             } else {
                 String revisionStr = revision < 0 ? "HEAD" : Long.toString(revision);
                 throw new SVNException("svn: Location '" + path + "' doesn't exists in repository at revision " + revisionStr);
@@ -483,14 +491,18 @@ class DAVRepository extends SVNRepository {
         try {
             openConnection();
             StringBuffer request = DAVEditorHandler.generateEditorRequest(myConnection, null, getLocation().toString(), targetRevision, target, url.toString(), recursive, ignoreAncestry, false, true, reporter);
-            DAVEditorHandler handler = new DAVEditorHandler(editor, true);
+            DAVEditorHandler handler = new DAVEditorHandler(editor, true, new DAVFetchScheduler(this, editor));
 
             DAVBaselineInfo info = DAVUtil.getBaselineInfo(myConnection, SVNEncodingUtil.uriEncode(getLocation().getPath()), revision, false, false, null);
             String path = SVNPathUtil.append(info.baselineBase, info.baselinePath);
             DAVResponse response = DAVUtil.getResourceProperties(myConnection, path, null, DAVElement.STARTING_PROPERTIES, false);
             path = (String) response.getPropertyValue(DAVElement.VERSION_CONTROLLED_CONFIGURATION);
             
-            myConnection.doReport(path, request, handler);
+            try {
+                myConnection.doReport(path, request, handler);
+            } finally {
+                handler.dispose();
+            }
         } finally {
             closeConnection();
         }
@@ -500,14 +512,18 @@ class DAVRepository extends SVNRepository {
         try {
             openConnection();
             StringBuffer request = DAVEditorHandler.generateEditorRequest(myConnection, null, getLocation().toString(), revision, target, null, recursive, false, false, false, reporter);
-            DAVEditorHandler handler = new DAVEditorHandler(editor, false);
+            DAVEditorHandler handler = new DAVEditorHandler(editor, false, new DAVFetchScheduler(this, editor));
 
             DAVBaselineInfo info = DAVUtil.getBaselineInfo(myConnection, SVNEncodingUtil.uriEncode(getLocation().getPath()), revision, false, false, null);
             String path = SVNPathUtil.append(info.baselineBase, info.baselinePath);
         	DAVResponse response = DAVUtil.getResourceProperties(myConnection, path, null, DAVElement.STARTING_PROPERTIES, true);
         	if (response != null) {
         		path = (String) response.getPropertyValue(DAVElement.VERSION_CONTROLLED_CONFIGURATION);
-        		myConnection.doReport(path, request, handler);
+        		try {
+        		    myConnection.doReport(path, request, handler);
+        		} finally {
+        		    handler.dispose();
+        		}
         	}
         } finally {
             closeConnection();
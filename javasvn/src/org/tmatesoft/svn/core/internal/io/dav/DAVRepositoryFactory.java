@@ -23,6 +23,8 @@ import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
  */
 public class DAVRepositoryFactory extends SVNRepositoryFactory {
     
+    private static HttpConnectionPool ourConnectionPool = new HttpConnectionPool();
+
     public static void setup() {
         if (!SVNRepositoryFactory.hasRepositoryFactory("^https?://.*$")) {
             DAVRepositoryFactory factory = new DAVRepositoryFactory();
@@ -33,4 +35,20 @@ public class DAVRepositoryFactory extends SVNRepositoryFactory {
     public SVNRepository createRepositoryImpl(SVNURL location, boolean session) {
         return new DAVRepository(location, session);
     }
+
+    /**
+     * Sets the pool that keeps idle HTTP connections of repositories that are
+     * not in session mode. Pass <code>null</code> to open a new connection
+     * for every request.
+     */
+    public static synchronized void setConnectionPool(HttpConnectionPool pool) {
+        if (ourConnectionPool != null && ourConnectionPool != pool) {
+            ourConnectionPool.shutdown();
+        }
+        ourConnectionPool = pool;
+    }
+
+    public static synchronized HttpConnectionPool getConnectionPool() {
+        return ourConnectionPool;
+    }
 }
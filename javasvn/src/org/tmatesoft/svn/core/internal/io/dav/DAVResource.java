@@ -12,23 +12,16 @@
 
 package org.tmatesoft.svn.core.internal.io.dav;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FilterInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
 import org.tmatesoft.svn.core.SVNException;
-import org.tmatesoft.svn.core.internal.util.IMeasurable;
 import org.tmatesoft.svn.core.internal.util.SVNEncodingUtil;
 import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
 import org.tmatesoft.svn.core.io.ISVNWorkspaceMediator;
@@ -47,7 +40,9 @@ class DAVResource {
     private boolean myIsCopy;
     
     private DAVConnection myConnection;
-    private List myDeltaFiles;
+    private ByteArrayOutputStream myDeltaBuffer;
+    private OutputStream myDeltaStream;
+    private int myDeltaCount;
     private Map myProperties;
     private boolean myIsAdded;
 
@@ -111,47 +106,62 @@ class DAVResource {
         return myWURL;
     }
     
-    public OutputStream addTextDelta() throws IOException {
-        if (myDeltaFiles == null) {
-            myDeltaFiles = new LinkedList();
+    /**
+     * Returns stream to write the next diff window to. All windows of the
+     * file are kept in memory, so that they are sent in a single PUT request
+     * as one svndiff stream, until {@link #streamTextDelta(OutputStream)} is
+     * called, after that windows are written to the request directly.
+     */
+    public OutputStream addTextDelta() {
+        if (myDeltaBuffer == null) {
+            myDeltaBuffer = new ByteArrayOutputStream();
         }
-        // try to get from mediator.
-        if (myMediator != null) {
-            Object id = new Integer(myDeltaFiles.size());
-            myDeltaFiles.add(id);
-            return myMediator.createTemporaryLocation(SVNEncodingUtil.uriDecode(myPath), id);
-        }
-        File tempFile = File.createTempFile("svn", "temp");
-        tempFile.deleteOnExit();
-        myDeltaFiles.add(tempFile);
-        return new BufferedOutputStream(new FileOutputStream(tempFile));
+        myDeltaCount++;
+        return new FilterOutputStream(myDeltaStream != null ? myDeltaStream : myDeltaBuffer) {
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+            public void close() throws IOException {
+                flush();
+            }
+        };
     }
     
     public int getDeltaCount() {
-        return myDeltaFiles == null ? 0 : myDeltaFiles.size();        
+        return myDeltaCount;
+    }
+
+    /**
+     * @return number of delta bytes kept in memory
+     */
+    public int getDeltaLength() {
+        return myDeltaBuffer != null ? myDeltaBuffer.size() : 0;
+    }
+
+    public boolean isStreamingTextDelta() {
+        return myDeltaStream != null;
     }
     
-    public InputStream getTextDelta(int i) throws IOException {
-        if (myMediator != null) {
-            long length = myMediator.getLength(new Integer(i));
-            return new MeasurableStream(myMediator.getTemporaryLocation(new Integer(i)), length);
+    /**
+     * Writes windows kept in memory to <code>os</code>, the next windows are
+     * written to it directly.
+     */
+    public void streamTextDelta(OutputStream os) throws IOException {
+        if (myDeltaBuffer != null) {
+            myDeltaBuffer.writeTo(os);
+            myDeltaBuffer = null;
         }
-        File file = (File) myDeltaFiles.get(i);
-        return new MeasurableStream(new BufferedInputStream(new FileInputStream(file)), file.length());
+        myDeltaStream = os;
+    }
+    
+    public InputStream getTextDelta() {
+        return new ByteArrayInputStream(myDeltaBuffer != null ? myDeltaBuffer.toByteArray() : new byte[0]);
     }
     
     public void dispose() {
-        if (myDeltaFiles != null) {
-            for(Iterator values = myDeltaFiles.iterator(); values.hasNext();) {
-                if (myMediator != null) {
-                    myMediator.deleteTemporaryLocation(values.next());
-                    continue;
-                }
-                File file = (File) values.next();
-                file.delete();
-            }
-        }
-        myDeltaFiles = null;
+        myDeltaBuffer = null;
+        myDeltaStream = null;
+        myDeltaCount = 0;
         myProperties = null;
     }
 
@@ -183,20 +193,5 @@ class DAVResource {
         sb.append("]");
         return sb.toString();
     }
-    
-    private static class MeasurableStream extends FilterInputStream implements IMeasurable {
-
-        private long myLength;
-
-        protected MeasurableStream(InputStream in, long length) {
-            super(in);
-            myLength = length;
-        }
-
-        public long getLength() {
-            return myLength;
-        }
-        
-    }
 
 }
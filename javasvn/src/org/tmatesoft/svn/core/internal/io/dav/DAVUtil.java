@@ -70,16 +70,74 @@ public class DAVUtil {
             info.revision = Long.parseLong((String) baselineProperties.getPropertyValue(DAVElement.VERSION_NAME));
         }
         if (includeType) {
-            info.isDirectory = getPropertyValue(connection, SVNPathUtil.append(info.baselineBase, info.baselinePath),
-                    null, DAVElement.RESOURCE_TYPE) != null;
+            String resourcePath = SVNPathUtil.append(info.baselineBase, info.baselinePath);
+            Boolean isDirectory = connection.getBaselineCache().isDirectory(resourcePath);
+            if (isDirectory == null) {
+                info.isDirectory = getPropertyValue(connection, resourcePath, null, DAVElement.RESOURCE_TYPE) != null;
+                connection.getBaselineCache().putResourceType(resourcePath, info.isDirectory);
+            } else {
+                info.isDirectory = isDirectory.booleanValue();
+            }
         }
         return info;
     }
 
     public static DAVResponse getBaselineProperties(DAVConnection connection, String path, long revision, DAVElement[] elements) throws SVNException {
+        DAVBaselineCache cache = connection.getBaselineCache();
+        String[] startingProperties = getStartingProperties(connection, path);
+        String vcc = startingProperties[0];
+        String baselineRelativePath = startingProperties[1];
+
+        String label = null;
+        if (revision < 0) {
+            // get vcc's "checked-in"
+            String checkedIn = cache.getCheckedIn(vcc);
+            if (checkedIn == null) {
+                checkedIn = (String) getPropertyValue(connection, vcc, null, DAVElement.CHECKED_IN);
+                if (checkedIn != null) {
+                    cache.putCheckedIn(vcc, checkedIn);
+                }
+            }
+            vcc = checkedIn;
+        } else {
+            label = Long.toString(revision);
+        }
+        DAVResponse result;
+        if (isBaselineProperties(elements)) {
+            // baseline properties of the same baseline never change.
+            result = cache.getBaseline(vcc, label);
+            if (result == null) {
+                result = getResourceProperties(connection, vcc, label, DAVElement.BASELINE_PROPERTIES, false);
+                if (result != null) {
+                    cache.putBaseline(vcc, label, result);
+                }
+            }
+        } else {
+            result = getResourceProperties(connection, vcc, label, elements, false);
+        }
+        result.setHref(baselineRelativePath);
+        return result;
+    }
+
+    /**
+     * @return version controlled configuration and URI encoded baseline
+     *         relative path of <code>path</code>. <code>path</code> may not
+     *         exist in HEAD, then path of its closest existing parent is used.
+     */
+    private static String[] getStartingProperties(DAVConnection connection, String path) throws SVNException {
+        DAVBaselineCache cache = connection.getBaselineCache();
+        String[] startingProperties = cache.getStartingProperties(path);
+        if (startingProperties != null) {
+            return startingProperties;
+        }
+        String originalPath = path;
         DAVResponse properties = null;
         String loppedPath = "";
         while(true) {
+            startingProperties = cache.getStartingProperties(path);
+            if (startingProperties != null) {
+                break;
+            }
             try {
                 properties = getResourceProperties(connection, path, null, DAVElement.STARTING_PROPERTIES, false);
                 break;
@@ -92,30 +150,43 @@ public class DAVUtil {
                 break;
             }
         }
-        if (properties == null) {
-            throw new SVNException("resource " + path + " is not part of repository");
-        }
-        String vcc = (String) properties.getPropertyValue(DAVElement.VERSION_CONTROLLED_CONFIGURATION);
-        String baselineRelativePath = (String) properties.getPropertyValue(DAVElement.BASELINE_RELATIVE_PATH);
-        if (vcc == null) {
-            throw new SVNException("important properties are missing for " + path);
-        }
-        if (baselineRelativePath == null) {
-            baselineRelativePath = "";
+        String vcc;
+        String baselineRelativePath;
+        if (startingProperties != null) {
+            vcc = startingProperties[0];
+            baselineRelativePath = startingProperties[1];
+        } else {
+            if (properties == null) {
+                throw new SVNException("resource " + path + " is not part of repository");
+            }
+            vcc = (String) properties.getPropertyValue(DAVElement.VERSION_CONTROLLED_CONFIGURATION);
+            baselineRelativePath = (String) properties.getPropertyValue(DAVElement.BASELINE_RELATIVE_PATH);
+            if (vcc == null) {
+                throw new SVNException("important properties are missing for " + path);
+            }
+            if (baselineRelativePath == null) {
+                baselineRelativePath = "";
+            }
+            baselineRelativePath = SVNEncodingUtil.uriEncode(baselineRelativePath);
+            cache.putStartingProperties(path, vcc, baselineRelativePath);
         }
-        baselineRelativePath = SVNEncodingUtil.uriEncode(baselineRelativePath);
         baselineRelativePath = SVNPathUtil.append(baselineRelativePath, loppedPath);
+        if (!"".equals(loppedPath)) {
+            cache.putStartingProperties(originalPath, vcc, baselineRelativePath);
+        }
+        return new String[] {vcc, baselineRelativePath};
+    }
 
-        String label = null;
-        if (revision < 0) {
-            // get vcc's "checked-in"
-            vcc = (String) getPropertyValue(connection, vcc, null, DAVElement.CHECKED_IN);
-        } else {
-            label = Long.toString(revision);
+    private static boolean isBaselineProperties(DAVElement[] elements) {
+        if (elements == null) {
+            return false;
         }
-        DAVResponse result = getResourceProperties(connection, vcc, label, elements, false);
-        result.setHref(baselineRelativePath);
-        return result;
+        for (int i = 0; i < elements.length; i++) {
+            if (elements[i] != DAVElement.BASELINE_COLLECTION && elements[i] != DAVElement.VERSION_NAME) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static Map filterProperties(DAVResponse source, Map target) {
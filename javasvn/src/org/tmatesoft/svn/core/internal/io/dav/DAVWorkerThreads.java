@@ -0,0 +1,209 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+
+/**
+ * Threads that run tasks of one scheduler, each thread over its own
+ * connection.
+ * 
+ * <p>
+ * Tasks are only added by the scheduler thread. New thread is started when
+ * there are tasks waiting for a thread, up to the maximum number of threads.
+ * Connections of the threads are opened by the scheduler thread too, so that
+ * repository credentials are only updated from one thread.
+ * 
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+class DAVWorkerThreads {
+
+    private DAVRepository myRepository;
+    private DAVConnection myConnection;
+    private String myName;
+    private int myMaxThreadsCount;
+    // tasks not started yet.
+    private LinkedList myTasks;
+    private List myThreads;
+    private int myRunningCount;
+    private boolean myIsStopped;
+
+    /**
+     * @param connection connection of the scheduler thread, its locks are
+     *                   passed to the connections of the threads, may be
+     *                   <code>null</code>
+     */
+    public DAVWorkerThreads(DAVRepository repository, DAVConnection connection, String name, int maxThreadsCount) {
+        myRepository = repository;
+        myConnection = connection;
+        myName = name;
+        myMaxThreadsCount = maxThreadsCount;
+        myTasks = new LinkedList();
+        myThreads = new ArrayList();
+    }
+
+    public int getMaxThreadsCount() {
+        return myMaxThreadsCount;
+    }
+
+    /**
+     * Queues <code>task</code> to be run by one of the threads, does nothing
+     * when threads are stopped.
+     */
+    public void add(Task task) throws SVNException {
+        DAVConnection connection = null;
+        // threads are only added by the scheduler thread, check and add need not be atomic.
+        if (isThreadNeeded()) {
+            connection = openConnection();
+        }
+        synchronized (this) {
+            if (myIsStopped) {
+                if (connection != null) {
+                    connection.close();
+                }
+                return;
+            }
+            myTasks.addLast(task);
+            if (connection != null) {
+                Thread thread = new Thread(new Worker(connection), myName + " " + myThreads.size());
+                thread.setDaemon(true);
+                myThreads.add(thread);
+                thread.start();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return <code>true</code> when <code>task</code> is completed, waits
+     *         for it when <code>wait</code> is <code>true</code>
+     */
+    public synchronized boolean isCompleted(Task task, boolean wait) throws SVNException {
+        while (wait && !task.myIsCompleted) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                SVNErrorManager.error("svn: Interrupted while waiting for " + myName + " request to complete");
+            }
+        }
+        return task.myIsCompleted;
+    }
+
+    /**
+     * Removes tasks that were not started and waits for the running ones to
+     * complete, then threads exit.
+     */
+    public synchronized void stop() {
+        myIsStopped = true;
+        myTasks.clear();
+        notifyAll();
+        while (myRunningCount > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Opens connection for a new thread, called by the scheduler thread.
+     */
+    protected DAVConnection openConnection() throws SVNException {
+        DAVConnection connection = new DAVConnection(myRepository.getLocation());
+        try {
+            connection.open(myRepository);
+        } catch (SVNException e) {
+            connection.close();
+            throw e;
+        }
+        if (myConnection != null) {
+            connection.setLocks(myConnection.getLocks(), myConnection.isKeepLocks());
+        }
+        return connection;
+    }
+
+    private synchronized boolean isThreadNeeded() {
+        return myThreads.size() < myMaxThreadsCount && myThreads.size() <= myTasks.size();
+    }
+
+    private synchronized Task nextTask() {
+        while (!myIsStopped && myTasks.isEmpty()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+        if (myIsStopped) {
+            return null;
+        }
+        myRunningCount++;
+        return (Task) myTasks.removeFirst();
+    }
+
+    private synchronized void completed(Task task) {
+        myRunningCount--;
+        task.myIsCompleted = true;
+        notifyAll();
+    }
+
+    private class Worker implements Runnable {
+
+        private DAVConnection myWorkerConnection;
+
+        public Worker(DAVConnection connection) {
+            myWorkerConnection = connection;
+        }
+
+        public void run() {
+            try {
+                for (Task task = nextTask(); task != null; task = nextTask()) {
+                    try {
+                        task.run(myWorkerConnection);
+                    } catch (SVNException e) {
+                        task.myError = e;
+                    } catch (RuntimeException e) {
+                        task.myError = new SVNException(e.getMessage(), e);
+                    } finally {
+                        completed(task);
+                    }
+                }
+            } finally {
+                myWorkerConnection.close();
+            }
+        }
+    }
+
+    static abstract class Task {
+
+        private boolean myIsCompleted;
+        private SVNException myError;
+
+        public abstract void run(DAVConnection connection) throws SVNException;
+
+        /**
+         * @return error of the completed task, or <code>null</code> when it
+         *         has succeeded
+         */
+        public SVNException getError() {
+            return myError;
+        }
+    }
+}
@@ -15,6 +15,7 @@ package org.tmatesoft.svn.core.internal.io.dav;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -44,6 +45,7 @@ import org.tmatesoft.svn.core.auth.ISVNSSLManager;
 import org.tmatesoft.svn.core.auth.SVNAuthentication;
 import org.tmatesoft.svn.core.auth.SVNPasswordAuthentication;
 import org.tmatesoft.svn.core.internal.util.IMeasurable;
+import org.tmatesoft.svn.core.internal.util.ISVNPooledConnection;
 import org.tmatesoft.svn.core.internal.util.SVNBase64;
 import org.tmatesoft.svn.core.internal.util.SVNSocketFactory;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
@@ -60,7 +62,17 @@ import org.xml.sax.helpers.DefaultHandler;
  * @author TMate Software Ltd.
  *
  */
-class HttpConnection {
+class HttpConnection implements ISVNPooledConnection {
+
+    private static final int CONTINUE_TIMEOUT = 3000;
+    // streamed body kept to be sent again after authentication challenge.
+    private static final int MAX_SPOOL_LENGTH = 1024*1024;
+    // marks request which body is written later by the caller.
+    private static final InputStream STREAMED_BODY = new InputStream() {
+        public int read() {
+            return -1;
+        }
+    };
 
     private OutputStream myOutputStream;
     private InputStream myInputStream;
@@ -75,6 +87,9 @@ class HttpConnection {
     private ISVNAuthenticationManager myAuthManager;
     private SVNAuthentication myLastValidAuth;
     private ISVNProxyManager myProxyAuth;
+    private boolean myIsRequestComplete;
+    private boolean myIsContinued;
+    private StreamedRequest myStreamedRequest;
 
     public HttpConnection(SVNURL location, SVNRepository repos) {
         mySVNRepositoryLocation = location;
@@ -193,17 +208,85 @@ class HttpConnection {
         // check okCodes, read to status if not ok.
         assertOk(method, path, status, okCodes);
         if (status != null && status.getResponseCode() == 204) {
-            finishResponse(status.getResponseHeader());
+            finishResponse(status.getResponseHeader(), true);
         } else if (status != null) {
             readResponse(handler, status.getResponseHeader());
         }
         return status;
     }
 
+    /**
+     * Sends request header and returns stream to write request body to, body
+     * is sent chunked. Request is sent with "Expect: 100-continue", so that
+     * authentication challenge is received before the body is sent. Only
+     * when server does not answer the expectation, body is also kept in
+     * memory to be sent again if server asks for credentials after all, but
+     * not more than 1M of it. A late "100 Continue" is skipped when the final
+     * response is read.
+     *
+     * <p>
+     * {@link #finishRequest(DefaultHandler, int[])} should be called when the
+     * whole body is written.
+     */
+    public OutputStream startRequest(String method, String path, Map header) throws SVNException {
+        header = initHeader(0, null, header);
+        header.put("Expect", "100-continue");
+        DAVStatus status = sendRequest(method, path, header, STREAMED_BODY);
+        // request could be rejected before the body is sent.
+        assertOk(method, path, status, new int[] {100});
+        myStreamedRequest = new StreamedRequest(method, path, header, !myIsContinued);
+        return myStreamedRequest;
+    }
+
+    public DAVStatus finishRequest(DefaultHandler handler, int[] okCodes) throws SVNException {
+        StreamedRequest request = myStreamedRequest;
+        if (request == null) {
+            SVNErrorManager.error("svn: Request body is not being sent");
+        }
+        Map readHeader = new HashMap();
+        DAVStatus status;
+        try {
+            request.finish();
+            myStreamedRequest = null;
+            status = readHeader(readHeader);
+        } catch (IOException e) {
+            myStreamedRequest = null;
+            close();
+            throw new SVNException(e);
+        }
+        if (status == null) {
+            close();
+            SVNErrorManager.error("svn: Connection to '" + mySVNRepositoryLocation.getHost() + "' is closed unexpectedly");
+        }
+        if (status.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED || status.getResponseCode() == HttpURLConnection.HTTP_FORBIDDEN) {
+            try {
+                skipRequestBody(readHeader);
+            } catch (IOException e) {
+                //
+            }
+            close();
+            if (request.mySpool == null) {
+                throw new SVNAuthenticationException(request.myIsSpoolDropped ?
+                        "Authentication failed, request body is too large to be sent again" : "Authentication failed");
+            }
+            // send again, this time with known length and credentials.
+            request.myHeader.remove("Expect");
+            return request(request.myMethod, request.myPath, request.myHeader, new ByteArrayInputStream(request.mySpool.toByteArray()), handler, okCodes);
+        }
+        status.setResponseHeader(readHeader);
+        assertOk(request.myMethod, request.myPath, status, okCodes);
+        if (status.getResponseCode() == 204) {
+            finishResponse(status.getResponseHeader(), true);
+        } else {
+            readResponse(handler, status.getResponseHeader());
+        }
+        return status;
+    }
+
     public DAVStatus request(String method, String path, Map header, StringBuffer reqBody, DefaultHandler handler, int[] okCodes) throws SVNException {
         DAVStatus status = sendRequest(method, path, initHeader(0, null, header), reqBody, okCodes);
         if (status != null && status.getResponseCode() == 204) {
-            finishResponse(status.getResponseHeader());
+            finishResponse(status.getResponseHeader(), true);
         } else if (status != null) {
             readResponse(handler, status.getResponseHeader());
         }
@@ -213,7 +296,7 @@ class HttpConnection {
     public DAVStatus request(String method, String path, int depth, String label, StringBuffer requestBody, OutputStream result, int[] okCodes) throws SVNException {
         DAVStatus status = sendRequest(method, path, initHeader(depth, label, null), requestBody, okCodes);
         if (status != null && status.getResponseCode() == 204) {
-            finishResponse(status.getResponseHeader());
+            finishResponse(status.getResponseHeader(), true);
         } else if (status != null) {
             readResponse(result, status.getResponseHeader());
         }
@@ -224,7 +307,7 @@ class HttpConnection {
             throws SVNException {
         DAVStatus status = sendRequest(method, path, initHeader(depth, label, null), requestBody, okCodes);
         if (status != null && status.getResponseCode() == 204) {
-            finishResponse(status.getResponseHeader());
+            finishResponse(status.getResponseHeader(), true);
         } else if (status != null) {
             readResponse(handler, status.getResponseHeader());
         }
@@ -247,6 +330,13 @@ class HttpConnection {
 
     private DAVStatus sendRequest(String method, String path, Map header, InputStream requestBody) throws SVNException {
         Map readHeader = new HashMap();
+        if (myStreamedRequest != null) {
+            // body of the previous request was not completed.
+            myStreamedRequest = null;
+            close();
+        }
+        myIsRequestComplete = false;
+        myIsContinued = false;
         if (myCredentialsChallenge != null) {
             myCredentialsChallenge.put("methodname", method);
             myCredentialsChallenge.put("uri", path);
@@ -263,7 +353,7 @@ class HttpConnection {
                 sendHeader(method, path, header, requestBody);
                 SVNDebugLog.flushStream(myOutputStream);
                 readHeader.clear();
-                status = readHeader(readHeader);
+                status = requestBody == STREAMED_BODY ? readContinue(readHeader) : readHeader(readHeader);
             } catch (IOException e) {
                 close();
                 acknowledgeSSLContext(false);
@@ -307,7 +397,7 @@ class HttpConnection {
                     } catch (IOException e) {
                         //
                     }
-                } else if (requestBody != null) {
+                } else if (requestBody != null && requestBody != STREAMED_BODY) {
                     throw new SVNAuthenticationException("Authentication failed");
                 }
             } else if (status != null &&
@@ -399,6 +489,7 @@ class HttpConnection {
 
     private void readResponse(OutputStream result, Map responseHeader) throws SVNException {
         InputStream stream = null;
+        boolean complete = false;
         try {
 			stream = createInputStream(responseHeader, getInputStream());
             byte[] buffer = new byte[32*1024];
@@ -411,16 +502,18 @@ class HttpConnection {
                     result.write(buffer, 0, count);
                 }
             }
+            complete = true;
         } catch (IOException e) {
             throw new SVNException(e);
         } finally {
-            finishResponse(responseHeader);
+            finishResponse(responseHeader, complete);
             SVNDebugLog.flushStream(stream);
         }
     }
 
     private void readResponse(DefaultHandler handler, Map responseHeader) throws SVNException {
         InputStream is = null;
+        boolean complete = false;
         try {
 			is = createInputStream(responseHeader, getInputStream());
             XMLInputStream xmlIs = new XMLInputStream(is);
@@ -440,6 +533,7 @@ class HttpConnection {
                     mySAXParser.parse(xmlIs, handler);
                 }
             }
+            complete = true;
         } catch (SAXException e) {
             if (e instanceof SAXParseException) {
                 return;
@@ -455,7 +549,7 @@ class HttpConnection {
         } catch (IOException e) {
             throw new SVNException(e);
         } finally {
-            finishResponse(responseHeader);
+            finishResponse(responseHeader, complete);
             SVNDebugLog.flushStream(is);
         }
     }
@@ -513,6 +607,11 @@ class HttpConnection {
         }
         sb.append(HttpConnection.CRLF);
         sb.append("Accept-Encoding: gzip");
+        if (header != null && header.containsKey("Accept-Encoding")) {
+            // additional encodings requested by the caller.
+            sb.append(",");
+            sb.append(header.get("Accept-Encoding"));
+        }
         sb.append(HttpConnection.CRLF);
         if (header != null) {
             if (!header.containsKey("Content-Type")) {
@@ -521,6 +620,9 @@ class HttpConnection {
             }
             for (Iterator keys = header.keySet().iterator(); keys.hasNext();) {
                 Object key = keys.next();
+                if ("Accept-Encoding".equals(key)) {
+                    continue;
+                }
                 sb.append(key.toString());
                 sb.append(": ");
                 sb.append(header.get(key).toString());
@@ -529,7 +631,7 @@ class HttpConnection {
         }
         getOutputStream().write(sb.toString().getBytes());
         getOutputStream().write(HttpConnection.CRLF_BYTES);
-        if (requestBody != null) {
+        if (requestBody != null && requestBody != STREAMED_BODY) {
             byte[] buffer = new byte[1024*32];
             while (true) {
                 int read = requestBody.read(buffer);
@@ -557,8 +659,41 @@ class HttpConnection {
         getOutputStream().flush();
     }
 
+    /**
+     * Reads the final response status, interim 1xx responses are skipped,
+     * e.g. "100 Continue" that has arrived after the body was sent anyway.
+     */
     private DAVStatus readHeader(Map headerProperties) throws IOException {
-        return readHeader(headerProperties, false);
+        while (true) {
+            DAVStatus status = readHeader(headerProperties, false);
+            if (!isInterim(status)) {
+                return status;
+            }
+            headerProperties.clear();
+        }
+    }
+
+    private static boolean isInterim(DAVStatus status) {
+        return status != null && status.getResponseCode() >= 100 && status.getResponseCode() < 200 && status.getResponseCode() != 101;
+    }
+
+    private DAVStatus readContinue(Map headerProperties) throws IOException {
+        int timeout = mySocket.getSoTimeout();
+        mySocket.setSoTimeout(CONTINUE_TIMEOUT);
+        try {
+            DAVStatus status = readHeader(headerProperties, false);
+            while (isInterim(status) && status.getResponseCode() != 100) {
+                headerProperties.clear();
+                status = readHeader(headerProperties, false);
+            }
+            myIsContinued = status != null && status.getResponseCode() == 100;
+            return status;
+        } catch (SocketTimeoutException e) {
+            // server does not support expectations, body has to be sent anyway.
+            return new DAVStatus(100, "Continue", "HTTP/1.1");
+        } finally {
+            mySocket.setSoTimeout(timeout);
+        }
     }
     private DAVStatus readHeader(Map headerProperties, boolean firstLineOnly) throws IOException {
         DAVStatus responseCode = null;
@@ -764,7 +899,7 @@ class HttpConnection {
         }
     }
 
-    private void finishResponse(Map readHeader) {
+    private void finishResponse(Map readHeader, boolean complete) {
         if (myOutputStream != null) {
             try {
                 myOutputStream.flush();
@@ -775,6 +910,30 @@ class HttpConnection {
         if ("close".equals(readHeader.get("Connection")) ||
                 "close".equals(readHeader.get("Proxy-Connection"))) {
             close();
+        } else {
+            // otherwise response may be partially read, and connection should not be reused.
+            myIsRequestComplete = complete;
+        }
+    }
+
+    /**
+     * @return <code>true</code> when connection is open and the last
+     *         response was read completely, so that connection may be used
+     *         for the next request
+     */
+    public boolean isReusable() {
+        if (mySocket == null || !myIsRequestComplete) {
+            return false;
+        }
+        try {
+            if ((myInputStream != null && myInputStream.available() > 0) || mySocket.getInputStream().available() > 0) {
+                return false;
+            }
+            return !isStale();
+        } catch (IOException e) {
+            return false;
+        } catch (SVNException e) {
+            return false;
         }
     }
 
@@ -789,4 +948,75 @@ class HttpConnection {
     public SVNAuthentication getLastValidCredentials() {
         return myLastValidAuth;
     }
+
+    private class StreamedRequest extends OutputStream {
+
+        private String myMethod;
+        private String myPath;
+        private Map myHeader;
+        private ByteArrayOutputStream mySpool;
+        private boolean myIsSpoolDropped;
+        private byte[] myBuffer;
+        private int myLength;
+
+        public StreamedRequest(String method, String path, Map header, boolean spool) {
+            myMethod = method;
+            myPath = path;
+            myHeader = header;
+            myBuffer = new byte[32*1024];
+            if (spool) {
+                mySpool = new ByteArrayOutputStream();
+            }
+        }
+
+        public void write(int b) throws IOException {
+            if (myLength == myBuffer.length) {
+                writeChunk();
+            }
+            myBuffer[myLength++] = (byte) b;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (myLength == myBuffer.length) {
+                    writeChunk();
+                }
+                int count = Math.min(len, myBuffer.length - myLength);
+                System.arraycopy(b, off, myBuffer, myLength, count);
+                myLength += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        public void finish() throws IOException {
+            writeChunk();
+            getOutputStream().write('0');
+            getOutputStream().write(HttpConnection.CRLF_BYTES);
+            getOutputStream().write(HttpConnection.CRLF_BYTES);
+            getOutputStream().flush();
+        }
+
+        private void writeChunk() throws IOException {
+            if (myStreamedRequest != this) {
+                throw new IOException("svn: Request body is not being sent");
+            }
+            if (myLength == 0) {
+                return;
+            }
+            if (mySpool != null && mySpool.size() + myLength > MAX_SPOOL_LENGTH) {
+                // keeping whole large body in memory costs more than a failed request.
+                mySpool = null;
+                myIsSpoolDropped = true;
+            }
+            if (mySpool != null) {
+                mySpool.write(myBuffer, 0, myLength);
+            }
+            getOutputStream().write(Integer.toHexString(myLength).getBytes());
+            getOutputStream().write(HttpConnection.CRLF_BYTES);
+            getOutputStream().write(myBuffer, 0, myLength);
+            getOutputStream().write(HttpConnection.CRLF_BYTES);
+            myLength = 0;
+        }
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.dav;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.auth.ISVNProxyManager;
+import org.tmatesoft.svn.core.internal.util.SVNIdleConnectionPool;
+
+/**
+ * Keeps idle keep-alive HTTP connections, so that DAV repositories that are
+ * not in session mode do not have to open TCP connection, negotiate SSL and
+ * authenticate again for every request.
+ *
+ * <p>
+ * Connections are grouped by scheme, host, port, proxy and by the
+ * authentication manager that provides credentials. Connection keeps the
+ * credentials that were accepted by the server last, so a reused connection
+ * sends them with the first request. Idle connections are closed after the
+ * idle timeout and every connection is checked for being stale before it is
+ * handed out again.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+public class HttpConnectionPool extends SVNIdleConnectionPool {
+
+    public HttpConnectionPool() {
+        this(DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    public HttpConnectionPool(long idleTimeout, int maxIdleConnections) {
+        super(idleTimeout, maxIdleConnections);
+    }
+
+    static Object createKey(SVNURL location, ISVNAuthenticationManager authManager) throws SVNException {
+        StringBuffer key = new StringBuffer();
+        key.append(location.getProtocol());
+        key.append("://");
+        if (location.getUserInfo() != null) {
+            key.append(location.getUserInfo());
+            key.append('@');
+        }
+        key.append(location.getHost());
+        key.append(':');
+        key.append(location.getPort());
+        ISVNProxyManager proxy = authManager != null ? authManager.getProxyManager(location) : null;
+        if (proxy != null && proxy.getProxyHost() != null) {
+            key.append(" via ");
+            if (proxy.getProxyUserName() != null) {
+                key.append(proxy.getProxyUserName());
+                key.append('@');
+            }
+            key.append(proxy.getProxyHost());
+            key.append(':');
+            key.append(proxy.getProxyPort());
+        }
+        return createKey(key.toString(), authManager);
+    }
+}
@@ -16,7 +16,7 @@ import java.io.ByteArrayInputStream;
 
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.internal.io.dav.DAVElement;
-import org.tmatesoft.svn.core.internal.util.SVNBase64;
+import org.tmatesoft.svn.core.internal.util.SVNBase64Decoder;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.diff.SVNDiffWindowBuilder;
 import org.xml.sax.SAXException;
@@ -32,75 +32,45 @@ public abstract class BasicDAVDeltaHandler extends BasicDAVHandler {
 
     private boolean myIsDeltaProcessing;
     private SVNDiffWindowBuilder myDiffBuilder;
-    private StringBuffer myDeltaOutputStream;
-    private SequenceIntputStream myPreviousStream;
+    private SVNBase64Decoder myDecoder;
+    private DeltaInputStream myDeltaInputStream;
 
     protected void setDeltaProcessing(boolean processing) throws SVNException {
         myIsDeltaProcessing = processing;
-        myPreviousStream = null;
 
         if (!myIsDeltaProcessing) {
             getEditor().textDeltaEnd(getCurrentPath());
         } else {
             myDiffBuilder.reset();
-            myDeltaOutputStream.delete(0, myDeltaOutputStream.length());
-            myPreviousStream = null;
+            myDecoder.reset();
+            myDeltaInputStream.clear();
         }
     }
     
     protected void init() {
         myDiffBuilder = SVNDiffWindowBuilder.newInstance();
-        myDeltaOutputStream = new StringBuffer();
+        myDecoder = new SVNBase64Decoder();
+        myDeltaInputStream = new DeltaInputStream();
         super.init();
     }
     
-    private int eolCount;
-
     public void characters(char[] ch, int start, int length) throws SAXException {
         if (myIsDeltaProcessing) {
-            int offset = start;
-            
-            for(int i = start; i < start + length; i++) {
-                if (ch[i] == '\r' || ch[i] == '\n') {
-                    eolCount++;
-                    myDeltaOutputStream.append(ch, offset, i - offset);
-                    offset = i + 1;
-                    if (i + 1 < (start + length) && ch[i + 1] == '\n') {
-                        offset++;
-                        i++;
-                    }
-                }
-            }
-            if (offset < start + length) {
-                myDeltaOutputStream.append(ch, offset, start + length - offset);
-            }
-            // decode (those dividable by 4) 
-            int stored = myDeltaOutputStream.length();
-            if (stored < 4) {
+            // decoder keeps incomplete quantum and skips line breaks.
+            if (myDeltaInputStream.append(myDecoder, ch, start, length) == 0) {
                 return;
             }
-            int segmentsCount = stored/4;
-            int remains = stored - (segmentsCount*4);
-            
-            StringBuffer toDecode = new StringBuffer();
-            toDecode.append(myDeltaOutputStream);
-            toDecode.delete(myDeltaOutputStream.length() - remains, myDeltaOutputStream.length());
-            
-            byte[] decoded = SVNBase64.base64ToByteArray(toDecode, null);
-            myPreviousStream = new SequenceIntputStream(decoded, myPreviousStream);
             try {
                 while(true) {
-                    boolean needsMore = myDiffBuilder.accept(myPreviousStream, getEditor(), getCurrentPath());
-                    if (needsMore && myPreviousStream.available() > 0) {
+                    boolean needsMore = myDiffBuilder.accept(myDeltaInputStream, getEditor(), getCurrentPath());
+                    if (needsMore && myDeltaInputStream.available() > 0) {
                         continue;
                     }
                     break;
                 }
-                // delete saved bytes.
             } catch (SVNException e) {
                 throw new SAXException(e);
             }
-            myDeltaOutputStream.delete(0, toDecode.length());
         } else {
             super.characters(ch, start, length);
         }
@@ -110,17 +80,38 @@ public abstract class BasicDAVDeltaHandler extends BasicDAVHandler {
 
     protected abstract ISVNEditor getEditor();
     
-    private static class SequenceIntputStream extends ByteArrayInputStream {
-        SequenceIntputStream(byte[] bytes, SequenceIntputStream previous) {
-            super(bytes);
-            if (previous != null && previous.available() > 0) {
-                byte[] realBytes = new byte[bytes.length + previous.available()];
-                System.arraycopy(previous.buf, previous.pos, realBytes, 0, previous.available());
-                System.arraycopy(bytes, 0, realBytes, previous.available(), bytes.length);
-                buf = realBytes;
-                count = buf.length;
-                pos = 0;
+    /**
+     * Decoded delta bytes, bytes not read by diff builder yet are kept and
+     * newly decoded bytes are appended after them in the same buffer.
+     */
+    private static class DeltaInputStream extends ByteArrayInputStream {
+        
+        DeltaInputStream() {
+            super(new byte[1024]);
+            clear();
+        }
+        
+        public int append(SVNBase64Decoder decoder, char[] chars, int offset, int length) {
+            int unread = count - pos;
+            int required = unread + SVNBase64Decoder.getMaxDecodedLength(length);
+            if (required > buf.length) {
+                byte[] newBuffer = new byte[Math.max(required, buf.length*2)];
+                System.arraycopy(buf, pos, newBuffer, 0, unread);
+                buf = newBuffer;
+            } else if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, unread);
             }
+            mark = 0;
+            pos = 0;
+            int decoded = decoder.decode(chars, offset, length, buf, unread);
+            count = unread + decoded;
+            return decoded;
+        }
+        
+        public void clear() {
+            pos = 0;
+            count = 0;
+            mark = 0;
         }
     }
 }
@@ -13,6 +13,7 @@
 package org.tmatesoft.svn.core.internal.io.dav.handlers;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Stack;
 
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNProperty;
@@ -20,6 +21,7 @@ import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.internal.io.dav.DAVBaselineInfo;
 import org.tmatesoft.svn.core.internal.io.dav.DAVConnection;
 import org.tmatesoft.svn.core.internal.io.dav.DAVElement;
+import org.tmatesoft.svn.core.internal.io.dav.DAVFetchScheduler;
 import org.tmatesoft.svn.core.internal.io.dav.DAVUtil;
 import org.tmatesoft.svn.core.internal.util.SVNBase64;
 import org.tmatesoft.svn.core.internal.util.SVNEncodingUtil;
@@ -155,6 +157,7 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
     private static final String COPYFROM_REV_ATTR = "copyfrom-rev";
     private static final String COPYFROM_PATH_ATTR = "copyfrom-path";
     private static final String SEND_ALL_ATTR = "send-all";
+    private static final String BASE_CHECKSUM_ATTR = "base-checksum";
 
     private ISVNEditor myEditor;
     private String myPath;
@@ -163,18 +166,47 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
     private String myEncoding;
     private boolean myIsFetchContent;
     private boolean myIsDirectory;
+    private DAVFetchScheduler myFetchScheduler;
+    private boolean myIsSendAll;
+    private Stack myVersionURLs;
 
     public DAVEditorHandler(ISVNEditor editor, boolean fetchContent) {
+        this(editor, fetchContent, null);
+	}
+
+    /**
+     * When <code>fetchScheduler</code> is not <code>null</code> update report
+     * without file contents and properties is also accepted, contents and
+     * properties are fetched then with separate requests.
+     */
+    public DAVEditorHandler(ISVNEditor editor, boolean fetchContent, DAVFetchScheduler fetchScheduler) {
         myIsFetchContent = fetchContent; 
         myEditor = editor;
-		init();
-	}
+        myFetchScheduler = fetchScheduler;
+        myIsSendAll = true;
+        myVersionURLs = new Stack();
+        init();
+    }
+
+    /**
+     * Stops fetching contents and properties reported by the server, should
+     * be called when report processing is over.
+     */
+    public void dispose() {
+        if (myFetchScheduler != null) {
+            myFetchScheduler.dispose();
+        }
+    }
 	
 	protected void startElement(DAVElement parent, DAVElement element, Attributes attrs) throws SVNException {
         if (element == UPDATE_REPORT) {
             String receiveAll = attrs.getValue(SEND_ALL_ATTR);
             if (receiveAll == null || !Boolean.valueOf(receiveAll).booleanValue()) {
-                throw new SVNException("update-report format used by server is not supported");
+                if (myFetchScheduler == null) {
+                    throw new SVNException("update-report format used by server is not supported");
+                }
+                myIsSendAll = false;
+                myEditor = myFetchScheduler;
             }
         } else if (element == TARGET_REVISION) {
             long revision = Long.parseLong(attrs.getValue(REVISION_ATTR));
@@ -188,6 +220,7 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
         } else if (element == OPEN_DIRECTORY) {            
             long revision = Long.parseLong(attrs.getValue(REVISION_ATTR));
             myIsDirectory = true;
+            myVersionURLs.push(null);
             if (myPath == null) {
                 myPath = "";
                 myEditor.openRoot(revision);
@@ -198,6 +231,7 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
             }
         } else if (element == ADD_DIRECTORY) {
             myIsDirectory = true;
+            myVersionURLs.push(null);
             String name = attrs.getValue(NAME_ATTR);
             String copyFromPath = attrs.getValue(COPYFROM_PATH_ATTR);
             long copyFromRev = -1;
@@ -208,12 +242,14 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
             myEditor.addDir(myPath, copyFromPath, copyFromRev);
         } else if (element == OPEN_FILE) {
             myIsDirectory = false;
+            myVersionURLs.push(null);
             long revision = Long.parseLong(attrs.getValue(REVISION_ATTR));
             String name = attrs.getValue(NAME_ATTR);
             myPath = SVNPathUtil.append(myPath, name);
             myEditor.openFile(myPath, revision);
         } else if (element == ADD_FILE) {
             myIsDirectory = false;
+            myVersionURLs.push(null);
             String name = attrs.getValue(NAME_ATTR);
             myPath = SVNPathUtil.append(myPath, name);
             String copyFromPath = attrs.getValue(COPYFROM_PATH_ATTR);
@@ -235,6 +271,15 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
             } else {
                 myEditor.changeFileProperty(myPath, name, null);
             }            
+        } else if ((element == FETCH_FILE || element == FETCH_PROPS) && !myIsSendAll) {
+            String versionURL = (String) myVersionURLs.peek();
+            if (element == FETCH_PROPS) {
+                myFetchScheduler.fetchProperties(myPath, versionURL, myIsDirectory);
+            } else if (myIsFetchContent) {
+                myFetchScheduler.fetchFile(myPath, versionURL, attrs.getValue(BASE_CHECKSUM_ATTR));
+            } else {
+                myEditor.applyTextDelta(myPath, attrs.getValue(BASE_CHECKSUM_ATTR));
+            }
         } else if (element == RESOURCE || element == FETCH_FILE || element == FETCH_PROPS) {
             throw new SVNException(element + " element is not supported in update-report");
         } else if (element == TX_DELTA) {
@@ -254,10 +299,14 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
             }
             myChecksum = null;
             myPath = SVNPathUtil.removeTail(myPath);
+            myVersionURLs.pop();
         } else if (element == OPEN_FILE || element == ADD_FILE) {
             myEditor.closeFile(myPath, myChecksum);
             myChecksum = null;
             myPath = SVNPathUtil.removeTail(myPath);
+            myVersionURLs.pop();
+            // back in the parent directory.
+            myIsDirectory = true;
         } else if (element == DAVElement.MD5_CHECKSUM) {        
             myChecksum = cdata.toString();
         } else if (element == DAVElement.CREATOR_DISPLAY_NAME || 
@@ -269,6 +318,9 @@ public class DAVEditorHandler extends BasicDAVDeltaHandler {
                 myPropertyName = computeWCPropertyName(element);
             }
             String value = cdata.toString();
+            if (element == DAVElement.HREF && !myVersionURLs.isEmpty()) {
+                myVersionURLs.set(myVersionURLs.size() - 1, value);
+            }
             if ("base64".equals(myEncoding)) {
                 try {
                     value = new String(SVNBase64.base64ToByteArray(new StringBuffer(cdata.toString().trim()), null), "UTF-8");
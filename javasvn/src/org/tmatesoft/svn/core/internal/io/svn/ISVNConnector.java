@@ -25,6 +25,8 @@ public interface ISVNConnector {
 
     public void close() throws SVNException;
 
+    public boolean isStale();
+
     public OutputStream getOutputStream() throws IOException;
 
     public InputStream getInputStream() throws IOException;
@@ -1,7 +1,7 @@
 /*
  * ====================================================================
  * Copyright (c) 2004 TMate Software Ltd. All rights reserved.
- * 
+ *
  * This software is licensed as described in the file COPYING, which you should
  * have received as part of this distribution. The terms are also available at
  * http://tmate.org/svn/license.html. If newer versions of this license are
@@ -13,22 +13,38 @@ package org.tmatesoft.svn.core.internal.io.svn;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
+import java.io.OutputStream;
 
 /**
+ * Buffered input stream that supports mark and reset. Data is read from the
+ * source into one buffer that is reused, mark is a position in that buffer,
+ * so marking the stream before every token costs nothing. Strings could be
+ * written to the output directly from the buffer with
+ * {@link #writeTo(OutputStream, int)}.
+ *
  * @version 1.0
  * @author TMate Software Ltd.
  */
 class RollbackInputStream extends InputStream {
 
-    private PushbackInputStream mySource;
+    private static final int BUFFER_SIZE = 16*1024;
+
+    private InputStream mySource;
 
     private byte[] myBuffer;
 
+    private int myPosition;
+
     private int myLength;
 
+    private int myMark;
+
+    private int myMarkLimit;
+
     public RollbackInputStream(InputStream source) {
-        mySource = new PushbackInputStream(source, 0x100);
+        mySource = source;
+        myBuffer = new byte[BUFFER_SIZE];
+        myMark = -1;
     }
 
     public boolean markSupported() {
@@ -36,31 +52,101 @@ class RollbackInputStream extends InputStream {
     }
 
     public int read() throws IOException {
-        int read = mySource.read();
-        if (myBuffer != null && myLength < myBuffer.length && myLength >= 0) {
-            myBuffer[myLength] = (byte) read;
-            myLength++;
-        } else {
-            myLength = -1;
-            myBuffer = null;
+        if (myPosition >= myLength && !fill()) {
+            return -1;
+        }
+        return myBuffer[myPosition++] & 0xFF;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (myPosition >= myLength) {
+            if (myMark < 0 && len >= myBuffer.length) {
+                // nothing to keep, read directly.
+                return mySource.read(b, off, len);
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int count = Math.min(len, myLength - myPosition);
+        System.arraycopy(myBuffer, myPosition, b, off, count);
+        myPosition += count;
+        return count;
+    }
+
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (n > 0) {
+            if (myPosition >= myLength && !fill()) {
+                break;
+            }
+            int count = (int) Math.min(n, myLength - myPosition);
+            myPosition += count;
+            skipped += count;
+            n -= count;
         }
-        return read;
+        return skipped;
+    }
+
+    /**
+     * Writes at most <code>length</code> bytes to <code>os</code> directly
+     * from the buffer, reads more data only when buffer is empty.
+     *
+     * @return number of bytes written or -1 if there is no more data
+     */
+    public int writeTo(OutputStream os, int length) throws IOException {
+        if (myPosition >= myLength && !fill()) {
+            return -1;
+        }
+        int count = Math.min(length, myLength - myPosition);
+        os.write(myBuffer, myPosition, count);
+        myPosition += count;
+        return count;
+    }
+
+    public int available() throws IOException {
+        return myLength - myPosition + mySource.available();
     }
 
     public synchronized void mark(int readlimit) {
-        myBuffer = new byte[readlimit];
-        myLength = 0;
+        myMark = myPosition;
+        myMarkLimit = readlimit;
     }
 
     public synchronized void reset() throws IOException {
-        if (myLength < 0) {
-            throw new IOException("maximum read limit exceeded");
+        if (myMark < 0) {
+            throw new IOException("mark was not set or maximum read limit exceeded");
         }
-        if (myBuffer == null) {
-            throw new IOException("mark was not set, buffer is null");
+        myPosition = myMark;
+    }
+
+    private boolean fill() throws IOException {
+        if (myMark >= 0 && myPosition - myMark >= myMarkLimit) {
+            myMark = -1;
+        }
+        // keep marked bytes, drop everything else that was read.
+        int start = myMark >= 0 ? myMark : myPosition;
+        if (start > 0) {
+            System.arraycopy(myBuffer, start, myBuffer, 0, myLength - start);
+            myLength -= start;
+            myPosition -= start;
+            if (myMark >= 0) {
+                myMark -= start;
+            }
+        }
+        if (myLength == myBuffer.length) {
+            byte[] buffer = new byte[myBuffer.length * 2];
+            System.arraycopy(myBuffer, 0, buffer, 0, myLength);
+            myBuffer = buffer;
         }
-        mySource.unread(myBuffer, 0, myLength);
-        myBuffer = null;
-        myLength = 0;
+        int read = mySource.read(myBuffer, myLength, myBuffer.length - myLength);
+        if (read <= 0) {
+            return false;
+        }
+        myLength += read;
+        return true;
     }
-}
\ No newline at end of file
+}
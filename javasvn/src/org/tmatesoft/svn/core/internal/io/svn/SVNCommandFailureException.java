@@ -0,0 +1,28 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd. All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which you should
+ * have received as part of this distribution. The terms are also available at
+ * http://tmate.org/svn/license.html. If newer versions of this license are
+ * posted there, you may use a newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.io.svn;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Error reported by the server in a 'failure' command response that was
+ * read completely, so the connection is still in sync with the server.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+class SVNCommandFailureException extends SVNException {
+
+    public SVNCommandFailureException(String message) {
+        super(message);
+    }
+}
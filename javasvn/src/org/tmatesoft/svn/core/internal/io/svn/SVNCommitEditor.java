@@ -13,9 +13,10 @@ package org.tmatesoft.svn.core.internal.io.svn;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNException;
@@ -42,6 +43,8 @@ class SVNCommitEditor implements ISVNEditor {
 
     private Runnable myCloseCallback;
 
+    private Set myDeltaPaths;
+
     public SVNCommitEditor(SVNRepositoryImpl location,
             SVNConnection connection, ISVNWorkspaceMediator mediator,
             Runnable closeCallback) {
@@ -49,6 +52,9 @@ class SVNCommitEditor implements ISVNEditor {
         myConnection = connection;
         myMediator = mediator;
         myCloseCallback = closeCallback;
+        myDeltaPaths = new HashSet();
+        // editor commands are not answered, they are sent in batches.
+        myConnection.setBatchWrites(true);
     }
 
     /* do nothing */
@@ -132,34 +138,31 @@ class SVNCommitEditor implements ISVNEditor {
 
     public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow)
             throws SVNException {
-        myConnection.write("(w(s", new Object[] { "textdelta-chunk", path });
+        if (myConnection.hasCapability(SVNConnection.SVNDIFF1)) {
+            // compressed window could only be written with all its new data.
+            CompressedWindowStream windowStream = new CompressedWindowStream(path, diffWindow, myDeltaPaths.add(path));
+            if (diffWindow.getNewDataLength() == 0) {
+                try {
+                    windowStream.close();
+                } catch (IOException e) {
+                    throw new SVNException(e);
+                }
+            }
+            return windowStream;
+        }
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
-            SVNDiffWindowBuilder.save(diffWindow, bos);
-            myConnection.write("b))", new Object[] { bos.toByteArray() });
-            return myMediator.createTemporaryLocation(path, path);
+            // svndiff header is sent only before the first window of the file.
+            SVNDiffWindowBuilder.save(diffWindow, myDeltaPaths.add(path), bos);
         } catch (IOException e) {
             throw new SVNException(e);
         }
+        myConnection.write("(w(sb))", new Object[] { "textdelta-chunk", path, bos.toByteArray() });
+        return new DeltaChunkStream(path);
     }
 
     public void textDeltaEnd(String path) throws SVNException {
-        InputStream is;
-        try {
-            long length = myMediator.getLength(path);
-            if (myMediator.getLength(path) > 0) {
-                is = myMediator.getTemporaryLocation(path);
-                // create
-                SVNDataSource source = new SVNDataSource(is, length);
-                myConnection.write("(w(si))", new Object[] { "textdelta-chunk",
-                        path, source });
-                is.close();
-            }
-        } catch (IOException e) {
-            throw new SVNException();
-        } finally {
-            myMediator.deleteTemporaryLocation(path);
-        }
+        myDeltaPaths.remove(path);
         myConnection.write("(w(s))", new Object[] { "textdelta-end", path });
     }
 
@@ -175,6 +178,7 @@ class SVNCommitEditor implements ISVNEditor {
     }
 
     public SVNCommitInfo closeEdit() throws SVNException {
+        myConnection.setBatchWrites(false);
         myConnection.write("(w())", new Object[] { "close-edit" });
 
         myConnection.read("[()]", null);
@@ -183,12 +187,14 @@ class SVNCommitEditor implements ISVNEditor {
         Object[] items = myConnection.read("(N(?S)(?S))", new Object[3]);
         long revision = SVNReader.getLong(items, 0);
         Date date = SVNReader.getDate(items, 1);
+        myRepository.responseCompleted();
 
         myCloseCallback.run();
         return new SVNCommitInfo(revision, (String) items[2], date);
     }
 
     public void abortEdit() throws SVNException {
+        myConnection.setBatchWrites(false);
         myConnection.write("(w())", new Object[] { "abort-edit" });
         myCloseCallback.run();
     }
@@ -200,4 +206,93 @@ class SVNCommitEditor implements ISVNEditor {
     private static Long getRevisionObject(long rev) {
         return rev >= 0 ? new Long(rev) : null;
     }
+
+    /**
+     * Sends new data of a diff window to the server as it is written, in
+     * textdelta-chunk commands of at most CHUNK_SIZE bytes.
+     */
+    private class DeltaChunkStream extends OutputStream {
+
+        private static final int CHUNK_SIZE = 16*1024;
+
+        private String myPath;
+        private byte[] myBuffer;
+        private int myLength;
+
+        public DeltaChunkStream(String path) {
+            myPath = path;
+            myBuffer = new byte[CHUNK_SIZE];
+        }
+
+        public void write(int b) throws IOException {
+            if (myLength == myBuffer.length) {
+                flush();
+            }
+            myBuffer[myLength++] = (byte) (b & 0xFF);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (myLength == myBuffer.length) {
+                    flush();
+                }
+                int count = Math.min(len, myBuffer.length - myLength);
+                System.arraycopy(b, off, myBuffer, myLength, count);
+                myLength += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        public void flush() throws IOException {
+            if (myLength == 0) {
+                return;
+            }
+            byte[] chunk = new byte[myLength];
+            System.arraycopy(myBuffer, 0, chunk, 0, myLength);
+            myLength = 0;
+            try {
+                myConnection.write("(w(sb))", new Object[] { "textdelta-chunk", myPath, chunk });
+            } catch (SVNException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Collects new data of a diff window and sends the window in svndiff1
+     * format when the stream is closed.
+     */
+    private class CompressedWindowStream extends ByteArrayOutputStream {
+
+        private String myPath;
+        private SVNDiffWindow myWindow;
+        private boolean myIsFirst;
+        private boolean myIsSent;
+
+        public CompressedWindowStream(String path, SVNDiffWindow window, boolean first) {
+            super((int) window.getNewDataLength());
+            myPath = path;
+            myWindow = window;
+            myIsFirst = first;
+        }
+
+        public void close() throws IOException {
+            if (myIsSent) {
+                return;
+            }
+            myIsSent = true;
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            SVNDiffWindowBuilder.saveCompressed(myWindow, myIsFirst, toByteArray(), bos);
+            try {
+                myConnection.write("(w(sb))", new Object[] { "textdelta-chunk", myPath, bos.toByteArray() });
+            } catch (SVNException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+    }
 }
@@ -11,7 +11,7 @@
 
 package org.tmatesoft.svn.core.internal.io.svn;
 
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -22,19 +22,24 @@ import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
 import org.tmatesoft.svn.core.auth.SVNPasswordAuthentication;
+import org.tmatesoft.svn.core.internal.util.ISVNPooledConnection;
 import org.tmatesoft.svn.util.SVNDebugLog;
 
 /**
  * @version 1.0
  * @author TMate Software Ltd.
  */
-class SVNConnection {
+class SVNConnection implements ISVNPooledConnection {
 
     private final ISVNConnector myConnector;
     private ISVNAuthenticationManager myAuthManager;
     private SVNURL myLocation;
     private String myRealm;
     private String myRoot;
+    private String myUUID;
+    private List myCapabilities;
+    private boolean myIsReusable;
+    private boolean myIsBatchWrites;
     private OutputStream myOutputStream;
     private InputStream myInputStream;
 
@@ -42,6 +47,9 @@ class SVNConnection {
     private static final String FAILURE = "failure";
     private static final String STEP = "step";
     private static final String EDIT_PIPELINE = "edit-pipeline";
+    public static final String SVNDIFF1 = "svndiff1";
+
+    private static final int WRITE_BUFFER_SIZE = 32*1024;
 
     public SVNConnection(ISVNConnector connector,
             SVNURL location, ISVNAuthenticationManager manager) {
@@ -66,10 +74,19 @@ class SVNConnection {
                 || !SVNReader.hasValue(items, 2, EDIT_PIPELINE)) {
             throw new SVNException("unsupported version or capability");
         }
-        write("(n(w)s)", new Object[] { "2", EDIT_PIPELINE,
+        myCapabilities = SVNReader.getList(items, 2);
+        write("(n(ww)s)", new Object[] { "2", EDIT_PIPELINE, SVNDIFF1,
                 repository.getLocation().toString() });
     }
 
+    /**
+     * Returns <code>true</code> if server announced <code>capability</code>
+     * in the handshake.
+     */
+    public boolean hasCapability(String capability) {
+        return myCapabilities != null && myCapabilities.contains(capability);
+    }
+
     private boolean myIsCredentialsReceived = false;
     private InputStream myLoggingInputStream;
 
@@ -132,6 +149,8 @@ class SVNConnection {
                                     if (myRealm == null) {
                                         myRealm = (String) creds[0];
                                     }
+                                    myUUID = (String) creds[0];
+                                    myRoot = (String) creds[1];
                                 }
                                 myIsCredentialsReceived = true;
                             }
@@ -175,6 +194,9 @@ class SVNConnection {
                 if (myRoot == null) {
                     myRoot = (String) creds[1];
                 }
+                if (myUUID == null) {
+                    myUUID = (String) creds[0];
+                }
                 myIsCredentialsReceived = true;
             }
             return null;
@@ -184,40 +206,119 @@ class SVNConnection {
         return "unexpected server responce";
     }
 
+    /**
+     * Returns repository UUID and root URL received during authentication,
+     * or <code>null</code> when server didn't send them.
+     */
+    public String getUUID() {
+        return myUUID;
+    }
+
+    public String getRoot() {
+        return myRoot;
+    }
+
+    /**
+     * Connection is reusable when the last thing done with it was complete
+     * reading of a command response, that is connection is in sync with the
+     * server and may be used to send next command. Any read or write makes
+     * connection not reusable, the caller that have read the whole response
+     * marks it reusable again with {@link #setReusable(boolean)}. Server
+     * failure response is always read completely. Stale connection is never
+     * reusable.
+     */
+    public boolean isReusable() {
+        return myIsReusable && !isStale();
+    }
+
+    public void setReusable(boolean reusable) {
+        myIsReusable = reusable;
+    }
+
+    public boolean isStale() {
+        if (myInputStream != null) {
+            // server terminates every item with a space, skip it before
+            // checking for unexpected data.
+            try {
+                while (myInputStream.available() > 0) {
+                    myInputStream.mark(1);
+                    if (!Character.isWhitespace((char) myInputStream.read())) {
+                        myInputStream.reset();
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                return true;
+            }
+        }
+        return myConnector.isStale();
+    }
+
     public void close() throws SVNException {
+        myIsReusable = false;
+        myIsBatchWrites = false;
         myInputStream = null;
         myLoggingInputStream = null;
         myOutputStream = null;
         myConnector.close();
     }
 
+    /**
+     * In batch mode commands that are written are not sent to the server
+     * one by one, but when write buffer is full or before anything is read
+     * from the connection. Server processes editor and report commands
+     * without responding to each of them (edit-pipeline capability), so
+     * they could be written in batch mode.
+     */
+    public void setBatchWrites(boolean batch) {
+        myIsBatchWrites = batch;
+    }
+
     public Object[] read(String template, Object[] items) throws SVNException {
+        myIsReusable = false;
+        flush();
         try {
             return SVNReader.parse(getInputStream(), template, items);
+        } catch (SVNCommandFailureException e) {
+            myIsReusable = true;
+            throw e;
         } finally {
             SVNDebugLog.flushStream(myLoggingInputStream);
         }
     }
 
     public void write(String template, Object[] items) throws SVNException {
+        myIsReusable = false;
         try {
             SVNWriter.write(getOutputStream(), template, items);
         } finally {
+            if (!myIsBatchWrites) {
+                try {
+                    getOutputStream().flush();
+                } catch (IOException e) {
+                    //
+                } catch (SVNException e) {
+                    //
+                }
+            }
+            SVNDebugLog.flushStream(getOutputStream());
+        }
+    }
+
+    private void flush() throws SVNException {
+        if (myOutputStream != null) {
             try {
-                getOutputStream().flush();
+                myOutputStream.flush();
             } catch (IOException e) {
-                //
-            } catch (SVNException e) {
-                //
+                throw new SVNException(e);
             }
-            SVNDebugLog.flushStream(getOutputStream());
         }
     }
 
     public OutputStream getOutputStream() throws SVNException {
         if (myOutputStream == null) {
             try {
-                myOutputStream = SVNDebugLog.createLogStream(myConnector.getOutputStream());
+                myOutputStream = SVNDebugLog.createLogStream(new BufferedOutputStream(myConnector.getOutputStream(), WRITE_BUFFER_SIZE));
             } catch (IOException ex) {
                 throw new SVNException(ex);
             }
@@ -228,7 +329,7 @@ class SVNConnection {
     public InputStream getInputStream() throws SVNException {
         if (myInputStream == null) {
             try {
-                myInputStream = SVNDebugLog.createLogStream(new BufferedInputStream(myConnector.getInputStream()));
+                myInputStream = SVNDebugLog.createLogStream(myConnector.getInputStream());
                 myLoggingInputStream = myInputStream;
                 myInputStream = new RollbackInputStream(myInputStream);
             } catch (IOException ex) {
@@ -0,0 +1,56 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd. All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which you should
+ * have received as part of this distribution. The terms are also available at
+ * http://tmate.org/svn/license.html. If newer versions of this license are
+ * posted there, you may use a newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.io.svn;
+
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.internal.util.SVNIdleConnectionPool;
+
+/**
+ * Keeps opened and already authenticated svn:// connections, so that
+ * repository objects that are not in session mode do not have to connect,
+ * handshake and authenticate for every request.
+ *
+ * <p>
+ * Connections are grouped by repository location (protocol, user info, host,
+ * port and path, the path is part of the svn:// handshake) and by the
+ * authentication manager used to authenticate them. Idle connections are
+ * closed after the idle timeout and every connection is checked for being
+ * stale before it is handed out again.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+public class SVNConnectionPool extends SVNIdleConnectionPool {
+
+    public SVNConnectionPool() {
+        this(DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    public SVNConnectionPool(long idleTimeout, int maxIdleConnections) {
+        super(idleTimeout, maxIdleConnections);
+    }
+
+    public static Object createKey(SVNURL location, ISVNAuthenticationManager authManager) {
+        StringBuffer key = new StringBuffer();
+        key.append(location.getProtocol());
+        key.append("://");
+        if (location.getUserInfo() != null) {
+            key.append(location.getUserInfo());
+            key.append('@');
+        }
+        key.append(location.getHost());
+        key.append(':');
+        key.append(location.getPort());
+        key.append(location.getPath());
+        return createKey(key.toString(), authManager);
+    }
+}
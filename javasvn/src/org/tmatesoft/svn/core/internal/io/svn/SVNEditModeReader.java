@@ -33,19 +33,19 @@ public class SVNEditModeReader {
 
     static {
         COMMANDS_MAP.put("target-rev", "(N)");
-        COMMANDS_MAP.put("open-root", "((?N)S)");
-        COMMANDS_MAP.put("delete-entry", "(S(?N)S)");
-        COMMANDS_MAP.put("add-dir", "(SSS(?S?N))");
-        COMMANDS_MAP.put("open-dir", "(SSS(?N))");
-        COMMANDS_MAP.put("change-dir-prop", "(SS(?S))");
-        COMMANDS_MAP.put("close-dir", "(S)");
-        COMMANDS_MAP.put("add-file", "(SSS(?S?N))");
-        COMMANDS_MAP.put("open-file", "(SSS(?N))");
-        COMMANDS_MAP.put("apply-textdelta", "(S(?S))");
-        COMMANDS_MAP.put("textdelta-chunk", "(SS)");
-        COMMANDS_MAP.put("textdelta-end", "(S)");
-        COMMANDS_MAP.put("change-file-prop", "(SS(?S))");
-        COMMANDS_MAP.put("close-file", "(S(?S))");
+        COMMANDS_MAP.put("open-root", "((?N)s)");
+        COMMANDS_MAP.put("delete-entry", "(S(?N)s)");
+        COMMANDS_MAP.put("add-dir", "(Sss(?S?N))");
+        COMMANDS_MAP.put("open-dir", "(Sss(?N))");
+        COMMANDS_MAP.put("change-dir-prop", "(sS(?S))");
+        COMMANDS_MAP.put("close-dir", "(s)");
+        COMMANDS_MAP.put("add-file", "(Sss(?S?N))");
+        COMMANDS_MAP.put("open-file", "(Sss(?N))");
+        COMMANDS_MAP.put("apply-textdelta", "(s(?S))");
+        COMMANDS_MAP.put("textdelta-chunk", "(sS)");
+        COMMANDS_MAP.put("textdelta-end", "(s)");
+        COMMANDS_MAP.put("change-file-prop", "(sS(?S))");
+        COMMANDS_MAP.put("close-file", "(s(?S))");
         COMMANDS_MAP.put("close-edit", "()");
         COMMANDS_MAP.put("abort-edit", "()");
     }
@@ -74,32 +74,29 @@ public class SVNEditModeReader {
             if (myBuilder.getDiffWindow() == null) {
                 Object[] items = null;
                 try {
-                    items = SVNReader.parse(parameters, "(SB))", null);
+                    items = SVNReader.parse(parameters, "(sB))", null);
                 } catch (Throwable th) {
                     SVNErrorManager.error("svn: Cannot read edit command: " + th.getMessage());
                 } 
-                byte[] bytes = (byte[]) items[1];
+                byte[] bytes = (byte[]) items[0];
                 myBuilder.accept(bytes, 0);
                 if (myBuilder.getDiffWindow() != null) {
-                    myLenght = myBuilder.getDiffWindow().getNewDataLength();
+                    myLenght = myBuilder.getNewDataSectionLength();
                     myDiffStream = myEditor.textDeltaChunk(myFilePath, myBuilder.getDiffWindow());
                     if (myDiffStream == null) {
                         myDiffStream = SVNFileUtil.DUMMY_OUT;
                     }
+                    myDiffStream = myBuilder.createNewDataStream(myDiffStream);
                     if (myLenght == 0) {
                         closeDiffStream();
                     }
                 }
             } else if (myDiffStream != null) {
                 if (myLenght > 0) {
-                    byte[] line;
-                    line = (byte[]) SVNReader.parse(parameters, "(sB))", null)[0];
-                    myLenght -= line.length;
-                    try {
-                        myDiffStream.write(line);
-                    } catch (IOException e) {
-                        throw new SVNException(e);
-                    }
+                    // new data goes to the window stream as it is read.
+                    SVNReader.parse(parameters, "(s", null);
+                    myLenght -= SVNReader.readData(parameters, myDiffStream);
+                    SVNReader.parse(parameters, "))", null);
                 }
                 if (myLenght == 0) {
                     closeDiffStream();
@@ -119,31 +116,31 @@ public class SVNEditModeReader {
             myEditor
                     .deleteEntry((String) items[0], SVNReader.getLong(items, 1));
         } else if ("add-dir".equals(commandName)) {
-            myEditor.addDir((String) items[0], (String) items[3], SVNReader
-                    .getLong(items, 4));
+            myEditor.addDir((String) items[0], (String) items[1], SVNReader
+                    .getLong(items, 2));
         } else if ("open-dir".equals(commandName)) {
-            myEditor.openDir((String) items[0], SVNReader.getLong(items, 3));
+            myEditor.openDir((String) items[0], SVNReader.getLong(items, 1));
         } else if ("change-dir-prop".equals(commandName)) {
-            myEditor.changeDirProperty((String) items[1], (String) items[2]);
+            myEditor.changeDirProperty((String) items[0], (String) items[1]);
         } else if ("close-dir".equals(commandName)) {
             myEditor.closeDir();
         } else if ("add-file".equals(commandName)) {
-            myEditor.addFile((String) items[0], (String) items[3], SVNReader
-                    .getLong(items, 4));
+            myEditor.addFile((String) items[0], (String) items[1], SVNReader
+                    .getLong(items, 2));
             myFilePath = (String) items[0];
         } else if ("open-file".equals(commandName)) {
-            myEditor.openFile((String) items[0], SVNReader.getLong(items, 3));
+            myEditor.openFile((String) items[0], SVNReader.getLong(items, 1));
             myFilePath = (String) items[0];
         } else if ("change-file-prop".equals(commandName)) {
-            myEditor.changeFileProperty(myFilePath, (String) items[1],
-                    (String) items[2]);
+            myEditor.changeFileProperty(myFilePath, (String) items[0],
+                    (String) items[1]);
         } else if ("close-file".equals(commandName)) {
-            myEditor.closeFile(myFilePath, (String) items[1]);
+            myEditor.closeFile(myFilePath, (String) items[0]);
         } else if ("apply-textdelta".equals(commandName)) {
             myBuilder.reset();
             myLenght = 0;
             myDiffStream = null;
-            myEditor.applyTextDelta(myFilePath, (String) items[1]);
+            myEditor.applyTextDelta(myFilePath, (String) items[0]);
         } else if ("textdelta-end".equals(commandName)) {
             myEditor.textDeltaEnd(myFilePath);
         } else if ("close-edit".equals(commandName)) {
@@ -137,6 +137,17 @@ public class SVNJSchConnector implements ISVNConnector {
         myInputStream = null;
     }
 
+    public boolean isStale() {
+        if (myChannel == null || myChannel.isEOF() || !myChannel.isConnected()) {
+            return true;
+        }
+        try {
+            return myInputStream == null || myInputStream.available() > 0;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
     public InputStream getInputStream() throws IOException {
         return myInputStream;
     }
@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNURL;
@@ -51,6 +52,31 @@ public class SVNPlainConnector implements ISVNConnector {
         }
     }
 
+    public boolean isStale() {
+        if (mySocket == null || mySocket.isClosed() || !mySocket.isConnected()) {
+            return true;
+        }
+        try {
+            InputStream is = mySocket.getInputStream();
+            if (is.available() > 0) {
+                return true;
+            }
+            int timeout = mySocket.getSoTimeout();
+            try {
+                mySocket.setSoTimeout(1);
+                // idle connection should have nothing to read, eof or any data means it is not usable.
+                is.read();
+                return true;
+            } catch (SocketTimeoutException e) {
+                return false;
+            } finally {
+                mySocket.setSoTimeout(timeout);
+            }
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
     public InputStream getInputStream() throws IOException {
         if (myInputStream == null) {
             myInputStream = mySocket.getInputStream();
@@ -157,6 +157,8 @@ class SVNReader {
      * '?' - 0..1 tokens '*' - 0..* tokens cardinality only applicable for
      * tokens, not for groups.
      * 
+     * Optional items are matched against the kind of the next token, which is
+     * looked ahead without being consumed.
      */
 
     public static Object[] parse(InputStream is, String templateStr, Object[] target) throws SVNException {
@@ -175,207 +177,244 @@ class SVNReader {
                 target[i] = null;
             }
         }
-        StringBuffer template = normalizeTemplate(templateStr);
+        SVNTemplate template = SVNTemplate.getTemplate(templateStr);
         SVNEditModeReader editorBaton = null;
         int targetIndex = 0;
-        boolean unconditionalThrow = false;
-        for (int i = 0; i < template.length(); i++) {
-            char ch = template.charAt(i);
-            boolean optional = ch == '?' || ch == '*';
-            boolean multiple = ch == '*';
-            boolean doRead = Character.isUpperCase(ch)
-                    && !isListed(INVALID_CARDINALITY_SUBJECTS, ch);
-            ch = Character.toLowerCase(ch);
-            if (optional) {
-                // cardinality
-                char next = i + 1 < template.length() ? template.charAt(i + 1)
-                        : '<';
-                doRead = Character.isUpperCase(next)
-                        && !isListed(INVALID_CARDINALITY_SUBJECTS, next);
-                next = Character.toLowerCase(next);
-                if (isListed(INVALID_CARDINALITY_SUBJECTS, next)) {
-                    throw new SVNException("malformed template '" + templateStr
-                            + "' invalid type after cardinality: " + next);
+        for (int i = 0; i < template.size(); i++) {
+            char ch = template.getType(i);
+            boolean doRead = template.isRead(i);
+            if (ch == 'e') {
+                if (editorBaton == null) {
+                    editorBaton = new SVNEditModeReader();
+                    if (target[targetIndex] instanceof ISVNEditor) {
+                        editorBaton
+                                .setEditor((ISVNEditor) target[targetIndex]);
+                    }
                 }
-                i++;
-                ch = next;
-            }
-            is.mark(0x200);
-            Object result = null;
-            try {
-                if (ch == 'b' || ch == 'i' || ch == 's') {
-                    if (ch == 'b') {
-                        result = readStringAsBytes(is);
-                    } else if (ch == 's') {
-                        result = readString(is);
-                    } else {
-                        result = createDelegatingStream(is);
+                boolean optional = template.isOptional(i);
+                while (!optional || peekToken(is) == LIST_START) {
+                    if (!readEditCommand(is, editorBaton)) {
+                        return target;
                     }
-                } else if (ch == 'p') {
-                    readChar(is, '(');
-                    String name = readString(is);
-                    String value = null;
-                    // may not be there
-                    InputStream is2 = new RollbackInputStream(is);
-                    is2.mark(0x100);
-                    try {
-                        value = readString(is2);
-                    } catch (SVNException exception) {
-                        try {
-                            value = null;
-                            is2.reset();
-                        } catch (IOException e1) {
-                        }
+                    if (!template.isMultiple(i)) {
+                        break;
                     }
-                    readChar(is, ')');
-                    result = new String[] { name, value };
-                } else if (ch == 'z') {
-                    readChar(is, '(');
-                    String name = readString(is);
-                    String value = null;
-                    // may not be there
-                    readChar(is, '(');
-                    InputStream is2 = new RollbackInputStream(is);
-                    is2.mark(0x100);
-                    try {
-                        value = readString(is2);
-                    } catch (SVNException exception) {
-                        try {
-                            value = null;
-                            is2.reset();
-                        } catch (IOException e1) {
-                        }
+                }
+                continue;
+            }
+            if (template.isOptional(i)) {
+                boolean multiple = template.isMultiple(i);
+                while (isTokenOf(ch, peekToken(is))) {
+                    Object result = readItem(is, ch, doRead);
+                    if (doRead) {
+                        target = reportResult(target, targetIndex, result, multiple);
                     }
-                    readChar(is, ')');
-                    readChar(is, ')');
-                    result = new String[] { name, value };
-                } else if (ch == 'w') {
-                    String word = readWord(is);
-                    result = word;
-                } else if (ch == 't') {
-                    result = Boolean.valueOf(readBoolean(is));
-                } else if (ch == 'n') {
-                    result = new Long(readNumber(is));
-                } else if (ch == '[') {
-                    readChar(is, '(');
-                    String word = readWord(is);
-                    if ("failure".equals(word)) {
-                        // read errors and throw
-                        readChar(is, '(');
-                        StringBuffer errorMessage = new StringBuffer();
-                        RollbackInputStream is2 = new RollbackInputStream(is);
-                        try {
-                            while (true) {
-                                is2.mark(0x5);
-                                if (errorMessage.length() > 0) {
-                                    errorMessage.append("\n");
-                                }
-                                errorMessage.append(readError(is2));
-                            }
-                        } catch (SVNException e) {
-                            try {
-                                is2.reset();
-                                readChar(is2, ')');
-                                readChar(is2, ')');
-                            } catch (IOException e1) {
-                                //
-                            } catch (SVNException e2) {
-                                //
-                            }
-                        }
-                        String message = "svn: " + (errorMessage.length() == 0 ? 
-                                "svnserve reported an error"
-                                : errorMessage.toString());
-                        throw new SVNException(message);
-                    } else if (!"success".equals(word)) {
-                        throw new SVNException(
-                                "network data doesn't match template, 'success' or 'failure' expected, '"
-                                        + word + "' read");
+                    if (!multiple) {
+                        break;
                     }
-                } else if (ch == ')' || ch == ']') {
-                    readChar(is, ')');
-                } else if (ch == '(') {
+                }
+                if (doRead) {
+                    targetIndex++;
+                }
+                continue;
+            }
+            if (ch == '[') {
+                readChar(is, '(');
+                String word = readWord(is);
+                if ("failure".equals(word)) {
+                    // read errors and throw
                     readChar(is, '(');
-                } else if (ch == 'd') {
-                    result = readDirEntry(new RollbackInputStream(is));
-                } else if (ch == 'f') {
-                    result = readStatEntry(new RollbackInputStream(is));
-                } else if (ch == 'e') {
-                    if (editorBaton == null) {
-                        editorBaton = new SVNEditModeReader();
-                        if (target[targetIndex] instanceof ISVNEditor) {
-                            editorBaton
-                                    .setEditor((ISVNEditor) target[targetIndex]);
+                    StringBuffer errorMessage = new StringBuffer();
+                    while (peekToken(is) == LIST_START) {
+                        if (errorMessage.length() > 0) {
+                            errorMessage.append("\n");
                         }
+                        errorMessage.append(readError(is));
                     }
-                    readChar(is, '(');
-                    String commandName = readWord(is);
-                    boolean hasMore;
+                    boolean complete = true;
                     try {
-                        hasMore = editorBaton.processCommand(commandName, is);
-                    } catch (Throwable th) {
-                        unconditionalThrow = true;
-                        SVNDebugLog.logInfo(th);
-                        if (th instanceof SVNException) {
-                            throw ((SVNException) th);
-                        }
-                        throw new SVNException(th);
-                    }
-                    if (!"textdelta-chunk".equals(commandName)) {
                         readChar(is, ')');
+                        readChar(is, ')');
+                    } catch (SVNException e) {
+                        complete = false;
                     }
-                    if (!hasMore) {
-                        return target;
-                    }
-                } else if (ch == 'x') {
-                    String word = readWord(is);
-                    if (!"done".equals(word)) {
-                        throw new SVNException(
-                                "netword data doesn't match template, 'done' was expected, but '"
-                                        + word + "' read.");
+                    String message = "svn: " + (errorMessage.length() == 0 ? 
+                            "svnserve reported an error"
+                            : errorMessage.toString());
+                    if (complete) {
+                        throw new SVNCommandFailureException(message);
                     }
-                } else if (ch == 'l') {
-                    result = readLock(new RollbackInputStream(is));
-                }
-                if (doRead) {
-                    target = reportResult(target, targetIndex, result, multiple);
-                }
-                if (multiple) {
-                    i -= 2;
-                } else if (doRead) {
-                    targetIndex++;
-                }
-            } catch (SVNException e) {
-                if (unconditionalThrow) {
-                    throw e;
+                    throw new SVNException(message);
+                } else if (!"success".equals(word)) {
+                    throw new SVNException(
+                            "network data doesn't match template, 'success' or 'failure' expected, '"
+                                    + word + "' read");
                 }
+            } else {
+                // callers may read the item that did not match with
+                // another template.
+                is.mark(MARK_LIMIT);
                 try {
-                    is.reset();
-                } catch (IOException e1) {
-                    //
-                }
-                if (optional) {
-                    if (doRead) {
-                        targetIndex++;
+                    if (ch == ')' || ch == ']') {
+                        readChar(is, ')');
+                    } else if (ch == '(') {
+                        readChar(is, '(');
+                    } else {
+                        Object result = readItem(is, ch, doRead);
+                        if (doRead) {
+                            target = reportResult(target, targetIndex, result, false);
+                            targetIndex++;
+                        }
+                    }
+                } catch (SVNException e) {
+                    try {
+                        is.reset();
+                    } catch (IOException e1) {
+                        //
                     }
-                } else {
                     throw e;
                 }
             }
         }
         if (target == null) {
-            target = new Object[0];
+            target = new Object[targetIndex];
+        } else if (target.length < targetIndex) {
+            // trailing optional items were not there.
+            Object[] array = new Object[targetIndex];
+            System.arraycopy(target, 0, array, 0, target.length);
+            target = array;
         }
         return target;
     }
 
-    private static final char[] VALID_TEMPLATE_CHARS = { '(', ')', '[', ']', // groups
-            's', 'w', 'b', 'i', 'n', 't', 'p', // items
-            'd', 'f', 'l', 'a', 'r', 'e', 'x', 'l', // command-specific
-            '?', '*', 'z' };
+    private static final int LIST_START = 0;
+    private static final int LIST_END = 1;
+    private static final int WORD = 2;
+    private static final int NUMBER = 3;
+    private static final int STRING = 4;
+    private static final int UNKNOWN = 5;
+
+    // longest number is 10 digits, plus the char after it.
+    private static final int PEEK_LIMIT = 0x20;
+    private static final int MARK_LIMIT = 0x200;
+
+    private static Object readItem(InputStream is, char ch, boolean doRead) throws SVNException {
+        if (!doRead && (ch == 'b' || ch == 's' || ch == 'i')) {
+            // value is not used, do not decode it.
+            skipBytes(is, readStringLength(is));
+            return null;
+        } else if (ch == 'b') {
+            return readStringAsBytes(is);
+        } else if (ch == 's') {
+            return readString(is);
+        } else if (ch == 'i') {
+            return createDelegatingStream(is);
+        } else if (ch == 'p') {
+            readChar(is, '(');
+            String name = readString(is);
+            // may not be there
+            String value = peekToken(is) == STRING ? readString(is) : null;
+            readChar(is, ')');
+            return new String[] { name, value };
+        } else if (ch == 'z') {
+            readChar(is, '(');
+            String name = readString(is);
+            readChar(is, '(');
+            // may not be there
+            String value = peekToken(is) == STRING ? readString(is) : null;
+            readChar(is, ')');
+            readChar(is, ')');
+            return new String[] { name, value };
+        } else if (ch == 'w') {
+            return readWord(is);
+        } else if (ch == 't') {
+            return Boolean.valueOf(readBoolean(is));
+        } else if (ch == 'n') {
+            return new Long(readNumber(is));
+        } else if (ch == 'd') {
+            return readDirEntry(is);
+        } else if (ch == 'f') {
+            return readStatEntry(is);
+        } else if (ch == 'l') {
+            return readLock(is);
+        } else if (ch == 'x') {
+            String word = readWord(is);
+            if (!"done".equals(word)) {
+                throw new SVNException(
+                        "netword data doesn't match template, 'done' was expected, but '"
+                                + word + "' read.");
+            }
+        }
+        return null;
+    }
+
+    private static boolean readEditCommand(InputStream is, SVNEditModeReader editorBaton) throws SVNException {
+        readChar(is, '(');
+        String commandName = readWord(is);
+        boolean hasMore;
+        try {
+            hasMore = editorBaton.processCommand(commandName, is);
+        } catch (Throwable th) {
+            SVNDebugLog.logInfo(th);
+            if (th instanceof SVNException) {
+                throw ((SVNException) th);
+            }
+            throw new SVNException(th);
+        }
+        if (!"textdelta-chunk".equals(commandName)) {
+            readChar(is, ')');
+        }
+        return hasMore;
+    }
 
-    private static final char[] INVALID_CARDINALITY_SUBJECTS = { '(', ')', '[',
-            ']', '?', '*', '<' };
+    private static boolean isTokenOf(char ch, int token) {
+        switch (ch) {
+            case 's':
+            case 'b':
+            case 'i':
+                return token == STRING;
+            case 'n':
+                return token == NUMBER;
+            case 'w':
+            case 't':
+            case 'x':
+                return token == WORD;
+            default:
+                return token == LIST_START;
+        }
+    }
+
+    /**
+     * Skips whitespace and returns kind of the next token, leaving the token
+     * itself in the stream.
+     */
+    private static int peekToken(InputStream is) throws SVNException {
+        try {
+            is.mark(PEEK_LIMIT);
+            int ch = is.read();
+            while (ch >= 0 && Character.isWhitespace((char) ch)) {
+                is.mark(PEEK_LIMIT);
+                ch = is.read();
+            }
+            int token = UNKNOWN;
+            if (ch == '(') {
+                token = LIST_START;
+            } else if (ch == ')') {
+                token = LIST_END;
+            } else if (ch >= 0 && Character.isLetter((char) ch)) {
+                token = WORD;
+            } else if (ch >= '0' && ch <= '9') {
+                for (int count = 1; ch >= '0' && ch <= '9' && count < PEEK_LIMIT; count++) {
+                    ch = is.read();
+                }
+                token = ch == ':' ? STRING : NUMBER;
+            }
+            is.reset();
+            return token;
+        } catch (IOException e) {
+            throw new SVNException(e);
+        }
+    }
 
     private static Object[] reportResult(Object[] target, int index,
             Object result, boolean multiple) {
@@ -403,25 +442,16 @@ class SVNReader {
             }
         } else if (target[index] instanceof OutputStream
                 && result instanceof InputStream) {
-            InputStream in = (InputStream) result;
+            DelegatingStream in = (DelegatingStream) result;
             OutputStream out = (OutputStream) target[index];
             try {
-                while (true) {
-                    int read;
-                    read = in.read();
-                    if (read >= 0) {
-                        out.write(read);
-                    } else {
-                        break;
-                    }
-                }
+                in.writeTo(out);
                 out.flush();
             } catch (IOException e) {
                 //
             } finally {
                 try {
-                    while (in.read() >= 0) {
-                    }
+                    in.skip(Long.MAX_VALUE);
                 } catch (IOException e1) {
                     //
                 }
@@ -436,32 +466,62 @@ class SVNReader {
         return target;
     }
 
-    private static StringBuffer normalizeTemplate(String template)
-            throws SVNException {
-        StringBuffer sb = new StringBuffer(template.length());
-        for (int i = 0; i < template.length(); i++) {
-            char ch = template.charAt(i);
-            if (Character.isWhitespace(ch)) {
-                continue;
+    /**
+     * Contents of a string that is read from the source on demand.
+     */
+    private static class DelegatingStream extends InputStream {
+
+        private InputStream mySource;
+        private int myLength;
+        private int myRemaining;
+
+        public DelegatingStream(InputStream source, int length) {
+            mySource = source;
+            myLength = length;
+            myRemaining = length;
+        }
+
+        public int read() throws IOException {
+            if (myRemaining <= 0) {
+                return -1;
             }
-            char tch = Character.toLowerCase(ch);
-            if (isListed(VALID_TEMPLATE_CHARS, tch)) {
-                sb.append(ch);
-                continue;
+            myRemaining--;
+            return mySource.read();
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (myRemaining <= 0) {
+                return -1;
             }
-            throw new SVNException("malformed template' " + template
-                    + "' invalid char: " + ch);
+            int read = mySource.read(b, off, Math.min(len, myRemaining));
+            if (read > 0) {
+                myRemaining -= read;
+            }
+            return read;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = mySource.skip(Math.min(n, myRemaining));
+            myRemaining -= skipped;
+            return skipped;
         }
-        return sb;
-    }
 
-    private static boolean isListed(char[] chars, char test) {
-        for (int i = 0; i < chars.length; i++) {
-            if (test == chars[i]) {
-                return true;
+        public void writeTo(OutputStream os) throws IOException {
+            if (!(mySource instanceof RollbackInputStream)) {
+                byte[] buffer = new byte[Math.min(myRemaining, 8192)];
+                for (int read = read(buffer); read > 0; read = read(buffer)) {
+                    os.write(buffer, 0, read);
+                }
+                return;
+            }
+            while (myRemaining > 0) {
+                int written = ((RollbackInputStream) mySource).writeTo(os, myRemaining);
+                if (written < 0) {
+                    throw new IOException("no more data to read");
+                }
+                myRemaining -= written;
             }
         }
-        return false;
     }
 
     private static char skipWhitespace(InputStream is) throws SVNException {
@@ -588,52 +648,61 @@ class SVNReader {
             buffer = new byte[length];
         }
         try {
-            is.read(buffer, 0, length);
+            for (int offset = 0; offset < length;) {
+                int read = is.read(buffer, offset, length - offset);
+                if (read < 0) {
+                    throw new SVNException("no more data to read");
+                }
+                offset += read;
+            }
         } catch (IOException e) {
             throw new SVNException(e);
         }
         return buffer;
     }
 
-    private static InputStream createDelegatingStream(final InputStream source)
-            throws SVNException {
-        int length = readStringLength(source);
-        final int[] counter = new int[] { length };
-        return new InputStream() {
-            public int read() throws IOException {
-                while (counter[0] > 0) {
-                    counter[0]--;
-                    return source.read();
-                }
-                return -1;
+    private static void skipBytes(InputStream is, int length) throws SVNException {
+        try {
+            if (is.skip(length) < length) {
+                throw new SVNException("no more data to read");
             }
-        };
+        } catch (IOException e) {
+            throw new SVNException(e);
+        }
     }
 
-    private static String readError(InputStream is) throws SVNException {
-        InputStream pis = new RollbackInputStream(is);
-        readChar(pis, '(');
+    /**
+     * Reads string and writes its contents to <code>os</code>, without
+     * creating an array for it.
+     * 
+     * @return length of the string
+     */
+    static int readData(InputStream is, OutputStream os) throws SVNException {
+        DelegatingStream data = createDelegatingStream(is);
         try {
-            pis.mark(0x20);
-            readNumber(pis);
-        } catch (SVNException e) {
-            try {
-                pis.reset();
-            } catch (IOException e1) {
-            }
+            data.writeTo(os);
+        } catch (IOException e) {
+            throw new SVNException(e);
         }
-        String errorMessage = readString(pis);
-        try {
-            pis.mark(0x100);
-            readString(pis);
-            readNumber(pis);
-        } catch (SVNException e) {
-            try {
-                pis.reset();
-            } catch (IOException e1) {
-            }
+        return data.myLength;
+    }
+
+    private static DelegatingStream createDelegatingStream(InputStream source)
+            throws SVNException {
+        return new DelegatingStream(source, readStringLength(source));
+    }
+
+    private static String readError(InputStream is) throws SVNException {
+        readChar(is, '(');
+        if (peekToken(is) == NUMBER) {
+            readNumber(is);
+        }
+        String errorMessage = readString(is);
+        if (peekToken(is) == STRING) {
+            readString(is);
+            readNumber(is);
         }
-        readChar(pis, ')');
+        readChar(is, ')');
         return errorMessage;
     }
 
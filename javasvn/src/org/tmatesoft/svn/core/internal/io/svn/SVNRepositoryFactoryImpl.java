@@ -22,6 +22,7 @@ import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
 public final class SVNRepositoryFactoryImpl extends SVNRepositoryFactory {
 
     private static ISVNConnectorFactory ourConnectorFactory;
+    private static SVNConnectionPool ourConnectionPool = new SVNConnectionPool();
 
     public static void setup() {
         setup(null);
@@ -45,4 +46,20 @@ public final class SVNRepositoryFactoryImpl extends SVNRepositoryFactory {
     static ISVNConnectorFactory getConnectorFactory() {
         return ourConnectorFactory;
     }
+
+    /**
+     * Sets the pool of authenticated connections used by repositories that are
+     * not in session mode. Pass <code>null</code> to open a new connection
+     * for every request.
+     */
+    public static synchronized void setConnectionPool(SVNConnectionPool pool) {
+        if (ourConnectionPool != null && ourConnectionPool != pool) {
+            ourConnectionPool.shutdown();
+        }
+        ourConnectionPool = pool;
+    }
+
+    public static synchronized SVNConnectionPool getConnectionPool() {
+        return ourConnectionPool;
+    }
 }
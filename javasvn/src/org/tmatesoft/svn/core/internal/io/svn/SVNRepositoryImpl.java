@@ -76,6 +76,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w())", buffer);
             authenticate();
             buffer = read("[(N)]", buffer);
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -92,6 +93,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w(s))", buffer);
             authenticate();
             buffer = read("[(N)]", buffer);
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -112,6 +114,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             authenticate();
             buffer[0] = properties;
             read("[((*P))]", buffer);
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -127,6 +130,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w(ns))", buffer);
             authenticate();
             buffer = read("[((?S))]", buffer);
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -143,6 +147,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w(s(n)))", buffer);
             authenticate();
             read("[(W)]", buffer);
+            responseCompleted();
 
             return SVNNodeKind.parseKind((String) buffer[0]);
         } finally {
@@ -182,6 +187,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             }
             read("x", buffer);
             read("[()]", buffer);
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -210,6 +216,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
                 read("*I", buffer2);
                 read("[()]", buffer2);
             }
+            responseCompleted();
             return SVNReader.getLong(buffer, 1);
         } finally {
             closeConnection();
@@ -235,7 +242,10 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             if (handler != null) {
                 buffer[0] = handler;
                 read("(*D)))", buffer);
+            } else {
+                read("(*d)))", buffer);
             }
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -259,10 +269,8 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             authenticate();
             buffer = read("[(N(*P)", buffer);
             revision = buffer[0] != null ? SVNReader.getLong(buffer, 0) : revision;
-            if (handler != null) {
-                buffer[0] = handler;
-                read("(*D)))", buffer);
-            }
+            buffer[0] = handler;
+            read("(*D)))", buffer);
             Map messages = new HashMap();
             for(int i = 0; i < dirEntries.size(); i++) {
                 SVNDirEntry entry = (SVNDirEntry) dirEntries.get(i);
@@ -278,6 +286,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
                 messages.put(key, buffer[0]);
                 entry.setCommitMessage((String) buffer[0]);
             }
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -311,6 +320,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
                 } catch (SVNException e) {
                     read("x", buffer);
                     read("[()]", buffer);
+                    responseCompleted();
                     return count;
                 }
                 String name = null;
@@ -347,10 +357,13 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
                     builder.accept(line, 0);
                     SVNDiffWindow window = builder.getDiffWindow();
                     if (window != null) {
-                        builder.reset(1);
                         OutputStream os = handler.handleDiffWindow(
                                 name == null ? path : name, window);
-                        long length = window.getNewDataLength();
+                        if (os != null) {
+                            os = builder.createNewDataStream(os);
+                        }
+                        long length = builder.getNewDataSectionLength();
+                        builder.reset(1);
                         while (length > 0) {
                             byte[] contents = (byte[]) myConnection.read("B",
                                     null)[0];
@@ -440,6 +453,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
                     read("x", buffer);
                     if (limit <= 0 || (limit > 0 && count <= limit)) {
                         read("[()]", buffer);
+                        responseCompleted();
                     }
                     return count;
                 }
@@ -458,7 +472,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             openConnection();
             write("(w((n)sw))", buffer);
             authenticate();
-            reporter.report(this);
+            report(reporter);
             authenticate();
             read("*E", new Object[] { editor });
         } finally {
@@ -479,7 +493,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             openConnection();
             write("(w((n)sws))", buffer);
             authenticate();
-            reporter.report(this);
+            report(reporter);
             authenticate();
             read("*E", new Object[] { editor });
         } finally {
@@ -508,7 +522,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             openConnection();
             write("(w((n)swws))", buffer);
             authenticate();
-            reporter.report(this);
+            report(reporter);
             authenticate();
             read("*E", new Object[] { editor });
         } finally {
@@ -525,7 +539,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             openConnection();
             write("(w(sw(n)))", buffer);
             authenticate();
-            reporter.report(this);
+            report(reporter);
             authenticate();
             read("*E", new Object[] { editor });
         } finally {
@@ -543,6 +557,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w(nss))", buffer);
             authenticate();
             read("[()]", buffer);
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -581,6 +596,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w(s))", buffer);
             authenticate();
             read("[((?L))]", buffer);
+            responseCompleted();
             return (SVNLock) buffer[0];
         } finally {
             closeConnection();
@@ -595,6 +611,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w(s))", buffer);
             authenticate();
             read("[((*L))]", buffer);
+            responseCompleted();
             Collection lockObjects = (Collection) buffer[0];
             return lockObjects == null ? new SVNLock[0] : (SVNLock[]) lockObjects.toArray(new SVNLock[lockObjects.size()]);
         } finally {
@@ -623,6 +640,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
                     handler.handleLock(path, lock, error);
                 }
             }
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -662,6 +680,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
                     handler.handleUnlock(path, lock, error);
                 }
             }
+            responseCompleted();
         } finally {
             closeConnection();
         }
@@ -676,6 +695,7 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
             write("(w(s(n)))", buffer);
             authenticate();
             read("[((?F))]", buffer);
+            responseCompleted();
             SVNDirEntry entry = (SVNDirEntry) buffer[0];
             if (entry != null) {
                 entry.setName(SVNPathUtil.tail(path));
@@ -698,11 +718,23 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
         if (isSessionMode() && myConnection != null) {
             return;
         }
+        SVNConnectionPool pool = isSessionMode() ? null : SVNRepositoryFactoryImpl.getConnectionPool();
+        if (pool != null) {
+            myConnection = (SVNConnection) pool.borrowConnection(SVNConnectionPool.createKey(getLocation(), getAuthenticationManager()));
+            if (myConnection != null) {
+                myRealm = myConnection.getRealm();
+                if (myConnection.getUUID() != null && myConnection.getRoot() != null) {
+                    updateCredentials(myConnection.getUUID(), SVNURL.parseURIEncoded(myConnection.getRoot()));
+                }
+                return;
+            }
+        }
         ISVNConnector connector = SVNRepositoryFactoryImpl.getConnectorFactory().createConnector(this);
         myConnection = new SVNConnection(connector, getLocation(), getAuthenticationManager());
         try {
             myConnection.open(this);
             authenticate();
+            responseCompleted();
         } finally {
             myRealm = myConnection.getRealm();
         }
@@ -718,18 +750,34 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
         }
     }
 
+    /**
+     * Marks connection as reusable, should be called when the whole response
+     * to the last command is read.
+     */
+    void responseCompleted() {
+        if (myConnection != null) {
+            myConnection.setReusable(true);
+        }
+    }
+
     private void closeConnection() {
         if (isSessionMode()) {
             unlock();
             return;
         }
         if (myConnection != null) {
-            try {
-                myConnection.close();
-            } catch (SVNException e) {
-                //
-            } finally {
+            SVNConnectionPool pool = SVNRepositoryFactoryImpl.getConnectionPool();
+            if (pool != null) {
+                pool.releaseConnection(SVNConnectionPool.createKey(getLocation(), getAuthenticationManager()), myConnection);
                 myConnection = null;
+            } else {
+                try {
+                    myConnection.close();
+                } catch (SVNException e) {
+                    //
+                } finally {
+                    myConnection = null;
+                }
             }
         }
         unlock();
@@ -742,6 +790,16 @@ public class SVNRepositoryImpl extends SVNRepository implements ISVNReporter {
         myConnection.write(template, values);
     }
 
+    private void report(ISVNReporterBaton reporter) throws SVNException {
+        // report commands are not answered, they are sent in batches.
+        myConnection.setBatchWrites(true);
+        try {
+            reporter.report(this);
+        } finally {
+            myConnection.setBatchWrites(false);
+        }
+    }
+
     private Object[] read(String template, Object[] values) throws SVNException {
         if (myConnection == null) {
             throw new SVNException("connection is closed, can't read");
@@ -0,0 +1,135 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd. All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which you should
+ * have received as part of this distribution. The terms are also available at
+ * http://tmate.org/svn/license.html. If newer versions of this license are
+ * posted there, you may use a newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.io.svn;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Template used by {@link SVNReader} and {@link SVNWriter}, compiled into the
+ * list of items with cardinality already applied. Templates are string
+ * constants, so compiled templates are cached and every template is
+ * validated only once.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+class SVNTemplate {
+
+    private static final char[] VALID_TEMPLATE_CHARS = { '(', ')', '[', ']', // groups
+            's', 'w', 'b', 'i', 'n', 't', 'p', // items
+            'd', 'f', 'l', 'a', 'r', 'e', 'x', // command-specific
+            '?', '*', 'z' };
+
+    private static final char[] INVALID_CARDINALITY_SUBJECTS = { '(', ')', '[',
+            ']', '?', '*' };
+
+    private static final int READ = 1;
+    private static final int OPTIONAL = 2;
+    private static final int MULTIPLE = 4;
+
+    private static Map ourTemplates = new HashMap();
+
+    private char[] myTypes;
+    private int[] myFlags;
+
+    public static SVNTemplate getTemplate(String template) throws SVNException {
+        synchronized (ourTemplates) {
+            SVNTemplate compiled = (SVNTemplate) ourTemplates.get(template);
+            if (compiled == null) {
+                compiled = new SVNTemplate(template);
+                ourTemplates.put(template, compiled);
+            }
+            return compiled;
+        }
+    }
+
+    private SVNTemplate(String template) throws SVNException {
+        char[] types = new char[template.length()];
+        int[] flags = new int[template.length()];
+        int count = 0;
+        for (int i = 0; i < template.length(); i++) {
+            char ch = template.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                continue;
+            }
+            int itemFlags = 0;
+            if (ch == '?' || ch == '*') {
+                itemFlags = ch == '*' ? OPTIONAL | MULTIPLE : OPTIONAL;
+                char next = 0;
+                while (++i < template.length()) {
+                    next = template.charAt(i);
+                    if (!Character.isWhitespace(next)) {
+                        break;
+                    }
+                }
+                if (next == 0 || isListed(INVALID_CARDINALITY_SUBJECTS, next)) {
+                    throw new SVNException("malformed template '" + template
+                            + "' invalid type after cardinality: " + (next == 0 ? '<' : next));
+                }
+                ch = next;
+            }
+            char type = Character.toLowerCase(ch);
+            if (!isListed(VALID_TEMPLATE_CHARS, type)) {
+                throw new SVNException("malformed template' " + template
+                        + "' invalid char: " + ch);
+            }
+            if (Character.isUpperCase(ch)) {
+                itemFlags |= READ;
+            }
+            types[count] = type;
+            flags[count] = itemFlags;
+            count++;
+        }
+        myTypes = new char[count];
+        myFlags = new int[count];
+        System.arraycopy(types, 0, myTypes, 0, count);
+        System.arraycopy(flags, 0, myFlags, 0, count);
+    }
+
+    public int size() {
+        return myTypes.length;
+    }
+
+    /**
+     * @return lower case item type, one of the template chars
+     */
+    public char getType(int index) {
+        return myTypes[index];
+    }
+
+    /**
+     * @return <code>true</code> if item value should be reported to the caller
+     */
+    public boolean isRead(int index) {
+        return (myFlags[index] & READ) != 0;
+    }
+
+    public boolean isOptional(int index) {
+        return (myFlags[index] & OPTIONAL) != 0;
+    }
+
+    public boolean isMultiple(int index) {
+        return (myFlags[index] & MULTIPLE) != 0;
+    }
+
+    private static boolean isListed(char[] chars, char test) {
+        for (int i = 0; i < chars.length; i++) {
+            if (test == chars[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
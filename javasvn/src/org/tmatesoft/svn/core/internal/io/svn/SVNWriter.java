@@ -33,17 +33,11 @@ public class SVNWriter {
 
     public static void write(OutputStream os, String templateStr, Object[] src)
             throws SVNException {
-        StringBuffer template = new StringBuffer(templateStr.length());
-        for (int i = 0; i < templateStr.length(); i++) {
-            char ch = templateStr.charAt(i);
-            if (!Character.isWhitespace(ch)) {
-                template.append(ch);
-            }
-        }
+        SVNTemplate template = SVNTemplate.getTemplate(templateStr);
         int offset = 0;
         try {
-            for (int i = 0; i < template.length(); i++) {
-                char ch = template.charAt(i);
+            for (int i = 0; i < template.size(); i++) {
+                char ch = template.getType(i);
                 if (ch == '(' || ch == ')') {
                     os.write((byte) ch);
                     os.write(' ');
@@ -57,40 +51,7 @@ public class SVNWriter {
                 if (item instanceof Date) {
                     item = SVNTimeUtil.formatDate((Date) item);
                 }
-                if (ch == 'i') {
-
-                    InputStream is = ((SVNDataSource) item).getInputStream();
-                    long length = ((SVNDataSource) item).lenght();
-
-                    os.write(Long.toString(length).getBytes("UTF-8"));
-                    os.write(':');
-                    byte[] buffer = new byte[Math.min(2048, (int) length)];
-                    while (true) {
-                        int read = is.read(buffer);
-                        if (read > 0) {
-                            os.write(buffer, 0, read);
-                        } else {
-                            break;
-                        }
-                    }
-                }
-                if (ch == 'b') {
-                    byte[] bytes = (byte[]) item;
-                    os.write(Integer.toString(bytes.length).getBytes("UTF-8"));
-                    os.write(':');
-                    os.write(bytes);
-                } else if (ch == 'n') {
-                    os.write(item.toString().getBytes("UTF-8"));
-                } else if (ch == 'w') {
-                    os.write(item.toString().getBytes("UTF-8"));
-                } else if (ch == 's') {
-                    os.write(Integer.toString(
-                            item.toString().getBytes("UTF-8").length).getBytes(
-                            "UTF-8"));
-                    os.write(':');
-                    os.write(item.toString().getBytes("UTF-8"));
-                } else if (ch == '*') {
-                    ch = template.charAt(i + 1);
+                if (template.isMultiple(i)) {
                     if (item instanceof Object[]) {
                         Object[] list = (Object[]) item;
                         for (int j = 0; j < list.length; j++) {
@@ -137,7 +98,37 @@ public class SVNWriter {
                             os.write(' ');
                         }
                     }
-                    i++;
+                } else if (ch == 'i') {
+
+                    InputStream is = ((SVNDataSource) item).getInputStream();
+                    long length = ((SVNDataSource) item).lenght();
+
+                    os.write(Long.toString(length).getBytes("UTF-8"));
+                    os.write(':');
+                    byte[] buffer = new byte[Math.min(2048, (int) length)];
+                    while (true) {
+                        int read = is.read(buffer);
+                        if (read > 0) {
+                            os.write(buffer, 0, read);
+                        } else {
+                            break;
+                        }
+                    }
+                } else if (ch == 'b') {
+                    byte[] bytes = (byte[]) item;
+                    os.write(Integer.toString(bytes.length).getBytes("UTF-8"));
+                    os.write(':');
+                    os.write(bytes);
+                } else if (ch == 'n') {
+                    os.write(item.toString().getBytes("UTF-8"));
+                } else if (ch == 'w') {
+                    os.write(item.toString().getBytes("UTF-8"));
+                } else if (ch == 's') {
+                    os.write(Integer.toString(
+                            item.toString().getBytes("UTF-8").length).getBytes(
+                            "UTF-8"));
+                    os.write(':');
+                    os.write(item.toString().getBytes("UTF-8"));
                 }
                 os.write(' ');
             }
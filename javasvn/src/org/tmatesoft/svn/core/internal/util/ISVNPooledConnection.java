@@ -0,0 +1,32 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.util;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Connection that may be kept by {@link SVNIdleConnectionPool}.
+ * 
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public interface ISVNPooledConnection {
+    
+    /**
+     * @return <code>true</code> when connection is open and is in sync with
+     *         the server, so that it may be used for the next request
+     */
+    public boolean isReusable();
+    
+    public void close() throws SVNException;
+
+}
@@ -180,7 +180,7 @@ public class SVNBase64 {
      * SVNBase64 alphabet but fall within the bounds of the array are translated to
      * -1.
      */
-    private static final byte base64ToInt[] = { -1, -1, -1, -1, -1, -1, -1, -1,
+    static final byte base64ToInt[] = { -1, -1, -1, -1, -1, -1, -1, -1,
             -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
             -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
             -1, 62, -1, -1, -1, 63, 52, 53, 54, 55, 56, 57, 58, 59, 60, 61, -1,
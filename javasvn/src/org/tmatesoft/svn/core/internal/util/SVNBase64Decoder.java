@@ -0,0 +1,81 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd. All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which you should
+ * have received as part of this distribution. The terms are also available at
+ * http://tmate.org/svn/license.html. If newer versions of this license are
+ * posted there, you may use a newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.internal.util;
+
+/**
+ * Decodes base64 text that arrives in parts, for instance in several SAX
+ * <code>characters</code> calls. Chars of an incomplete 4 chars group are
+ * kept until the next part arrives, whitespace and line breaks are skipped.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+public class SVNBase64Decoder {
+
+    private int myBits;
+    private int myCharsCount;
+    private boolean myIsEnded;
+
+    /**
+     * @return size of the target buffer that is enough to decode
+     *         <code>length</code> chars
+     */
+    public static int getMaxDecodedLength(int length) {
+        return (length / 4 + 1) * 3;
+    }
+
+    /**
+     * Decodes <code>length</code> chars and writes decoded bytes to
+     * <code>target</code> starting at <code>targetOffset</code>.
+     *
+     * @return number of bytes written
+     */
+    public int decode(char[] chars, int offset, int length, byte[] target, int targetOffset) {
+        int written = targetOffset;
+        for (int i = offset; i < offset + length; i++) {
+            char ch = chars[i];
+            if (ch == '=') {
+                // padding, 2 or 3 chars of the last group are there.
+                if (myCharsCount == 2) {
+                    target[written++] = (byte) (myBits >> 4);
+                } else if (myCharsCount == 3) {
+                    target[written++] = (byte) (myBits >> 10);
+                    target[written++] = (byte) (myBits >> 2);
+                }
+                myCharsCount = 0;
+                myBits = 0;
+                myIsEnded = true;
+                continue;
+            }
+            int value = ch < SVNBase64.base64ToInt.length ? SVNBase64.base64ToInt[ch] : -1;
+            if (value < 0 || myIsEnded) {
+                continue;
+            }
+            myBits = (myBits << 6) | value;
+            myCharsCount++;
+            if (myCharsCount == 4) {
+                target[written++] = (byte) (myBits >> 16);
+                target[written++] = (byte) (myBits >> 8);
+                target[written++] = (byte) myBits;
+                myCharsCount = 0;
+                myBits = 0;
+            }
+        }
+        return written - targetOffset;
+    }
+
+    public void reset() {
+        myBits = 0;
+        myCharsCount = 0;
+        myIsEnded = false;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+
+/**
+ * Keeps idle connections grouped by key, so that they could be reused by
+ * the next request to the same server.
+ * 
+ * <p>
+ * Connection is only kept and handed out when it is reusable. At most
+ * <code>maxIdleConnections</code> connections are kept per key, connections
+ * that were idle longer than the idle timeout are closed by a timer thread,
+ * which is stopped when pool becomes empty. Subclasses define how key is
+ * created from the repository location.
+ * 
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class SVNIdleConnectionPool {
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 4;
+
+    private Map myIdleConnections;
+    private long myIdleTimeout;
+    private int myMaxIdleConnections;
+    private Timer myTimer;
+
+    public SVNIdleConnectionPool(long idleTimeout, int maxIdleConnections) {
+        myIdleTimeout = idleTimeout;
+        myMaxIdleConnections = maxIdleConnections;
+        myIdleConnections = new HashMap();
+    }
+
+    /**
+     * Creates pool key for connections to <code>location</code> that are
+     * authenticated with <code>authManager</code>, managers are compared by
+     * identity.
+     */
+    protected static Object createKey(String location, ISVNAuthenticationManager authManager) {
+        return new PoolKey(location, authManager);
+    }
+
+    /**
+     * @return reusable connection released with <code>key</code> most
+     *         recently, or <code>null</code> when there is no such connection
+     */
+    public synchronized ISVNPooledConnection borrowConnection(Object key) {
+        LinkedList connections = (LinkedList) myIdleConnections.get(key);
+        if (connections == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        ISVNPooledConnection result = null;
+        while (!connections.isEmpty()) {
+            IdleConnection idle = (IdleConnection) connections.removeLast();
+            if (now - idle.myReleaseTime < myIdleTimeout && idle.myConnection.isReusable()) {
+                result = idle.myConnection;
+                break;
+            }
+            closeConnection(idle.myConnection);
+        }
+        if (connections.isEmpty()) {
+            myIdleConnections.remove(key);
+        }
+        return result;
+    }
+
+    /**
+     * Keeps <code>connection</code> for reuse, closes it when it is not
+     * reusable or when there are enough idle connections for this key.
+     */
+    public synchronized void releaseConnection(Object key, ISVNPooledConnection connection) {
+        if (!connection.isReusable()) {
+            closeConnection(connection);
+            return;
+        }
+        LinkedList connections = (LinkedList) myIdleConnections.get(key);
+        if (connections == null) {
+            connections = new LinkedList();
+            myIdleConnections.put(key, connections);
+        }
+        if (connections.size() >= myMaxIdleConnections) {
+            closeConnection(connection);
+            return;
+        }
+        connections.addLast(new IdleConnection(connection));
+        scheduleEviction();
+    }
+
+    public synchronized void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (Iterator keys = myIdleConnections.values().iterator(); keys.hasNext();) {
+            LinkedList connections = (LinkedList) keys.next();
+            for (Iterator idles = connections.iterator(); idles.hasNext();) {
+                IdleConnection idle = (IdleConnection) idles.next();
+                if (now - idle.myReleaseTime >= myIdleTimeout) {
+                    idles.remove();
+                    closeConnection(idle.myConnection);
+                }
+            }
+            if (connections.isEmpty()) {
+                keys.remove();
+            }
+        }
+        if (myIdleConnections.isEmpty() && myTimer != null) {
+            myTimer.cancel();
+            myTimer = null;
+        }
+    }
+
+    public synchronized void shutdown() {
+        for (Iterator keys = myIdleConnections.values().iterator(); keys.hasNext();) {
+            LinkedList connections = (LinkedList) keys.next();
+            for (Iterator idles = connections.iterator(); idles.hasNext();) {
+                closeConnection(((IdleConnection) idles.next()).myConnection);
+            }
+        }
+        myIdleConnections.clear();
+        if (myTimer != null) {
+            myTimer.cancel();
+            myTimer = null;
+        }
+    }
+
+    private void scheduleEviction() {
+        if (myTimer != null) {
+            return;
+        }
+        myTimer = new Timer(true);
+        long period = Math.max(myIdleTimeout / 2, 1000);
+        myTimer.schedule(new TimerTask() {
+            public void run() {
+                evictIdleConnections();
+            }
+        }, period, period);
+    }
+
+    private static void closeConnection(ISVNPooledConnection connection) {
+        try {
+            connection.close();
+        } catch (SVNException e) {
+            //
+        }
+    }
+
+    private static class IdleConnection {
+
+        private ISVNPooledConnection myConnection;
+        private long myReleaseTime;
+
+        public IdleConnection(ISVNPooledConnection connection) {
+            myConnection = connection;
+            myReleaseTime = System.currentTimeMillis();
+        }
+    }
+
+    private static class PoolKey {
+
+        private String myLocation;
+        private ISVNAuthenticationManager myAuthManager;
+
+        public PoolKey(String location, ISVNAuthenticationManager authManager) {
+            myLocation = location;
+            myAuthManager = authManager;
+        }
+
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey key = (PoolKey) obj;
+            return myAuthManager == key.myAuthManager && myLocation.equals(key.myLocation);
+        }
+
+        public int hashCode() {
+            return myLocation.hashCode() + 17 * System.identityHashCode(myAuthManager);
+        }
+    }
+}
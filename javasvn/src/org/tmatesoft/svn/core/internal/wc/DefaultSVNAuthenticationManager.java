@@ -425,21 +425,23 @@ public class DefaultSVNAuthenticationManager implements ISVNAuthenticationManage
             SVNProperties props = new SVNProperties(authFile, "");
             props.delete();
             
-            try {
-                props.setPropertyValue("svn:realmstring", realm);
-                props.setPropertyValue("username", auth.getUserName());
-                if (ISVNAuthenticationManager.PASSWORD.equals(kind)) {
-                    SVNPasswordAuthentication passwordAuth = (SVNPasswordAuthentication) auth;
-                    props.setPropertyValue("password", passwordAuth.getPassword());
-                } else if (ISVNAuthenticationManager.SSH.equals(kind)) {
-                    SVNSSHAuthentication sshAuth = (SVNSSHAuthentication) auth;
-                    props.setPropertyValue("password", sshAuth.getPassword());
-                    if (sshAuth.getPrivateKeyFile() != null) { 
-                        String path = SVNPathUtil.validateFilePath(sshAuth.getPrivateKeyFile().getAbsolutePath());
-                        props.setPropertyValue("passphrase", sshAuth.getPassphrase());
-                        props.setPropertyValue("key", path);
-                    }
+            Map values = new HashMap();
+            values.put("svn:realmstring", realm);
+            values.put("username", auth.getUserName());
+            if (ISVNAuthenticationManager.PASSWORD.equals(kind)) {
+                SVNPasswordAuthentication passwordAuth = (SVNPasswordAuthentication) auth;
+                values.put("password", passwordAuth.getPassword());
+            } else if (ISVNAuthenticationManager.SSH.equals(kind)) {
+                SVNSSHAuthentication sshAuth = (SVNSSHAuthentication) auth;
+                values.put("password", sshAuth.getPassword());
+                if (sshAuth.getPrivateKeyFile() != null) { 
+                    String path = SVNPathUtil.validateFilePath(sshAuth.getPrivateKeyFile().getAbsolutePath());
+                    values.put("passphrase", sshAuth.getPassphrase());
+                    values.put("key", path);
                 }
+            }
+            try {
+                props.setPropertyValues(values);
                 SVNFileUtil.setReadonly(props.getFile(), false);
             } catch (SVNException e) {
                 props.getFile().delete();
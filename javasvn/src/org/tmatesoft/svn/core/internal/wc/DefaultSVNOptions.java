@@ -44,11 +44,16 @@ public class DefaultSVNOptions implements ISVNOptions, ISVNMergerFactory {
     private static final String DEFAULT_IGNORES = "*.o *.lo *.la #*# .*.rej *.rej .*~ *~ .#* .DS_Store";    
     private static final String YES = "yes";
     private static final String NO = "no";
+    
+    // config file is checked for changes of global ignores not more often.
+    private static final long IGNORES_TIMEOUT = 1000;
 
     private boolean myIsReadonly;
     private File myConfigDirectory;
     private SVNConfigFile myConfigFile;
     private ISVNMergerFactory myMergerFactory;
+    private SVNPatternMatcher myIgnoresMatcher;
+    private long myIgnoresTime;
 
     public DefaultSVNOptions() {
         this(null, true);
@@ -87,21 +92,11 @@ public class DefaultSVNOptions implements ISVNOptions, ISVNMergerFactory {
     }
 
     public boolean isIgnored(String name) {
-        String[] patterns = getIgnorePatterns();
-        for (int i = 0; patterns != null && i < patterns.length; i++) {
-            String pattern = patterns[i];
-            if (matches(pattern, name)) {
-                return true;
-            }
-        }
-        return false;
+        return getIgnoresMatcher().matches(name);
     }
 
     public String[] getIgnorePatterns() {
-        String value = getConfigFile().getPropertyValue(MISCELLANY_GROUP, GLOBAL_IGNORES);
-        if (value == null) {
-            value = DEFAULT_IGNORES;
-        }
+        String value = getGlobalIgnores();
         Collection tokensList = new ArrayList();
         for (StringTokenizer tokens = new StringTokenizer(value, " \t"); tokens.hasMoreTokens();) {
             String token = tokens.nextToken();
@@ -116,6 +111,7 @@ public class DefaultSVNOptions implements ISVNOptions, ISVNMergerFactory {
     public void setIgnorePatterns(String[] patterns) {
         if (patterns == null || patterns.length == 0) {
             getConfigFile().setPropertyValue(MISCELLANY_GROUP, GLOBAL_IGNORES, null, !myIsReadonly);
+            resetIgnoresMatcher();
             return;
         }
         StringBuffer value = new StringBuffer();
@@ -131,6 +127,7 @@ public class DefaultSVNOptions implements ISVNOptions, ISVNMergerFactory {
             valueStr = null;
         }
         getConfigFile().setPropertyValue(MISCELLANY_GROUP, GLOBAL_IGNORES, valueStr, !myIsReadonly);
+        resetIgnoresMatcher();
     }
 
     public void deleteIgnorePattern(String pattern) {
@@ -242,6 +239,24 @@ public class DefaultSVNOptions implements ISVNOptions, ISVNMergerFactory {
         myMergerFactory = mergerFactory;
     }
 
+    private synchronized SVNPatternMatcher getIgnoresMatcher() {
+        long time = System.currentTimeMillis();
+        if (myIgnoresMatcher == null || time - myIgnoresTime > IGNORES_TIMEOUT) {
+            myIgnoresMatcher = SVNPatternMatcher.getMatcher(getGlobalIgnores(), " \t");
+            myIgnoresTime = time;
+        }
+        return myIgnoresMatcher;
+    }
+
+    private synchronized void resetIgnoresMatcher() {
+        myIgnoresMatcher = null;
+    }
+
+    private String getGlobalIgnores() {
+        String value = getConfigFile().getPropertyValue(MISCELLANY_GROUP, GLOBAL_IGNORES);
+        return value == null ? DEFAULT_IGNORES : value;
+    }
+
     private SVNConfigFile getConfigFile() {
         if (myConfigFile == null) {
             SVNConfigFile.createDefaultConfiguration(myConfigDirectory);
@@ -277,7 +292,7 @@ public class DefaultSVNOptions implements ISVNOptions, ISVNMergerFactory {
         return compileNamePatter(pattern).matcher(fileName).matches();
     }
 
-    private static Pattern compileNamePatter(String wildcard) {
+    static Pattern compileNamePatter(String wildcard) {
         if (wildcard == null) {
             return null;
         }
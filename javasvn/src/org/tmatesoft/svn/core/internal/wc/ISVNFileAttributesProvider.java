@@ -0,0 +1,44 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+
+/**
+ * Reads and changes file attributes that are not available through
+ * <code>java.io.File</code>: symlinks and executable bit.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ * @see     SVNFileUtil#setFileAttributesProvider(ISVNFileAttributesProvider)
+ */
+public interface ISVNFileAttributesProvider {
+
+    public SVNFileType getType(File file);
+
+    public boolean isExecutable(File file);
+
+    public String getSymlinkName(File link);
+
+    public void setExecutable(File file, boolean executable);
+
+    public boolean createSymlink(File link, String linkName);
+
+    /**
+     * Reads type, length, modification time, executable bit and symlink
+     * target of <code>file</code> at once. Length and modification time of a
+     * symlink are those of the file it points to, as in
+     * <code>java.io.File</code>.
+     */
+    public SVNFileAttributes readAttributes(File file);
+
+}
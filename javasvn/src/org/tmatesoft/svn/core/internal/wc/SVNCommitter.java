@@ -28,6 +28,7 @@ import org.tmatesoft.svn.core.io.diff.ISVNDeltaGenerator;
 import org.tmatesoft.svn.core.io.diff.SVNAllDeltaGenerator;
 import org.tmatesoft.svn.core.io.diff.SVNRAFileData;
 import org.tmatesoft.svn.core.io.diff.SVNSequenceDeltaGenerator;
+import org.tmatesoft.svn.core.io.diff.SVNXDeltaGenerator;
 import org.tmatesoft.svn.core.wc.ISVNEventHandler;
 import org.tmatesoft.svn.core.wc.SVNCommitItem;
 import org.tmatesoft.svn.core.wc.SVNEvent;
@@ -172,8 +173,10 @@ public class SVNCommitter implements ISVNCommitPathHandler {
                     || dir.getBaseProperties(name, false).getPropertyValue(
                             SVNProperty.MIME_TYPE) != null;
             ISVNDeltaGenerator generator;
-            if (item.isAdded() || binary) {
+            if (item.isAdded()) {
                 generator = new SVNAllDeltaGenerator();
+            } else if (binary) {
+                generator = new SVNXDeltaGenerator();
             } else {
 	            generator = new SVNSequenceDeltaGenerator(tmpFile.getParentFile());
             }
@@ -0,0 +1,293 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.diff.SVNDiffInstruction;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * Applies diff windows to the base file as their new data arrives and writes
+ * the result to the target file, without spooling windows to disk.
+ *
+ * <p>
+ * Source views are read from the base file sequentially whenever possible,
+ * that stream also computes base file checksum, so the base file is read
+ * once. Target is written once, its checksum is computed while it is written
+ * and is returned by {@link #textDeltaEnd()}.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class SVNDeltaApplier {
+
+    private File myBaseFile;
+    private File myTargetFile;
+    private String myBaseChecksum;
+
+    private DigestInputStream mySource;
+    private long mySourcePosition;
+    private RandomAccessFile mySourceFile;
+    private DigestOutputStream myTarget;
+    private byte[] myBuffer;
+
+    private SVNDiffWindow myWindow;
+    private int myInstructionIndex;
+    private long myInstructionRemains;
+    private byte[] myWindowTarget;
+    private boolean myIsKeepingTarget;
+    private int myWindowTargetLength;
+    private int myWindowsCount;
+
+    /**
+     * @param baseFile      file to take source views from, may not exist
+     * @param targetFile    file to write result to
+     * @param baseChecksum  expected checksum of the base file or
+     *                      <code>null</code> if it should not be verified
+     */
+    public SVNDeltaApplier(File baseFile, File targetFile, String baseChecksum) throws SVNException {
+        myBaseFile = baseFile;
+        myTargetFile = targetFile;
+        myBaseChecksum = baseChecksum;
+        myBuffer = new byte[16*1024];
+        InputStream source = baseFile.isFile() ? SVNFileUtil.openFileForReading(baseFile) : SVNFileUtil.DUMMY_IN;
+        mySource = new DigestInputStream(source, createDigest());
+        myTarget = new DigestOutputStream(SVNFileUtil.openFileForWriting(targetFile), createDigest());
+    }
+
+    public OutputStream textDeltaChunk(SVNDiffWindow window) throws SVNException {
+        finishWindow();
+        myWindow = window;
+        myWindowsCount++;
+        myInstructionIndex = 0;
+        myInstructionRemains = window.getInstructionsCount() > 0 ? window.getInstructionAt(0).length : 0;
+        myWindowTargetLength = 0;
+        // window target is only kept in memory when the window copies from it.
+        myIsKeepingTarget = false;
+        for (int i = 0; i < window.getInstructionsCount(); i++) {
+            if (window.getInstructionAt(i).type == SVNDiffInstruction.COPY_FROM_TARGET) {
+                myIsKeepingTarget = true;
+                break;
+            }
+        }
+        if (myIsKeepingTarget) {
+            if (myWindowTarget == null || myWindowTarget.length < window.getTargetViewLength()) {
+                myWindowTarget = new byte[(int) window.getTargetViewLength()];
+            }
+        }
+        try {
+            applyInstructions();
+        } catch (IOException e) {
+            SVNErrorManager.error("svn: Cannot apply delta to '" + myTargetFile + "': " + e.getMessage());
+        }
+        return new NewDataStream(window);
+    }
+
+    /**
+     * Completes the target and verifies the base file checksum.
+     *
+     * @return  checksum of the target file
+     */
+    public String textDeltaEnd() throws SVNException {
+        finishWindow();
+        String checksum = null;
+        try {
+            if (myWindowsCount == 0) {
+                // no windows, target is the same as the base.
+                copySource(mySourcePosition, Long.MAX_VALUE);
+            } else if (myBaseChecksum != null) {
+                // rest of the base is only read to complete its checksum.
+                while (mySource.read(myBuffer) >= 0) {
+                }
+            }
+            myTarget.close();
+            checksum = SVNFileUtil.toHexDigest(myTarget.getMessageDigest());
+        } catch (IOException e) {
+            SVNErrorManager.error("svn: Cannot apply delta to '" + myTargetFile + "': " + e.getMessage());
+        } finally {
+            close();
+        }
+        if (myBaseChecksum != null) {
+            String realChecksum = SVNFileUtil.toHexDigest(mySource.getMessageDigest());
+            if (!myBaseChecksum.equals(realChecksum)) {
+                SVNErrorManager.error("svn: Checksum mismatch for '" + myBaseFile + "'; expected: '" + myBaseChecksum + "', actual: '" + realChecksum + "'");
+            }
+        }
+        return checksum;
+    }
+
+    public void close() {
+        SVNFileUtil.closeFile(mySource);
+        SVNFileUtil.closeFile(myTarget);
+        if (mySourceFile != null) {
+            try {
+                mySourceFile.close();
+            } catch (IOException e) {
+                //
+            }
+            mySourceFile = null;
+        }
+        myWindow = null;
+        myIsKeepingTarget = false;
+    }
+
+    private void finishWindow() throws SVNException {
+        if (myWindow == null) {
+            return;
+        }
+        if (myInstructionIndex < myWindow.getInstructionsCount()) {
+            SVNErrorManager.error("svn: Delta source ended unexpectedly for '" + myTargetFile + "'");
+        }
+        myWindow = null;
+        myIsKeepingTarget = false;
+    }
+
+    /**
+     * Applies instructions up to the next one that needs new data.
+     */
+    private void applyInstructions() throws IOException, SVNException {
+        while (myInstructionIndex < myWindow.getInstructionsCount()) {
+            SVNDiffInstruction instruction = myWindow.getInstructionAt(myInstructionIndex);
+            if (instruction.type == SVNDiffInstruction.COPY_FROM_NEW_DATA && myInstructionRemains > 0) {
+                return;
+            } else if (instruction.type == SVNDiffInstruction.COPY_FROM_SOURCE) {
+                copySource(myWindow.getSourceViewOffset() + instruction.offset, instruction.length);
+            } else if (instruction.type == SVNDiffInstruction.COPY_FROM_TARGET) {
+                if (instruction.offset < 0 || instruction.offset >= myWindowTargetLength
+                        || instruction.length < 0 || myWindowTargetLength + instruction.length > myWindow.getTargetViewLength()) {
+                    SVNErrorManager.error("svn: Delta target copy is out of window bounds for '" + myTargetFile + "'");
+                }
+                // byte by byte, source and target ranges may overlap.
+                for (int i = 0; i < instruction.length; i++) {
+                    myWindowTarget[myWindowTargetLength + i] = myWindowTarget[(int) instruction.offset + i];
+                }
+                myTarget.write(myWindowTarget, myWindowTargetLength, (int) instruction.length);
+                myWindowTargetLength += instruction.length;
+            }
+            myInstructionIndex++;
+            if (myInstructionIndex < myWindow.getInstructionsCount()) {
+                myInstructionRemains = myWindow.getInstructionAt(myInstructionIndex).length;
+            }
+        }
+    }
+
+    private void applyNewData(byte[] b, int off, int len) throws IOException, SVNException {
+        while (len > 0) {
+            if (myWindow == null || myInstructionIndex >= myWindow.getInstructionsCount()) {
+                SVNErrorManager.error("svn: Delta contains more new data than expected for '" + myTargetFile + "'");
+            }
+            int count = (int) Math.min(len, myInstructionRemains);
+            writeTarget(b, off, count);
+            myInstructionRemains -= count;
+            off += count;
+            len -= count;
+            applyInstructions();
+        }
+    }
+
+    private void copySource(long offset, long length) throws IOException, SVNException {
+        if (offset < mySourcePosition) {
+            // rare backward copy, sequential stream stays where it is.
+            if (mySourceFile == null) {
+                mySourceFile = new RandomAccessFile(myBaseFile, "r");
+            }
+            mySourceFile.seek(offset);
+            while (length > 0) {
+                int read = mySourceFile.read(myBuffer, 0, (int) Math.min(myBuffer.length, length));
+                if (read < 0) {
+                    SVNErrorManager.error("svn: Delta source view is out of '" + myBaseFile + "' bounds");
+                }
+                writeTarget(myBuffer, 0, read);
+                length -= read;
+            }
+            return;
+        }
+        while (mySourcePosition < offset) {
+            long skipped = mySource.read(myBuffer, 0, (int) Math.min(myBuffer.length, offset - mySourcePosition));
+            if (skipped < 0) {
+                SVNErrorManager.error("svn: Delta source view is out of '" + myBaseFile + "' bounds");
+            }
+            mySourcePosition += skipped;
+        }
+        while (length > 0) {
+            int read = mySource.read(myBuffer, 0, (int) Math.min(myBuffer.length, length));
+            if (read < 0) {
+                if (length == Long.MAX_VALUE) {
+                    return;
+                }
+                SVNErrorManager.error("svn: Delta source view is out of '" + myBaseFile + "' bounds");
+            }
+            mySourcePosition += read;
+            writeTarget(myBuffer, 0, read);
+            if (length != Long.MAX_VALUE) {
+                length -= read;
+            }
+        }
+    }
+
+    private void writeTarget(byte[] b, int off, int len) throws IOException, SVNException {
+        if (myWindow != null && myWindowTargetLength + len > myWindow.getTargetViewLength()) {
+            SVNErrorManager.error("svn: Delta window produces more data than its target view length for '" + myTargetFile + "'");
+        }
+        myTarget.write(b, off, len);
+        if (myIsKeepingTarget) {
+            System.arraycopy(b, off, myWindowTarget, myWindowTargetLength, len);
+        }
+        myWindowTargetLength += len;
+    }
+
+    private static MessageDigest createDigest() throws SVNException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            SVNErrorManager.error("svn: MD5 algorithm implementation not found");
+        }
+        return null;
+    }
+
+    private class NewDataStream extends OutputStream {
+
+        private SVNDiffWindow myStreamWindow;
+        private byte[] mySingleByte;
+
+        public NewDataStream(SVNDiffWindow window) {
+            myStreamWindow = window;
+            mySingleByte = new byte[1];
+        }
+
+        public void write(int b) throws IOException {
+            mySingleByte[0] = (byte) (b & 0xFF);
+            write(mySingleByte, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (myStreamWindow != myWindow) {
+                throw new IOException("svn: Diff window new data is written after the window is closed");
+            }
+            try {
+                applyNewData(b, off, len);
+            } catch (SVNException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+    }
+}
@@ -23,7 +23,7 @@ import java.util.LinkedList;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.io.diff.ISVNRAData;
 import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
-import org.tmatesoft.svn.core.io.diff.SVNRAFileData;
+import org.tmatesoft.svn.core.io.diff.SVNRAFileChannelData;
 
 
 /**
@@ -68,8 +68,8 @@ public class SVNDeltaProcessor {
                 close();
                 return false;
             }
-            ISVNRAData baseData = new SVNRAFileData(baseFile, false);
-            ISVNRAData target = new SVNRAFileData(targetFile, false);
+            ISVNRAData baseData = new SVNRAFileChannelData(baseFile, true);
+            ISVNRAData target = new SVNRAFileChannelData(targetFile, false);
             InputStream data = SVNFileUtil.openFileForReading(myChunkFile);
             long length = 0;
             try {
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.tmatesoft.svn.core.SVNCommitInfo;
@@ -132,10 +133,11 @@ public class SVNDirectory {
         return deleted;
     }
 
-    public SVNEntries getEntries() throws SVNException {
+    public synchronized SVNEntries getEntries() throws SVNException {
         if (myEntries == null) {
             myEntries = new SVNEntries(new File(getAdminDirectory(), "entries"));
         }
+        myEntries.setWriteBack(myWCAccess != null && myWCAccess.isWriteBack() ? myWCAccess : null);
         myEntries.open();
         return myEntries;
     }
@@ -183,13 +185,11 @@ public class SVNDirectory {
         Collection conflicts = new ArrayList();
         SVNStatusType result = changedProperties.isEmpty() ? SVNStatusType.UNCHANGED
                 : SVNStatusType.CHANGED;
+        Map workingChanges = new LinkedHashMap();
         for (Iterator propNames = changedProperties.keySet().iterator(); propNames
                 .hasNext();) {
             String propName = (String) propNames.next();
             String propValue = (String) changedProperties.get(propName);
-            if (updateBaseProps) {
-                baseTmp.setPropertyValue(propName, propValue);
-            }
 
             if (locallyChanged.containsKey(propName)) {
                 String workingValue = (String) locallyChanged.get(propName);
@@ -220,8 +220,12 @@ public class SVNDirectory {
                 result = SVNStatusType.MERGED;
                 // }
             }
-            workingTmp.setPropertyValue(propName, propValue);
+            workingChanges.put(propName, propValue);
+        }
+        if (updateBaseProps) {
+            baseTmp.setPropertyValues(changedProperties);
         }
+        workingTmp.setPropertyValues(workingChanges);
         // now log all.
         Map command = new HashMap();
         if (log != null) {
@@ -522,8 +526,7 @@ public class SVNDirectory {
             return false;
         }
         if (!force) {
-            String textTime = entry.getTextTime();
-            long textTimeAsLong = SVNFileUtil.roundTimeStamp(SVNTimeUtil.parseDateAsLong(textTime));
+            long textTimeAsLong = SVNFileUtil.roundTimeStamp(entry.getTextTimeAsLong());
             long tstamp = SVNFileUtil.roundTimeStamp(getFile(name).lastModified());
             if (textTimeAsLong == tstamp ) {
                 return false;
@@ -533,22 +536,13 @@ public class SVNDirectory {
         if (!baseFile.isFile()) {
             return true;
         }
-        // translate versioned file.
-        File baseTmpFile = SVNFileUtil.createUniqueFile(getRoot(), SVNFileUtil
-                .getBasePath(getBaseFile(name, true)), ".tmp");
-        if (!baseTmpFile.getParentFile().exists()) {
-            baseTmpFile.getParentFile().mkdirs();
-        }
         File versionedFile = getFile(name);
-        SVNTranslator.translate(this, name, name, SVNFileUtil
-                .getBasePath(baseTmpFile), false, false);
-
-        // now compare file and get base file checksum (when forced)
+        // compare translated file and get base file checksum (when forced)
         MessageDigest digest;
         boolean equals = true;
         try {
             digest = force ? MessageDigest.getInstance("MD5") : null;
-            equals = SVNFileUtil.compareFiles(baseFile, baseTmpFile, digest);
+            equals = SVNTranslator.compareDetranslated(this, name, baseFile, digest);
             if (force) {
                 // if checksum differs from expected - throw exception
                 String checksum = SVNFileUtil.toHexDigest(digest);
@@ -559,8 +553,6 @@ public class SVNDirectory {
             }
         } catch (NoSuchAlgorithmException e) {
             SVNErrorManager.error("svn: MD5 algorithm implementation not found");
-        } finally {
-            baseTmpFile.delete();
         }
 
         if (equals && isLocked()) {
@@ -740,6 +732,7 @@ public class SVNDirectory {
 
     public void runLogs() throws SVNException {
         SVNLogRunner runner = new SVNLogRunner();
+        Collection logs = new ArrayList();
         int index = 0;
         while (true) {
             SVNLog log = new SVNLog(this, index);
@@ -747,11 +740,17 @@ public class SVNDirectory {
             getWCAccess().checkCancelled();
             if (log.exists()) {
                 log.run(runner);
+                logs.add(log);
                 continue;
             }
             break;
         }
         runner.logCompleted(this);
+        // logs are removed only when entries changed by them are written.
+        getWCAccess().flushEntries();
+        for (Iterator completed = logs.iterator(); completed.hasNext();) {
+            ((SVNLog) completed.next()).delete();
+        }
     }
 
     public SVNDirectory createChildDirectory(String name, String url,  long revision) throws SVNException {
@@ -770,7 +769,7 @@ public class SVNDirectory {
         }
         rootEntry.setRevision(revision);
         rootEntry.setKind(SVNNodeKind.DIR);
-        child.getEntries().save(true);
+        child.getEntries().writeThrough(true);
         return child;
     }
 
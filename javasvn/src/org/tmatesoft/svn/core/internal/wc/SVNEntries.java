@@ -10,13 +10,14 @@
  */
 package org.tmatesoft.svn.core.internal.wc;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
+import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,7 +27,6 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNProperty;
@@ -39,9 +39,21 @@ import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
  */
 public class SVNEntries {
 
+    private static final Map ourShortNames = new HashMap();
+
+    static {
+        for (int i = 0; i < SVNEntryRecord.ATTRIBUTES.length; i++) {
+            String name = SVNEntryRecord.ATTRIBUTES[i];
+            ourShortNames.put(name.substring(SVNProperty.SVN_ENTRY_PREFIX.length()), name);
+        }
+    }
+
     private File myFile;
     private Map myData;
-    private Set myEntries;
+    // strings shared by entries: url prefixes, uuid, authors.
+    private Map myPool;
+    private SVNWCAccess myWriteBackAccess;
+    private boolean myIsModified;
 
     private static final Set BOOLEAN_PROPERTIES = new HashSet();
 
@@ -64,47 +76,32 @@ public class SVNEntries {
             return;
         }
         myData = new TreeMap();
-        myEntries = new TreeSet();
-        BufferedReader reader = null;
+        myPool = new HashMap();
+        Reader reader = null;
         try {
-            reader = new BufferedReader(new InputStreamReader(SVNFileUtil.openFileForReading(myFile), "UTF-8"));
-            String line;
-            Map entry = null;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.equals("<entry")) {
-                    entry = new HashMap();
+            reader = new InputStreamReader(SVNFileUtil.openFileForReading(myFile), "UTF-8");
+            EntriesParser parser = new EntriesParser(reader);
+            while (parser.nextEntry()) {
+                String entryName = parser.getValue(SVNProperty.NAME);
+                if (entryName == null) {
                     continue;
                 }
-                if (entry != null) {
-                    String name = line.substring(0, line.indexOf('='));
-                    String value = line.substring(line.indexOf('\"') + 1, 
-                            line.lastIndexOf('\"'));
-                    value = SVNEncodingUtil.xmlDecode(value);
-                    entry.put(SVNProperty.SVN_ENTRY_PREFIX + name, value);
-                    if (line.charAt(line.length() - 1) == '>') {
-                        String entryName = (String) entry.get(SVNProperty.NAME);
-                        myData.put(entryName, entry);
-                        myEntries.add(new SVNEntry(this, entryName));
-                        if (!"".equals(entryName)) {
-                            Map rootEntry = (Map) myData.get("");
-                            if (rootEntry != null) {
-                                if (entry.get(SVNProperty.REVISION) == null) {
-                                    entry.put(SVNProperty.REVISION, rootEntry.get(SVNProperty.REVISION));
-                                }
-                                if (entry.get(SVNProperty.URL) == null) {
-                                    String url = (String) rootEntry.get(SVNProperty.URL);
-                                    if (url != null) {
-                                        url = SVNPathUtil.append(url, SVNEncodingUtil.uriEncode(entryName));
-                                    }
-                                    entry.put(SVNProperty.URL, url);
-                                }
-                                if (entry.get(SVNProperty.UUID) == null) {
-                                    entry.put(SVNProperty.UUID, rootEntry.get(SVNProperty.UUID));
-                                }
+                SVNEntryRecord entry = new SVNEntryRecord(entryName);
+                for (int i = 0; i < parser.getCount(); i++) {
+                    entry.set(parser.getName(i), parser.getValue(i), myPool);
+                }
+                myData.put(entryName, entry);
+                if (!"".equals(entryName)) {
+                    SVNEntryRecord rootEntry = (SVNEntryRecord) myData.get("");
+                    if (rootEntry != null) {
+                        String url = null;
+                        if (entry.get(SVNProperty.URL) == null) {
+                            url = rootEntry.get(SVNProperty.URL);
+                            if (url != null) {
+                                url = SVNPathUtil.append(url, SVNEncodingUtil.uriEncode(entryName));
                             }
                         }
-                        entry = null;
+                        entry.inherit(rootEntry, url, myPool);
                     }
                 }
             }
@@ -119,9 +116,63 @@ public class SVNEntries {
         if (myData == null) {
             return;
         }
+        if (myWriteBackAccess != null) {
+            if (!myIsModified) {
+                myIsModified = true;
+                myWriteBackAccess.entriesModified(this);
+            }
+            return;
+        }
+        write();
+        if (close) {
+            close();
+        }
+    }
+
+    /**
+     * Writes entries at once, also in write-back mode. Used for changes that
+     * are not covered by admin logs, like a new admin area or incomplete and
+     * added entries, which have to be on disk before the operation goes on.
+     */
+    public void writeThrough(boolean close) throws SVNException {
+        if (myData == null) {
+            return;
+        }
+        myIsModified = false;
+        write();
+        if (close) {
+            close();
+        }
+    }
+
+    /**
+     * Writes entries saved in write-back mode, does nothing if there were no
+     * changes or if directory was removed since.
+     */
+    public void flush() throws SVNException {
+        if (!myIsModified) {
+            return;
+        }
+        myIsModified = false;
+        if (myData != null && myFile.getParentFile().isDirectory()) {
+            write();
+        }
+    }
+
+    /**
+     * Makes {@link #save(boolean)} only mark entries as modified and
+     * register them in <code>wcAccess</code> to be flushed later,
+     * <code>null</code> turns write-back mode off.
+     */
+    void setWriteBack(SVNWCAccess wcAccess) {
+        myWriteBackAccess = wcAccess;
+    }
+
+    private void write() throws SVNException {
         Writer os = null;
         File tmpFile = new File(myFile.getParentFile(), "tmp/entries");
-        Map rootEntry = (Map) myData.get("");
+        SVNEntryRecord rootEntry = (SVNEntryRecord) myData.get("");
+        String[] propNames = new String[SVNEntryRecord.ATTRIBUTES.length];
         try {
             os = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
             os.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
@@ -130,12 +181,15 @@ public class SVNEntries {
             for (Iterator entries = myData.keySet().iterator(); entries
                     .hasNext();) {
                 String name = (String) entries.next();
-                Map entry = (Map) myData.get(name);
+                SVNEntryRecord entry = (SVNEntryRecord) myData.get(name);
+                if (propNames.length < entry.getMaxNamesCount()) {
+                    propNames = new String[entry.getMaxNamesCount()];
+                }
+                int count = entry.getNames(propNames);
                 os.write("<entry");
-                for (Iterator names = entry.keySet().iterator(); names
-                        .hasNext();) {
-                    String propName = (String) names.next();
-                    String propValue = (String) entry.get(propName);
+                for (int i = 0; i < count; i++) {
+                    String propName = propNames[i];
+                    String propValue = entry.get(propName);
                     if (propValue == null) {
                         continue;
                     }
@@ -145,8 +199,7 @@ public class SVNEntries {
                     }
                     if (!"".equals(name)) {
                         Object expectedValue;
-                        if (SVNProperty.KIND_DIR.equals(entry
-                                .get(SVNProperty.KIND))) {
+                        if (SVNProperty.KIND_DIR.equals(entry.getKind())) {
                             if (SVNProperty.UUID.equals(propName)
                                     || SVNProperty.REVISION.equals(propName)
                                     || SVNProperty.URL.equals(propName)) {
@@ -155,7 +208,7 @@ public class SVNEntries {
                         } else {
                             if (SVNProperty.URL.equals(propName)) {
                                 expectedValue = SVNPathUtil.append(
-                                        (String) rootEntry.get(propName),
+                                        rootEntry.get(propName),
                                         SVNEncodingUtil.uriEncode(name));
                             } else if (SVNProperty.UUID.equals(propName)
                                     || SVNProperty.REVISION.equals(propName)) {
@@ -194,23 +247,24 @@ public class SVNEntries {
         }
         SVNFileUtil.rename(tmpFile, myFile);
         SVNFileUtil.setReadonly(myFile, true);
-        if (close) {
-            close();
-        }
     }
 
     public void close() {
+        if (myIsModified) {
+            // not flushed yet.
+            return;
+        }
         myData = null;
-        myEntries = null;
+        myPool = null;
     }
 
     public String getPropertyValue(String name, String propertyName) {
         if (myData == null) {
             return null;
         }
-        Map entry = (Map) myData.get(name);
+        SVNEntryRecord entry = (SVNEntryRecord) myData.get(name);
         if (entry != null) {
-            return (String) entry.get(propertyName);
+            return entry.get(propertyName);
         }
         return null;
     }
@@ -220,40 +274,34 @@ public class SVNEntries {
         if (myData == null) {
             return false;
         }
-        Map entry = (Map) myData.get(name);
+        SVNEntryRecord entry = (SVNEntryRecord) myData.get(name);
         if (entry != null) {
             if (SVNProperty.SCHEDULE.equals(propertyName)) {
                 if (SVNProperty.SCHEDULE_DELETE.equals(propertyValue)) {
-                    if (SVNProperty.SCHEDULE_ADD.equals(entry
-                            .get(SVNProperty.SCHEDULE))) {
+                    if (SVNProperty.SCHEDULE_ADD.equals(entry.getSchedule())) {
                         if (entry.get(SVNProperty.DELETED) == null) {
                             deleteEntry(name);
                         } else {
-                            entry.remove(SVNProperty.SCHEDULE);
+                            entry.set(SVNProperty.SCHEDULE, null, myPool);
                         }
                         return true;
                     }
                 }
             }
-            if (propertyValue == null) {
-                return entry.remove(propertyName) != null;
-            }
-            return entry.put(propertyName, propertyValue) != null;            
+            return entry.set(propertyName, propertyValue, myPool);
         }
         return false;
     }
 
     public Iterator entries(boolean hidden) {
-        if (myEntries == null) {
+        if (myData == null) {
             return Collections.EMPTY_LIST.iterator();
         }
-        Collection copy = new LinkedList(myEntries);
-        if (!hidden) {
-            for (Iterator iterator = copy.iterator(); iterator.hasNext();) {
-                SVNEntry entry = (SVNEntry) iterator.next();
-                if (entry.isHidden()) {
-                    iterator.remove();
-                }
+        Collection copy = new LinkedList();
+        for (Iterator names = myData.keySet().iterator(); names.hasNext();) {
+            SVNEntry entry = new SVNEntry(this, (String) names.next());
+            if (hidden || !entry.isHidden()) {
+                copy.add(entry);
             }
         }
         return copy.iterator();
@@ -273,31 +321,200 @@ public class SVNEntries {
     public SVNEntry addEntry(String name) {
         if (myData == null) {
             myData = new TreeMap();
-            myEntries = new TreeSet();
+            myPool = new HashMap();
         }
-        if (myData != null) {
-            Map map = myData.containsKey(name) ? (Map) myData.get(name)
-                    : new HashMap();
-            myData.put(name, map);
-            SVNEntry entry = new SVNEntry(this, name);
-            myEntries.add(entry);
-            setPropertyValue(name, SVNProperty.NAME, name);
-            return entry;
+        if (!myData.containsKey(name)) {
+            myData.put(name, new SVNEntryRecord(name));
         }
-        return null;
+        SVNEntry entry = new SVNEntry(this, name);
+        setPropertyValue(name, SVNProperty.NAME, name);
+        return entry;
     }
 
     public void deleteEntry(String name) {
         if (myData != null) {
             myData.remove(name);
-            myEntries.remove(new SVNEntry(this, name));
         }
     }
 
-    Map getEntryMap(String name) {
+    SVNEntryRecord getEntryRecord(String name) {
         if (myData != null && name != null) {
-            return (Map) myData.get(name);
+            return (SVNEntryRecord) myData.get(name);
         }
         return null;
     }
+
+    Map getEntryMap(String name) {
+        SVNEntryRecord entry = getEntryRecord(name);
+        if (entry != null) {
+            return new EntryMap(entry);
+        }
+        return null;
+    }
+
+    /**
+     * Read-only view of entry attributes, keys are full attribute names.
+     */
+    private static class EntryMap extends AbstractMap {
+
+        private SVNEntryRecord myEntry;
+
+        public EntryMap(SVNEntryRecord entry) {
+            myEntry = entry;
+        }
+
+        public Object get(Object key) {
+            return key instanceof String ? myEntry.get((String) key) : null;
+        }
+
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        public Set entrySet() {
+            String[] names = new String[myEntry.getMaxNamesCount()];
+            int count = myEntry.getNames(names);
+            Map snapshot = new HashMap();
+            for (int i = 0; i < count; i++) {
+                snapshot.put(names[i], myEntry.get(names[i]));
+            }
+            return Collections.unmodifiableMap(snapshot).entrySet();
+        }
+    }
+
+    /**
+     * Reads attributes of &lt;entry&gt; elements from the entries file char
+     * by char, other elements are skipped.
+     */
+    private static class EntriesParser {
+
+        private Reader myReader;
+        private char[] myBuffer;
+        private int myPosition;
+        private int myLength;
+        private StringBuffer myToken;
+        private String[] myNames;
+        private String[] myValues;
+        private int myCount;
+
+        public EntriesParser(Reader reader) {
+            myReader = reader;
+            myBuffer = new char[8192];
+            myToken = new StringBuffer();
+            myNames = new String[SVNEntryRecord.ATTRIBUTES.length];
+            myValues = new String[myNames.length];
+        }
+
+        public boolean nextEntry() throws IOException {
+            myCount = 0;
+            while (true) {
+                int ch = skipTo('<');
+                if (ch < 0) {
+                    return false;
+                }
+                myToken.setLength(0);
+                for (ch = read(); ch >= 0 && ch != '>' && ch != '/' && !Character.isWhitespace((char) ch); ch = read()) {
+                    myToken.append((char) ch);
+                }
+                if (ch == '>' || !"entry".equals(myToken.toString())) {
+                    if (ch >= 0 && ch != '>') {
+                        skipTo('>');
+                    }
+                    continue;
+                }
+                readAttributes(ch);
+                return true;
+            }
+        }
+
+        public int getCount() {
+            return myCount;
+        }
+
+        public String getName(int index) {
+            return myNames[index];
+        }
+
+        public String getValue(int index) {
+            return myValues[index];
+        }
+
+        public String getValue(String name) {
+            for (int i = 0; i < myCount; i++) {
+                if (name.equals(myNames[i])) {
+                    return myValues[i];
+                }
+            }
+            return null;
+        }
+
+        private void readAttributes(int ch) throws IOException {
+            while (ch >= 0 && ch != '>') {
+                if (ch == '/' || Character.isWhitespace((char) ch)) {
+                    ch = read();
+                    continue;
+                }
+                myToken.setLength(0);
+                for (; ch >= 0 && ch != '=' && !Character.isWhitespace((char) ch); ch = read()) {
+                    myToken.append((char) ch);
+                }
+                String shortName = myToken.toString();
+                String name = (String) ourShortNames.get(shortName);
+                if (name == null) {
+                    name = SVNProperty.SVN_ENTRY_PREFIX + shortName;
+                }
+                for (ch = read(); ch >= 0 && ch != '"' && ch != '\''; ch = read()) {
+                }
+                if (ch < 0) {
+                    return;
+                }
+                char quote = (char) ch;
+                myToken.setLength(0);
+                boolean escaped = false;
+                for (ch = read(); ch >= 0 && ch != quote; ch = read()) {
+                    escaped |= ch == '&';
+                    myToken.append((char) ch);
+                }
+                String value = myToken.toString();
+                if (escaped) {
+                    value = SVNEncodingUtil.xmlDecode(value);
+                }
+                addAttribute(name, value);
+                ch = read();
+            }
+        }
+
+        private void addAttribute(String name, String value) {
+            if (myCount == myNames.length) {
+                String[] names = new String[myCount * 2];
+                String[] values = new String[myCount * 2];
+                System.arraycopy(myNames, 0, names, 0, myCount);
+                System.arraycopy(myValues, 0, values, 0, myCount);
+                myNames = names;
+                myValues = values;
+            }
+            myNames[myCount] = name;
+            myValues[myCount] = value;
+            myCount++;
+        }
+
+        private int skipTo(char stop) throws IOException {
+            int ch;
+            while ((ch = read()) >= 0 && ch != stop) {
+            }
+            return ch;
+        }
+
+        private int read() throws IOException {
+            if (myPosition == myLength) {
+                myLength = myReader.read(myBuffer, 0, myBuffer.length);
+                myPosition = 0;
+                if (myLength <= 0) {
+                    myLength = 0;
+                    return -1;
+                }
+            }
+            return myBuffer[myPosition++];
+        }
+    }
 }
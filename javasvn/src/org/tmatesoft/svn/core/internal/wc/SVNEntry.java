@@ -79,35 +79,30 @@ public class SVNEntry implements Comparable {
     }
 
     public boolean isDirectory() {
-        return SVNProperty.KIND_DIR.equals(myEntries.getPropertyValue(myName,
-                SVNProperty.KIND));
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        return entry != null && SVNProperty.KIND_DIR == entry.getKind();
     }
 
     public long getRevision() {
-        String revStr = myEntries
-                .getPropertyValue(myName, SVNProperty.REVISION);
-        if (revStr == null && !"".equals(myName)) {
-            revStr = myEntries.getPropertyValue("", SVNProperty.REVISION);
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        long revision = entry != null ? entry.getRevision() : SVNEntryRecord.UNSET;
+        if (revision == SVNEntryRecord.UNSET && !"".equals(myName)) {
+            entry = myEntries.getEntryRecord("");
+            revision = entry != null ? entry.getRevision() : SVNEntryRecord.UNSET;
         }
-        if (revStr == null) {
-            return -1;
-        }
-        return Long.parseLong(revStr);
+        return revision == SVNEntryRecord.UNSET ? -1 : revision;
     }
 
     public boolean isScheduledForAddition() {
-        return SVNProperty.SCHEDULE_ADD.equals(myEntries.getPropertyValue(
-                myName, SVNProperty.SCHEDULE));
+        return SVNProperty.SCHEDULE_ADD.equals(getSchedule());
     }
 
     public boolean isScheduledForDeletion() {
-        return SVNProperty.SCHEDULE_DELETE.equals(myEntries.getPropertyValue(
-                myName, SVNProperty.SCHEDULE));
+        return SVNProperty.SCHEDULE_DELETE.equals(getSchedule());
     }
 
     public boolean isScheduledForReplacement() {
-        return SVNProperty.SCHEDULE_REPLACE.equals(myEntries.getPropertyValue(
-                myName, SVNProperty.SCHEDULE));
+        return SVNProperty.SCHEDULE_REPLACE.equals(getSchedule());
     }
 
     public boolean isHidden() {
@@ -116,8 +111,8 @@ public class SVNEntry implements Comparable {
     }
 
     public boolean isFile() {
-        return SVNProperty.KIND_FILE.equals(myEntries.getPropertyValue(myName,
-                SVNProperty.KIND));
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        return entry != null && SVNProperty.KIND_FILE == entry.getKind();
     }
 
     public String getLockToken() {
@@ -125,13 +120,11 @@ public class SVNEntry implements Comparable {
     }
 
     public boolean isDeleted() {
-        return Boolean.TRUE.toString().equals(
-                myEntries.getPropertyValue(myName, SVNProperty.DELETED));
+        return isFlagSet(SVNProperty.DELETED);
     }
 
     public boolean isAbsent() {
-        return Boolean.TRUE.toString().equals(
-                myEntries.getPropertyValue(myName, SVNProperty.ABSENT));
+        return isFlagSet(SVNProperty.ABSENT);
     }
 
     public String toString() {
@@ -153,8 +146,7 @@ public class SVNEntry implements Comparable {
     }
 
     public boolean isIncomplete() {
-        return Boolean.TRUE.toString().equals(
-                myEntries.getPropertyValue(myName, SVNProperty.INCOMPLETE));
+        return isFlagSet(SVNProperty.INCOMPLETE);
     }
 
     public String getConflictOld() {
@@ -198,12 +190,9 @@ public class SVNEntry implements Comparable {
     }
 
     public long getCommittedRevision() {
-        String rev = myEntries.getPropertyValue(myName,
-                SVNProperty.COMMITTED_REVISION);
-        if (rev == null) {
-            return -1;
-        }
-        return Long.parseLong(rev);
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        long revision = entry != null ? entry.getCommittedRevision() : SVNEntryRecord.UNSET;
+        return revision == SVNEntryRecord.UNSET ? -1 : revision;
     }
 
     public void setTextTime(String time) {
@@ -227,7 +216,8 @@ public class SVNEntry implements Comparable {
     }
 
     public SVNNodeKind getKind() {
-        String kind = myEntries.getPropertyValue(myName, SVNProperty.KIND);
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        String kind = entry != null ? entry.getKind() : null;
         if (SVNProperty.KIND_DIR.equals(kind)) {
             return SVNNodeKind.DIR;
         } else if (SVNProperty.KIND_FILE.equals(kind)) {
@@ -240,6 +230,14 @@ public class SVNEntry implements Comparable {
         return myEntries.getPropertyValue(myName, SVNProperty.TEXT_TIME);
     }
 
+    /**
+     * @return text time in milliseconds or <code>-1</code> when it is not set
+     */
+    public long getTextTimeAsLong() {
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        return entry != null ? entry.getTextTime() : -1;
+    }
+
     public String getChecksum() {
         return myEntries.getPropertyValue(myName, SVNProperty.CHECKSUM);
     }
@@ -314,12 +312,9 @@ public class SVNEntry implements Comparable {
     }
 
     public long getCopyFromRevision() {
-        String rev = myEntries.getPropertyValue(myName,
-                SVNProperty.COPYFROM_REVISION);
-        if (rev == null) {
-            return -1;
-        }
-        return Long.parseLong(rev);
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        long revision = entry != null ? entry.getCopyFromRevision() : SVNEntryRecord.UNSET;
+        return revision == SVNEntryRecord.UNSET ? -1 : revision;
     }
 
     public String getPropTime() {
@@ -331,8 +326,7 @@ public class SVNEntry implements Comparable {
     }
 
     public boolean isCopied() {
-        return Boolean.TRUE.toString().equals(
-                myEntries.getPropertyValue(myName, SVNProperty.COPIED));
+        return isFlagSet(SVNProperty.COPIED);
     }
 
     public String getUUID() {
@@ -365,7 +359,13 @@ public class SVNEntry implements Comparable {
     }
 
     public String getSchedule() {
-        return myEntries.getPropertyValue(myName, SVNProperty.SCHEDULE);
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        return entry != null ? entry.getSchedule() : null;
+    }
+
+    private boolean isFlagSet(String name) {
+        SVNEntryRecord entry = myEntries.getEntryRecord(myName);
+        return entry != null && entry.isFlagSet(name);
     }
 
     public Map asMap() {
@@ -0,0 +1,607 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd. All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which you should
+ * have received as part of this distribution. The terms are also available at
+ * http://tmate.org/svn/license.html. If newer versions of this license are
+ * posted there, you may use a newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.internal.util.SVNTimeUtil;
+
+/**
+ * Attributes of one entry of the entries file. Revisions and timestamps are
+ * kept as numbers, kind, schedule and boolean attributes as flags, URL as a
+ * prefix shared by all entries of the directory and the last path segment.
+ * Values that could not be kept in typed form without changing them (say,
+ * timestamp in unusual format) and attributes not known here are kept as
+ * strings, so {@link #get(String)} always returns exactly the value that was
+ * set.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+class SVNEntryRecord {
+
+    static final long UNSET = Long.MIN_VALUE;
+
+    // attributes in the order they are saved, name goes first.
+    static final String[] ATTRIBUTES = {
+        SVNProperty.NAME, SVNProperty.KIND, SVNProperty.REVISION, SVNProperty.URL,
+        SVNProperty.UUID, SVNProperty.SCHEDULE, SVNProperty.COPIED, SVNProperty.DELETED,
+        SVNProperty.ABSENT, SVNProperty.INCOMPLETE, SVNProperty.COMMITTED_REVISION,
+        SVNProperty.COMMITTED_DATE, SVNProperty.LAST_AUTHOR, SVNProperty.TEXT_TIME,
+        SVNProperty.PROP_TIME, SVNProperty.CHECKSUM, SVNProperty.COPYFROM_URL,
+        SVNProperty.COPYFROM_REVISION,
+    };
+
+    private static final int NAME = 0;
+    private static final int KIND = 1;
+    private static final int REVISION = 2;
+    private static final int URL = 3;
+    private static final int UUID = 4;
+    private static final int SCHEDULE = 5;
+    private static final int COPIED = 6;
+    private static final int DELETED = 7;
+    private static final int ABSENT = 8;
+    private static final int INCOMPLETE = 9;
+    private static final int COMMITTED_REVISION = 10;
+    private static final int COMMITTED_DATE = 11;
+    private static final int LAST_AUTHOR = 12;
+    private static final int TEXT_TIME = 13;
+    private static final int PROP_TIME = 14;
+    private static final int CHECKSUM = 15;
+    private static final int COPYFROM_URL = 16;
+    private static final int COPYFROM_REVISION = 17;
+
+    private static final String[] KINDS = {null, SVNProperty.KIND_FILE, SVNProperty.KIND_DIR};
+    private static final String[] SCHEDULES = {null, SVNProperty.SCHEDULE_ADD,
+        SVNProperty.SCHEDULE_DELETE, SVNProperty.SCHEDULE_REPLACE};
+    private static final String TRUE = Boolean.TRUE.toString();
+
+    private static final Map ourIndexes = new HashMap();
+
+    static {
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            ourIndexes.put(ATTRIBUTES[i], new Integer(i));
+        }
+    }
+
+    private String myName;
+    private byte myKind;
+    private byte mySchedule;
+    private byte myFlags;
+    private long myRevision = UNSET;
+    private long myCommittedRevision = UNSET;
+    private long myCopyFromRevision = UNSET;
+    private long myCommittedDate = UNSET;
+    private long myTextTime = UNSET;
+    private long myPropTime = UNSET;
+    private String myURLPrefix;
+    private String myURLTail;
+    private String myUUID;
+    private String myAuthor;
+    private String myChecksum;
+    private String myCopyFromURL;
+    // name, value pairs of attributes that are kept as strings.
+    private String[] myExtras;
+
+    public SVNEntryRecord(String name) {
+        myName = name;
+    }
+
+    public String getName() {
+        return myName;
+    }
+
+    public String getKind() {
+        return KINDS[myKind];
+    }
+
+    public String getSchedule() {
+        return mySchedule != 0 ? SCHEDULES[mySchedule] : getExtra(SVNProperty.SCHEDULE);
+    }
+
+    public boolean isFlagSet(String name) {
+        int index = getIndex(name);
+        return index >= COPIED && index <= INCOMPLETE && (myFlags & (1 << (index - COPIED))) != 0;
+    }
+
+    /**
+     * @return revision or {@link #UNSET}
+     */
+    public long getRevision() {
+        return myRevision;
+    }
+
+    public long getCommittedRevision() {
+        return myCommittedRevision;
+    }
+
+    public long getCopyFromRevision() {
+        return myCopyFromRevision;
+    }
+
+    /**
+     * @return text time in milliseconds or <code>-1</code> when it is not set
+     */
+    public long getTextTime() {
+        if (myTextTime == UNSET) {
+            String textTime = getExtra(SVNProperty.TEXT_TIME);
+            return textTime != null ? SVNTimeUtil.parseDateAsLong(textTime) : -1;
+        }
+        return floorDiv(myTextTime, 1000);
+    }
+
+    public String get(String name) {
+        switch (getIndex(name)) {
+            case NAME:
+                return myName;
+            case KIND:
+                return myKind != 0 ? KINDS[myKind] : getExtra(name);
+            case SCHEDULE:
+                return getSchedule();
+            case COPIED:
+            case DELETED:
+            case ABSENT:
+            case INCOMPLETE:
+                return isFlagSet(name) ? TRUE : getExtra(name);
+            case REVISION:
+                return toString(myRevision, name);
+            case COMMITTED_REVISION:
+                return toString(myCommittedRevision, name);
+            case COPYFROM_REVISION:
+                return toString(myCopyFromRevision, name);
+            case COMMITTED_DATE:
+                return formatTime(myCommittedDate, name);
+            case TEXT_TIME:
+                return formatTime(myTextTime, name);
+            case PROP_TIME:
+                return formatTime(myPropTime, name);
+            case URL:
+                if (myURLPrefix == null) {
+                    return myURLTail;
+                }
+                return myURLPrefix.concat(myURLTail);
+            case UUID:
+                return myUUID;
+            case LAST_AUTHOR:
+                return myAuthor;
+            case CHECKSUM:
+                return myChecksum;
+            case COPYFROM_URL:
+                return myCopyFromURL;
+            default:
+                return getExtra(name);
+        }
+    }
+
+    /**
+     * Sets attribute value, <code>null</code> value removes the attribute.
+     * Strings that are the same for many entries (URL prefix, UUID, author)
+     * are shared through the <code>pool</code>.
+     *
+     * @return <code>true</code> if attribute was set before
+     */
+    public boolean set(String name, String value, Map pool) {
+        int index = getIndex(name);
+        boolean existed = get(name) != null;
+        clear(index);
+        removeExtra(name);
+        if (value == null) {
+            return existed;
+        }
+        boolean typed = true;
+        switch (index) {
+            case NAME:
+                myName = value;
+                break;
+            case KIND:
+                myKind = (byte) indexOf(KINDS, value);
+                typed = myKind > 0;
+                break;
+            case SCHEDULE:
+                mySchedule = (byte) indexOf(SCHEDULES, value);
+                typed = mySchedule > 0;
+                break;
+            case COPIED:
+            case DELETED:
+            case ABSENT:
+            case INCOMPLETE:
+                typed = TRUE.equals(value);
+                if (typed) {
+                    myFlags |= 1 << (index - COPIED);
+                }
+                break;
+            case REVISION:
+                myRevision = parseLong(value);
+                typed = myRevision != UNSET;
+                break;
+            case COMMITTED_REVISION:
+                myCommittedRevision = parseLong(value);
+                typed = myCommittedRevision != UNSET;
+                break;
+            case COPYFROM_REVISION:
+                myCopyFromRevision = parseLong(value);
+                typed = myCopyFromRevision != UNSET;
+                break;
+            case COMMITTED_DATE:
+                myCommittedDate = parseTime(value);
+                typed = myCommittedDate != UNSET;
+                break;
+            case TEXT_TIME:
+                myTextTime = parseTime(value);
+                typed = myTextTime != UNSET;
+                break;
+            case PROP_TIME:
+                myPropTime = parseTime(value);
+                typed = myPropTime != UNSET;
+                break;
+            case URL:
+                int slash = value.lastIndexOf('/');
+                if (slash < 0) {
+                    myURLTail = value;
+                    break;
+                }
+                myURLPrefix = share(value.substring(0, slash + 1), pool);
+                String tail = value.substring(slash + 1);
+                myURLTail = tail.equals(myName) ? myName : new String(tail);
+                break;
+            case UUID:
+                myUUID = share(value, pool);
+                break;
+            case LAST_AUTHOR:
+                myAuthor = share(value, pool);
+                break;
+            case CHECKSUM:
+                myChecksum = value;
+                break;
+            case COPYFROM_URL:
+                myCopyFromURL = value;
+                break;
+            default:
+                typed = false;
+        }
+        if (!typed) {
+            setExtra(share(name, pool), value);
+        }
+        return existed;
+    }
+
+    /**
+     * Copies revision, URL and UUID of the directory entry if they are not set.
+     */
+    public void inherit(SVNEntryRecord root, String url, Map pool) {
+        if (myRevision == UNSET && getExtra(SVNProperty.REVISION) == null) {
+            myRevision = root.myRevision;
+            if (myRevision == UNSET) {
+                set(SVNProperty.REVISION, root.getExtra(SVNProperty.REVISION), pool);
+            }
+        }
+        if (myURLTail == null && url != null) {
+            set(SVNProperty.URL, url, pool);
+        }
+        if (myUUID == null) {
+            myUUID = root.myUUID;
+        }
+    }
+
+    /**
+     * Fills <code>names</code> with names of attributes that are set.
+     *
+     * @return number of names
+     */
+    public int getNames(String[] names) {
+        int count = 0;
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            if (i < KIND || isTyped(i)) {
+                names[count++] = ATTRIBUTES[i];
+            }
+        }
+        for (int i = 0; myExtras != null && i < myExtras.length; i += 2) {
+            if (myExtras[i] != null) {
+                names[count++] = myExtras[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return upper bound of the number of attributes that are set
+     */
+    public int getMaxNamesCount() {
+        return ATTRIBUTES.length + (myExtras != null ? myExtras.length / 2 : 0);
+    }
+
+    private boolean isTyped(int index) {
+        switch (index) {
+            case KIND:
+                return myKind != 0;
+            case SCHEDULE:
+                return mySchedule != 0;
+            case COPIED:
+            case DELETED:
+            case ABSENT:
+            case INCOMPLETE:
+                return (myFlags & (1 << (index - COPIED))) != 0;
+            case REVISION:
+                return myRevision != UNSET;
+            case COMMITTED_REVISION:
+                return myCommittedRevision != UNSET;
+            case COPYFROM_REVISION:
+                return myCopyFromRevision != UNSET;
+            case COMMITTED_DATE:
+                return myCommittedDate != UNSET;
+            case TEXT_TIME:
+                return myTextTime != UNSET;
+            case PROP_TIME:
+                return myPropTime != UNSET;
+            case URL:
+                return myURLTail != null;
+            case UUID:
+                return myUUID != null;
+            case LAST_AUTHOR:
+                return myAuthor != null;
+            case CHECKSUM:
+                return myChecksum != null;
+            case COPYFROM_URL:
+                return myCopyFromURL != null;
+        }
+        return false;
+    }
+
+    private void clear(int index) {
+        switch (index) {
+            case KIND:
+                myKind = 0;
+                break;
+            case SCHEDULE:
+                mySchedule = 0;
+                break;
+            case COPIED:
+            case DELETED:
+            case ABSENT:
+            case INCOMPLETE:
+                myFlags &= ~(1 << (index - COPIED));
+                break;
+            case REVISION:
+                myRevision = UNSET;
+                break;
+            case COMMITTED_REVISION:
+                myCommittedRevision = UNSET;
+                break;
+            case COPYFROM_REVISION:
+                myCopyFromRevision = UNSET;
+                break;
+            case COMMITTED_DATE:
+                myCommittedDate = UNSET;
+                break;
+            case TEXT_TIME:
+                myTextTime = UNSET;
+                break;
+            case PROP_TIME:
+                myPropTime = UNSET;
+                break;
+            case URL:
+                myURLPrefix = null;
+                myURLTail = null;
+                break;
+            case UUID:
+                myUUID = null;
+                break;
+            case LAST_AUTHOR:
+                myAuthor = null;
+                break;
+            case CHECKSUM:
+                myChecksum = null;
+                break;
+            case COPYFROM_URL:
+                myCopyFromURL = null;
+                break;
+        }
+    }
+
+    private String getExtra(String name) {
+        for (int i = 0; myExtras != null && i < myExtras.length; i += 2) {
+            if (name.equals(myExtras[i])) {
+                return myExtras[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private void setExtra(String name, String value) {
+        int free = -1;
+        for (int i = 0; myExtras != null && i < myExtras.length; i += 2) {
+            if (myExtras[i] == null) {
+                free = i;
+                break;
+            }
+        }
+        if (free < 0) {
+            String[] extras = new String[myExtras == null ? 2 : myExtras.length + 2];
+            if (myExtras != null) {
+                System.arraycopy(myExtras, 0, extras, 0, myExtras.length);
+            }
+            free = extras.length - 2;
+            myExtras = extras;
+        }
+        myExtras[free] = name;
+        myExtras[free + 1] = value;
+    }
+
+    private void removeExtra(String name) {
+        for (int i = 0; myExtras != null && i < myExtras.length; i += 2) {
+            if (name.equals(myExtras[i])) {
+                myExtras[i] = null;
+                myExtras[i + 1] = null;
+            }
+        }
+    }
+
+    private String toString(long number, String name) {
+        return number != UNSET ? Long.toString(number) : getExtra(name);
+    }
+
+    private String formatTime(long time, String name) {
+        return time != UNSET ? formatTime(time) : getExtra(name);
+    }
+
+    private static int getIndex(String name) {
+        Integer index = (Integer) ourIndexes.get(name);
+        return index != null ? index.intValue() : -1;
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static String share(String value, Map pool) {
+        String shared = (String) pool.get(value);
+        if (shared == null) {
+            // do not keep char array of a larger string.
+            shared = new String(value);
+            pool.put(shared, shared);
+        }
+        return shared;
+    }
+
+    /**
+     * @return number or {@link #UNSET} if <code>Long.toString</code> would
+     *         not give the same string for it
+     */
+    static long parseLong(String value) {
+        int length = value.length();
+        int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 18 || (value.charAt(start) == '0' && length - start > 1)) {
+            return UNSET;
+        }
+        long result = 0;
+        for (int i = start; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return UNSET;
+            }
+            result = result * 10 + (ch - '0');
+        }
+        if (start > 0 && result == 0) {
+            return UNSET;
+        }
+        return start > 0 ? -result : result;
+    }
+
+    /**
+     * Parses time in 'yyyy-MM-ddTHH:mm:ss.uuuuuuZ' format, the one svn uses
+     * in the entries file.
+     *
+     * @return microseconds since epoch or {@link #UNSET} if time is in other
+     *         format
+     */
+    static long parseTime(String value) {
+        if (value.length() != 27 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T' ||
+                value.charAt(13) != ':' || value.charAt(16) != ':' || value.charAt(19) != '.' || value.charAt(26) != 'Z') {
+            return UNSET;
+        }
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 2);
+        int day = parseDigits(value, 8, 2);
+        int hour = parseDigits(value, 11, 2);
+        int minute = parseDigits(value, 14, 2);
+        int second = parseDigits(value, 17, 2);
+        int micros = parseDigits(value, 20, 6);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month) ||
+                hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || micros < 0) {
+            return UNSET;
+        }
+        long days = getDaysFromEpoch(year, month, day);
+        return ((days * 24 + hour) * 60 * 60 + minute * 60 + second) * 1000000L + micros;
+    }
+
+    static String formatTime(long time) {
+        long seconds = floorDiv(time, 1000000);
+        int micros = (int) (time - seconds * 1000000);
+        long days = floorDiv(seconds, 24 * 60 * 60);
+        int secondOfDay = (int) (seconds - days * 24 * 60 * 60);
+
+        // civil date from days since epoch, see days_from_civil by H. Hinnant.
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        char[] chars = new char[27];
+        appendDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        appendDigits(chars, 5, month, 2);
+        chars[7] = '-';
+        appendDigits(chars, 8, day, 2);
+        chars[10] = 'T';
+        appendDigits(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        appendDigits(chars, 14, (secondOfDay / 60) % 60, 2);
+        chars[16] = ':';
+        appendDigits(chars, 17, secondOfDay % 60, 2);
+        chars[19] = '.';
+        appendDigits(chars, 20, micros, 6);
+        chars[26] = 'Z';
+        return new String(chars);
+    }
+
+    private static long getDaysFromEpoch(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static int parseDigits(String value, int offset, int length) {
+        int result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            result = result * 10 + (ch - '0');
+        }
+        return result;
+    }
+
+    private static void appendDigits(char[] chars, int offset, int value, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.StringTokenizer;
+
+import org.tmatesoft.svn.util.SVNDebugLog;
+
+/**
+ * Provider that runs <code>ls</code>, <code>chmod</code> and <code>ln</code>
+ * for attributes <code>java.io.File</code> does not know about. Used when
+ * native file attributes are not available in the running JVM.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class SVNExecFileAttributesProvider implements ISVNFileAttributesProvider {
+
+    private static String ourGroupID;
+    private static String ourUserID;
+
+    public SVNFileType getType(File file) {
+        if (file == null) {
+            return SVNFileType.UNKNOWN;
+        }
+        if (!SVNFileUtil.isWindows) {
+            String absolutePath = file.getAbsolutePath();
+            String canonicalPath;
+            try {
+                canonicalPath = file.getCanonicalPath();
+            } catch (IOException e) {
+                canonicalPath = file.getAbsolutePath();
+            }
+            if (!file.exists()) {
+                File[] children = file.getParentFile().listFiles();
+                for (int i = 0; children != null && i < children.length; i++) {
+                    File child = children[i];
+                    if (child.getName().equals(file.getName())) {
+                        if (isSymlink(file)) {
+                               return SVNFileType.SYMLINK;
+                        }
+                    }
+                }
+            } else if (!absolutePath.equals(canonicalPath) && isSymlink(file)) {
+                return SVNFileType.SYMLINK;
+            }
+        }
+
+        if (file.isFile()) {
+            return SVNFileType.FILE;
+        } else if (file.isDirectory()) {
+            return SVNFileType.DIRECTORY;
+        } else if (!file.exists()) {
+            return SVNFileType.NONE;
+        }
+        return SVNFileType.UNKNOWN;
+    }
+
+    public boolean isExecutable(File file) {
+        if (SVNFileUtil.isWindows) {
+            return false;
+        }
+        // directory itself, not its contents.
+        String line = execCommand(new String[] { "ls", "-ldn", file.getAbsolutePath() });
+        return isExecutable(line);
+    }
+
+    public String getSymlinkName(File link) {
+        if (SVNFileUtil.isWindows || link == null) {
+            return null;
+        }
+        String ls = execCommand(new String[] { "ls", "-ld", link.getAbsolutePath() });
+        return getSymlinkName(ls);
+    }
+
+    public void setExecutable(File file, boolean executable) {
+        if (SVNFileUtil.isWindows || file == null || !file.exists()) {
+            return;
+        }
+        try {
+            execCommand(new String[] { "chmod", executable ? "ugo+x" : "ugo-x",
+                    file.getAbsolutePath() });
+        } catch (Throwable th) {
+            SVNDebugLog.logInfo(th);
+        }
+    }
+
+    public boolean createSymlink(File link, String linkName) {
+        execCommand(new String[] { "ln", "-s", linkName, link.getAbsolutePath() });
+        return isSymlink(link);
+    }
+
+    public SVNFileAttributes readAttributes(File file) {
+        if (SVNFileUtil.isWindows) {
+            SVNFileType type = file.isFile() ? SVNFileType.FILE : (file.isDirectory() ? SVNFileType.DIRECTORY : SVNFileType.NONE);
+            return new SVNFileAttributes(type, file.length(), file.lastModified(), false, null);
+        }
+        // single process for all attributes.
+        String line = execCommand(new String[] { "ls", "-ldn", file.getAbsolutePath() });
+        if (line == null || line.length() == 0) {
+            return new SVNFileAttributes(SVNFileType.NONE, 0, 0, false, null);
+        }
+        SVNFileType type;
+        switch (line.charAt(0)) {
+            case 'l':
+                type = SVNFileType.SYMLINK;
+                break;
+            case 'd':
+                type = SVNFileType.DIRECTORY;
+                break;
+            case '-':
+                type = SVNFileType.FILE;
+                break;
+            default:
+                type = SVNFileType.UNKNOWN;
+        }
+        String symlinkName = type == SVNFileType.SYMLINK ? getSymlinkName(line) : null;
+        return new SVNFileAttributes(type, file.length(), file.lastModified(), isExecutable(line), symlinkName);
+    }
+
+    private boolean isSymlink(File file) {
+        if (SVNFileUtil.isWindows || file == null) {
+            return false;
+        }
+        String line = execCommand(new String[] { "ls", "-ld",
+                file.getAbsolutePath() });
+        return line != null && line.startsWith("l");
+    }
+
+    private static String getSymlinkName(String ls) {
+        if (ls == null || ls.lastIndexOf(" -> ") < 0) {
+            return null;
+        }
+        return ls.substring(ls.lastIndexOf(" -> ") + " -> ".length()).trim();
+    }
+
+    private static boolean isExecutable(String line) {
+        if (line == null || line.indexOf(' ') < 0) {
+            return false;
+        }
+        int index = 0;
+
+        String mod = null;
+        String fuid = null;
+        String fgid = null;
+        for (StringTokenizer tokens = new StringTokenizer(line, " \t"); tokens
+                .hasMoreTokens();) {
+            String token = tokens.nextToken();
+            if (index == 0) {
+                mod = token;
+            } else if (index == 2) {
+                fuid = token;
+            } else if (index == 3) {
+                fgid = token;
+            } else if (index > 3) {
+                break;
+            }
+            index++;
+        }
+        if (mod == null) {
+            return false;
+        }
+        if (getCurrentUser().equals(fuid)) {
+            return mod.toLowerCase().indexOf('x') >= 0
+                    && mod.toLowerCase().indexOf('x') < 4;
+        } else if (getCurrentGroup().equals(fgid)) {
+            return mod.toLowerCase().indexOf('x', 4) >= 4
+                    && mod.toLowerCase().indexOf('x', 4) < 7;
+        } else {
+            return mod.toLowerCase().indexOf('x', 7) >= 7;
+        }
+    }
+
+    static String execCommand(String[] commandLine) {
+        InputStream is = null;
+        StringBuffer result = new StringBuffer();
+        try {
+            Process process = Runtime.getRuntime().exec(commandLine);
+            is = process.getInputStream();
+            int rc = process.waitFor();
+            if (rc != 0) {
+                return null;
+            }
+            int r;
+            while ((r = is.read()) >= 0) {
+                result.append((char) (r & 0xFF));
+            }
+            return result.toString().trim();
+        } catch (IOException e) {
+            SVNDebugLog.logInfo(e);
+        } catch (InterruptedException e) {
+            SVNDebugLog.logInfo(e);
+        } finally {
+            SVNFileUtil.closeFile(is);
+        }
+        return null;
+    }
+
+    static String getCurrentUser() {
+        if (SVNFileUtil.isWindows) {
+            return System.getProperty("user.name");
+        }
+        if (ourUserID == null) {
+            ourUserID = execCommand(new String[] { "id", "-u" });
+            if (ourUserID == null) {
+                ourUserID = "0";
+            }
+        }
+        return ourUserID;
+    }
+
+    static String getCurrentGroup() {
+        if (SVNFileUtil.isWindows) {
+            return System.getProperty("user.name");
+        }
+        if (ourGroupID == null) {
+            ourGroupID = execCommand(new String[] { "id", "-g" });
+            if (ourGroupID == null) {
+                ourGroupID = "0";
+            }
+        }
+        return ourGroupID;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+/**
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ * @see     ISVNFileAttributesProvider#readAttributes(java.io.File)
+ */
+public class SVNFileAttributes {
+
+    private SVNFileType myType;
+    private long myLength;
+    private long myLastModified;
+    private boolean myIsExecutable;
+    private String mySymlinkName;
+
+    public SVNFileAttributes(SVNFileType type, long length, long lastModified, boolean executable, String symlinkName) {
+        myType = type;
+        myLength = length;
+        myLastModified = lastModified;
+        myIsExecutable = executable;
+        mySymlinkName = symlinkName;
+    }
+
+    public SVNFileType getType() {
+        return myType;
+    }
+
+    public long getLength() {
+        return myLength;
+    }
+
+    public long lastModified() {
+        return myLastModified;
+    }
+
+    public boolean isExecutable() {
+        return myIsExecutable;
+    }
+
+    public String getSymlinkName() {
+        return mySymlinkName;
+    }
+}
@@ -11,7 +11,6 @@
 package org.tmatesoft.svn.core.internal.wc;
 
 import java.io.File;
-import java.io.IOException;
 
 import org.tmatesoft.svn.core.SVNNodeKind;
 
@@ -52,37 +51,7 @@ public class SVNFileType {
         if (file == null) {
             return SVNFileType.UNKNOWN;
         }
-        if (!SVNFileUtil.isWindows) {
-            String absolutePath = file.getAbsolutePath();
-            String canonicalPath;
-            try {
-                canonicalPath = file.getCanonicalPath();
-            } catch (IOException e) {
-                canonicalPath = file.getAbsolutePath();
-            }
-            if (!file.exists()) {
-                File[] children = file.getParentFile().listFiles();
-                for (int i = 0; children != null && i < children.length; i++) {
-                    File child = children[i];
-                    if (child.getName().equals(file.getName())) {
-                        if (SVNFileUtil.isSymlink(file)) {
-                               return SVNFileType.SYMLINK;
-                        }
-                    }
-                }
-            } else if (!absolutePath.equals(canonicalPath) && SVNFileUtil.isSymlink(file)) {
-                return SVNFileType.SYMLINK;
-            }
-        }
-
-        if (file.isFile()) {
-            return SVNFileType.FILE;
-        } else if (file.isDirectory()) {
-            return SVNFileType.DIRECTORY;
-        } else if (!file.exists()) {
-            return SVNFileType.NONE;
-        }
-        return SVNFileType.UNKNOWN;
+        return SVNFileUtil.getFileAttributesProvider().getType(file);
     }
 
     public static boolean equals(SVNFileType type, SVNNodeKind nodeKind) {
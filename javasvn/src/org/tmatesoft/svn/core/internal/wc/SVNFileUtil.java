@@ -26,7 +26,6 @@ import java.io.Writer;
 import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.StringTokenizer;
 
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.wc.ISVNEventHandler;
@@ -51,16 +50,44 @@ public class SVNFileUtil {
     };
     
 
-    private static String ourGroupID;
-    private static String ourUserID;
     private static final String BINARY_MIME_TYPE = "application/octet-stream";
 
+    private static ISVNFileAttributesProvider ourAttributesProvider;
+
     static {
         String osName = System.getProperty("os.name");
         isWindows = osName != null
                 && osName.toLowerCase().indexOf("windows") >= 0;
     }
 
+    /**
+     * Sets provider used to read and change symlinks and executable bit,
+     * <code>null</code> restores the default one.
+     */
+    public static synchronized void setFileAttributesProvider(ISVNFileAttributesProvider provider) {
+        ourAttributesProvider = provider;
+    }
+
+    /**
+     * Returns provider used to read and change symlinks and executable bit.
+     * By default native attributes are used when the JVM supports them,
+     * otherwise <code>ls</code>, <code>chmod</code> and <code>ln</code> are
+     * executed.
+     */
+    public static synchronized ISVNFileAttributesProvider getFileAttributesProvider() {
+        if (ourAttributesProvider == null) {
+            ourAttributesProvider = SVNPosixFileAttributesProvider.create();
+            if (ourAttributesProvider == null) {
+                ourAttributesProvider = new SVNExecFileAttributesProvider();
+            }
+        }
+        return ourAttributesProvider;
+    }
+
+    public static SVNFileAttributes readAttributes(File file) {
+        return getFileAttributesProvider().readAttributes(file);
+    }
+
     public static String getBasePath(File file) {
         File base = file.getParentFile();
         while (base != null) {
@@ -157,21 +184,14 @@ public class SVNFileUtil {
         if (isWindows || file == null || !file.exists()) {
             return;
         }
-        try {
-            execCommand(new String[] { "chmod", executable ? "ugo+x" : "ugo-x",
-                    file.getAbsolutePath() });
-        } catch (Throwable th) {
-            SVNDebugLog.logInfo(th);
-        }
+        getFileAttributesProvider().setExecutable(file, executable);
     }
 
     public static boolean isSymlink(File file) {
         if (isWindows || file == null) {
             return false;
         }
-        String line = execCommand(new String[] { "ls", "-ld",
-                file.getAbsolutePath() });
-        return line != null && line.startsWith("l");
+        return getFileAttributesProvider().getType(file) == SVNFileType.SYMLINK;
     }
 
     public static void copy(File src, File dst, boolean safe, boolean copyAdminDirectories) throws SVNException {
@@ -214,28 +234,12 @@ public class SVNFileUtil {
         try {
             srcChannel = new FileInputStream(src).getChannel();
             dstChannel = new FileOutputStream(tmpDst).getChannel();
-            long count = srcChannel.size();
-            while (count > 0) {
-                count -= dstChannel.transferFrom(srcChannel, 0, srcChannel
-                        .size());
-            }
+            transfer(srcChannel, dstChannel);
         } catch (IOException e) {
             SVNErrorManager.error("svn: Cannot copy file '" + src + "' to '" + dst + "'");
         } finally {
-            if (dstChannel != null) {
-                try {
-                    dstChannel.close();
-                } catch (IOException e) {
-                    //
-                }
-            }
-            if (srcChannel != null) {
-                try {
-                    srcChannel.close();
-                } catch (IOException e) {
-                    //
-                }
-            }
+            closeChannel(dstChannel);
+            closeChannel(srcChannel);
         }
         if (safe && tmpDst != dst) {
             rename(tmpDst, dst);
@@ -243,6 +247,43 @@ public class SVNFileUtil {
         dst.setLastModified(src.lastModified());
     }
 
+    public static void appendFile(File src, File dst) throws SVNException {
+        FileChannel srcChannel = null;
+        FileChannel dstChannel = null;
+        try {
+            srcChannel = new FileInputStream(src).getChannel();
+            dstChannel = new FileOutputStream(dst, true).getChannel();
+            transfer(srcChannel, dstChannel);
+        } catch (IOException e) {
+            SVNErrorManager.error("svn: Cannot append data to file '" + dst + "'");
+        } finally {
+            closeChannel(dstChannel);
+            closeChannel(srcChannel);
+        }
+    }
+
+    private static void transfer(FileChannel src, FileChannel dst) throws IOException {
+        long size = src.size();
+        long position = 0;
+        while (position < size) {
+            long count = src.transferTo(position, size - position, dst);
+            if (count <= 0) {
+                break;
+            }
+            position += count;
+        }
+    }
+
+    private static void closeChannel(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //
+            }
+        }
+    }
+
     public static boolean createSymlink(File link, File linkName)
             throws SVNException {
         if (isWindows) {
@@ -265,8 +306,7 @@ public class SVNFileUtil {
     }
 
     public static boolean createSymlink(File link, String linkName) {
-        execCommand(new String[] { "ln", "-s", linkName, link.getAbsolutePath() });
-        return isSymlink(link);
+        return getFileAttributesProvider().createSymlink(link, linkName);
     }
 
     public static boolean detranslateSymlink(File src, File linkFile)
@@ -296,11 +336,7 @@ public class SVNFileUtil {
         if (isWindows || link == null) {
             return null;
         }
-        String ls = execCommand(new String[] { "ls", "-ld", link.getAbsolutePath() });
-        if (ls == null || ls.lastIndexOf(" -> ") < 0) {
-            return null;
-        }
-        return ls.substring(ls.lastIndexOf(" -> ") + " -> ".length()).trim();
+        return getFileAttributesProvider().getSymlinkName(link);
     }
 
     public static String computeChecksum(String line) {
@@ -531,43 +567,7 @@ public class SVNFileUtil {
         if (isWindows) {
             return false;
         }
-        String[] commandLine = new String[] { "ls", "-ln",
-                file.getAbsolutePath() };
-        String line = execCommand(commandLine);
-        if (line == null || line.indexOf(' ') < 0) {
-            return false;
-        }
-        int index = 0;
-
-        String mod = null;
-        String fuid = null;
-        String fgid = null;
-        for (StringTokenizer tokens = new StringTokenizer(line, " \t"); tokens
-                .hasMoreTokens();) {
-            String token = tokens.nextToken();
-            if (index == 0) {
-                mod = token;
-            } else if (index == 2) {
-                fuid = token;
-            } else if (index == 3) {
-                fgid = token;
-            } else if (index > 3) {
-                break;
-            }
-            index++;
-        }
-        if (mod == null) {
-            return false;
-        }
-        if (getCurrentUser().equals(fuid)) {
-            return mod.toLowerCase().indexOf('x') >= 0
-                    && mod.toLowerCase().indexOf('x') < 4;
-        } else if (getCurrentGroup().equals(fgid)) {
-            return mod.toLowerCase().indexOf('x', 4) >= 4
-                    && mod.toLowerCase().indexOf('x', 4) < 7;
-        } else {
-            return mod.toLowerCase().indexOf('x', 7) >= 7;
-        }
+        return getFileAttributesProvider().isExecutable(file);
     }
 
     public static void copyDirectory(File srcDir, File dstDir, boolean copyAdminDir, ISVNEventHandler cancel) throws SVNException {
@@ -588,14 +588,14 @@ public class SVNFileUtil {
             if (!copyAdminDir && file.getName().equals(".svn")) {
                 continue;
             }
-            SVNFileType fileType = SVNFileType.getType(file);
+            SVNFileAttributes attributes = readAttributes(file);
+            SVNFileType fileType = attributes.getType();
             File dst = new File(dstDir, file.getName());
 
             if (fileType == SVNFileType.FILE) {
-                boolean executable = isExecutable(file);
                 copyFile(file, dst, false);
-                if (executable) {
-                    setExecutable(dst, executable);
+                if (attributes.isExecutable()) {
+                    setExecutable(dst, true);
                 }
             } else if (fileType == SVNFileType.DIRECTORY) {
                 copyDirectory(file, dst, copyAdminDir, cancel);
@@ -603,8 +603,7 @@ public class SVNFileUtil {
                     setHidden(dst, true);
                 }
             } else if (fileType == SVNFileType.SYMLINK) {
-                String name = getSymlinkName(file);
-                createSymlink(dst, name);
+                createSymlink(dst, attributes.getSymlinkName());
             }
         }
     }
@@ -676,57 +675,6 @@ public class SVNFileUtil {
         }
     }
 
-    private static String execCommand(String[] commandLine) {
-        InputStream is = null;
-        StringBuffer result = new StringBuffer();
-        try {
-            Process process = Runtime.getRuntime().exec(commandLine);
-            is = process.getInputStream();
-            int rc = process.waitFor();
-            if (rc != 0) {
-                return null;
-            }
-            int r;
-            while ((r = is.read()) >= 0) {
-                result.append((char) (r & 0xFF));
-            }
-            return result.toString().trim();
-        } catch (IOException e) {
-            SVNDebugLog.logInfo(e);
-        } catch (InterruptedException e) {
-            SVNDebugLog.logInfo(e);
-        } finally {
-            closeFile(is);
-        }
-        return null;
-    }
-
-    private static String getCurrentUser() {
-        if (isWindows) {
-            return System.getProperty("user.name");
-        }
-        if (ourUserID == null) {
-            ourUserID = execCommand(new String[] { "id", "-u" });
-            if (ourUserID == null) {
-                ourUserID = "0";
-            }
-        }
-        return ourUserID;
-    }
-
-    private static String getCurrentGroup() {
-        if (isWindows) {
-            return System.getProperty("user.name");
-        }
-        if (ourGroupID == null) {
-            ourGroupID = execCommand(new String[] { "id", "-g" });
-            if (ourGroupID == null) {
-                ourGroupID = "0";
-            }
-        }
-        return ourGroupID;
-    }
-
     public static void closeFile(Writer os) {
         if (os != null) {
             try {
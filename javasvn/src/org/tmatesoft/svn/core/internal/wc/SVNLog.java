@@ -16,18 +16,38 @@ import org.tmatesoft.svn.core.internal.util.SVNEncodingUtil;
 import org.tmatesoft.svn.core.wc.SVNStatusType;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
+ * Log of the working copy administrative operations, file
+ * <code>.svn/log</code> or <code>.svn/log.N</code>.
+ * 
+ * <p>
+ * Log is saved in XML format understood by Subversion, so that native
+ * 'svn cleanup' could complete interrupted operation. When binary format is
+ * enabled with {@link #setBinaryFormat(boolean)} or with
+ * <code>javasvn.admin.binaryLog</code> system property, log is saved as a
+ * sequence of binary records instead: command opcode, number of attributes
+ * and attributes, known attribute names are written as codes. Such log is
+ * read in one pass without parsing, but only JavaSVN is able to run it. Logs
+ * in both formats are always read and run.
+ * 
  * @version 1.0
  * @author TMate Software Ltd.
  */
@@ -82,6 +102,36 @@ public class SVNLog {
 
     public static final String WC_TIMESTAMP = "working";
 
+    // opcodes, indexes in COMMANDS.
+    static final int DELETE_ENTRY_CODE = 0;
+    static final int MODIFY_ENTRY_CODE = 1;
+    static final int MODIFY_WC_PROPERTY_CODE = 2;
+    static final int DELETE_LOCK_CODE = 3;
+    static final int MOVE_CODE = 4;
+    static final int APPEND_CODE = 5;
+    static final int DELETE_CODE = 6;
+    static final int READONLY_CODE = 7;
+    static final int COPY_AND_TRANSLATE_CODE = 8;
+    static final int COPY_AND_DETRANSLATE_CODE = 9;
+    static final int MERGE_CODE = 10;
+    static final int MAYBE_READONLY_CODE = 11;
+    static final int SET_TIMESTAMP_CODE = 12;
+    static final int COMMIT_CODE = 13;
+
+    private static final String[] COMMANDS = { DELETE_ENTRY, MODIFY_ENTRY,
+            MODIFY_WC_PROPERTY, DELETE_LOCK, MOVE, APPEND, DELETE, READONLY,
+            COPY_AND_TRANSLATE, COPY_AND_DETRANSLATE, MERGE, MAYBE_READONLY,
+            SET_TIMESTAMP, COMMIT };
+
+    // attribute code is index + 1, 0 means that name is written as string.
+    private static final String[] ATTRIBUTES = { NAME_ATTR, DEST_ATTR,
+            PROPERTY_NAME_ATTR, PROPERTY_VALUE_ATTR, TIMESTAMP_ATTR,
+            REVISION_ATTR, ATTR1, ATTR2, ATTR3, ATTR4, ATTR5, ATTR6 };
+
+    private static final byte[] BINARY_HEADER = { 'J', 'S', 'V', 'N', 'L', 'O', 'G', 2 };
+
+    private static boolean ourIsBinaryFormat = Boolean.getBoolean("javasvn.admin.binaryLog");
+
     private File myFile;
 
     private File myTmpFile;
@@ -90,6 +140,19 @@ public class SVNLog {
 
     private SVNDirectory myDirectory;
 
+    /**
+     * Makes logs to be saved in binary format, that is faster to read, but is
+     * not understood by Subversion. Working copies with unfinished binary
+     * logs could be cleaned up with JavaSVN only.
+     */
+    public static void setBinaryFormat(boolean binary) {
+        ourIsBinaryFormat = binary;
+    }
+
+    public static boolean isBinaryFormat() {
+        return ourIsBinaryFormat;
+    }
+
     public SVNLog(SVNDirectory directory, int id) {
         String name = id == 0 ? "log" : "log." + id;
         myFile = new File(directory.getRoot(), ".svn/" + name);
@@ -99,12 +162,14 @@ public class SVNLog {
 
     public void addCommand(String name, Map attributes, boolean save)
             throws SVNException {
+        int code = getCommandCode(name);
+        if (code < 0) {
+            SVNErrorManager.error("svn: Unrecognized logfile element '" + name + "' in '" + myFile + "'");
+        }
         if (myCache == null) {
             myCache = new ArrayList();
         }
-        attributes = new HashMap(attributes);
-        attributes.put("", name);
-        myCache.add(attributes);
+        myCache.add(new LogCommand(code, new LinkedHashMap(attributes)));
         if (save) {
             save();
         }
@@ -116,6 +181,7 @@ public class SVNLog {
         if (modifiedEntryProps != null) {
             Map command = new HashMap();
             command.put(SVNLog.NAME_ATTR, name);
+            Map modifyCommand = new HashMap(command);
             for (Iterator names = modifiedEntryProps.keySet().iterator(); names
                     .hasNext();) {
                 String propName = (String) names.next();
@@ -125,11 +191,13 @@ public class SVNLog {
                     addCommand(SVNLog.DELETE_LOCK, command, false);
                     status = SVNStatusType.LOCK_UNLOCKED;
                 } else if (propValue != null) {
-                    command.put(propName, propValue);
-                    addCommand(SVNLog.MODIFY_ENTRY, command, false);
-                    command.remove(SVNEncodingUtil.xmlEncodeAttr(propName));
+                    modifyCommand.put(propName, propValue);
                 }
             }
+            // all attributes are modified with one command.
+            if (modifyCommand.size() > 1) {
+                addCommand(SVNLog.MODIFY_ENTRY, modifyCommand, false);
+            }
         }
         return status;
     }
@@ -155,46 +223,145 @@ public class SVNLog {
     }
 
     public void save() throws SVNException {
-        Writer os = null;
-
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
-            os = new OutputStreamWriter(SVNFileUtil
-                    .openFileForWriting(myTmpFile), "UTF-8");
-            for (Iterator commands = myCache.iterator(); commands.hasNext();) {
-                Map command = (Map) commands.next();
-                String name = (String) command.remove("");
-                os.write("<");
-                os.write(name);
-                for (Iterator attrs = command.keySet().iterator(); attrs
-                        .hasNext();) {
-                    String attr = (String) attrs.next();
-                    String value = (String) command.get(attr);
-                    if (value == null) {
-                        continue;
-                    }
-                    value = SVNEncodingUtil.xmlEncodeAttr(value);
-                    os.write("\n   ");
-                    os.write(attr);
-                    os.write("=\"");
-                    os.write(value);
-                    os.write("\"");
-                }
-                os.write("/>\n");
+            if (ourIsBinaryFormat) {
+                writeCommands(bos);
+            } else {
+                writeXMLCommands(bos);
             }
         } catch (IOException e) {
             SVNErrorManager.error("svn: Cannot save log file '" + myFile + "'");
         } finally {
-            SVNFileUtil.closeFile(os);
             myCache = null;
         }
+        OutputStream os = null;
+        try {
+            os = SVNFileUtil.openFileForWriting(myTmpFile);
+            bos.writeTo(os);
+        } catch (IOException e) {
+            SVNErrorManager.error("svn: Cannot save log file '" + myFile + "'");
+        } finally {
+            SVNFileUtil.closeFile(os);
+        }
         SVNFileUtil.rename(myTmpFile, myFile);
         SVNFileUtil.setReadonly(myFile, true);
     }
 
+    private void writeCommands(OutputStream os) throws IOException {
+        DataOutputStream data = new DataOutputStream(os);
+        data.write(BINARY_HEADER);
+        for (Iterator commands = myCache.iterator(); commands.hasNext();) {
+            LogCommand command = (LogCommand) commands.next();
+            int count = 0;
+            for (Iterator values = command.myAttributes.values().iterator(); values.hasNext();) {
+                if (values.next() != null) {
+                    count++;
+                }
+            }
+            data.writeByte(command.myCode);
+            data.writeInt(count);
+            for (Iterator attrs = command.myAttributes.keySet().iterator(); attrs.hasNext();) {
+                String attr = (String) attrs.next();
+                String value = (String) command.myAttributes.get(attr);
+                if (value == null) {
+                    continue;
+                }
+                int attrCode = getAttributeCode(attr);
+                data.writeByte(attrCode);
+                if (attrCode == 0) {
+                    writeString(data, attr);
+                }
+                writeString(data, value);
+            }
+        }
+        data.flush();
+    }
+
+    private void writeXMLCommands(OutputStream os) throws IOException {
+        Writer writer = new OutputStreamWriter(os, "UTF-8");
+        for (Iterator commands = myCache.iterator(); commands.hasNext();) {
+            LogCommand command = (LogCommand) commands.next();
+            writer.write("<");
+            writer.write(COMMANDS[command.myCode]);
+            for (Iterator attrs = command.myAttributes.keySet().iterator(); attrs.hasNext();) {
+                String attr = (String) attrs.next();
+                String value = (String) command.myAttributes.get(attr);
+                if (value == null) {
+                    continue;
+                }
+                writer.write("\n   ");
+                writer.write(attr);
+                writer.write("=\"");
+                writer.write(SVNEncodingUtil.xmlEncodeAttr(value));
+                writer.write("\"");
+            }
+            writer.write("/>\n");
+        }
+        writer.flush();
+    }
+
     public void run(SVNLogRunner runner) throws SVNException {
         if (!myFile.exists()) {
             return;
         }
+        Collection commands = isBinary() ? readCommands() : readXMLCommands();
+        for (Iterator cmds = commands.iterator(); cmds.hasNext();) {
+            LogCommand command = (LogCommand) cmds.next();
+            if (runner != null) {
+                runner.runCommand(myDirectory, command.myCode, command.myAttributes);
+            }
+        }
+    }
+
+    private boolean isBinary() throws SVNException {
+        byte[] header = new byte[BINARY_HEADER.length];
+        InputStream is = SVNFileUtil.openFileForReading(myFile);
+        try {
+            new DataInputStream(is).readFully(header);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            SVNFileUtil.closeFile(is);
+        }
+        for (int i = 0; i < header.length; i++) {
+            if (header[i] != BINARY_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Collection readCommands() throws SVNException {
+        Collection commands = new ArrayList();
+        DataInputStream data = null;
+        try {
+            data = new DataInputStream(new ByteArrayInputStream(readFile()));
+            data.skipBytes(BINARY_HEADER.length);
+            int code;
+            while ((code = data.read()) >= 0) {
+                if (code >= COMMANDS.length) {
+                    SVNErrorManager.error("svn: Unrecognized logfile element in '" + myFile + "'");
+                }
+                int count = data.readInt();
+                Map attrs = new HashMap();
+                for (int i = 0; i < count; i++) {
+                    int attrCode = data.readUnsignedByte();
+                    if (attrCode > ATTRIBUTES.length) {
+                        SVNErrorManager.error("svn: Unrecognized logfile attribute in '" + myFile + "'");
+                    }
+                    String name = attrCode == 0 ? readString(data) : ATTRIBUTES[attrCode - 1];
+                    attrs.put(name, readString(data));
+                }
+                commands.add(new LogCommand(code, attrs));
+            }
+        } catch (IOException e) {
+            SVNErrorManager.error("svn: Cannot read log file '" + myFile + "'");
+        }
+        return commands;
+    }
+
+    private Collection readXMLCommands() throws SVNException {
         BufferedReader reader = null;
         Collection commands = new ArrayList();
         try {
@@ -227,9 +394,10 @@ public class SVNLog {
                     attrs.put(attrName, value);
                 }
                 if (line.endsWith("/>") && name != null) {
-                    // run command
-                    attrs.put("", name);
-                    commands.add(attrs);
+                    int code = getCommandCode(name);
+                    if (code >= 0) {
+                        commands.add(new LogCommand(code, attrs));
+                    }
                     attrs = new HashMap();
                     name = null;
                 }
@@ -239,15 +407,51 @@ public class SVNLog {
         } finally {
             SVNFileUtil.closeFile(reader);
         }
+        return commands;
+    }
 
-        for (Iterator cmds = commands.iterator(); cmds.hasNext();) {
-            Map command = (Map) cmds.next();
-            String name = (String) command.remove("");
-            if (runner != null) {
-                runner.runCommand(myDirectory, name, command);
+    private byte[] readFile() throws SVNException {
+        InputStream is = SVNFileUtil.openFileForReading(myFile);
+        try {
+            byte[] contents = new byte[(int) myFile.length()];
+            new DataInputStream(is).readFully(contents);
+            return contents;
+        } catch (IOException e) {
+            SVNErrorManager.error("svn: Cannot read log file '" + myFile + "'");
+        } finally {
+            SVNFileUtil.closeFile(is);
+        }
+        return null;
+    }
+
+    static int getCommandCode(String name) {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (COMMANDS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int getAttributeCode(String name) {
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            if (ATTRIBUTES[i].equals(name)) {
+                return i + 1;
             }
         }
-        delete();
+        return 0;
+    }
+
+    private static void writeString(DataOutputStream os, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    private static String readString(DataInputStream is) throws IOException {
+        byte[] bytes = new byte[is.readInt()];
+        is.readFully(bytes);
+        return new String(bytes, "UTF-8");
     }
 
     public String toString() {
@@ -263,4 +467,15 @@ public class SVNLog {
         return myFile.exists();
     }
 
+    private static class LogCommand {
+
+        private int myCode;
+        private Map myAttributes;
+
+        public LogCommand(int code, Map attributes) {
+            myCode = code;
+            myAttributes = attributes;
+        }
+    }
+
 }
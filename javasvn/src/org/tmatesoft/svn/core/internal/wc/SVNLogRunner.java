@@ -12,10 +12,9 @@ package org.tmatesoft.svn.core.internal.wc;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.tmatesoft.svn.core.SVNException;
@@ -27,6 +26,10 @@ import org.tmatesoft.svn.core.wc.SVNStatusType;
 import org.tmatesoft.svn.core.wc.SVNWCUtil;
 
 /**
+ * Runs commands of the {@link SVNLog}. Consecutive changes of wc
+ * properties of the same file are written with one update of the properties
+ * file.
+ * 
  * @version 1.0
  * @author TMate Software Ltd.
  */
@@ -34,13 +37,37 @@ public class SVNLogRunner {
 
     private boolean myIsEntriesChanged;
 
+    private SVNDirectory myWCPropertiesDirectory;
+    private String myWCPropertiesName;
+    private Map myWCProperties;
+
     public void runCommand(SVNDirectory dir, String name, Map attributes)
             throws SVNException {
+        int code = SVNLog.getCommandCode(name);
+        if (code >= 0) {
+            runCommand(dir, code, attributes);
+        }
+    }
+
+    void runCommand(SVNDirectory dir, int code, Map attributes)
+            throws SVNException {
         String fileName = (String) attributes.remove(SVNLog.NAME_ATTR);
-        if (SVNLog.DELETE_ENTRY.equals(name)) {
+        if (code == SVNLog.MODIFY_WC_PROPERTY_CODE) {
+            if (dir != myWCPropertiesDirectory || !fileName.equals(myWCPropertiesName)) {
+                saveWCProperties();
+                myWCPropertiesDirectory = dir;
+                myWCPropertiesName = fileName;
+                myWCProperties = new LinkedHashMap();
+            }
+            myWCProperties.put(attributes.get(SVNLog.PROPERTY_NAME_ATTR), 
+                    attributes.get(SVNLog.PROPERTY_VALUE_ATTR));
+            return;
+        }
+        saveWCProperties();
+        if (code == SVNLog.DELETE_ENTRY_CODE) {
             // check if it is not disjoint entry not to delete another wc?
             dir.destroy(fileName, true);
-        } else if (SVNLog.MODIFY_ENTRY.equals(name)) {
+        } else if (code == SVNLog.MODIFY_ENTRY_CODE) {
             SVNEntries entries = dir.getEntries();
             boolean modified = false;
             if (entries.getEntry(fileName, true) == null) {
@@ -71,14 +98,7 @@ public class SVNLogRunner {
                 modified = true;
             }
             setEntriesChanged(modified);
-        } else if (SVNLog.MODIFY_WC_PROPERTY.equals(name)) {
-            SVNProperties props = dir.getWCProperties(fileName);
-            String propName = (String) attributes
-                    .get(SVNLog.PROPERTY_NAME_ATTR);
-            String propValue = (String) attributes
-                    .get(SVNLog.PROPERTY_VALUE_ATTR);
-            props.setPropertyValue(propName, propValue);
-        } else if (SVNLog.DELETE_LOCK.equals(name)) {
+        } else if (code == SVNLog.DELETE_LOCK_CODE) {
             SVNEntries entries = dir.getEntries();
             SVNEntry entry = entries.getEntry(fileName, true);
             if (entry != null) {
@@ -88,13 +108,13 @@ public class SVNLogRunner {
                 entry.setLockComment(null);
                 setEntriesChanged(true);
             }
-        } else if (SVNLog.DELETE.equals(name)) {
+        } else if (code == SVNLog.DELETE_CODE) {
             File file = new File(dir.getRoot(), fileName);
             file.delete();
-        } else if (SVNLog.READONLY.equals(name)) {
+        } else if (code == SVNLog.READONLY_CODE) {
             File file = new File(dir.getRoot(), fileName);
             SVNFileUtil.setReadonly(file, true);
-        } else if (SVNLog.MOVE.equals(name)) {
+        } else if (code == SVNLog.MOVE_CODE) {
             File src = new File(dir.getRoot(), fileName);
             File dst = new File(dir.getRoot(), (String) attributes
                     .get(SVNLog.DEST_ATTR));
@@ -102,41 +122,24 @@ public class SVNLogRunner {
                 return;
             }
             SVNFileUtil.rename(src, dst);
-        } else if (SVNLog.APPEND.equals(name)) {
+        } else if (code == SVNLog.APPEND_CODE) {
             File src = new File(dir.getRoot(), fileName);
             File dst = new File(dir.getRoot(), (String) attributes
                     .get(SVNLog.DEST_ATTR));
-            OutputStream os = null;
-            InputStream is = null;
-            try {
-                os = SVNFileUtil.openFileForWriting(dst, true);
-                is = SVNFileUtil.openFileForReading(src);
-                while (true) {
-                    int r = is.read();
-                    if (r < 0) {
-                        break;
-                    }
-                    os.write(r);
-                }
-            } catch (IOException e) {
-                SVNErrorManager.error("svn: Cannot append data to file '" + dst + "'");
-            } finally {
-                SVNFileUtil.closeFile(os);
-                SVNFileUtil.closeFile(is);
-            }
-        } else if (SVNLog.SET_TIMESTAMP.equals(name)) {
+            SVNFileUtil.appendFile(src, dst);
+        } else if (code == SVNLog.SET_TIMESTAMP_CODE) {
             File file = new File(dir.getRoot(), fileName);
             Date time = SVNTimeUtil.parseDate((String) attributes
                     .get(SVNLog.TIMESTAMP_ATTR));
             file.setLastModified(time.getTime());
-        } else if (SVNLog.MAYBE_READONLY.equals(name)) {
+        } else if (code == SVNLog.MAYBE_READONLY_CODE) {
             SVNEntries entries = dir.getEntries();
             if (entries.getEntry(fileName, true) != null
                     && entries.getEntry(fileName, true).getLockToken() == null) {
                 SVNFileUtil
                         .setReadonly(new File(dir.getRoot(), fileName), true);
             }
-        } else if (SVNLog.COPY_AND_TRANSLATE.equals(name)) {
+        } else if (code == SVNLog.COPY_AND_TRANSLATE_CODE) {
             String dstName = (String) attributes.get(SVNLog.DEST_ATTR);
             File dst = new File(dir.getRoot(), dstName);
             // get properties for this entry.
@@ -153,11 +156,11 @@ public class SVNLogRunner {
                     && props.getPropertyValue(SVNProperty.NEEDS_LOCK) != null) {
                 SVNFileUtil.setReadonly(dst, true);
             }
-        } else if (SVNLog.COPY_AND_DETRANSLATE.equals(name)) {
+        } else if (code == SVNLog.COPY_AND_DETRANSLATE_CODE) {
             String dstName = (String) attributes.get(SVNLog.DEST_ATTR);
             SVNTranslator.translate(dir, fileName, fileName, dstName, false,
                     true);
-        } else if (SVNLog.MERGE.equals(name)) {
+        } else if (code == SVNLog.MERGE_CODE) {
             File target = new File(dir.getRoot(), fileName);
             String leftPath = (String) attributes.get(SVNLog.ATTR1);
             String rightPath = (String) attributes.get(SVNLog.ATTR2);
@@ -185,7 +188,7 @@ public class SVNLogRunner {
             }
             setEntriesChanged(mergeResult == SVNStatusType.CONFLICTED || 
                     mergeResult == SVNStatusType.CONFLICTED_UNRESOLVED);
-        } else if (SVNLog.COMMIT.equals(name)) {
+        } else if (code == SVNLog.COMMIT_CODE) {
             if (attributes.get(SVNLog.REVISION_ATTR) == null) {
                 SVNErrorManager.error("svn: Missing revision attribute for '"
                         + fileName + "'");
@@ -310,8 +313,8 @@ public class SVNLogRunner {
                 try {
                     boolean overwritten = false;
                     SVNFileType fileType = SVNFileType.getType(tmpFile);
-                    boolean special = dir.getProperties(fileName, false)
-                            .getPropertyValue(SVNProperty.SPECIAL) != null;
+                    Map props = dir.getProperties(fileName, false).asMap();
+                    boolean special = props.get(SVNProperty.SPECIAL) != null;
                     if (SVNFileUtil.isWindows || !special) {
                         if (fileType == SVNFileType.FILE) {
                             SVNTranslator.translate(dir, fileName, SVNFileUtil
@@ -327,12 +330,9 @@ public class SVNLogRunner {
                             overwritten = true;
                         }
                     }
-                    boolean needsReadonly = dir.getProperties(fileName, false)
-                            .getPropertyValue(SVNProperty.NEEDS_LOCK) != null
+                    boolean needsReadonly = props.get(SVNProperty.NEEDS_LOCK) != null
                             && entry.getLockToken() == null;
-                    boolean needsExecutable = dir
-                            .getProperties(fileName, false).getPropertyValue(
-                                    SVNProperty.EXECUTABLE) != null;
+                    boolean needsExecutable = props.get(SVNProperty.EXECUTABLE) != null;
                     if (needsReadonly) {
                         SVNFileUtil.setReadonly(wcFile, true);
                         overwritten = true;
@@ -384,6 +384,8 @@ public class SVNLogRunner {
             }
             // update entry in parent.
             File dirFile = dir.getRoot();
+            // status of the parent is read from disk, write pending entries first.
+            dir.getWCAccess().flushEntries();
             if (SVNWCUtil.isWorkingCopyRoot(dirFile, true)) {
                 return;
             }
@@ -412,11 +414,25 @@ public class SVNLogRunner {
         }
     }
 
+    private void saveWCProperties() throws SVNException {
+        if (myWCProperties == null) {
+            return;
+        }
+        try {
+            myWCPropertiesDirectory.getWCProperties(myWCPropertiesName).setPropertyValues(myWCProperties);
+        } finally {
+            myWCPropertiesDirectory = null;
+            myWCPropertiesName = null;
+            myWCProperties = null;
+        }
+    }
+
     private void setEntriesChanged(boolean modified) {
         myIsEntriesChanged |= modified;
     }
 
     public void logCompleted(SVNDirectory dir) throws SVNException {
+        saveWCProperties();
         boolean killMe = dir.getFile(".svn/KILLME").isFile();
         long dirRevision = killMe ? dir.getEntries().getEntry("", true)
                 .getRevision() : -1;
@@ -430,6 +446,8 @@ public class SVNLogRunner {
             dir.destroy("", true);
             // compare revision with parent's one
             File dirFile = dir.getRoot();
+            // status of the parent is read from disk, write pending entries first.
+            dir.getWCAccess().flushEntries();
             if (SVNWCUtil.isWorkingCopyRoot(dirFile, true)) {
                 return;
             }
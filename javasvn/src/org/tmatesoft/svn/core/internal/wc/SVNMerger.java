@@ -451,21 +451,9 @@ public class SVNMerger {
         // 1. props.
         SVNProperties wcPropsFile = parentDir.getProperties(name, false);
         SVNProperties basePropsFile = parentDir.getBaseProperties(name, false);
-        for (Iterator propNames = baseProps.keySet().iterator(); propNames
-                .hasNext();) {
-            String propName = (String) propNames.next();
-            wcPropsFile.setPropertyValue(propName, (String) baseProps
-                    .get(propName));
-            basePropsFile.setPropertyValue(propName, (String) baseProps
-                    .get(propName));
-        }
-        if (baseProps.isEmpty()) {
-            // force prop file creation.
-            wcPropsFile.setPropertyValue("x", "x");
-            basePropsFile.setPropertyValue("x", "x");
-            wcPropsFile.setPropertyValue("x", null);
-            basePropsFile.setPropertyValue("x", null);
-        }
+        // files are created even when there are no properties.
+        wcPropsFile.setPropertyValues(baseProps);
+        basePropsFile.setPropertyValues(baseProps);
         command.put(SVNLog.NAME_ATTR, wcPropsFile.getPath());
         log.addCommand(SVNLog.READONLY, command, false);
         command.put(SVNLog.NAME_ATTR, basePropsFile.getPath());
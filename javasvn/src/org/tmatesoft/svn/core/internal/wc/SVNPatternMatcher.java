@@ -0,0 +1,134 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+/**
+ * Matches file names against the list of wildcard patterns, like
+ * 'global-ignores' option or svn:ignore property value. Patterns without
+ * wildcards, '*suffix' and 'prefix*' patterns are matched without regular
+ * expressions, other patterns are compiled once.
+ *
+ * <p>
+ * Matchers are cached by patterns value, so the same value, e.g. the same
+ * svn:ignore in many directories, is parsed only once.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+class SVNPatternMatcher {
+
+    private static final int CACHE_SIZE = 256;
+
+    private static Map ourCache = new LRUMap();
+
+    private String myPatterns;
+    private Set myNames;
+    private String[] mySuffixes;
+    private String[] myPrefixes;
+    private Pattern[] myRegexps;
+
+    public static SVNPatternMatcher getMatcher(String patterns, String delimiters) {
+        String key = delimiters + patterns;
+        synchronized (ourCache) {
+            SVNPatternMatcher matcher = (SVNPatternMatcher) ourCache.get(key);
+            if (matcher == null) {
+                matcher = new SVNPatternMatcher(patterns, delimiters);
+                ourCache.put(key, matcher);
+            }
+            return matcher;
+        }
+    }
+
+    private SVNPatternMatcher(String patterns, String delimiters) {
+        myPatterns = patterns;
+        myNames = new HashSet();
+        Collection suffixes = new ArrayList();
+        Collection prefixes = new ArrayList();
+        Collection regexps = new ArrayList();
+        for (StringTokenizer tokens = new StringTokenizer(patterns, delimiters); tokens.hasMoreTokens();) {
+            String token = tokens.nextToken();
+            if (token.trim().length() == 0) {
+                continue;
+            }
+            int wildcards = 0;
+            int wildcardIndex = -1;
+            for (int i = 0; i < token.length(); i++) {
+                char ch = token.charAt(i);
+                if (ch == '*' || ch == '?') {
+                    wildcards++;
+                    wildcardIndex = i;
+                }
+            }
+            if (wildcards == 0) {
+                myNames.add(token);
+            } else if (wildcards == 1 && wildcardIndex == 0 && token.charAt(0) == '*') {
+                suffixes.add(token.substring(1));
+            } else if (wildcards == 1 && wildcardIndex == token.length() - 1 && token.charAt(wildcardIndex) == '*') {
+                prefixes.add(token.substring(0, wildcardIndex));
+            } else {
+                regexps.add(DefaultSVNOptions.compileNamePatter(token));
+            }
+        }
+        mySuffixes = (String[]) suffixes.toArray(new String[suffixes.size()]);
+        myPrefixes = (String[]) prefixes.toArray(new String[prefixes.size()]);
+        myRegexps = (Pattern[]) regexps.toArray(new Pattern[regexps.size()]);
+    }
+
+    public String getPatterns() {
+        return myPatterns;
+    }
+
+    public boolean matches(String name) {
+        if (name == null) {
+            return false;
+        }
+        if (myNames.contains(name)) {
+            return true;
+        }
+        for (int i = 0; i < mySuffixes.length; i++) {
+            if (name.endsWith(mySuffixes[i])) {
+                return true;
+            }
+        }
+        for (int i = 0; i < myPrefixes.length; i++) {
+            if (name.startsWith(myPrefixes[i])) {
+                return true;
+            }
+        }
+        for (int i = 0; i < myRegexps.length; i++) {
+            if (myRegexps[i].matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class LRUMap extends LinkedHashMap {
+
+        public LRUMap() {
+            super(16, 0.75f, true);
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > CACHE_SIZE;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.internal.wc;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.tmatesoft.svn.util.SVNDebugLog;
+
+/**
+ * Reads file attributes in process through <code>java.nio.file</code> unix
+ * attributes view. The library is compiled for JDKs that do not have that
+ * package, so it is accessed reflectively, {@link #create()} returns
+ * <code>null</code> when the running JVM does not support it. Files that
+ * could not be read this way, e.g. with names that are not valid paths in
+ * the default file system, are handled by {@link SVNExecFileAttributesProvider}.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class SVNPosixFileAttributesProvider implements ISVNFileAttributesProvider {
+
+    private static final String ATTRIBUTES = "unix:mode,uid,gid,size,lastModifiedTime,isSymbolicLink,isDirectory,isRegularFile";
+
+    private static final int OWNER_EXECUTE = 0100;
+    private static final int GROUP_EXECUTE = 0010;
+    private static final int OTHERS_EXECUTE = 0001;
+
+    private Method myToPath;
+    private Method myReadAttributes;
+    private Method myReadSymbolicLink;
+    private Method myCreateSymbolicLink;
+    private Method myToMillis;
+    private Method mySetExecutable;
+    private Object myNoFollowLinks;
+    private Object myNoFileAttributes;
+    private int myUserID;
+    private int myGroupID;
+    private ISVNFileAttributesProvider myFallback;
+
+    public static ISVNFileAttributesProvider create() {
+        if (SVNFileUtil.isWindows) {
+            return null;
+        }
+        try {
+            SVNPosixFileAttributesProvider provider = new SVNPosixFileAttributesProvider();
+            // fails if unix attributes view is not supported.
+            File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+            SVNFileAttributes attributes = provider.readAttributes(tmpDir, false);
+            if (attributes != null && attributes.getType() == SVNFileType.DIRECTORY) {
+                return provider;
+            }
+        } catch (Throwable th) {
+            SVNDebugLog.logInfo(th);
+        }
+        return null;
+    }
+
+    private SVNPosixFileAttributesProvider() throws Exception {
+        Class filesClass = Class.forName("java.nio.file.Files");
+        Class pathClass = Class.forName("java.nio.file.Path");
+        Class linkOptionClass = Class.forName("java.nio.file.LinkOption");
+        Class fileAttributeClass = Class.forName("java.nio.file.attribute.FileAttribute");
+        Class fileTimeClass = Class.forName("java.nio.file.attribute.FileTime");
+
+        myNoFollowLinks = Array.newInstance(linkOptionClass, 1);
+        Array.set(myNoFollowLinks, 0, linkOptionClass.getField("NOFOLLOW_LINKS").get(null));
+        myNoFileAttributes = Array.newInstance(fileAttributeClass, 0);
+
+        myToPath = File.class.getMethod("toPath", new Class[0]);
+        myReadAttributes = filesClass.getMethod("readAttributes", new Class[] {pathClass, String.class, myNoFollowLinks.getClass()});
+        myReadSymbolicLink = filesClass.getMethod("readSymbolicLink", new Class[] {pathClass});
+        myCreateSymbolicLink = filesClass.getMethod("createSymbolicLink", new Class[] {pathClass, pathClass, myNoFileAttributes.getClass()});
+        myToMillis = fileTimeClass.getMethod("toMillis", new Class[0]);
+        mySetExecutable = File.class.getMethod("setExecutable", new Class[] {Boolean.TYPE, Boolean.TYPE});
+
+        myUserID = Integer.parseInt(SVNExecFileAttributesProvider.getCurrentUser());
+        myGroupID = Integer.parseInt(SVNExecFileAttributesProvider.getCurrentGroup());
+        myFallback = new SVNExecFileAttributesProvider();
+    }
+
+    public SVNFileType getType(File file) {
+        if (file == null) {
+            return SVNFileType.UNKNOWN;
+        }
+        SVNFileAttributes attributes = readAttributes(file, false);
+        return attributes != null ? attributes.getType() : myFallback.getType(file);
+    }
+
+    public boolean isExecutable(File file) {
+        SVNFileAttributes attributes = readAttributes(file, false);
+        return attributes != null ? attributes.isExecutable() : myFallback.isExecutable(file);
+    }
+
+    public String getSymlinkName(File link) {
+        if (link == null) {
+            return null;
+        }
+        Object path = toPath(link);
+        if (path == null) {
+            return myFallback.getSymlinkName(link);
+        }
+        try {
+            return myReadSymbolicLink.invoke(null, new Object[] {path}).toString();
+        } catch (InvocationTargetException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            SVNDebugLog.logInfo(e);
+        }
+        return null;
+    }
+
+    public void setExecutable(File file, boolean executable) {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try {
+            // same as 'chmod ugo+x', not only for the owner.
+            mySetExecutable.invoke(file, new Object[] {Boolean.valueOf(executable), Boolean.FALSE});
+        } catch (InvocationTargetException e) {
+            SVNDebugLog.logInfo(e.getTargetException());
+        } catch (IllegalAccessException e) {
+            SVNDebugLog.logInfo(e);
+        }
+    }
+
+    public boolean createSymlink(File link, String linkName) {
+        Object linkPath = toPath(link);
+        Object targetPath = toPath(new File(linkName));
+        if (linkPath == null || targetPath == null) {
+            return myFallback.createSymlink(link, linkName);
+        }
+        try {
+            myCreateSymbolicLink.invoke(null, new Object[] {linkPath, targetPath, myNoFileAttributes});
+        } catch (InvocationTargetException e) {
+            SVNDebugLog.logInfo(e.getTargetException());
+            return false;
+        } catch (IllegalAccessException e) {
+            SVNDebugLog.logInfo(e);
+            return false;
+        }
+        return true;
+    }
+
+    public SVNFileAttributes readAttributes(File file) {
+        SVNFileAttributes attributes = readAttributes(file, true);
+        return attributes != null ? attributes : myFallback.readAttributes(file);
+    }
+
+    /**
+     * Returns <code>null</code> when attributes could not be read through
+     * <code>java.nio.file</code>, callers should use the fallback provider.
+     */
+    private SVNFileAttributes readAttributes(File file, boolean readSymlinkName) {
+        Object path = toPath(file);
+        if (path == null) {
+            return null;
+        }
+        Map attributes;
+        try {
+            attributes = (Map) myReadAttributes.invoke(null, new Object[] {path, ATTRIBUTES, myNoFollowLinks});
+        } catch (InvocationTargetException e) {
+            if (e.getTargetException() instanceof IOException) {
+                // missing file or broken parent path.
+                return new SVNFileAttributes(SVNFileType.NONE, 0, 0, false, null);
+            }
+            SVNDebugLog.logInfo(e.getTargetException());
+            return null;
+        } catch (IllegalAccessException e) {
+            SVNDebugLog.logInfo(e);
+            return null;
+        }
+        SVNFileType type = SVNFileType.UNKNOWN;
+        if (Boolean.TRUE.equals(attributes.get("isSymbolicLink"))) {
+            type = SVNFileType.SYMLINK;
+        } else if (Boolean.TRUE.equals(attributes.get("isDirectory"))) {
+            type = SVNFileType.DIRECTORY;
+        } else if (Boolean.TRUE.equals(attributes.get("isRegularFile"))) {
+            type = SVNFileType.FILE;
+        }
+        int mode = ((Number) attributes.get("mode")).intValue();
+        int uid = ((Number) attributes.get("uid")).intValue();
+        int gid = ((Number) attributes.get("gid")).intValue();
+        boolean executable;
+        if (uid == myUserID) {
+            executable = (mode & OWNER_EXECUTE) != 0;
+        } else if (gid == myGroupID) {
+            executable = (mode & GROUP_EXECUTE) != 0;
+        } else {
+            executable = (mode & OTHERS_EXECUTE) != 0;
+        }
+        long length = ((Number) attributes.get("size")).longValue();
+        long lastModified = 0;
+        try {
+            lastModified = ((Number) myToMillis.invoke(attributes.get("lastModifiedTime"), new Object[0])).longValue();
+        } catch (InvocationTargetException e) {
+            SVNDebugLog.logInfo(e.getTargetException());
+        } catch (IllegalAccessException e) {
+            SVNDebugLog.logInfo(e);
+        }
+        String symlinkName = null;
+        if (type == SVNFileType.SYMLINK) {
+            // same as java.io.File, length and time of the link target.
+            length = file.length();
+            lastModified = file.lastModified();
+            if (readSymlinkName) {
+                symlinkName = getSymlinkName(file);
+            }
+        }
+        return new SVNFileAttributes(type, length, lastModified, executable, symlinkName);
+    }
+
+    /**
+     * Returns <code>null</code> when file name is not a valid path, e.g.
+     * contains characters that could not be encoded.
+     */
+    private Object toPath(File file) {
+        try {
+            return myToPath.invoke(file, new Object[0]);
+        } catch (InvocationTargetException e) {
+            SVNDebugLog.logInfo(e.getTargetException());
+        } catch (IllegalAccessException e) {
+            SVNDebugLog.logInfo(e);
+        }
+        return null;
+    }
+}
@@ -13,25 +13,42 @@ package org.tmatesoft.svn.core.internal.wc;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeSet;
 
 import org.tmatesoft.svn.core.SVNException;
 
 /**
+ * Properties file of the working copy ("hash dump" format). Parsed contents
+ * of the file are kept in the cache shared by all instances and are reused
+ * while file modification time and length are not changed, so reading
+ * several properties of the same file does not read it several times.
+ * Several properties could be changed with one write by
+ * {@link #setPropertyValues(Map)}.
+ * 
  * @version 1.0
  * @author TMate Software Ltd.
  */
 public class SVNProperties {
 
+    private static final int CACHE_SIZE = 1024;
+    // file modified that recently may be modified once again without
+    // changing its timestamp, such file is not cached.
+    private static final long RACY_INTERVAL = 2000;
+    private static final byte[] END = { 'E', 'N', 'D', '\n' };
+
+    private static Map ourCache = new LRUMap();
+
     private File myFile;
 
     private String myPath;
@@ -51,48 +68,16 @@ public class SVNProperties {
 
     public Collection properties(Collection target) throws SVNException {
         target = target == null ? new TreeSet() : target;
-        if (!myFile.exists()) {
-            return target;
-        }
-        ByteArrayOutputStream nameOS = new ByteArrayOutputStream();
-        InputStream is = SVNFileUtil.openFileForReading(myFile);
-        try {
-            while (readProperty('K', is, nameOS)) {
-                target.add(new String(nameOS.toByteArray(), "UTF-8"));
-                nameOS.reset();
-                readProperty('V', is, null);
-            }
-        } catch (IOException e) {
-            SVNErrorManager.error("svn: Cannot read properties file '" + myFile + "'");
-        } finally {
-            SVNFileUtil.closeFile(is);
-        }
+        target.addAll(loadProperties().keySet());
         return target;
     }
 
     public Map asMap() throws SVNException {
+        Map properties = loadProperties();
         Map result = new HashMap();
-        if (!getFile().exists()) {
-            return result;
-        }
-        if (!myFile.exists()) {
-            return result;
-        }
-        ByteArrayOutputStream nameOS = new ByteArrayOutputStream();
-        InputStream is = SVNFileUtil.openFileForReading(myFile);
-        try {
-            while (readProperty('K', is, nameOS)) {
-                String name = new String(nameOS.toByteArray(), "UTF-8");
-                nameOS.reset();
-                readProperty('V', is, nameOS);
-                String value = new String(nameOS.toByteArray(), "UTF-8");
-                result.put(name, value);
-                nameOS.reset();
-            }
-        } catch (IOException e) {
-            SVNErrorManager.error("svn: Cannot read properties file '" + myFile + "'");
-        } finally {
-            SVNFileUtil.closeFile(is);
+        for (Iterator names = properties.keySet().iterator(); names.hasNext();) {
+            String name = (String) names.next();
+            result.put(name, toString((byte[]) properties.get(name)));
         }
         return result;
     }
@@ -100,12 +85,12 @@ public class SVNProperties {
     public boolean compareTo(SVNProperties properties,
             ISVNPropertyComparator comparator) throws SVNException {
         boolean equals = true;
-        Collection props1 = properties(null);
-        Collection props2 = properties.properties(null);
+        Map props1 = loadProperties();
+        Map props2 = properties.loadProperties();
 
         // missed in props2.
-        Collection tmp = new TreeSet(props1);
-        tmp.removeAll(props2);
+        Collection tmp = new TreeSet(props1.keySet());
+        tmp.removeAll(props2.keySet());
         for (Iterator props = tmp.iterator(); props.hasNext();) {
             String missing = (String) props.next();
             comparator.propertyDeleted(missing);
@@ -113,185 +98,91 @@ public class SVNProperties {
         }
 
         // added in props2.
-        tmp = new TreeSet(props2);
-        tmp.removeAll(props1);
-
-        File tmpFile = null;
-        File tmpFile1 = null;
-        File tmpFile2 = null;
-        OutputStream os = null;
-        InputStream is = null;
-        InputStream is1 = null;
-        InputStream is2 = null;
-
+        tmp = new TreeSet(props2.keySet());
+        tmp.removeAll(props1.keySet());
         for (Iterator props = tmp.iterator(); props.hasNext();) {
             String added = (String) props.next();
-            try {
-                tmpFile = SVNFileUtil.createUniqueFile(myFile.getParentFile(),
-                        myFile.getName(), ".tmp");
-
-                os = SVNFileUtil.openFileForWriting(tmpFile);
-                properties.getPropertyValue(added, os);
-                SVNFileUtil.closeFile(os);
-
-                is = SVNFileUtil.openFileForReading(tmpFile);
-                comparator.propertyAdded(added, is, (int) tmpFile.length());
-                equals = false;
-                SVNFileUtil.closeFile(is);
-            } finally {
-                if (tmpFile != null) {
-                    tmpFile.delete();
-                }
-                SVNFileUtil.closeFile(os);
-                SVNFileUtil.closeFile(is);
-                tmpFile = null;
-                is = null;
-                os = null;
-            }
+            byte[] value = (byte[]) props2.get(added);
+            comparator.propertyAdded(added, new ByteArrayInputStream(value), value.length);
+            equals = false;
         }
 
         // changed in props2
-        props2.retainAll(props1);
-        for (Iterator props = props2.iterator(); props.hasNext();) {
+        tmp = new TreeSet(props2.keySet());
+        tmp.retainAll(props1.keySet());
+        for (Iterator props = tmp.iterator(); props.hasNext();) {
             String changed = (String) props.next();
-
-            try {
-                tmpFile1 = SVNFileUtil.createUniqueFile(myFile.getParentFile(),
-                        myFile.getName(), ".tmp1");
-                tmpFile2 = SVNFileUtil.createUniqueFile(myFile.getParentFile(),
-                        myFile.getName(), ".tmp2");
-
-                os = new FileOutputStream(tmpFile1);
-                getPropertyValue(changed, os);
-                os.close();
-                os = new FileOutputStream(tmpFile2);
-                properties.getPropertyValue(changed, os);
-                os.close();
-                if (tmpFile2.length() != tmpFile1.length()) {
-                    is = SVNFileUtil.openFileForReading(tmpFile2);
-                    comparator.propertyChanged(changed, is, (int) tmpFile2
-                            .length());
-                    equals = false;
-                    SVNFileUtil.closeFile(is);
-                } else {
-                    is1 = SVNFileUtil.openFileForReading(tmpFile1);
-                    is2 = SVNFileUtil.openFileForReading(tmpFile2);
-                    boolean differs = false;
-                    for (int i = 0; i < tmpFile1.length(); i++) {
-                        if (is1.read() != is2.read()) {
-                            differs = true;
-                            break;
-                        }
-                    }
-                    SVNFileUtil.closeFile(is1);
-                    SVNFileUtil.closeFile(is2);
-                    if (differs) {
-                        is2 = SVNFileUtil.openFileForReading(tmpFile2);
-                        comparator.propertyChanged(changed, is2, (int) tmpFile2
-                                .length());
-                        equals = false;
-                        SVNFileUtil.closeFile(is2);
-                    }
-                }
-            } catch (IOException e) {
-                SVNErrorManager.error("svn: I/O error while comparing properties files: " + e.getMessage());
-            } finally {
-                if (tmpFile2 != null) {
-                    tmpFile2.delete();
-                }
-                if (tmpFile2 != null) {
-                    tmpFile1.delete();
-                }
-                SVNFileUtil.closeFile(os);
-                SVNFileUtil.closeFile(is);
-                SVNFileUtil.closeFile(is1);
-                SVNFileUtil.closeFile(is2);
-                os = null;
-                tmpFile1 = tmpFile2 = null;
-                is = is1 = is2 = null;
+            byte[] value = (byte[]) props2.get(changed);
+            if (!Arrays.equals((byte[]) props1.get(changed), value)) {
+                comparator.propertyChanged(changed, new ByteArrayInputStream(value), value.length);
+                equals = false;
             }
         }
         return equals;
     }
 
     public String getPropertyValue(String name) throws SVNException {
-        if (isEmpty()) {
-            return null;
-        }
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        os = (ByteArrayOutputStream) getPropertyValue(name, os);
-        if (os != null && os.size() >= 0) {
-            byte[] bytes = os.toByteArray();
-            try {
-                return new String(bytes, "UTF-8");
-            } catch (IOException e) {
-                //
-            }
-            return new String(bytes);
-        }
-        return null;
+        byte[] value = (byte[]) loadProperties().get(name);
+        return value != null ? toString(value) : null;
     }
 
     public OutputStream getPropertyValue(String name, OutputStream os) throws SVNException {
-        if (!myFile.exists()) {
+        byte[] value = (byte[]) loadProperties().get(name);
+        if (value == null) {
             return null;
         }
-        ByteArrayOutputStream nameOS = new ByteArrayOutputStream();
-        InputStream is = SVNFileUtil.openFileForReading(myFile);
         try {
-            while (readProperty('K', is, nameOS)) {
-                String currentName = new String(nameOS.toByteArray(), "UTF-8");
-                nameOS.reset();
-                if (currentName.equals(name)) {
-                    readProperty('V', is, os);
-                    return os;
-                }
-                readProperty('V', is, null);                
-            }
+            os.write(value);
         } catch (IOException e) {
             SVNErrorManager.error("svn: Cannot read properties file '" + myFile + "'");
-        } finally {
-            SVNFileUtil.closeFile(is);
         }
-        return null;
+        return os;
     }
 
     public void setPropertyValue(String name, String value) throws SVNException {
+        Map changes = new HashMap();
+        changes.put(name, value != null ? toBytes(value) : null);
+        writeProperties(changes);
+    }
 
-        byte[] bytes = null;
-        if (value != null) {
+    public void setPropertyValue(String name, InputStream is, int length)
+            throws SVNException {
+        byte[] value = null;
+        if (is != null && length >= 0) {
+            value = new byte[length];
             try {
-                bytes = value.getBytes("UTF-8");
+                for (int read = 0; read < length;) {
+                    int r = is.read(value, read, length - read);
+                    if (r < 0) {
+                        break;
+                    }
+                    read += r;
+                }
             } catch (IOException e) {
-                bytes = value.getBytes();
+                SVNErrorManager.error("svn: Cannot read value of property '" + name + "': " + e.getMessage());
             }
         }
-        int length = bytes != null && bytes.length >= 0 ? bytes.length : -1;
-        setPropertyValue(name, bytes != null ? new ByteArrayInputStream(bytes)
-                : null, length);
+        Map changes = new HashMap();
+        changes.put(name, value);
+        writeProperties(changes);
     }
 
-    public void setPropertyValue(String name, InputStream is, int length)
-            throws SVNException {
-        InputStream src = null;
-        OutputStream dst = null;
-        File tmpFile = null;
-        try {
-            tmpFile = SVNFileUtil.createUniqueFile(myFile.getParentFile(),
-                    myFile.getName(), ".tmp");
-            if (myFile.exists()) {
-                src = SVNFileUtil.openFileForReading(myFile);
-            }
-            dst = SVNFileUtil.openFileForWriting(tmpFile);
-            copyProperties(src, dst, name, is, length);
-        } finally {
-            SVNFileUtil.closeFile(src);
-            SVNFileUtil.closeFile(dst);
-        }
-        if (tmpFile != null) {
-            SVNFileUtil.rename(tmpFile, myFile);
-            SVNFileUtil.setReadonly(myFile, true);
+    /**
+     * Changes several properties at once, properties file is written only
+     * once.
+     * 
+     * @param properties
+     *            property names to new values, <code>null</code> value
+     *            deletes property
+     */
+    public void setPropertyValues(Map properties) throws SVNException {
+        Map changes = new LinkedHashMap();
+        for (Iterator names = properties.keySet().iterator(); names.hasNext();) {
+            String name = (String) names.next();
+            String value = (String) properties.get(name);
+            changes.put(name, value != null ? toBytes(value) : null);
         }
+        writeProperties(changes);
     }
 
     public Map compareTo(SVNProperties properties) throws SVNException {
@@ -303,20 +194,12 @@ public class SVNProperties {
 
             public void propertyChanged(String name, InputStream newValue,
                     int length) {
-                ByteArrayOutputStream os = new ByteArrayOutputStream(length);
-                for (int i = 0; i < length; i++) {
-                    try {
-                        os.write(newValue.read());
-                    } catch (IOException e) {
-                    }
-                }
-                byte[] bytes = os.toByteArray();
+                byte[] bytes = new byte[length];
                 try {
-                    locallyChangedProperties.put(name, new String(bytes,
-                            "UTF-8"));
-                } catch (UnsupportedEncodingException e) {
-                    locallyChangedProperties.put(name, new String(bytes));
+                    newValue.read(bytes);
+                } catch (IOException e) {
                 }
+                locallyChangedProperties.put(name, SVNProperties.toString(bytes));
             }
 
             public void propertyDeleted(String name) {
@@ -327,12 +210,13 @@ public class SVNProperties {
     }
 
     public void copyTo(SVNProperties destination) throws SVNException {
+        invalidate(destination.getFile());
         if (!getFile().exists()) {
             // just create empty dst.
             OutputStream os = null;
             try {
                 os = SVNFileUtil.openFileForWriting(destination.getFile());
-                os.write("END\n".getBytes());
+                os.write(END);
             } catch (IOException e) {
             } finally {
                 SVNFileUtil.closeFile(os);
@@ -343,59 +227,123 @@ public class SVNProperties {
     }
 
     public void delete() {
+        invalidate(myFile);
         myFile.delete();
     }
 
-    /** @noinspection ResultOfMethodCallIgnored */
-    private static void copyProperties(InputStream is, OutputStream os,
-            String name, InputStream value, int length) {
-        // read names, till name is met, then insert value or skip this
-        // property.
-        try {
-            if (is != null) {
-                int l = 0;
-                while ((l = readLength(is, 'K')) > 0) {
-                    byte[] nameBytes = new byte[l];
-                    is.read(nameBytes);
-                    is.read();
-                    if (name.equals(new String(nameBytes, "UTF-8"))) {
-                        // skip property, will be appended.
-                        readProperty('V', is, null);
-                        continue;
-                    }
-                    // save name
-                    writeProperty(os, 'K', nameBytes);
-                    l = readLength(is, 'V');
-                    writeProperty(os, 'V', is, l);
-                    is.read();
-                }
+    public boolean isEmpty() {
+        return getFile().length() <= 4;
+    }
+
+    /**
+     * @return shared read-only map of property names to values (as bytes),
+     *         in order they are written in the file
+     */
+    private Map loadProperties() throws SVNException {
+        long lastModified = myFile.lastModified();
+        if (lastModified == 0 && !myFile.exists()) {
+            invalidate(myFile);
+            return Collections.EMPTY_MAP;
+        }
+        long length = myFile.length();
+        if (length == 0) {
+            // empty file is treated as file without properties.
+            invalidate(myFile);
+            return Collections.EMPTY_MAP;
+        }
+        synchronized (ourCache) {
+            CachedProperties cached = (CachedProperties) ourCache.get(myFile);
+            if (cached != null && cached.myLastModified == lastModified && cached.myLength == length) {
+                return cached.myProperties;
             }
-            if (value != null && length >= 0) {
-                byte[] nameBytes = name.getBytes("UTF-8");
-                writeProperty(os, 'K', nameBytes);
-                writeProperty(os, 'V', value, length);
+        }
+        long readTime = System.currentTimeMillis();
+        Map properties = Collections.unmodifiableMap(readProperties());
+        synchronized (ourCache) {
+            if (lastModified < readTime - RACY_INTERVAL) {
+                ourCache.put(myFile, new CachedProperties(lastModified, length, properties));
+            } else {
+                ourCache.remove(myFile);
             }
-            os.write(new byte[] { 'E', 'N', 'D', '\n' });
+        }
+        return properties;
+    }
+
+    private Map readProperties() throws SVNException {
+        Map properties = new LinkedHashMap();
+        byte[] contents = null;
+        InputStream is = SVNFileUtil.openFileForReading(myFile);
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream((int) myFile.length());
+            byte[] buffer = new byte[4096];
+            int r;
+            while ((r = is.read(buffer)) >= 0) {
+                os.write(buffer, 0, r);
+            }
+            contents = os.toByteArray();
         } catch (IOException e) {
-            e.printStackTrace();
+            SVNErrorManager.error("svn: Cannot read properties file '" + myFile + "'");
+        } finally {
+            SVNFileUtil.closeFile(is);
         }
+        int[] offset = new int[1];
+        while (true) {
+            int length = readLength(contents, offset, 'K');
+            if (length < 0) {
+                break;
+            }
+            String name = toString(readValue(contents, offset, length));
+            length = readLength(contents, offset, 'V');
+            if (length < 0) {
+                break;
+            }
+            properties.put(name, readValue(contents, offset, length));
+        }
+        return properties;
     }
 
-    private static boolean readProperty(char type, InputStream is, OutputStream os) throws IOException {
-        int length = readLength(is, type);
-        if (length < 0) {
-            return false;
+    private void writeProperties(Map changes) throws SVNException {
+        Map properties = new LinkedHashMap(loadProperties());
+        for (Iterator names = changes.keySet().iterator(); names.hasNext();) {
+            String name = (String) names.next();
+            byte[] value = (byte[]) changes.get(name);
+            // changed property is moved to the end.
+            properties.remove(name);
+            if (value != null) {
+                properties.put(name, value);
+            }
         }
-        if (os != null) {
-            byte[] value = new byte[length];
-            int r = is.read(value);
-            os.write(value, 0, r);
-        } else {
-            while(length > 0) {
-                length -= is.skip(length);
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        try {
+            for (Iterator names = properties.keySet().iterator(); names.hasNext();) {
+                String name = (String) names.next();
+                writeProperty(contents, 'K', toBytes(name));
+                writeProperty(contents, 'V', (byte[]) properties.get(name));
             }
+            contents.write(END);
+        } catch (IOException e) {
+            //
+        }
+        File tmpFile = SVNFileUtil.createUniqueFile(myFile.getParentFile(), myFile.getName(), ".tmp");
+        OutputStream os = null;
+        try {
+            os = SVNFileUtil.openFileForWriting(tmpFile);
+            contents.writeTo(os);
+        } catch (IOException e) {
+            tmpFile.delete();
+            SVNErrorManager.error("svn: Cannot write properties file '" + myFile + "'");
+        } finally {
+            SVNFileUtil.closeFile(os);
+        }
+        invalidate(myFile);
+        SVNFileUtil.rename(tmpFile, myFile);
+        SVNFileUtil.setReadonly(myFile, true);
+    }
+
+    private static void invalidate(File file) {
+        synchronized (ourCache) {
+            ourCache.remove(file);
         }
-        return is.read() == '\n';
     }
 
     private static void writeProperty(OutputStream os, char type, byte[] value)
@@ -408,52 +356,78 @@ public class SVNProperties {
         os.write('\n');
     }
 
-    private static void writeProperty(OutputStream os, char type,
-            InputStream value, int length) throws IOException {
-        os.write((byte) type);
-        os.write(' ');
-        os.write(Integer.toString(length).getBytes());
-        os.write('\n');
-        for (int i = 0; i < length; i++) {
-            int r = value.read();
-            os.write(r);
+    /**
+     * Reads either "END\n" (returns -1) or "<type> length\n" header.
+     */
+    private int readLength(byte[] contents, int[] offset, char type) throws SVNException {
+        int i = offset[0];
+        if (i + 4 <= contents.length && contents[i] == 'E' && contents[i + 1] == 'N' 
+                && contents[i + 2] == 'D' && contents[i + 3] == '\n') {
+            offset[0] = i + 4;
+            return -1;
         }
-        os.write('\n');
+        if (i + 3 > contents.length || contents[i] != type || contents[i + 1] != ' ') {
+            SVNErrorManager.error("svn: Cannot read properties file '" + myFile + "': invalid properties file format");
+        }
+        int length = 0;
+        for (i += 2; i < contents.length && contents[i] != '\n'; i++) {
+            if (contents[i] < '0' || contents[i] > '9') {
+                SVNErrorManager.error("svn: Cannot read properties file '" + myFile + "': invalid properties file format");
+            }
+            length = length * 10 + (contents[i] - '0');
+        }
+        offset[0] = i + 1;
+        return length;
     }
 
-    private static int readLength(InputStream is, char type) throws IOException {
-        byte[] buffer = new byte[255];
-        int r = is.read(buffer, 0, 4);
-        if (r != 4) {
-            throw new IOException("invalid properties file format");
+    private byte[] readValue(byte[] contents, int[] offset, int length) throws SVNException {
+        int start = offset[0];
+        if (start + length + 1 > contents.length || contents[start + length] != '\n') {
+            SVNErrorManager.error("svn: Cannot read properties file '" + myFile + "': invalid properties file format");
         }
-        // either END\n or K x\n
-        if (buffer[0] == 'E' && buffer[1] == 'N' && buffer[2] == 'D'
-                && buffer[3] == '\n') {
-            return -1;
-        } else if (buffer[0] == type && buffer[1] == ' ') {
-            int i = 4;
-            if (buffer[3] != '\n') {
-                while (true) {
-                    int b = is.read();
-                    if (b < 0) {
-                        throw new IOException("invalid properties file format");
-                    } else if (b == '\n') {
-                        break;
-                    }
-                    buffer[i] = (byte) (0xFF & b);
-                    i++;
-                }
-            } else {
-                i = 3;
-            }
-            String length = new String(buffer, 2, i - 2);
-            return Integer.parseInt(length);
+        byte[] value = new byte[length];
+        System.arraycopy(contents, start, value, 0, length);
+        offset[0] = start + length + 1;
+        return value;
+    }
+
+    private static String toString(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return new String(bytes);
         }
-        throw new IOException("invalid properties file format");
     }
 
-    public boolean isEmpty() {
-        return getFile().length() <= 4;
+    private static byte[] toBytes(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return value.getBytes();
+        }
+    }
+
+    private static class CachedProperties {
+
+        private long myLastModified;
+        private long myLength;
+        private Map myProperties;
+
+        public CachedProperties(long lastModified, long length, Map properties) {
+            myLastModified = lastModified;
+            myLength = length;
+            myProperties = properties;
+        }
+    }
+
+    private static class LRUMap extends LinkedHashMap {
+
+        public LRUMap() {
+            super(16, 0.75f, true);
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > CACHE_SIZE;
+        }
     }
 }
@@ -12,12 +12,14 @@ package org.tmatesoft.svn.core.internal.wc;
 
 import java.io.File;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNException;
@@ -42,6 +44,26 @@ import org.tmatesoft.svn.core.wc.SVNStatusType;
  */
 public class SVNStatusEditor implements ISVNEditor {
 
+    // directories that may be buffered by status walker before they are reported.
+    private static final int MAX_BUFFERED_DIRECTORIES = 256;
+
+    private static int ourWalkersCount = Math.min(8, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Sets the number of threads used to collect statuses of different
+     * directories concurrently during recursive status, 1 makes status
+     * collected by the calling thread only. Statuses are reported to the
+     * handler in the same order and from the same thread regardless of this
+     * setting.
+     */
+    public static synchronized void setStatusThreadsCount(int count) {
+        ourWalkersCount = Math.max(1, count);
+    }
+
+    public static synchronized int getStatusThreadsCount() {
+        return ourWalkersCount;
+    }
+
     private ISVNOptions myOptions;
     private SVNWCAccess myWCAccess;
     private String myTarget;
@@ -373,26 +395,46 @@ public class SVNStatusEditor implements ISVNEditor {
     }
 
     public void reportStatus(SVNDirectory dir, String entryName, boolean ignoreRootEntry, boolean recursive) throws SVNException {
-        myWCAccess.checkCancelled();
-
-        SVNEntries entries = dir.getEntries();
-        boolean anchorOfTarget = myTarget != null && dir == myWCAccess.getAnchor();
-        if (!anchorOfTarget) {            
-            SVNExternalInfo[] externals = SVNWCAccess.parseExternals(dir.getPath(), dir.getProperties("", false).getPropertyValue(SVNProperty.EXTERNALS));
-            for (int i = 0; i < externals.length; i++) {
-                SVNExternalInfo external = externals[i];
-                myExternalsMap.put(external.getPath(), external);
-            }
-        }
         if (entryName != null) {
-            SVNEntry entry = entries.getEntry(entryName, true);
+            myWCAccess.checkCancelled();
+            addExternals(dir);
+            SVNEntry entry = dir.getEntries().getEntry(entryName, true);
             if (entry != null) {
-                sendVersionedStatus(dir, entryName);
+                sendVersionedStatus(dir, entryName, null);
             } else if (dir.getFile(entryName).exists()) {
-                sendUnversionedStatus(dir, entryName);
+                sendUnversionedStatus(dir, entryName, null);
             }
             return;
         }
+        int walkersCount = getStatusThreadsCount();
+        if (recursive && walkersCount > 1) {
+            new StatusWalker(walkersCount).walk(dir, ignoreRootEntry);
+            return;
+        }
+        List statuses = new ArrayList();
+        collectStatuses(dir, ignoreRootEntry, recursive, statuses);
+        for (int i = 0; i < statuses.size(); i++) {
+            Object item = statuses.get(i);
+            if (item instanceof SVNDirectory) {
+                reportStatus((SVNDirectory) item, null, false, recursive);
+            } else {
+                myHandler.handleStatus((SVNStatus) item);
+            }
+        }
+    }
+
+    /**
+     * Collects statuses of the directory contents in the order they should be
+     * reported. Child directories that should be reported recursively are
+     * added as <code>SVNDirectory</code> objects in place of their statuses.
+     * Only reads the directory itself and entries of its parent, so it may be
+     * called for different directories concurrently.
+     */
+    private void collectStatuses(SVNDirectory dir, boolean ignoreRootEntry, boolean recursive, List statuses) throws SVNException {
+        myWCAccess.checkCancelled();
+
+        SVNEntries entries = dir.getEntries();
+        addExternals(dir);
         File[] ioFiles = dir.getRoot().listFiles();
         
         if (ioFiles != null) {
@@ -404,10 +446,10 @@ public class SVNStatusEditor implements ISVNEditor {
             if (".svn".equals(fileName) || entries.getEntry(fileName, false) != null) {
                 continue;
             }
-            sendUnversionedStatus(dir, fileName);
+            sendUnversionedStatus(dir, fileName, statuses);
         }
         if (!ignoreRootEntry) {
-            sendVersionedStatus(dir, "");
+            sendVersionedStatus(dir, "", statuses);
         }
         for (Iterator ents = entries.entries(false); ents.hasNext();) {
             SVNEntry childEntry = (SVNEntry) ents.next();
@@ -419,17 +461,49 @@ public class SVNStatusEditor implements ISVNEditor {
             if (fType == SVNFileType.DIRECTORY) {
                 SVNDirectory childDir = dir.getChildDirectory(childEntry.getName());
                 if (childDir != null && recursive) {
-                    reportStatus(childDir, null, false, recursive);
+                    statuses.add(childDir);
                 } else {
-                    sendVersionedStatus(dir, childEntry.getName());
+                    sendVersionedStatus(dir, childEntry.getName(), statuses);
                 }
             } else {
-                sendVersionedStatus(dir, childEntry.getName());
+                sendVersionedStatus(dir, childEntry.getName(), statuses);
+            }
+        }
+    }
+
+    private void addExternals(SVNDirectory dir) throws SVNException {
+        boolean anchorOfTarget = myTarget != null && dir == myWCAccess.getAnchor();
+        if (anchorOfTarget) {
+            return;
+        }
+        SVNExternalInfo[] externals = SVNWCAccess.parseExternals(dir.getPath(), dir.getProperties("", false).getPropertyValue(SVNProperty.EXTERNALS));
+        synchronized (myExternalsMap) {
+            for (int i = 0; i < externals.length; i++) {
+                SVNExternalInfo external = externals[i];
+                myExternalsMap.put(external.getPath(), external);
             }
         }
     }
 
-    private void sendVersionedStatus(SVNDirectory dir, String name) throws SVNException {
+    private boolean isExternal(String path) {
+        synchronized (myExternalsMap) {
+            return myExternalsMap.containsKey(path);
+        }
+    }
+
+    /**
+     * Sends status to the handler when <code>statuses</code> is null, adds it
+     * to <code>statuses</code> otherwise.
+     */
+    private void handleStatus(SVNStatus status, List statuses) {
+        if (statuses == null) {
+            myHandler.handleStatus(status);
+        } else {
+            statuses.add(status);
+        }
+    }
+
+    private void sendVersionedStatus(SVNDirectory dir, String name, List statuses) throws SVNException {
         File file;
         SVNEntry parentEntry;
         SVNDirectory parentDir = null;
@@ -487,11 +561,11 @@ public class SVNStatusEditor implements ISVNEditor {
                 entry, false, fileType, Collections.unmodifiableMap(entry.asMap()));
 
         if (status != null) {
-            myHandler.handleStatus(status);
+            handleStatus(status, statuses);
         }
     }
 
-    private void sendUnversionedStatus(SVNDirectory parent, String name)
+    private void sendUnversionedStatus(SVNDirectory parent, String name, List statuses)
             throws SVNException {
         boolean ignored = isIgnored(parent, name);
         String path = "".equals(name) ? parent.getPath() : SVNPathUtil.append(
@@ -505,14 +579,14 @@ public class SVNStatusEditor implements ISVNEditor {
             }
         }
         SVNStatus status = createStatus(url, parent.getFile(name), parent, null, null, ignored, null, null);
-        if (myExternalsMap.containsKey(path)) {
+        boolean external = isExternal(path);
+        if (external) {
             status.markExternal();
         }
         if (status != null) {
-            if (myIsIncludeIgnored || !ignored
-                    || myExternalsMap.containsKey(path)
+            if (myIsIncludeIgnored || !ignored || external
                     || status.getRemoteLock() != null) {
-                myHandler.handleStatus(status);
+                handleStatus(status, statuses);
             }
         }
     }
@@ -675,17 +749,7 @@ public class SVNStatusEditor implements ISVNEditor {
         if (ignoredProperty == null) {
             return false;
         }
-        for (StringTokenizer tokens = new StringTokenizer(ignoredProperty,
-                "\r\n"); tokens.hasMoreTokens();) {
-            String token = tokens.nextToken();
-            if (token.trim().length() == 0) {
-                continue;
-            }
-            if (DefaultSVNOptions.matches(token, name)) {
-                return true;
-            }
-        }
-        return false;
+        return SVNPatternMatcher.getMatcher(ignoredProperty, "\r\n").matches(name);
     }
 
     private SVNLock getRepositoryLock(SVNURL url) {
@@ -727,6 +791,160 @@ public class SVNStatusEditor implements ISVNEditor {
                 || status.getLocalLock() != null;
     }
 
+    /**
+     * Collects statuses of directories in a bounded set of threads and
+     * reports them to the handler from the calling thread in the order
+     * sequential walk would report them. Every directory is a job, jobs of its
+     * subdirectories are queued when directory is collected, the calling
+     * thread waits for (or runs itself) the job it has to report next.
+     */
+    private class StatusWalker implements Runnable {
+
+        private LinkedList myQueue;
+        private int myBufferedCount;
+        private boolean myIsStopped;
+        private int myWalkersCount;
+
+        public StatusWalker(int walkersCount) {
+            myQueue = new LinkedList();
+            myWalkersCount = walkersCount;
+        }
+
+        public void walk(SVNDirectory dir, boolean ignoreRootEntry) throws SVNException {
+            StatusJob root = new StatusJob(dir, ignoreRootEntry);
+            // load global ignores and entries before they are read concurrently.
+            myOptions.isIgnored("");
+            dir.getEntries();
+            myQueue.add(root);
+            Thread[] threads = new Thread[myWalkersCount - 1];
+            try {
+                for (int i = 0; i < threads.length; i++) {
+                    threads[i] = new Thread(this, "javasvn status walker");
+                    threads[i].setDaemon(true);
+                    threads[i].start();
+                }
+                report(root);
+            } finally {
+                synchronized (this) {
+                    myIsStopped = true;
+                    notifyAll();
+                }
+                for (int i = 0; i < threads.length && threads[i] != null; i++) {
+                    try {
+                        threads[i].join();
+                    } catch (InterruptedException e) {
+                        //
+                    }
+                }
+            }
+        }
+
+        public void run() {
+            while (true) {
+                StatusJob job;
+                synchronized (this) {
+                    while (!myIsStopped && (myQueue.isEmpty() || myBufferedCount >= MAX_BUFFERED_DIRECTORIES)) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (myIsStopped) {
+                        return;
+                    }
+                    job = (StatusJob) myQueue.removeFirst();
+                }
+                collect(job);
+            }
+        }
+
+        private void report(StatusJob job) throws SVNException {
+            boolean collectHere = false;
+            synchronized (this) {
+                if (myQueue.remove(job)) {
+                    // not started yet, there is no point in waiting.
+                    collectHere = true;
+                } else {
+                    while (!job.IsCollected) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            SVNErrorManager.error("svn: Status collection for '" + job.Directory.getRoot() + "' is interrupted");
+                        }
+                    }
+                }
+            }
+            if (collectHere) {
+                collect(job);
+            }
+            synchronized (this) {
+                myBufferedCount--;
+                notifyAll();
+            }
+            if (job.Failure instanceof SVNException) {
+                throw (SVNException) job.Failure;
+            } else if (job.Failure instanceof RuntimeException) {
+                throw (RuntimeException) job.Failure;
+            } else if (job.Failure instanceof Error) {
+                throw (Error) job.Failure;
+            }
+            List statuses = job.Statuses;
+            job.Statuses = null;
+            for (int i = 0; i < statuses.size(); i++) {
+                Object item = statuses.get(i);
+                if (item instanceof StatusJob) {
+                    report((StatusJob) item);
+                } else {
+                    myHandler.handleStatus((SVNStatus) item);
+                }
+            }
+        }
+
+        private void collect(StatusJob job) {
+            List statuses = new ArrayList();
+            List children = new ArrayList();
+            try {
+                collectStatuses(job.Directory, job.IgnoreRootEntry, true, statuses);
+                for (int i = 0; i < statuses.size(); i++) {
+                    if (statuses.get(i) instanceof SVNDirectory) {
+                        StatusJob child = new StatusJob((SVNDirectory) statuses.get(i), false);
+                        statuses.set(i, child);
+                        children.add(child);
+                    }
+                }
+            } catch (Throwable th) {
+                job.Failure = th;
+                children.clear();
+            }
+            synchronized (this) {
+                job.Statuses = statuses;
+                job.IsCollected = true;
+                myBufferedCount++;
+                // subdirectories go first and in order, so that jobs are
+                // started in the same order they are reported.
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    myQueue.addFirst(children.get(i));
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private static class StatusJob {
+
+        public StatusJob(SVNDirectory dir, boolean ignoreRootEntry) {
+            Directory = dir;
+            IgnoreRootEntry = ignoreRootEntry;
+        }
+
+        public SVNDirectory Directory;
+        public boolean IgnoreRootEntry;
+        public List Statuses;
+        public Throwable Failure;
+        public boolean IsCollected;
+    }
+
     private class DirectoryInfo {
 
         public DirectoryInfo(DirectoryInfo parent, String path, boolean added) throws SVNException {
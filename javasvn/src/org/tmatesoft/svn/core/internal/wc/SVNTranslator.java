@@ -10,12 +10,17 @@
  */
 package org.tmatesoft.svn.core.internal.wc;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -35,6 +40,8 @@ import org.tmatesoft.svn.core.internal.util.SVNTimeUtil;
  */
 public class SVNTranslator {
 
+    private static final int BUFFER_SIZE = 8192;
+
     public static final byte[] CRLF = new byte[] { '\r', '\n' };
 
     public static final byte[] LF = new byte[] { '\n' };
@@ -49,10 +56,10 @@ public class SVNTranslator {
         File src = dir.getFile(srcPath);
         File dst = safe ? SVNFileUtil.createUniqueFile(dir.getRoot(), dstPath, ".tmp") : dir.getFile(dstPath);
         
-        SVNProperties props = dir.getProperties(name, false);
-        String keywords = props.getPropertyValue(SVNProperty.KEYWORDS);
-        String eolStyle = props.getPropertyValue(SVNProperty.EOL_STYLE);
-        boolean special = props.getPropertyValue(SVNProperty.SPECIAL) != null;
+        Map props = dir.getProperties(name, false).asMap();
+        String keywords = (String) props.get(SVNProperty.KEYWORDS);
+        String eolStyle = (String) props.get(SVNProperty.EOL_STYLE);
+        boolean special = props.get(SVNProperty.SPECIAL) != null;
         Map keywordsMap = null;
         byte[] eols;
         if (keywords != null) {
@@ -118,6 +125,83 @@ public class SVNTranslator {
         }
     }
 
+    /**
+     * Compares file <code>name</code> of <code>dir</code> translated to the
+     * normal form with <code>baseFile</code>. Translated contents are not
+     * written anywhere, comparison stops at the first difference. When
+     * <code>digest</code> is not null, it is updated with the whole contents
+     * of the base file.
+     */
+    public static boolean compareDetranslated(SVNDirectory dir, String name, File baseFile, MessageDigest digest) throws SVNException {
+        File src = dir.getFile(name);
+        Map props = dir.getProperties(name, false).asMap();
+        String keywords = (String) props.get(SVNProperty.KEYWORDS);
+        boolean special = props.get(SVNProperty.SPECIAL) != null;
+        byte[] eols = getBaseEOL((String) props.get(SVNProperty.EOL_STYLE));
+        Map keywordsMap = keywords != null ? computeKeywords(keywords, null, null, null, null) : null;
+        if (keywordsMap != null && keywordsMap.isEmpty()) {
+            keywordsMap = null;
+        }
+        InputStream is = null;
+        if (special && !SVNFileUtil.isWindows) {
+            if (!SVNFileUtil.isSymlink(src)) {
+                SVNErrorManager.error("svn: Cannot detranslate symlink '" + src.getAbsolutePath() + "' : file doesn't exists or not a symlink.");
+            }
+            try {
+                is = new ByteArrayInputStream(("link " + SVNFileUtil.getSymlinkName(src)).getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                SVNErrorManager.error("svn: " + e.getMessage());
+            }
+            eols = null;
+            keywordsMap = null;
+        } else if (eols == null && keywordsMap == null && digest == null && src.length() != baseFile.length()) {
+            // contents are not translated, files of different size could not be equal.
+            return false;
+        }
+        InputStream base = SVNFileUtil.openFileForReading(baseFile);
+        if (digest != null) {
+            base = new DigestInputStream(base, digest);
+        }
+        try {
+            if (is == null) {
+                is = SVNFileUtil.openFileForReading(src);
+            }
+            CompareOutputStream compare = new CompareOutputStream(base);
+            if (eols == null && keywordsMap == null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int read = is.read(buffer); read >= 0; read = is.read(buffer)) {
+                    compare.write(buffer, 0, read);
+                }
+            } else {
+                OutputStream os = new BufferedOutputStream(compare, BUFFER_SIZE);
+                copy(is, os, eols, keywordsMap);
+                os.flush();
+            }
+            if (base.read() >= 0) {
+                compare.mismatch();
+            }
+            return true;
+        } catch (MismatchException e) {
+            return false;
+        } catch (IOException e) {
+            SVNErrorManager.error("svn: I/O error while comparing files '" + src + "' and '" + baseFile + "'");
+        } finally {
+            if (digest != null) {
+                // rest of the base file is only read to complete its digest.
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    while (base.read(buffer) >= 0) {
+                    }
+                } catch (IOException e) {
+                    //
+                }
+            }
+            SVNFileUtil.closeFile(is);
+            SVNFileUtil.closeFile(base);
+        }
+        return false;
+    }
+
     public static boolean checkNewLines(File file) {
         if (file == null || !file.exists() || file.isDirectory()) {
             return true;
@@ -396,4 +480,48 @@ public class SVNTranslator {
         }
         return null;
     }
+
+    private static class MismatchException extends IOException {
+    }
+
+    /**
+     * Compares data written to it with the contents of the base stream,
+     * throws {@link MismatchException} at the first difference.
+     */
+    private static class CompareOutputStream extends OutputStream {
+
+        private InputStream myBase;
+        private byte[] myBuffer;
+
+        public CompareOutputStream(InputStream base) {
+            myBase = base;
+            myBuffer = new byte[BUFFER_SIZE];
+        }
+
+        public void write(int b) throws IOException {
+            if (myBase.read() != (b & 0xFF)) {
+                mismatch();
+            }
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int read = myBase.read(myBuffer, 0, Math.min(len, myBuffer.length));
+                if (read < 0) {
+                    mismatch();
+                }
+                for (int i = 0; i < read; i++) {
+                    if (myBuffer[i] != b[off + i]) {
+                        mismatch();
+                    }
+                }
+                off += read;
+                len -= read;
+            }
+        }
+
+        public void mismatch() throws MismatchException {
+            throw new MismatchException();
+        }
+    }
 }
@@ -45,7 +45,7 @@ public class SVNUpdateEditor implements ISVNEditor {
     private boolean myIsTargetDeleted;
     private boolean myIsLeaveConflicts;
     
-    private SVNDeltaProcessor myDeltaProcessor;
+    private SVNDeltaApplier myDeltaApplier;
 
     public SVNUpdateEditor(SVNWCAccess wcAccess, String switchURL, boolean recursive, boolean leaveConflicts) throws SVNException {
         myWCAccess = wcAccess;
@@ -54,7 +54,6 @@ public class SVNUpdateEditor implements ISVNEditor {
         mySwitchURL = switchURL;
         myTargetRevision = -1;
         myIsLeaveConflicts = leaveConflicts;
-        myDeltaProcessor = new SVNDeltaProcessor();
 
         SVNEntry entry = wcAccess.getAnchor().getEntries().getEntry("", true);
         myTargetURL = entry.getURL();
@@ -88,7 +87,7 @@ public class SVNUpdateEditor implements ISVNEditor {
             if (mySwitchURL != null) {
                 clearWCProperty(myCurrentDirectory.getDirectory());
             }
-            entries.save(true);
+            entries.writeThrough(true);
         }
     }
 
@@ -150,7 +149,7 @@ public class SVNUpdateEditor implements ISVNEditor {
         entry.setKind(SVNNodeKind.DIR);
         entry.setAbsent(false);
         entry.setDeleted(false);
-        parentDir.getEntries().save(true);
+        parentDir.getEntries().writeThrough(true);
 
         SVNDirectory dir = parentDir.createChildDirectory(name, myCurrentDirectory.URL, myTargetRevision);
         if (dir == null) {
@@ -174,7 +173,7 @@ public class SVNUpdateEditor implements ISVNEditor {
         if (mySwitchURL != null) {
             clearWCProperty(myCurrentDirectory.getDirectory());
         }
-        entries.save(true);
+        entries.writeThrough(true);
     }
 
     public void absentDir(String path) throws SVNException {
@@ -205,7 +204,7 @@ public class SVNUpdateEditor implements ISVNEditor {
             entry.setRevision(myTargetRevision);
             entry.setAbsent(true);
         }
-        entries.save(true);
+        entries.writeThrough(true);
 
     }
 
@@ -298,43 +297,39 @@ public class SVNUpdateEditor implements ISVNEditor {
         SVNEntries entries = dir.getEntries();
         SVNEntry entry = entries.getEntry(myCurrentFile.Name, true);
         File baseFile = dir.getBaseFile(myCurrentFile.Name, false);
+        String expectedChecksum = null;
         if (entry != null && entry.getChecksum() != null) {
-            if (baseChecksum == null) {
-                baseChecksum = entry.getChecksum();
-            }
-            String realChecksum = SVNFileUtil.computeChecksum(baseFile);
-            if (baseChecksum != null && (realChecksum == null || !realChecksum.equals(baseChecksum))) {
-                SVNErrorManager.error("svn: Checksum mismatch for '" + myCurrentFile.getPath() + "'; expected: '" + baseChecksum + "', actual: '" + realChecksum + "'");
-            }
+            // verified by the applier while it reads the base file.
+            expectedChecksum = baseChecksum == null ? entry.getChecksum() : baseChecksum;
         }
         File baseTmpFile = dir.getBaseFile(myCurrentFile.Name, true);
-        SVNFileUtil.copyFile(baseFile, baseTmpFile, false);
-        if (!baseTmpFile.exists()) {
-            SVNFileUtil.createEmptyFile(baseTmpFile);
-        }
+        closeDeltaApplier();
+        myDeltaApplier = new SVNDeltaApplier(baseFile, baseTmpFile, expectedChecksum);
         myCurrentFile.TextUpdated = true;
     }
 
     public OutputStream textDeltaChunk(String commitPath, SVNDiffWindow diffWindow) throws SVNException {
-        File file = myCurrentFile.getDirectory().getBaseFile(myCurrentFile.Name + ".txtdelta", true);
-        return myDeltaProcessor.textDeltaChunk(file, diffWindow);
+        return myDeltaApplier.textDeltaChunk(diffWindow);
     }
 
     public void textDeltaEnd(String commitPath) throws SVNException {
-        File baseTmpFile = myCurrentFile.getDirectory().getBaseFile(myCurrentFile.Name, true);
-        File targetFile = myCurrentFile.getDirectory().getBaseFile(myCurrentFile.Name + ".tmp", true);
-        if (myDeltaProcessor.textDeltaEnd(baseTmpFile, targetFile)) {
-            SVNFileUtil.rename(targetFile, baseTmpFile);
+        try {
+            myCurrentFile.Checksum = myDeltaApplier.textDeltaEnd();
+        } finally {
+            myDeltaApplier = null;
         }
     }
 
     public void closeFile(String commitPath, String textChecksum) throws SVNException {
-        myDeltaProcessor.close();
+        closeDeltaApplier();
         // check checksum.
         String checksum = null;
         if (textChecksum != null && myCurrentFile.TextUpdated) {            
-            File baseTmpFile = myCurrentFile.getDirectory().getBaseFile(myCurrentFile.Name, true);
-            checksum = SVNFileUtil.computeChecksum(baseTmpFile);            
+            checksum = myCurrentFile.Checksum;
+            if (checksum == null) {
+                File baseTmpFile = myCurrentFile.getDirectory().getBaseFile(myCurrentFile.Name, true);
+                checksum = SVNFileUtil.computeChecksum(baseTmpFile);
+            }
             if (!textChecksum.equals(checksum)) {
                 SVNErrorManager.error("svn: Checksum differs, expected '" + textChecksum + "'; actual: '" + checksum + "'");
             }
@@ -494,6 +489,14 @@ public class SVNUpdateEditor implements ISVNEditor {
     }
 
     public void abortEdit() throws SVNException {
+        closeDeltaApplier();
+    }
+
+    private void closeDeltaApplier() {
+        if (myDeltaApplier != null) {
+            myDeltaApplier.close();
+            myDeltaApplier = null;
+        }
     }
 
     private void bumpDirectories() throws SVNException {
@@ -503,7 +506,7 @@ public class SVNUpdateEditor implements ISVNEditor {
                 SVNEntry entry = dir.getEntries().getEntry(myTarget, true);
                 boolean save = bumpEntry(dir.getEntries(), entry, mySwitchURL, myTargetRevision, false);
                 if (save) {
-                    dir.getEntries().save(true);
+                    dir.getEntries().writeThrough(true);
                 } else {
                     dir.getEntries().close();
                 }
@@ -539,7 +542,7 @@ public class SVNUpdateEditor implements ISVNEditor {
             }
         }
         if (save) {
-            entries.save(true);
+            entries.writeThrough(true);
         }
         for (Iterator children = childDirectories.keySet().iterator(); children.hasNext();) {
             SVNDirectory child = (SVNDirectory) children.next();
@@ -601,7 +604,7 @@ public class SVNUpdateEditor implements ISVNEditor {
                     }
                 }
             }
-            entries.save(true);
+            entries.writeThrough(true);
             info = info.Parent;
         }
     }
@@ -721,6 +724,7 @@ public class SVNUpdateEditor implements ISVNEditor {
         public String Name;
         public String CommitTime;
         public boolean TextUpdated;
+        public String Checksum;
 
         public SVNFileInfo(SVNDirectoryInfo parent, String path) {
             super(path);
@@ -15,8 +15,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
 
@@ -43,6 +45,8 @@ public class SVNWCAccess implements ISVNEventHandler {
     private ISVNEventHandler myDispatcher;
     private Map myDirectories;
     private Map myExternals;
+    private boolean myIsWriteBack;
+    private Set myModifiedEntries;
 
     public static SVNWCAccess create(File file) throws SVNException {
         file = new File(file.getAbsolutePath());
@@ -139,6 +143,51 @@ public class SVNWCAccess implements ISVNEventHandler {
         myDispatcher = dispatcher;
     }
 
+    /**
+     * In write-back mode entries saved by directories of this access are
+     * only marked as modified and are written once, when logs of a
+     * directory are completed or when this access is closed. Changes that
+     * are not covered by logs are written at once, see
+     * {@link SVNEntries#writeThrough(boolean)}. Code that reads entries from
+     * disk bypassing this access, like {@link #isVersionedDirectory(File)} or
+     * working copy root detection, should call {@link #flushEntries()} first.
+     */
+    public void setWriteBack(boolean writeBack) throws SVNException {
+        myIsWriteBack = writeBack;
+        if (!writeBack) {
+            flushEntries();
+        }
+    }
+
+    public boolean isWriteBack() {
+        return myIsWriteBack;
+    }
+
+    /**
+     * Writes all entries that were saved in write-back mode since the last
+     * flush.
+     */
+    public void flushEntries() throws SVNException {
+        SVNEntries[] modified;
+        synchronized (this) {
+            if (myModifiedEntries == null || myModifiedEntries.isEmpty()) {
+                return;
+            }
+            modified = (SVNEntries[]) myModifiedEntries.toArray(new SVNEntries[myModifiedEntries.size()]);
+            myModifiedEntries.clear();
+        }
+        for (int i = 0; i < modified.length; i++) {
+            modified[i].flush();
+        }
+    }
+
+    synchronized void entriesModified(SVNEntries entries) {
+        if (myModifiedEntries == null) {
+            myModifiedEntries = new LinkedHashSet();
+        }
+        myModifiedEntries.add(entries);
+    }
+
     public ISVNOptions getOptions() {
         if (myOptions == null) {
             myOptions = new DefaultSVNOptions();
@@ -253,6 +302,14 @@ public class SVNWCAccess implements ISVNEventHandler {
     }
 
     public void close(boolean unlock) throws SVNException {
+        try {
+            flushEntries();
+        } finally {
+            release(unlock);
+        }
+    }
+
+    private void release(boolean unlock) throws SVNException {
         if (!unlock || myDirectories == null) {
             if (myDirectories != null) {
                 myDirectories = null;
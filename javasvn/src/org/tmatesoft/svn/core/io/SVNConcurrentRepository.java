@@ -0,0 +1,549 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.io;
+
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLock;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * Thread safe <code>SVNRepository</code> that spreads concurrent calls over
+ * several session mode repositories opened to the same location.
+ *
+ * <p>
+ * Each call borrows an idle session (opening a new one while there are less
+ * than the maximum number of sessions) and waits when all sessions are busy.
+ * A call made from within a handler or an editor of another call of the same
+ * thread does not wait, it always gets a separate session, so handlers are
+ * allowed to call back into the repository. Such session may be opened over
+ * the maximum number of sessions, it is closed when released while there are
+ * more sessions than the maximum.
+ *
+ * <p>
+ * Instances are created with {@link SVNRepositoryFactory#createConcurrent(SVNURL, int)}.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+class SVNConcurrentRepository extends SVNRepository {
+
+    private int myMaxSessions;
+    private int mySessionsCount;
+    private LinkedList myIdleSessions;
+    private Map myBusySessions;
+
+    SVNConcurrentRepository(SVNURL location, int maxSessions) {
+        super(location, false);
+        myMaxSessions = Math.max(1, maxSessions);
+        myIdleSessions = new LinkedList();
+        myBusySessions = new HashMap();
+    }
+
+    public void testConnection() throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.testConnection();
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public long getLatestRevision() throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getLatestRevision();
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public long getDatedRevision(Date date) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getDatedRevision(date);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public Map getRevisionProperties(long revision, Map properties) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getRevisionProperties(revision, properties);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void setRevisionPropertyValue(long revision, String propertyName, String propertyValue) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.setRevisionPropertyValue(revision, propertyName, propertyValue);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public String getRevisionPropertyValue(long revision, String propertyName) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getRevisionPropertyValue(revision, propertyName);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public SVNNodeKind checkPath(String path, long revision) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.checkPath(path, revision);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public long getFile(String path, long revision, Map properties, OutputStream contents) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getFile(path, revision, properties, contents);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public long getDir(String path, long revision, Map properties, ISVNDirEntryHandler handler) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getDir(path, revision, properties, handler);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public Collection getDir(String path, long revision) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getDir(path, revision);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public int getFileRevisions(String path, long startRevision, long endRevision, ISVNFileRevisionHandler handler) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getFileRevisions(path, startRevision, endRevision, handler);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public long log(String[] targetPaths, long startRevision, long endRevision, boolean changedPath, boolean strictNode, long limit,
+            ISVNLogEntryHandler handler) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.log(targetPaths, startRevision, endRevision, changedPath, strictNode, limit, handler);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public int getLocations(String path, long pegRevision, long[] revisions, ISVNLocationEntryHandler handler) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getLocations(path, pegRevision, revisions, handler);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void diff(SVNURL url, long revision, String target, boolean ignoreAncestry, boolean recursive,
+            ISVNReporterBaton reporter, ISVNEditor editor) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.diff(url, revision, target, ignoreAncestry, recursive, reporter, editor);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void diff(SVNURL url, long targetRevision, long revision, String target, boolean ignoreAncestry, boolean recursive,
+            ISVNReporterBaton reporter, ISVNEditor editor) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.diff(url, targetRevision, revision, target, ignoreAncestry, recursive, reporter, editor);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void update(long revision, String target, boolean recursive, ISVNReporterBaton reporter, ISVNEditor editor) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.update(revision, target, recursive, reporter, editor);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void status(long revision, String target, boolean recursive, ISVNReporterBaton reporter, ISVNEditor editor) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.status(revision, target, recursive, reporter, editor);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void update(SVNURL url, long revision, String target, boolean recursive, ISVNReporterBaton reporter, ISVNEditor editor) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.update(url, revision, target, recursive, reporter, editor);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public SVNDirEntry info(String path, long revision) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.info(path, revision);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public ISVNEditor getCommitEditor(String logMessage, Map locks, boolean keepLocks, ISVNWorkspaceMediator mediator) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            // session remains busy until the edit is closed or aborted.
+            return new SessionCommitEditor(repository, repository.getCommitEditor(logMessage, locks, keepLocks, mediator));
+        } catch (SVNException e) {
+            resetSession(repository);
+            releaseSession(repository);
+            throw e;
+        }
+    }
+
+    public SVNLock getLock(String path) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getLock(path);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public SVNLock[] getLocks(String path) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            return repository.getLocks(path);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void lock(Map pathsToRevisions, String comment, boolean force, ISVNLockHandler handler) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.lock(pathsToRevisions, comment, force, handler);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    public void unlock(Map pathToTokens, boolean force, ISVNLockHandler handler) throws SVNException {
+        SVNRepository repository = borrowSession();
+        try {
+            repository.unlock(pathToTokens, force, handler);
+        } catch (SVNException e) {
+            resetSession(repository);
+            throw e;
+        } finally {
+            releaseSession(repository);
+        }
+    }
+
+    /**
+     * Closes all idle sessions. Sessions that are busy at the moment are
+     * kept and reused by later calls.
+     */
+    public void closeSession() throws SVNException {
+        LinkedList sessions;
+        synchronized (this) {
+            sessions = new LinkedList(myIdleSessions);
+            mySessionsCount -= myIdleSessions.size();
+            myIdleSessions.clear();
+            notifyAll();
+        }
+        SVNException error = null;
+        for (Iterator repositories = sessions.iterator(); repositories.hasNext();) {
+            SVNRepository repository = (SVNRepository) repositories.next();
+            try {
+                repository.closeSession();
+            } catch (SVNException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private SVNRepository borrowSession() throws SVNException {
+        SVNRepository repository = null;
+        synchronized (this) {
+            Thread thread = Thread.currentThread();
+            // re-entrant call made from a handler, waiting would be a deadlock.
+            boolean reentrant = myBusySessions.containsValue(thread);
+            while (myIdleSessions.isEmpty() && mySessionsCount >= myMaxSessions && !reentrant) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new SVNException("svn: Interrupted while waiting for repository session");
+                }
+            }
+            if (!myIdleSessions.isEmpty()) {
+                repository = (SVNRepository) myIdleSessions.removeFirst();
+            }
+            mySessionsCount += repository == null ? 1 : 0;
+        }
+        if (repository == null) {
+            try {
+                repository = SVNRepositoryFactory.create(getLocation(), true);
+            } catch (SVNException e) {
+                synchronized (this) {
+                    mySessionsCount--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+        repository.setAuthenticationManager(getAuthenticationManager());
+        repository.setPegRevision(getPegRevision());
+        synchronized (this) {
+            myBusySessions.put(repository, Thread.currentThread());
+        }
+        return repository;
+    }
+
+    private static void resetSession(SVNRepository repository) {
+        // connection state is unknown after failure, next call will reconnect.
+        try {
+            repository.closeSession();
+        } catch (SVNException e) {
+            //
+        }
+    }
+
+    private void releaseSession(SVNRepository repository) {
+        setRepositoryCredentials(repository.getRepositoryUUID(), repository.getRepositoryRoot());
+        boolean surplus;
+        synchronized (this) {
+            myBusySessions.remove(repository);
+            surplus = mySessionsCount > myMaxSessions;
+            if (surplus) {
+                mySessionsCount--;
+            } else {
+                myIdleSessions.addFirst(repository);
+            }
+            notifyAll();
+        }
+        if (surplus) {
+            resetSession(repository);
+        }
+    }
+
+    private class SessionCommitEditor implements ISVNEditor {
+
+        private SVNRepository myRepository;
+        private ISVNEditor myDelegate;
+
+        public SessionCommitEditor(SVNRepository repository, ISVNEditor delegate) {
+            myRepository = repository;
+            myDelegate = delegate;
+        }
+
+        public void targetRevision(long revision) throws SVNException {
+            myDelegate.targetRevision(revision);
+        }
+
+        public void openRoot(long revision) throws SVNException {
+            myDelegate.openRoot(revision);
+        }
+
+        public void deleteEntry(String path, long revision) throws SVNException {
+            myDelegate.deleteEntry(path, revision);
+        }
+
+        public void absentDir(String path) throws SVNException {
+            myDelegate.absentDir(path);
+        }
+
+        public void absentFile(String path) throws SVNException {
+            myDelegate.absentFile(path);
+        }
+
+        public void addDir(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            myDelegate.addDir(path, copyFromPath, copyFromRevision);
+        }
+
+        public void openDir(String path, long revision) throws SVNException {
+            myDelegate.openDir(path, revision);
+        }
+
+        public void changeDirProperty(String name, String value) throws SVNException {
+            myDelegate.changeDirProperty(name, value);
+        }
+
+        public void closeDir() throws SVNException {
+            myDelegate.closeDir();
+        }
+
+        public void addFile(String path, String copyFromPath, long copyFromRevision) throws SVNException {
+            myDelegate.addFile(path, copyFromPath, copyFromRevision);
+        }
+
+        public void openFile(String path, long revision) throws SVNException {
+            myDelegate.openFile(path, revision);
+        }
+
+        public void applyTextDelta(String path, String baseChecksum) throws SVNException {
+            myDelegate.applyTextDelta(path, baseChecksum);
+        }
+
+        public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow) throws SVNException {
+            return myDelegate.textDeltaChunk(path, diffWindow);
+        }
+
+        public void textDeltaEnd(String path) throws SVNException {
+            myDelegate.textDeltaEnd(path);
+        }
+
+        public void changeFileProperty(String path, String name, String value) throws SVNException {
+            myDelegate.changeFileProperty(path, name, value);
+        }
+
+        public void closeFile(String path, String textChecksum) throws SVNException {
+            myDelegate.closeFile(path, textChecksum);
+        }
+
+        public SVNCommitInfo closeEdit() throws SVNException {
+            try {
+                return myDelegate.closeEdit();
+            } catch (SVNException e) {
+                resetSession(myRepository);
+                throw e;
+            } finally {
+                release();
+            }
+        }
+
+        public void abortEdit() throws SVNException {
+            try {
+                myDelegate.abortEdit();
+            } catch (SVNException e) {
+                resetSession(myRepository);
+                throw e;
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (myRepository != null) {
+                releaseSession(myRepository);
+                myRepository = null;
+            }
+        }
+    }
+}
@@ -143,6 +143,27 @@ public abstract class SVNRepositoryFactory {
         return null;
     }
 
+    /**
+     * Creates a thread safe <code>SVNRepository</code> that may be shared by
+     * several threads. Concurrent calls are spread over up to
+     * <code>maxSessions</code> repository sessions opened to the same
+     * <code>url</code>, calls made from within handlers or editors of another
+     * call are executed in a separate session.
+     *
+     * @param  url              a url (to connect to a repository)
+     *                          as an <code>SVNURL</code> object
+     * @param  maxSessions      maximum number of sessions to use for
+     *                          concurrent calls
+     * @return                  a new thread safe instance of <code>SVNRepository</code>
+     * @throws SVNException     if there's no implementation for the specified protocol
+     * @see                     #create(SVNURL, boolean)
+     */
+    public static SVNRepository createConcurrent(SVNURL url, int maxSessions) throws SVNException {
+        // fails early when there is no factory for the url protocol.
+        create(url, false);
+        return new SVNConcurrentRepository(url, maxSessions);
+    }
+
     protected abstract SVNRepository createRepositoryImpl(SVNURL url, boolean sessionMode);
 
 }
@@ -11,13 +11,8 @@
  */
 package org.tmatesoft.svn.core.io.diff;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 import org.tmatesoft.svn.core.SVNException;
-import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
-import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 
 
@@ -30,32 +25,8 @@ public class SVNAllDeltaGenerator implements ISVNDeltaGenerator {
 	// Accessing ==============================================================
 
 	public void generateDiffWindow(String commitPath, ISVNEditor consumer, ISVNRAData workFile, ISVNRAData baseFile) throws SVNException {
-        long length = workFile.length();
-		SVNDiffWindow window = SVNDiffWindowBuilder.createReplacementDiffWindow(length);
-		OutputStream os = consumer.textDeltaChunk(commitPath, window);
-        if (length == 0) {
-            SVNFileUtil.closeFile(os);
-            consumer.textDeltaEnd(commitPath);
-            return;
-        }
-		InputStream is = null;
-        byte[] buffer = new byte[32*1024];
-		try {
-			is = workFile.readAll();
-            while(true) {
-                int read = is.read(buffer);
-                if (read <= 0) {
-                    break;
-                }
-                os.write(buffer, 0, read);
-            }
-		} catch (IOException e) {
-            SVNErrorManager.error(e.getMessage());
-		}
-		finally {
-            SVNFileUtil.closeFile(os);
-            SVNFileUtil.closeFile(is);
-		}
-		consumer.textDeltaEnd(commitPath);
+		SVNDiffWindowSender sender = new SVNDiffWindowSender(commitPath, consumer, workFile);
+		sender.copyFromNewData(0, workFile.length());
+		sender.finish();
 	}
 }
\ No newline at end of file
@@ -65,20 +65,46 @@ public class SVNDiffWindow {
     }
 
     public void apply(ISVNRAData source, ISVNRAData target, InputStream newData, long offset) throws SVNException {
+        if (target instanceof SVNRAFileChannelData) {
+            apply(source, (SVNRAFileChannelData) target, newData, offset);
+            return;
+        }
         InputStream src;
         for(int i = 0; i < myInstructions.length; i++) {
-            myInstructions[i].offset += offset;
-            switch (myInstructions[i].type) {
+            SVNDiffInstruction instruction = myInstructions[i];
+            switch (instruction.type) {
                 case SVNDiffInstruction.COPY_FROM_NEW_DATA:
                     src = newData;
                     break;
                 case SVNDiffInstruction.COPY_FROM_TARGET:
-                    src = target.read(myInstructions[i].offset, myInstructions[i].length);
+                    // relative to the target view, which starts at offset.
+                    src = target.read(instruction.offset + offset, instruction.length);
+                    break;
+                default:
+                    // relative to the source view.
+                    src = source.read(instruction.offset + mySourceViewOffset, instruction.length);
+            }
+            target.append(src, instruction.length);
+        }
+    }
+
+    private void apply(ISVNRAData source, SVNRAFileChannelData target, InputStream newData, long offset) throws SVNException {
+        for(int i = 0; i < myInstructions.length; i++) {
+            SVNDiffInstruction instruction = myInstructions[i];
+            switch (instruction.type) {
+                case SVNDiffInstruction.COPY_FROM_NEW_DATA:
+                    target.append(newData, instruction.length);
+                    break;
+                case SVNDiffInstruction.COPY_FROM_TARGET:
+                    target.append(target, instruction.offset + offset, instruction.length);
                     break;
                 default:
-                    src = source.read(myInstructions[i].offset, myInstructions[i].length);
+                    if (source instanceof SVNRAFileChannelData) {
+                        target.append((SVNRAFileChannelData) source, instruction.offset + mySourceViewOffset, instruction.length);
+                    } else {
+                        target.append(source.read(instruction.offset + mySourceViewOffset, instruction.length), instruction.length);
+                    }
             }
-            target.append(src, myInstructions[i].length);
         }
     }
 
@@ -18,6 +18,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
@@ -27,6 +30,18 @@ import org.tmatesoft.svn.util.SVNDebugLog;
 
 
 /**
+ * Reads and writes diff windows in svndiff format.
+ *
+ * <p>
+ * Both svndiff versions are read, the version is taken from the stream
+ * header. In svndiff1 instructions and new data sections of a window are
+ * zlib compressed, every section is prefixed with the length of its original
+ * data and is kept as is when compression does not make it smaller. Windows
+ * built from svndiff1 streams report uncompressed new data length, the number
+ * of bytes of the new data section that follow the window in the stream is
+ * returned by {@link #getNewDataSectionLength()} and these bytes should be
+ * passed through the stream returned by {@link #createNewDataStream(OutputStream)}.
+ *
  * @version 1.0
  * @author  TMate Software Ltd.
  */
@@ -44,14 +59,20 @@ public class SVNDiffWindowBuilder {
 	private static final int DONE = 3;
     
     private static final byte[] HEADER_BYTES = {'S', 'V', 'N', 0};
+    private static final byte[] COMPRESSED_HEADER_BYTES = {'S', 'V', 'N', 1};
+    // sections shorter than that are not worth compressing.
+    private static final int MIN_COMPRESS_LENGTH = 512;
+    private static final int TRANSFER_BUFFER_SIZE = 8*1024;
 	
 	private int myState;
+	private int myVersion;
 	private int[] myOffsets;
 	private byte[] myInstructions;
 	private byte[] myHeader;
 	private SVNDiffWindow myDiffWindow;
     private int myFedDataCount;
     private OutputStream myNewDataStream;
+    private byte[] myTransferBuffer;
 	
 	private SVNDiffWindowBuilder() {
 		reset();
@@ -62,6 +83,9 @@ public class SVNDiffWindowBuilder {
     }
 	
 	public void reset(int state) {
+		if (state == HEADER) {
+		    myVersion = 0;
+		}
 		myOffsets = new int[5];
 		myHeader = new byte[4];
 		myInstructions = null;
@@ -84,8 +108,37 @@ public class SVNDiffWindowBuilder {
 	public SVNDiffWindow getDiffWindow() {
 		return myDiffWindow;
 	}
+
+    /**
+     * Returns svndiff version of the stream, 0 or 1, known once the stream
+     * header is read.
+     */
+    public int getVersion() {
+        return myVersion;
+    }
+
+    /**
+     * Returns number of bytes of the current window new data section in the
+     * stream, for svndiff1 streams it differs from the window new data length.
+     */
+    public int getNewDataSectionLength() {
+        return myOffsets[4];
+    }
+
+    /**
+     * Returns stream that accepts bytes of the current window new data section
+     * and writes new data to <code>os</code>. Returns <code>os</code> itself
+     * for svndiff0 streams, for svndiff1 streams new data is decompressed and
+     * written to <code>os</code> when returned stream is closed.
+     */
+    public OutputStream createNewDataStream(OutputStream os) {
+        if (myVersion == 0) {
+            return os;
+        }
+        return new SectionDecodingStream(os);
+    }
 	
-    public int accept(byte[] bytes, int offset) {       
+    public int accept(byte[] bytes, int offset) throws SVNException {       
         switch (myState) {
             case HEADER:
                 for(int i = 0; i < myHeader.length && offset < bytes.length; i++) {
@@ -95,6 +148,7 @@ public class SVNDiffWindowBuilder {
                 }
                 if (myHeader[myHeader.length - 1] >= 0) {
                     myState = OFFSET;
+                    myVersion = myHeader[myHeader.length - 1];
                     if (offset < bytes.length) {
                         return accept(bytes, offset);
                     }
@@ -129,13 +183,13 @@ public class SVNDiffWindowBuilder {
                     if (myOffsets[3] == 0) {
                         myState = DONE;
                         if (myDiffWindow == null) {
-                            myDiffWindow = createDiffWindow(myOffsets, myInstructions);
+                            myDiffWindow = createDiffWindow(myOffsets, myInstructions, myVersion);
                         }
                     }
                     return offset + length;
                 }
                 if (myDiffWindow == null) {
-                    myDiffWindow = createDiffWindow(myOffsets, myInstructions);
+                    myDiffWindow = createDiffWindow(myOffsets, myInstructions, myVersion);
                 } 
                 myState = DONE;
             default:
@@ -162,6 +216,7 @@ public class SVNDiffWindowBuilder {
                 }
                 if (myHeader[myHeader.length - 1] >= 0) {
                     myState = OFFSET;
+                    myVersion = myHeader[myHeader.length - 1];
                 }
                 break;
             case OFFSET:
@@ -204,40 +259,49 @@ public class SVNDiffWindowBuilder {
                     if (myOffsets[3] == 0) {
                         myState = DONE;
                         if (myDiffWindow == null) {
-                            myDiffWindow = createDiffWindow(myOffsets, myInstructions);
+                            myDiffWindow = createDiffWindow(myOffsets, myInstructions, myVersion);
                             myFedDataCount = 0;
                             myNewDataStream = consumer.textDeltaChunk(path, myDiffWindow);
                             if (myNewDataStream == null) {
                                 myNewDataStream = SVNFileUtil.DUMMY_OUT;
                             }
+                            myNewDataStream = createNewDataStream(myNewDataStream);
                         }
                     }
                     break;
                 }
                 myState = DONE;
                 if (myDiffWindow == null) {
-                    myDiffWindow = createDiffWindow(myOffsets, myInstructions);
+                    myDiffWindow = createDiffWindow(myOffsets, myInstructions, myVersion);
                     myFedDataCount = 0;
                     myNewDataStream = consumer.textDeltaChunk(path, myDiffWindow);
                     if (myNewDataStream == null) {
                         myNewDataStream = SVNFileUtil.DUMMY_OUT;
                     }
+                    myNewDataStream = createNewDataStream(myNewDataStream);
                 }
                 break;
             case DONE:
                 try {
-                    while(myFedDataCount < myDiffWindow.getNewDataLength()) {
-                        int r = is.read();
-                        if (r < 0) {
+                    while(myFedDataCount < getNewDataSectionLength()) {
+                        if (myTransferBuffer == null) {
+                            myTransferBuffer = new byte[TRANSFER_BUFFER_SIZE];
+                        }
+                        int r = is.read(myTransferBuffer, 0, Math.min(myTransferBuffer.length, getNewDataSectionLength() - myFedDataCount));
+                        if (r <= 0) {
                             return false;
                         }
-                        myNewDataStream.write(r);
-                        myFedDataCount++;
+                        myNewDataStream.write(myTransferBuffer, 0, r);
+                        myFedDataCount += r;
                     }
                 } catch (IOException e) {
                     SVNErrorManager.error(e.getMessage());
                 }
-                SVNFileUtil.closeFile(myNewDataStream);
+                try {
+                    myNewDataStream.close();
+                } catch (IOException e) {
+                    SVNErrorManager.error(e.getMessage());
+                }
                 reset(1);
                 break;
             default:
@@ -248,10 +312,65 @@ public class SVNDiffWindowBuilder {
     }
     
     public static void save(SVNDiffWindow window, OutputStream os) throws IOException {
-        os.write(HEADER_BYTES);
+        save(window, true, os);
+    }
+
+    /**
+     * Writes <code>window</code> in svndiff format. svndiff header is written
+     * only once, before the first window of the delta, so <code>saveHeader</code>
+     * should be <code>false</code> for the rest windows of the same delta.
+     */
+    public static void save(SVNDiffWindow window, boolean saveHeader, OutputStream os) throws IOException {
+        if (saveHeader) {
+            os.write(HEADER_BYTES);
+        }
+        if (window.getInstructionsCount() == 0) {
+            return;
+        }
+        byte[] instructions = saveInstructions(window);
+
+        long[] offsets = new long[5];
+        offsets[0] = window.getSourceViewOffset();
+        offsets[1] = window.getSourceViewLength();
+        offsets[2] = window.getTargetViewLength();
+        offsets[3] = instructions.length;
+        offsets[4] = window.getNewDataLength();
+        for(int i = 0; i < offsets.length; i++) {
+            writeInt(os, offsets[i]);
+        }
+        os.write(instructions);
+    }
+
+    /**
+     * Writes <code>window</code> together with its new data in svndiff1
+     * format. As new data section length is a part of the window header, the
+     * whole new data of the window should be passed as <code>newData</code>.
+     */
+    public static void saveCompressed(SVNDiffWindow window, boolean saveHeader, byte[] newData, OutputStream os) throws IOException {
+        if (saveHeader) {
+            os.write(COMPRESSED_HEADER_BYTES);
+        }
         if (window.getInstructionsCount() == 0) {
             return;
         }
+        byte[] instructions = saveInstructions(window);
+        byte[] instructionsSection = encodeSection(instructions, instructions.length);
+        byte[] newDataSection = encodeSection(newData, (int) window.getNewDataLength());
+
+        long[] offsets = new long[5];
+        offsets[0] = window.getSourceViewOffset();
+        offsets[1] = window.getSourceViewLength();
+        offsets[2] = window.getTargetViewLength();
+        offsets[3] = instructionsSection.length;
+        offsets[4] = newDataSection.length;
+        for(int i = 0; i < offsets.length; i++) {
+            writeInt(os, offsets[i]);
+        }
+        os.write(instructionsSection);
+        os.write(newDataSection);
+    }
+
+    private static byte[] saveInstructions(SVNDiffWindow window) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         for(int i = 0; i < window.getInstructionsCount(); i++) {
             SVNDiffInstruction instruction = window.getInstructionAt(i);
@@ -268,17 +387,69 @@ public class SVNDiffWindowBuilder {
                 writeInt(bos, instruction.offset);
             }
         }
+        return bos.toByteArray();
+    }
 
-        long[] offsets = new long[5];
-        offsets[0] = window.getSourceViewOffset();
-        offsets[1] = window.getSourceViewLength();
-        offsets[2] = window.getTargetViewLength();
-        offsets[3] = bos.size();
-        offsets[4] = window.getNewDataLength();
-        for(int i = 0; i < offsets.length; i++) {
-            writeInt(os, offsets[i]);
+    private static byte[] encodeSection(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writeInt(bos, length);
+        if (length >= MIN_COMPRESS_LENGTH) {
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(data, 0, length);
+                deflater.finish();
+                byte[] buffer = new byte[length];
+                int compressed = 0;
+                while (!deflater.finished() && compressed < buffer.length) {
+                    compressed += deflater.deflate(buffer, compressed, buffer.length - compressed);
+                }
+                if (deflater.finished() && compressed < length) {
+                    bos.write(buffer, 0, compressed);
+                    return bos.toByteArray();
+                }
+            } finally {
+                deflater.end();
+            }
         }
-        os.write(bos.toByteArray());
+        bos.write(data, 0, length);
+        return bos.toByteArray();
+    }
+
+    private static byte[] decodeSection(byte[] section) throws IOException {
+        if (section == null || section.length == 0) {
+            return new byte[0];
+        }
+        int[] length = new int[1];
+        int offset = readInt(section, 0, length, 0);
+        if (length[0] < 0) {
+            throw new IOException("svn: Invalid svndiff section length");
+        }
+        byte[] data = new byte[length[0]];
+        if (section.length - offset == data.length) {
+            // section was not compressed.
+            System.arraycopy(section, offset, data, 0, data.length);
+            return data;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(section, offset, section.length - offset);
+            int inflated = 0;
+            while (inflated < data.length) {
+                int count = inflater.inflate(data, inflated, data.length - inflated);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != data.length) {
+                throw new IOException("svn: Decompression of svndiff data failed");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("svn: Decompression of svndiff data failed: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return data;
     }
     
     public static SVNDiffWindow createReplacementDiffWindow(long dataLength) {
@@ -364,14 +535,31 @@ public class SVNDiffWindowBuilder {
         }
     }
 
-	private static SVNDiffWindow createDiffWindow(int[] offsets, byte[] instructions) {
-		SVNDiffWindow window = new SVNDiffWindow(offsets[0], offsets[1], offsets[2], 
-				createInstructions(instructions),
-				offsets[4]);
-		return window;
+	private static SVNDiffWindow createDiffWindow(int[] offsets, byte[] instructions, int version) throws SVNException {
+	    if (version == 0) {
+	        return new SVNDiffWindow(offsets[0], offsets[1], offsets[2], 
+	                createInstructions(instructions), offsets[4]);
+	    }
+	    try {
+	        instructions = decodeSection(instructions);
+	    } catch (IOException e) {
+	        SVNErrorManager.error(e.getMessage());
+	    }
+	    SVNDiffInstruction[] result = createInstructions(instructions);
+	    // new data length is not known until new data section is decompressed.
+	    long newDataLength = 0;
+	    for(int i = 0; i < result.length; i++) {
+	        if (result[i].type == SVNDiffInstruction.COPY_FROM_NEW_DATA) {
+	            newDataLength += result[i].length;
+	        }
+	    }
+	    return new SVNDiffWindow(offsets[0], offsets[1], offsets[2], result, newDataLength);
 	}
 
 	private static SVNDiffInstruction[] createInstructions(byte[] bytes) {
+        if (bytes == null) {
+            return new SVNDiffInstruction[0];
+        }
         Collection instructions = new ArrayList();
         int[] instr = new int[2];
         for(int i = 0; i < bytes.length;) {            
@@ -396,4 +584,35 @@ public class SVNDiffWindowBuilder {
         return (SVNDiffInstruction[]) instructions.toArray(new SVNDiffInstruction[instructions.size()]);
     }
 
+    private static class SectionDecodingStream extends OutputStream {
+
+        private OutputStream myTarget;
+        private ByteArrayOutputStream mySection;
+
+        public SectionDecodingStream(OutputStream target) {
+            myTarget = target;
+            mySection = new ByteArrayOutputStream();
+        }
+
+        public void write(int b) throws IOException {
+            mySection.write(b);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            mySection.write(b, off, len);
+        }
+
+        public void close() throws IOException {
+            if (mySection == null) {
+                return;
+            }
+            byte[] data = decodeSection(mySection.toByteArray());
+            mySection = null;
+            try {
+                myTarget.write(data);
+            } finally {
+                myTarget.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.io.diff;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+
+/**
+ * Collects delta instructions for the target file and sends them to the
+ * consumer as a sequence of diff windows, each window produces at most
+ * {@link #MAX_WINDOW_LENGTH} bytes of target and has source view of at most
+ * {@link #MAX_WINDOW_LENGTH} bytes, svn rejects larger windows. New data of a
+ * window is read from the work file only when the window is sent, so memory
+ * used does not depend on the file size.
+ *
+ * <p>
+ * Source views of the sent windows never slide backwards: view end of a
+ * window is extended up to the end of the previous view when necessary.
+ * Source copies that do not fit into the current view are sent in the next
+ * window, copies before {@link #getSourceViewLowerBound()} or copies that
+ * would make the view too large are sent as new data read from the work
+ * file instead.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+class SVNDiffWindowSender {
+
+    public static final int MAX_WINDOW_LENGTH = 100*1024;
+
+    private String myPath;
+    private ISVNEditor myConsumer;
+    private ISVNRAData myWorkFile;
+
+    private List myInstructions;
+    // pairs of work file offset and length, new data of the current window.
+    private List myNewDataRanges;
+    private long myTargetLength;
+    // offset of the current window end in the work file.
+    private long myTargetOffset;
+    private long myNewDataLength;
+    private long mySourceStart;
+    private long mySourceEnd;
+    private long myLastSourceStart;
+    private long myLastSourceEnd;
+    private int myWindowsCount;
+    private byte[] myBuffer;
+
+    public SVNDiffWindowSender(String path, ISVNEditor consumer, ISVNRAData workFile) {
+        myPath = path;
+        myConsumer = consumer;
+        myWorkFile = workFile;
+        myInstructions = new ArrayList();
+        myNewDataRanges = new ArrayList();
+        resetWindow();
+    }
+
+    public void copyFromSource(long offset, long length) throws SVNException {
+        while (length > 0) {
+            long chunk = Math.min(length, MAX_WINDOW_LENGTH - myTargetLength);
+            if (offset < myLastSourceStart || (mySourceEnd >= 0 && offset < mySourceStart
+                    && Math.max(mySourceEnd, myLastSourceEnd) - offset > MAX_WINDOW_LENGTH)) {
+                // view could not be moved back or extended, target has the same bytes.
+                copyFromNewData(myTargetOffset, chunk);
+            } else {
+                if (mySourceEnd >= 0 && offset >= mySourceStart) {
+                    long viewEnd = mySourceStart + MAX_WINDOW_LENGTH;
+                    if (offset >= viewEnd) {
+                        sendWindow();
+                        continue;
+                    }
+                    chunk = Math.min(chunk, viewEnd - offset);
+                }
+                myInstructions.add(new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, chunk, offset));
+                mySourceStart = Math.min(mySourceStart, offset);
+                mySourceEnd = Math.max(mySourceEnd, offset + chunk);
+                addTargetLength(chunk);
+            }
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public void copyFromNewData(long workFileOffset, long length) throws SVNException {
+        while (length > 0) {
+            long chunk = Math.min(length, MAX_WINDOW_LENGTH - myTargetLength);
+            myInstructions.add(new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_NEW_DATA, chunk, myNewDataLength));
+            myNewDataRanges.add(new long[] {workFileOffset, chunk});
+            myNewDataLength += chunk;
+            workFileOffset += chunk;
+            length -= chunk;
+            addTargetLength(chunk);
+        }
+    }
+
+    /**
+     * Returns the lowest base file offset the current window may copy from,
+     * that is start of the source view of the last window sent.
+     */
+    public long getSourceViewLowerBound() {
+        return myLastSourceStart;
+    }
+
+    /**
+     * Copies data already produced for the target, <code>offset</code> is
+     * the work file offset of that data. Data produced before the current
+     * window is sent as new data.
+     */
+    public void copyFromTarget(long offset, long length) throws SVNException {
+        while (length > 0) {
+            long chunk = Math.min(length, MAX_WINDOW_LENGTH - myTargetLength);
+            long windowStart = myTargetOffset - myTargetLength;
+            if (offset >= windowStart) {
+                myInstructions.add(new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_TARGET, chunk, offset - windowStart));
+                addTargetLength(chunk);
+            } else {
+                copyFromNewData(myTargetOffset, chunk);
+            }
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public void finish() throws SVNException {
+        if (!myInstructions.isEmpty() || myWindowsCount == 0) {
+            sendWindow();
+        }
+        myConsumer.textDeltaEnd(myPath);
+    }
+
+    private void addTargetLength(long length) throws SVNException {
+        myTargetLength += length;
+        myTargetOffset += length;
+        if (myTargetLength >= MAX_WINDOW_LENGTH) {
+            sendWindow();
+        }
+    }
+
+    private void sendWindow() throws SVNException {
+        long sourceOffset = 0;
+        long sourceLength = 0;
+        if (mySourceEnd >= 0) {
+            if (mySourceStart < myLastSourceStart) {
+                SVNErrorManager.error("svn: Delta source view moves backwards");
+            }
+            sourceOffset = mySourceStart;
+            sourceLength = Math.max(mySourceEnd, myLastSourceEnd) - mySourceStart;
+            myLastSourceStart = sourceOffset;
+            myLastSourceEnd = sourceOffset + sourceLength;
+        }
+        SVNDiffInstruction[] instructions = (SVNDiffInstruction[]) myInstructions.toArray(new SVNDiffInstruction[myInstructions.size()]);
+        for (int i = 0; i < instructions.length; i++) {
+            if (instructions[i].type == SVNDiffInstruction.COPY_FROM_SOURCE) {
+                // offsets are relative to the source view.
+                instructions[i].offset -= sourceOffset;
+            }
+        }
+        SVNDiffWindow window = new SVNDiffWindow(sourceOffset, sourceLength, myTargetLength, instructions, myNewDataLength);
+        OutputStream os = myConsumer.textDeltaChunk(myPath, window);
+        try {
+            for (int i = 0; i < myNewDataRanges.size(); i++) {
+                long[] range = (long[]) myNewDataRanges.get(i);
+                sendNewData(os, range[0], range[1]);
+            }
+        } catch (IOException e) {
+            SVNErrorManager.error(e.getMessage());
+        } finally {
+            SVNFileUtil.closeFile(os);
+        }
+        myWindowsCount++;
+        resetWindow();
+    }
+
+    private void sendNewData(OutputStream os, long offset, long length) throws SVNException, IOException {
+        if (myBuffer == null) {
+            myBuffer = new byte[32*1024];
+        }
+        InputStream is = myWorkFile.read(offset, length);
+        try {
+            while (length > 0) {
+                int read = is.read(myBuffer, 0, (int) Math.min(myBuffer.length, length));
+                if (read <= 0) {
+                    SVNErrorManager.error("svn: Unexpected end of file while reading delta new data");
+                }
+                os.write(myBuffer, 0, read);
+                length -= read;
+            }
+        } finally {
+            SVNFileUtil.closeFile(is);
+        }
+    }
+
+    private void resetWindow() {
+        myInstructions.clear();
+        myNewDataRanges.clear();
+        myTargetLength = 0;
+        myNewDataLength = 0;
+        mySourceStart = Long.MAX_VALUE;
+        mySourceEnd = -1;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd. All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which you should
+ * have received as part of this distribution. The terms are also available at
+ * http://tmate.org/svn/license.html. If newer versions of this license are
+ * posted there, you may use a newer version instead, at your option.
+ * ====================================================================
+ */
+
+package org.tmatesoft.svn.core.io.diff;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+
+/**
+ * File data accessed through a <code>FileChannel</code>. Appends go through
+ * a single scratch buffer and copies between files use channel transfers,
+ * so {@link SVNDiffWindow#apply(ISVNRAData, ISVNRAData, InputStream, long)}
+ * does not allocate memory per instruction when its target is an instance
+ * of this class.
+ *
+ * @version 1.0
+ * @author TMate Software Ltd.
+ */
+public class SVNRAFileChannelData implements ISVNRAData {
+
+    private static final int BUFFER_SIZE = 32*1024;
+
+    private File myRawFile;
+    private boolean myIsReadonly;
+    private RandomAccessFile myFile;
+    private FileChannel myChannel;
+    private byte[] myScratch;
+    private ByteBuffer myScratchBuffer;
+
+    public SVNRAFileChannelData(File file, boolean readonly) {
+        myRawFile = file;
+        myIsReadonly = readonly;
+    }
+
+    public InputStream readAll() throws SVNException {
+        return SVNFileUtil.openFileForReading(myRawFile);
+    }
+
+    public InputStream read(long offset, long length) throws SVNException {
+        byte[] result = new byte[(int) length];
+        int read = 0;
+        try {
+            FileChannel channel = getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(result);
+            while (buffer.hasRemaining()) {
+                int count = channel.read(buffer, offset + read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+        } catch (IOException e) {
+            SVNErrorManager.error(e.getMessage());
+        }
+        // same as SVNRAFileData, data past the end repeats what was read.
+        for (int i = read; read > 0 && i < length; i++) {
+            result[i] = result[i - read];
+        }
+        return new ByteArrayInputStream(result);
+    }
+
+    public void append(InputStream source, long length) throws SVNException {
+        try {
+            FileChannel channel = getChannel();
+            while (length > 0) {
+                int count = source.read(myScratch, 0, (int) Math.min(length, myScratch.length));
+                if (count < 0) {
+                    SVNErrorManager.error("svn: Unexpected end of delta data while writing '" + myRawFile + "'");
+                }
+                write(channel, count);
+                length -= count;
+            }
+        } catch (IOException e) {
+            SVNErrorManager.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Appends <code>length</code> bytes of <code>source</code> starting at
+     * <code>offset</code>. <code>source</code> may be this file, then copied
+     * range may overlap appended data.
+     */
+    public void append(SVNRAFileChannelData source, long offset, long length) throws SVNException {
+        try {
+            FileChannel channel = getChannel();
+            if (source == this) {
+                while (length > 0) {
+                    // never read past the current end, appended bytes repeat the copied range.
+                    int count = (int) Math.min(Math.min(length, myScratch.length), channel.size() - offset);
+                    if (count <= 0) {
+                        SVNErrorManager.error("svn: Delta target view is out of '" + myRawFile + "' bounds");
+                    }
+                    myScratchBuffer.clear();
+                    myScratchBuffer.limit(count);
+                    while (myScratchBuffer.hasRemaining()) {
+                        if (channel.read(myScratchBuffer, offset + myScratchBuffer.position()) < 0) {
+                            SVNErrorManager.error("svn: Delta target view is out of '" + myRawFile + "' bounds");
+                        }
+                    }
+                    write(channel, count);
+                    offset += count;
+                    length -= count;
+                }
+                return;
+            }
+            FileChannel sourceChannel = source.getChannel();
+            while (length > 0) {
+                long count = sourceChannel.transferTo(offset, length, channel);
+                if (count <= 0) {
+                    SVNErrorManager.error("svn: Delta source view is out of '" + source.myRawFile + "' bounds");
+                }
+                offset += count;
+                length -= count;
+            }
+        } catch (IOException e) {
+            SVNErrorManager.error(e.getMessage());
+        }
+    }
+
+    public long length() {
+        if (myChannel != null) {
+            try {
+                return myChannel.size();
+            } catch (IOException e) {
+                //
+            }
+        }
+        return myRawFile.length();
+    }
+
+    public long lastModified() {
+        return myRawFile.lastModified();
+    }
+
+    public void close() throws IOException {
+        if (myFile == null) {
+            return;
+        }
+        myChannel = null;
+        myFile.close();
+        myFile = null;
+    }
+
+    private void write(FileChannel channel, int count) throws IOException {
+        myScratchBuffer.clear();
+        myScratchBuffer.limit(count);
+        while (myScratchBuffer.hasRemaining()) {
+            channel.write(myScratchBuffer);
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (myChannel == null) {
+            if (!myRawFile.exists()) {
+                myRawFile.getParentFile().mkdirs();
+                myRawFile.createNewFile();
+            } else if (!myIsReadonly) {
+                try {
+                    SVNFileUtil.setReadonly(myRawFile, false);
+                } catch (SVNException e) {
+                    //
+                }
+            }
+            myFile = new RandomAccessFile(myRawFile, myIsReadonly ? "r" : "rw");
+            myChannel = myFile.getChannel();
+            // relative writes and transfers always append.
+            myChannel.position(myChannel.size());
+            myScratch = new byte[BUFFER_SIZE];
+            myScratchBuffer = ByteBuffer.wrap(myScratch);
+        }
+        return myChannel;
+    }
+}
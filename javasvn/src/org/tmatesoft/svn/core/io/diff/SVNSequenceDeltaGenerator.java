@@ -14,8 +14,6 @@ package org.tmatesoft.svn.core.io.diff;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -36,8 +34,6 @@ import de.regnis.q.sequence.line.QSequenceLineResult;
  */
 public class SVNSequenceDeltaGenerator implements ISVNDeltaGenerator {
 
-	private static final SVNAllDeltaGenerator ALL_DELTA_GENERATOR = new SVNAllDeltaGenerator();
-
 	private final int memoryThreshold;
 	private final int fileSegmentSize;
 	private final double searchDepthExponent;
@@ -57,7 +53,7 @@ public class SVNSequenceDeltaGenerator implements ISVNDeltaGenerator {
 	public void generateDiffWindow(String commitPath, ISVNEditor consumer, ISVNRAData workFile, ISVNRAData baseFile) throws SVNException {
 		try {
 			if (!canProcess(workFile, baseFile)) {
-				ALL_DELTA_GENERATOR.generateDiffWindow(commitPath, consumer, workFile, baseFile);
+				new SVNXDeltaGenerator().generateDiffWindow(commitPath, consumer, workFile, baseFile);
 				return;
 			}
 
@@ -78,20 +74,9 @@ public class SVNSequenceDeltaGenerator implements ISVNDeltaGenerator {
 		}
 
 		try {
-			final List instructions = new ArrayList();
-			final List newDatas = new ArrayList();
-			createInstructions(result, instructions, newDatas);
-
-			final QSequenceLineCache baseLines = result.getLeftCache();
-			final QSequenceLineCache workLines = result.getRightCache();
-			final long sourceLength = baseLines.getLineCount() > 0 ? baseLines.getLine(baseLines.getLineCount() - 1).getTo() + 1 : 0;
-			final long targetLength = workLines.getLineCount() > 0 ? workLines.getLine(workLines.getLineCount() - 1).getTo() + 1 : 0;
-			final long newDataLength = determineNewDataLength(newDatas);
-			final SVNDiffInstruction[] instructionsArray = (SVNDiffInstruction[])instructions.toArray(new SVNDiffInstruction[instructions.size()]);
-			final OutputStream stream = consumer.textDeltaChunk(commitPath, new SVNDiffWindow(0, sourceLength, targetLength, instructionsArray, newDataLength));
-			sendData(newDatas, stream);
-			stream.close();
-			consumer.textDeltaEnd(commitPath);
+			final SVNDiffWindowSender sender = new SVNDiffWindowSender(commitPath, consumer, workFile);
+			createInstructions(result, sender);
+			sender.finish();
 		}
 		finally {
 			result.close();
@@ -128,7 +113,7 @@ public class SVNSequenceDeltaGenerator implements ISVNDeltaGenerator {
 		return true;
 	}
 
-	private static void createInstructions(final QSequenceLineResult result, final List instructions, final List bytesToSend) throws IOException {
+	private static void createInstructions(final QSequenceLineResult result, final SVNDiffWindowSender sender) throws IOException, SVNException {
 		final QSequenceLineCache baseLines = result.getLeftCache();
 		final QSequenceLineCache workLines = result.getRightCache();
 		final List blockList = result.getBlocks();
@@ -145,16 +130,13 @@ public class SVNSequenceDeltaGenerator implements ISVNDeltaGenerator {
 			if (lastBase < baseFrom) {
 				final long charFrom = baseLines.getLine(lastBase).getFrom();
 				final long charTo = baseLines.getLine(baseFrom - 1).getTo();
-				instructions.add(new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, charTo - charFrom + 1, charFrom));
+				sender.copyFromSource(charFrom, charTo - charFrom + 1);
 			}
 
 			if (workTo >= workFrom) {
 				final long charFrom = workLines.getLine(workFrom).getFrom();
 				final long charTo = workLines.getLine(workTo).getTo();
-				instructions.add(new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_NEW_DATA, charTo - charFrom + 1, 0));
-				for (int lineIndex = workFrom; lineIndex <= workTo; lineIndex++) {
-					bytesToSend.add(workLines.getLine(lineIndex).getBytes());
-				}
+				sender.copyFromNewData(charFrom, charTo - charFrom + 1);
 			}
 
 			lastBase = baseTo + 1;
@@ -163,23 +145,7 @@ public class SVNSequenceDeltaGenerator implements ISVNDeltaGenerator {
 		if (lastBase <= baseLines.getLineCount() - 1) {
 			final long baseFrom = baseLines.getLine(lastBase).getFrom();
 			final long baseTo = baseLines.getLine((baseLines.getLineCount() - 1)).getTo();
-			instructions.add(new SVNDiffInstruction(SVNDiffInstruction.COPY_FROM_SOURCE, baseTo - baseFrom + 1, baseFrom));
-		}
-	}
-
-	private static long determineNewDataLength(List datas) {
-		long length = 0;
-		for (Iterator it = datas.iterator(); it.hasNext();) {
-			final byte[] data = (byte[])it.next();
-			length += data.length;
-		}
-		return length;
-	}
-
-	private static void sendData(List datas, OutputStream stream) throws IOException {
-		for (Iterator it = datas.iterator(); it.hasNext();) {
-			final byte[] bytes = (byte[])it.next();
-			stream.write(bytes);
+			sender.copyFromSource(baseFrom, baseTo - baseFrom + 1);
 		}
 	}
 }
\ No newline at end of file
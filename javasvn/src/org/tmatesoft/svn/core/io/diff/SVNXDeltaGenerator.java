@@ -0,0 +1,214 @@
+/*
+ * ====================================================================
+ * Copyright (c) 2004 TMate Software Ltd.  All rights reserved.
+ *
+ * This software is licensed as described in the file COPYING, which
+ * you should have received as part of this distribution.  The terms
+ * are also available at http://tmate.org/svn/license.html.
+ * If newer versions of this license are posted there, you may use a
+ * newer version instead, at your option.
+ * ====================================================================
+ */
+package org.tmatesoft.svn.core.io.diff;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNErrorManager;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+
+/**
+ * Byte oriented delta generator for binary files.
+ *
+ * <p>
+ * Target is processed in windows, for every window a source area around the
+ * expected position of the window data in the base file is indexed by
+ * rolling hashes of fixed size blocks. Target is scanned for blocks that
+ * match source area or already scanned part of the target window, matches
+ * are extended as far as possible and sent as source or target copies,
+ * everything else is sent as new data. Source matches are cut so that source
+ * views of the windows only move forward, as svn requires. Searched area is
+ * larger than the window, {@link SVNDiffWindowSender} keeps source views of
+ * the sent windows within {@link SVNDiffWindowSender#MAX_WINDOW_LENGTH}
+ * bytes, sending windows earlier or sending matches as new data when they do
+ * not fit.
+ *
+ * @version 1.0
+ * @author  TMate Software Ltd.
+ */
+public class SVNXDeltaGenerator implements ISVNDeltaGenerator {
+
+    private static final int BLOCK_SIZE = 32;
+    private static final int WINDOW_LENGTH = SVNDiffWindowSender.MAX_WINDOW_LENGTH;
+    // area searched for matches, views of the sent windows are smaller.
+    private static final int SOURCE_VIEW_LENGTH = 3*WINDOW_LENGTH;
+
+    private byte[] mySource;
+    private byte[] myTarget;
+    private int[] myBlocks;
+
+    public void generateDiffWindow(String commitPath, ISVNEditor consumer, ISVNRAData workFile, ISVNRAData baseFile) throws SVNException {
+        SVNDiffWindowSender sender = new SVNDiffWindowSender(commitPath, consumer, workFile);
+        long targetLength = workFile.length();
+        long sourceLength = baseFile != null ? baseFile.length() : 0;
+        if (sourceLength == 0) {
+            sender.copyFromNewData(0, targetLength);
+            sender.finish();
+            return;
+        }
+        if (mySource == null) {
+            mySource = new byte[SOURCE_VIEW_LENGTH];
+            myTarget = new byte[WINDOW_LENGTH];
+            // at least two slots per source and target block.
+            int size = 1;
+            while(size < (SOURCE_VIEW_LENGTH + WINDOW_LENGTH) / BLOCK_SIZE * 2) {
+                size <<= 1;
+            }
+            myBlocks = new int[size];
+        }
+        // difference between the position of the data in the base file and in the work file.
+        long drift = 0;
+        for(long targetOffset = 0; targetOffset < targetLength; targetOffset += WINDOW_LENGTH) {
+            int windowLength = (int) Math.min(WINDOW_LENGTH, targetLength - targetOffset);
+            long sourceOffset = Math.max(0, Math.min(targetOffset + drift - WINDOW_LENGTH, sourceLength - SOURCE_VIEW_LENGTH));
+            sourceOffset = Math.max(sourceOffset, sender.getSourceViewLowerBound());
+            int sourceViewLength = (int) Math.min(SOURCE_VIEW_LENGTH, sourceLength - sourceOffset);
+
+            read(baseFile, sourceOffset, mySource, sourceViewLength);
+            read(workFile, targetOffset, myTarget, windowLength);
+            drift = computeWindow(sender, sourceOffset, sourceViewLength, targetOffset, windowLength, drift);
+        }
+        sender.finish();
+    }
+
+    private long computeWindow(SVNDiffWindowSender sender, long sourceOffset, int sourceLength, long targetOffset, int targetLength, long drift) throws SVNException {
+        int mask = myBlocks.length - 1;
+        for(int i = 0; i < myBlocks.length; i++) {
+            myBlocks[i] = 0;
+        }
+        // positions in the table are stored + 1, source positions first, then target ones.
+        for(int i = 0; i + BLOCK_SIZE <= sourceLength; i += BLOCK_SIZE) {
+            myBlocks[hash(mySource, i) & mask] = i + 1;
+        }
+        int newDataStart = 0;
+        int position = 0;
+        // rolling checksum of the target block at position: a is sum of bytes, b is sum of a.
+        int a = 0;
+        int b = 0;
+        boolean computed = false;
+        while(position + BLOCK_SIZE <= targetLength) {
+            if (!computed) {
+                a = 0;
+                b = 0;
+                for(int i = position; i < position + BLOCK_SIZE; i++) {
+                    a += myTarget[i] & 0xFF;
+                    b += a;
+                }
+                computed = true;
+            }
+            int bucket = mix(a, b) & mask;
+            int candidate = myBlocks[bucket] - 1;
+            int matchLength = 0;
+            boolean fromSource = candidate >= 0 && candidate < sourceLength;
+            if (fromSource) {
+                matchLength = matchForward(mySource, candidate, sourceLength, position, targetLength);
+            } else if (candidate >= sourceLength && candidate - sourceLength < position) {
+                matchLength = matchForward(myTarget, candidate - sourceLength, targetLength, position, targetLength);
+            }
+            // extend match back into pending new data.
+            int matchStart = position;
+            int copyFrom = fromSource ? candidate : candidate - sourceLength;
+            byte[] copyData = fromSource ? mySource : myTarget;
+            if (matchLength >= BLOCK_SIZE) {
+                while(matchStart > newDataStart && copyFrom > 0 && copyData[copyFrom - 1] == myTarget[matchStart - 1]) {
+                    copyFrom--;
+                    matchStart--;
+                    matchLength++;
+                }
+            }
+            if (matchLength >= BLOCK_SIZE && fromSource) {
+                // source data before the previous window view is sent as new data.
+                long skip = sender.getSourceViewLowerBound() - (sourceOffset + copyFrom);
+                if (skip > matchLength - BLOCK_SIZE) {
+                    matchLength = 0;
+                } else if (skip > 0) {
+                    copyFrom += skip;
+                    matchStart += skip;
+                    matchLength -= skip;
+                }
+            }
+            if (matchLength < BLOCK_SIZE) {
+                if (position % BLOCK_SIZE == 0 && myBlocks[bucket] == 0) {
+                    myBlocks[bucket] = sourceLength + position + 1;
+                }
+                if (position + BLOCK_SIZE < targetLength) {
+                    int out = myTarget[position] & 0xFF;
+                    a += (myTarget[position + BLOCK_SIZE] & 0xFF) - out;
+                    b += a - BLOCK_SIZE * out;
+                }
+                position++;
+                continue;
+            }
+            position = matchStart;
+            if (position > newDataStart) {
+                sender.copyFromNewData(targetOffset + newDataStart, position - newDataStart);
+            }
+            if (fromSource) {
+                sender.copyFromSource(sourceOffset + copyFrom, matchLength);
+                drift = sourceOffset + copyFrom - (targetOffset + position);
+            } else {
+                sender.copyFromTarget(targetOffset + copyFrom, matchLength);
+            }
+            position += matchLength;
+            newDataStart = position;
+            computed = false;
+        }
+        if (targetLength > newDataStart) {
+            sender.copyFromNewData(targetOffset + newDataStart, targetLength - newDataStart);
+        }
+        return drift;
+    }
+
+    private int matchForward(byte[] data, int from, int dataLength, int position, int targetLength) {
+        int length = 0;
+        while(from + length < dataLength && position + length < targetLength && data[from + length] == myTarget[position + length]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int hash(byte[] data, int offset) {
+        int a = 0;
+        int b = 0;
+        for(int i = offset; i < offset + BLOCK_SIZE; i++) {
+            a += data[i] & 0xFF;
+            b += a;
+        }
+        return mix(a, b);
+    }
+
+    private static int mix(int a, int b) {
+        int h = (b << 16) ^ a;
+        return h ^ (h >>> 15);
+    }
+
+    private static void read(ISVNRAData data, long offset, byte[] buffer, int length) throws SVNException {
+        InputStream is = data.read(offset, length);
+        try {
+            int read = 0;
+            while(read < length) {
+                int r = is.read(buffer, read, length - read);
+                if (r < 0) {
+                    SVNErrorManager.error("svn: Unexpected end of file while computing delta");
+                }
+                read += r;
+            }
+        } catch (IOException e) {
+            SVNErrorManager.error(e.getMessage());
+        } finally {
+            SVNFileUtil.closeFile(is);
+        }
+    }
+}
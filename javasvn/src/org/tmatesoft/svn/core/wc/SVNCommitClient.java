@@ -12,8 +12,6 @@ package org.tmatesoft.svn.core.wc;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -49,7 +47,8 @@ import org.tmatesoft.svn.core.internal.wc.SVNTranslator;
 import org.tmatesoft.svn.core.internal.wc.SVNWCAccess;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.SVNRepository;
-import org.tmatesoft.svn.core.io.diff.SVNDiffWindowBuilder;
+import org.tmatesoft.svn.core.io.diff.SVNAllDeltaGenerator;
+import org.tmatesoft.svn.core.io.diff.SVNRAFileData;
 import org.tmatesoft.svn.util.SVNDebugLog;
 
 /**
@@ -617,6 +616,7 @@ public class SVNCommitClient extends SVNBasicClient {
         Set targets = new TreeSet();
         SVNStatusClient statusClient = new SVNStatusClient(getRepositoryFactory(), getOptions());
         SVNWCAccess wcAccess = SVNCommitUtil.createCommitWCAccess(paths, recursive, force, targets, statusClient);
+        wcAccess.setWriteBack(true);
         try {
             Map lockTokens = new HashMap();
             SVNCommitItem[] commitItems = SVNCommitUtil.harvestCommitables(wcAccess, targets, lockTokens, !keepLocks, recursive, force);
@@ -736,29 +736,19 @@ public class SVNCommitClient extends SVNBasicClient {
         }
         File importedFile = tmpFile != null ? tmpFile : file;
         String checksum = SVNFileUtil.computeChecksum(importedFile);
-        OutputStream os = editor.textDeltaChunk(filePath, SVNDiffWindowBuilder
-                .createReplacementDiffWindow(importedFile.length()));
-        InputStream is = SVNFileUtil.openFileForReading(importedFile);
-        int r;
+        SVNRAFileData importedData = new SVNRAFileData(importedFile, true);
         try {
-            while ((r = is.read()) >= 0) {
-                os.write(r);
-            }
-        } catch (IOException e) {
-            SVNErrorManager.error("svn: IO error while importing file '" + file
-                    + "': " + e.getMessage());
+            new SVNAllDeltaGenerator().generateDiffWindow(filePath, editor, importedData, null);
         } finally {
             try {
-                os.close();
+                importedData.close();
             } catch (IOException e) {
-                SVNErrorManager.error("svn: IO error while importing file '"
-                        + file + "': " + e.getMessage());
+                //
             }
             if (tmpFile != null) {
                 tmpFile.delete();
             }
         }
-        editor.textDeltaEnd(filePath);
         editor.closeFile(filePath, checksum);
         return true;
     }
@@ -109,6 +109,7 @@ public class SVNUpdateClient extends SVNBasicClient {
      */
     public long doUpdate(File file, SVNRevision revision, boolean recursive) throws SVNException {
         SVNWCAccess wcAccess = createWCAccess(file);
+        wcAccess.setWriteBack(true);
         final SVNReporter reporter = new SVNReporter(wcAccess, true, recursive);
         if (!revision.isValid()) {
             revision = SVNRevision.HEAD;
@@ -126,6 +127,8 @@ public class SVNUpdateClient extends SVNBasicClient {
 
             if (editor.getTargetRevision() >= 0) {
                 if (recursive && !isIgnoreExternals()) {
+                    // externals are checked out with their own accesses that read entries from disk.
+                    wcAccess.flushEntries();
                     handleExternals(wcAccess);
                 }
                 dispatchEvent(SVNEventFactory.createUpdateCompletedEvent(wcAccess, editor.getTargetRevision()));
@@ -160,6 +163,7 @@ public class SVNUpdateClient extends SVNBasicClient {
      */
     public long doSwitch(File file, SVNURL url, SVNRevision revision, boolean recursive) throws SVNException {
         SVNWCAccess wcAccess = createWCAccess(file);
+        wcAccess.setWriteBack(true);
         final SVNReporter reporter = new SVNReporter(wcAccess, true, recursive);
         try {
             wcAccess.open(true, recursive);
@@ -180,6 +184,8 @@ public class SVNUpdateClient extends SVNBasicClient {
             repository.update(url, revNumber, target, recursive, reporter, SVNCancellableEditor.newInstance(editor, this));
 
             if (editor.getTargetRevision() >= 0 && recursive && !isIgnoreExternals()) {
+                // externals are checked out with their own accesses that read entries from disk.
+                wcAccess.flushEntries();
                 handleExternals(wcAccess);
                 dispatchEvent(SVNEventFactory.createUpdateCompletedEvent(wcAccess, editor.getTargetRevision()));
             }